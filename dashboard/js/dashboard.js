@@ -1,8 +1,54 @@
+const pageSize = 100;
+let olderTestsAvailable = true;
+let loadingOlderTests = false;
+let loadingNewestTests = false;
+let newestTestsOutdated = false;
+let searchQuery = "";
+// Changes every time the list is emptied, so tests requested for a previous search are not shown
+let listVersion = 0;
+
 function getLatestDateAddedToDashboard() {
     return $(".list-group-item").first().data('added-to-dashboard');
 }
 
-function addTestItem(item) {
+function getOldestDateAddedToDashboard() {
+    return $(".list-group-item").last().data('added-to-dashboard');
+}
+
+function getInformationUrl() {
+    return [location.protocol, '//', location.host, location.pathname].join('') + 'information';
+}
+
+function getFilterParameters() {
+    // The filters given in the url of the page, plus what is typed in the search box
+    const params = new URL(window.location).searchParams;
+    const filters = {};
+    ["build", "status", "browser", "proxy"].forEach(function(name) {
+        const value = params.get(name);
+        if (value !== null && value !== "") {
+            filters[name] = value;
+        }
+    });
+    if (searchQuery !== "") {
+        filters.search = searchQuery;
+    }
+    return filters;
+}
+
+function getInformation(parameters, callback) {
+    const version = listVersion;
+    return $.getJSON(getInformationUrl(), $.extend(parameters, getFilterParameters()), function(data) {
+        if (version === listVersion) {
+            callback(data);
+        }
+    });
+}
+
+function getEventsUrl() {
+    return [location.protocol, '//', location.host, location.pathname].join('') + 'events';
+}
+
+function addTestItem(item, older) {
     let platformLogo  = "";
     if (item.platform.toLowerCase().includes("mac")) {
         platformLogo = "apple";
@@ -54,7 +100,15 @@ function addTestItem(item) {
         "</span>" +
         "</div>" +
         "</a>";
-    $('#tests').prepend(testItem);
+    if (older) {
+        $('#tests').append(testItem);
+    } else {
+        $('#tests').prepend(testItem);
+    }
+    updateTestCount();
+}
+
+function updateTestCount() {
     const testCount = $(".list-group-item").length;
     const testCountElement = $('#testCount');
     testCountElement.removeClass("btn-dark");
@@ -63,17 +117,73 @@ function addTestItem(item) {
 }
 
 function loadDashboardItems() {
-    let latestDateAdded = getLatestDateAddedToDashboard();
+    const latestDateAdded = getLatestDateAddedToDashboard();
     if (latestDateAdded === undefined) {
-        latestDateAdded = 0;
+        loadNewestDashboardItems();
+        return;
     }
-    const newDashboardItems = [location.protocol, '//', location.host, location.pathname].join('') +
-        'information?lastDateAddedToDashboard=' + latestDateAdded;
-    $.getJSON(newDashboardItems, function(data) {
+    getInformation({lastDateAddedToDashboard: latestDateAdded}, function(data) {
         $.each(data, function (i, item) {
-            addTestItem(item);
+            addTestItem(item, false);
         });
-        searchTestsList();
+    });
+}
+
+function restartDashboardItems() {
+    listVersion++;
+    $("#tests").empty();
+    updateTestCount();
+    olderTestsAvailable = true;
+    loadDashboardItems();
+}
+
+function pollDashboardItems() {
+    // Retrieve deltas every 15 seconds
+    setInterval(function() {
+        loadDashboardItems();
+    }, 15000);
+}
+
+function loadNewestDashboardItems() {
+    // Only the newest tests, older ones are loaded when scrolling down
+    if (loadingNewestTests) {
+        // Loaded again once the current request is done, in case it missed a test
+        newestTestsOutdated = true;
+        return;
+    }
+    loadingNewestTests = true;
+    newestTestsOutdated = false;
+    getInformation({limit: pageSize}, function(data) {
+        // Tests come in the order they were added, the oldest one goes last
+        for (let i = data.length - 1; i >= 0; i--) {
+            addTestItem(data[i], true);
+        }
+    }).always(function() {
+        loadingNewestTests = false;
+        if (newestTestsOutdated) {
+            loadDashboardItems();
+        }
+    });
+}
+
+function loadOlderDashboardItems() {
+    if (loadingOlderTests || !olderTestsAvailable) {
+        return;
+    }
+    loadingOlderTests = true;
+    const parameters = {limit: pageSize};
+    const oldestDateAdded = getOldestDateAddedToDashboard();
+    if (oldestDateAdded !== undefined) {
+        parameters.before = oldestDateAdded;
+    }
+    getInformation(parameters, function(data) {
+        olderTestsAvailable = data.length >= pageSize;
+        // Tests come in the order they were added, the oldest one goes last
+        for (let i = data.length - 1; i >= 0; i--) {
+            addTestItem(data[i], true);
+        }
+    }).always(function() {
+        loadingOlderTests = false;
     });
 }
 
@@ -175,42 +285,36 @@ function unblockUi() {
     }
 }
 
-function searchTestsList() {
-    const currentQuery = $("#search").val().toUpperCase();
-    if (currentQuery !== "") {
-        const tokensCrtQuery = currentQuery.split(" ");
-        $(".list-group-item").each(function(){
-            $(this).hide();
-            const currentKeyword = $(this).text().toUpperCase() + $(this).data("browser").toUpperCase() +
-                $(this).data("platform").toUpperCase() + $(this).data("test-build").toString().toUpperCase() +
-                $(this).data("test-status").toUpperCase() + $(this).data("proxy-name").toUpperCase() +
-                $(this).data("time-zone").toUpperCase();
-            let allTokensFound = true;
-            for (let i = 0; i < tokensCrtQuery.length; i++) {
-                const crtToken = tokensCrtQuery[i];
-                if (currentKeyword.indexOf(crtToken) < 0) {
-                    allTokensFound = false;
-                    break;
-                }
-            }
-            if (allTokensFound) {
-                $(this).show();
-            }
-        });
-    } else {
-        $(".list-group-item").show();
-    }
-}
-
 $(document).ready(function() {
 
+    const q = new URL(window.location).searchParams.get('q');
+    if (q !== null && q !== '') {
+        $('#search').val(decodeURIComponent(q));
+        searchQuery = $('#search').val().trim();
+    }
+
     // Load items as soon as the page loads
     loadDashboardItems();
 
-    // Retrieve deltas every 15 seconds
-    setInterval(function() {
-        loadDashboardItems();
-    }, 15000);
+    if (window.EventSource) {
+        // The hub tells when a test is added, the deltas are only retrieved then
+        const events = new EventSource(getEventsUrl());
+        events.addEventListener("test-finished", function() {
+            loadDashboardItems();
+        });
+        // Catches up with the tests added while the connection was lost
+        events.addEventListener("open", function() {
+            loadDashboardItems();
+        });
+        // The browser reconnects by itself unless the events are not available at all
+        events.addEventListener("error", function() {
+            if (events.readyState === EventSource.CLOSED) {
+                pollDashboardItems();
+            }
+        });
+    } else {
+        pollDashboardItems();
+    }
 
     $("#tests").on("click", ".list-group-item", function() {
         const $this = $(this);
@@ -246,18 +350,24 @@ $(document).ready(function() {
         $("#testTabs").find("a:first").tab("show");
     });
 
-    $("#search").on("keyup", function () {
-        searchTestsList();
+    $("#tests").parent().on("scroll", function () {
+        const $this = $(this);
+        if ($this.scrollTop() + $this.innerHeight() >= this.scrollHeight - 200) {
+            loadOlderDashboardItems();
+        }
     });
 
-    $(function() {
-        const url = new URL(window.location);
-        const params = url.searchParams;
-        const q = params.get('q');
-        if (q !== null && q !== '') {
-            $('#search').val(decodeURIComponent(q));
-            searchTestsList();
-        }
+    // The hub searches the whole history, the list is loaded again once typing pauses
+    let searchTimeout;
+    $("#search").on("keyup", function () {
+        clearTimeout(searchTimeout);
+        searchTimeout = setTimeout(function() {
+            const query = $("#search").val().trim();
+            if (query !== searchQuery) {
+                searchQuery = query;
+                restartDashboardItems();
+            }
+        }, 300);
     });
 
     $("#cleanupButton").click(function () {
@@ -28,4 +28,11 @@ public interface ContainerClient {
     boolean isReady(ContainerCreationStatus container);
     
     boolean isTerminated(ContainerCreationStatus container);
+
+    /**
+     * Starts pushing the state changes of the docker-selenium containers to the given cache, so they do not need
+     * to be polled. Clients that cannot watch their containers leave the cache alone and are polled as before.
+     */
+    default void watchContainers(ContainerStateCache containerStates) {
+    }
 }
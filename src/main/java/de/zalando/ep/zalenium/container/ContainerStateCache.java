@@ -0,0 +1,196 @@
+package de.zalando.ep.zalenium.container;
+
+import java.time.Clock;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.prometheus.client.Counter;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Local view of the state of the docker-selenium containers, fed by the events a {@link ContainerClient} pushes
+ * while it watches the containers.
+ *
+ * Containers are identified by name or by id, whatever the client sends, in the same way proxies are matched to
+ * containers when they register. While the client is watching, each container is only polled once every
+ * reconciliation interval, to catch events that were missed. When the client is not watching (not supported, or
+ * the event stream broke), every check polls the container like before. Readiness and termination are separate
+ * checks of the same container, each one is reconciled on its own schedule.
+ */
+@SuppressWarnings("WeakerAccess")
+@ThreadSafe
+public class ContainerStateCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContainerStateCache.class.getName());
+    private static final Counter containerEvents = Counter.build()
+            .name("zalenium_container_state_events_total")
+            .help("The number of container state changes received from the container client, by state.")
+            .labelNames("state")
+            .register();
+
+    private final Set<String> readyContainers = ConcurrentHashMap.newKeySet();
+    private final Set<String> terminatedContainers = ConcurrentHashMap.newKeySet();
+    private final Map<Check, PollSchedule> pollSchedules = new EnumMap<>(Check.class);
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final Clock clock;
+    private final long reconciliationInterval;
+    private volatile boolean watching = false;
+
+    /**
+     * @param reconciliationInterval time in milliseconds between two polls of the same container while watching.
+     */
+    public ContainerStateCache(Clock clock, long reconciliationInterval) {
+        this.clock = clock;
+        this.reconciliationInterval = reconciliationInterval;
+        for (Check check : Check.values()) {
+            pollSchedules.put(check, new PollSchedule());
+        }
+    }
+
+    /**
+     * Adds a listener which is notified after every state change pushed by the container client.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Called by the container client when it starts or stops receiving events. Containers are polled on every
+     * check while it is not watching.
+     */
+    public void setWatching(boolean watching) {
+        if (this.watching != watching) {
+            LOGGER.info(watching ? "Receiving container events, containers will be polled every {} ms."
+                    : "Not receiving container events, containers will be polled on every check.",
+                    reconciliationInterval);
+        }
+        this.watching = watching;
+    }
+
+    public boolean isWatching() {
+        return watching;
+    }
+
+    public void containerReady(String containerIdOrName) {
+        if (readyContainers.add(containerIdOrName)) {
+            LOGGER.debug("Container {} is ready.", containerIdOrName);
+            containerEvents.labels("ready").inc();
+            notifyListeners();
+        }
+    }
+
+    public void containerTerminated(String containerIdOrName) {
+        if (terminatedContainers.add(containerIdOrName)) {
+            LOGGER.debug("Container {} is terminated.", containerIdOrName);
+            containerEvents.labels("terminated").inc();
+            notifyListeners();
+        }
+    }
+
+    /**
+     * Called when the container does not exist anymore. Nothing is kept about it, so the removal of a container
+     * that is not tracked anymore leaves no trace. A container that is still known is polled on the next check,
+     * which finds it gone.
+     */
+    public void containerRemoved(String containerIdOrName) {
+        boolean known = readyContainers.remove(containerIdOrName) | terminatedContainers.remove(containerIdOrName);
+        if (known) {
+            LOGGER.debug("Container {} was removed.", containerIdOrName);
+            containerEvents.labels("removed").inc();
+            containerChanged(containerIdOrName);
+        }
+    }
+
+    /**
+     * Asks for the container to be polled on the next check, e.g. when an event says something changed but not
+     * enough to know the new state.
+     */
+    public void containerChanged(String containerIdOrName) {
+        pollSchedules.values().forEach(schedule -> schedule.changedContainers.add(containerIdOrName));
+        notifyListeners();
+    }
+
+    public boolean isReady(ContainerCreationStatus container) {
+        return readyContainers.contains(container.getContainerName())
+                || readyContainers.contains(container.getContainerId());
+    }
+
+    public boolean isTerminated(ContainerCreationStatus container) {
+        return terminatedContainers.contains(container.getContainerName())
+                || terminatedContainers.contains(container.getContainerId());
+    }
+
+    /**
+     * @return true when the given state of the container has to be polled from the container client now.
+     */
+    public boolean needsPolling(ContainerCreationStatus container, Check check) {
+        if (!watching) {
+            return true;
+        }
+        PollSchedule schedule = pollSchedules.get(check);
+        long now = clock.millis();
+        boolean changed = schedule.changedContainers.remove(container.getContainerName())
+                | schedule.changedContainers.remove(String.valueOf(container.getContainerId()));
+        // New containers are not polled right away, their events will come
+        Long lastPollTime = schedule.lastPollTimes.putIfAbsent(container.getContainerName(), now);
+        if (changed || (lastPollTime != null && now - lastPollTime >= reconciliationInterval)) {
+            schedule.lastPollTimes.put(container.getContainerName(), now);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops everything known about a container that is not tracked anymore.
+     */
+    public void forget(ContainerCreationStatus container) {
+        for (String key : new String[] {container.getContainerName(), container.getContainerId()}) {
+            if (key != null) {
+                readyContainers.remove(key);
+                terminatedContainers.remove(key);
+                for (PollSchedule schedule : pollSchedules.values()) {
+                    schedule.changedContainers.remove(key);
+                    schedule.lastPollTimes.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries kept about containers, whatever their state.
+     */
+    @VisibleForTesting
+    int size() {
+        int size = readyContainers.size() + terminatedContainers.size();
+        for (PollSchedule schedule : pollSchedules.values()) {
+            size += schedule.changedContainers.size() + schedule.lastPollTimes.size();
+        }
+        return size;
+    }
+
+    private void notifyListeners() {
+        listeners.forEach(Runnable::run);
+    }
+
+    /**
+     * The states of a container that are checked, each one is polled on its own schedule.
+     */
+    public enum Check {
+        READY,
+        TERMINATED
+    }
+
+    private static final class PollSchedule {
+        private final Set<String> changedContainers = ConcurrentHashMap.newKeySet();
+        // Last time each container was polled, by container name.
+        private final Map<String, Long> lastPollTimes = new ConcurrentHashMap<>();
+    }
+}
@@ -3,6 +3,7 @@ package de.zalando.ep.zalenium.container;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -17,6 +18,8 @@ import com.google.common.base.Strings;
 import com.spotify.docker.client.AnsiProgressHandler;
 import com.spotify.docker.client.DefaultDockerClient;
 import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.DockerClient.EventsParam;
+import com.spotify.docker.client.EventStream;
 import com.spotify.docker.client.LogStream;
 import com.spotify.docker.client.messages.PortBinding;
 import de.zalando.ep.zalenium.streams.InputStreamGroupIterator;
@@ -38,6 +41,7 @@ import com.spotify.docker.client.messages.ContainerConfig;
 import com.spotify.docker.client.messages.ContainerCreation;
 import com.spotify.docker.client.messages.ContainerInfo;
 import com.spotify.docker.client.messages.ContainerMount;
+import com.spotify.docker.client.messages.Event;
 import com.spotify.docker.client.messages.ExecCreation;
 import com.spotify.docker.client.messages.HostConfig;
 import com.spotify.docker.client.messages.Image;
@@ -46,6 +50,7 @@ import com.spotify.docker.client.messages.NetworkSettings;
 import de.zalando.ep.zalenium.proxy.DockeredSeleniumStarter;
 import de.zalando.ep.zalenium.util.Environment;
 import de.zalando.ep.zalenium.util.GoogleAnalyticsApi;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
 
 import static com.spotify.docker.client.DockerClient.ListContainersParam.withStatusCreated;
 import static com.spotify.docker.client.DockerClient.ListContainersParam.withStatusRunning;
@@ -71,6 +76,10 @@ public class DockerContainerClient implements ContainerClient {
      * Number of times to attempt to create a container when the generated name is not unique.
      */
     private static final int NAME_COLLISION_RETRIES = 10;
+    /**
+     * Time to wait before watching the container events again after the stream broke.
+     */
+    private static final long EVENTS_RECONNECT_INTERVAL = 5000;
     private static Environment env = defaultEnvironment;
     private static String seleniumContainerCpuLimit;
     private static String seleniumContainerMemoryLimit;
@@ -84,6 +93,8 @@ public class DockerContainerClient implements ContainerClient {
     private final Logger logger = LoggerFactory.getLogger(DockerContainerClient.class.getName());
     private final GoogleAnalyticsApi ga = new GoogleAnalyticsApi();
     private DockerClient dockerClient = new DefaultDockerClient(dockerHost);
+    private final DockerContainerIndex containerIndex = new DockerContainerIndex(Clock.systemDefaultZone(),
+            ZaleniumConfiguration.getContainerReconciliationInterval() * 1000L);
     private String nodeId;
     private String zaleniumNetwork;
     private List<String> zaleniumExtraHosts;
@@ -154,16 +165,16 @@ public class DockerContainerClient implements ContainerClient {
     }
 
     private String getContainerId(String zaleniumContainerName, URL remoteUrl) {
-        List<Container> containerList = null;
-        try {
-            containerList = dockerClient.listContainers(withStatusRunning(), withStatusCreated());
-        } catch (DockerException | InterruptedException e) {
-            logger.debug(nodeId + " Error while getting containerId", e);
-            ga.trackException(e);
+        String networkMode = getZaleniumNetwork(zaleniumContainerName);
+        if (!ZALENIUM_RUNNING_LOCALLY && !DOCKER_NETWORK_HOST_MODE_NAME.equalsIgnoreCase(networkMode)) {
+            String indexedContainerId = containerIndex.getIdByIp(remoteUrl.getHost());
+            if (indexedContainerId != null) {
+                return indexedContainerId;
+            }
         }
 
+        List<Container> containerList = listContainers();
         if (containerList != null) {
-            String networkMode = getZaleniumNetwork(zaleniumContainerName);
             return containerList.stream()
                     .filter(container -> {
                         if (ZALENIUM_RUNNING_LOCALLY) {
@@ -196,14 +207,12 @@ public class DockerContainerClient implements ContainerClient {
         final String containerNameSearch = containerName.contains("/") ?
                 containerName : String.format("/%s", containerName);
 
-        List<Container> containerList = null;
-        try {
-            containerList = dockerClient.listContainers(withStatusRunning(), withStatusCreated());
-        } catch (DockerException | InterruptedException e) {
-            logger.debug(nodeId + " Error while getting containerId", e);
-            ga.trackException(e);
+        String indexedContainerId = containerIndex.getIdByName(containerNameSearch);
+        if (indexedContainerId != null) {
+            return indexedContainerId;
         }
 
+        List<Container> containerList = listContainers();
         if (containerList != null) {
             String containerByName = containerList.stream()
                     .filter(container -> containerNameSearch.equalsIgnoreCase(container.names().get(0)))
@@ -216,6 +225,21 @@ public class DockerContainerClient implements ContainerClient {
         }
     }
 
+    /*
+        Lists the running and created containers, refreshing the container index with them.
+     */
+    private List<Container> listContainers() {
+        try {
+            List<Container> containerList = dockerClient.listContainers(withStatusRunning(), withStatusCreated());
+            containerIndex.containersListed(containerList);
+            return containerList;
+        } catch (DockerException | InterruptedException e) {
+            logger.debug(nodeId + " Error while getting containerId", e);
+            ga.trackException(e);
+            return null;
+        }
+    }
+
     public InputStreamGroupIterator copyFiles(String containerId, String folderName) {
         try {
             return new TarInputStreamGroupWrapper(new TarArchiveInputStream(dockerClient.archiveContainer(containerId, folderName)));
@@ -672,5 +696,75 @@ public class DockerContainerClient implements ContainerClient {
             return false;
         }
     }
+
+    @Override
+    public void watchContainers(ContainerStateCache containerStates) {
+        Thread eventsWatcher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try (EventStream events = dockerClient.events(EventsParam.type(Event.Type.CONTAINER))) {
+                    containerIndex.setWatching(true);
+                    containerStates.setWatching(true);
+                    while (events.hasNext()) {
+                        handleContainerEvent(events.next(), containerStates);
+                    }
+                } catch (Exception e) {
+                    logger.debug(nodeId + " Error while receiving container events.", e);
+                }
+                containerIndex.setWatching(false);
+                containerStates.setWatching(false);
+                try {
+                    Thread.sleep(EVENTS_RECONNECT_INTERVAL);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "DockerContainerClient events watcher");
+        eventsWatcher.setDaemon(true);
+        eventsWatcher.start();
+    }
+
+    private void indexStartedContainer(String containerId) {
+        try {
+            containerIndex.containerStarted(dockerClient.inspectContainer(containerId));
+        } catch (DockerException | InterruptedException e) {
+            logger.debug(nodeId + " Error while inspecting started container " + containerId, e);
+        }
+    }
+
+    private void handleContainerEvent(Event event, ContainerStateCache containerStates) {
+        if (event.action() == null || event.actor() == null) {
+            return;
+        }
+        String containerId = event.actor().id();
+        String containerName = event.actor().attributes().get("name");
+        boolean isSeleniumContainer = containerName != null
+                && containerName.startsWith(DockeredSeleniumStarter.getContainerName() + "_");
+        switch (event.action()) {
+            case "start":
+                if (isSeleniumContainer) {
+                    indexStartedContainer(containerId);
+                }
+                break;
+            case "die":
+                containerIndex.containerRemoved(containerId);
+                if (isSeleniumContainer) {
+                    containerStates.containerTerminated(containerId);
+                }
+                break;
+            case "destroy":
+                containerIndex.containerRemoved(containerId);
+                if (isSeleniumContainer) {
+                    containerStates.containerRemoved(containerId);
+                }
+                break;
+            case "health_status: healthy":
+                if (isSeleniumContainer) {
+                    containerStates.containerReady(containerId);
+                }
+                break;
+            default:
+                break;
+        }
+    }
 }
 
@@ -0,0 +1,158 @@
+package de.zalando.ep.zalenium.container;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.spotify.docker.client.messages.AttachedNetwork;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.NetworkSettings;
+
+import io.prometheus.client.Counter;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Container ids indexed by container name and by container IP, so looking up a container does not need to list
+ * all the containers of the Docker host.
+ *
+ * The index is filled with the result of every container list and kept up to date with the container events.
+ * It is only used while the events are received, and until the last full list is older than the staleness bound,
+ * otherwise lookups miss and the caller lists the containers again.
+ */
+@SuppressWarnings("WeakerAccess")
+@ThreadSafe
+public class DockerContainerIndex {
+
+    private static final Counter containerIndexLookups = Counter.build()
+            .name("zalenium_docker_container_index_lookups_total")
+            .help("The number of container id lookups, by index (name or ip) and result (hit or miss).")
+            .labelNames("index", "result")
+            .register();
+
+    private final Map<String, String> idsByName = new ConcurrentHashMap<>();
+    private final Map<String, String> idsByIp = new ConcurrentHashMap<>();
+    // Names and IPs of each indexed container, to remove them when the container goes away.
+    private final Map<String, List<String>> namesById = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> ipsById = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private final long maxStaleness;
+    private volatile boolean watching = false;
+    private volatile boolean listingNeeded = true;
+    private volatile long lastListTime;
+
+    /**
+     * @param maxStaleness time in milliseconds after which lookups miss until the containers are listed again.
+     */
+    public DockerContainerIndex(Clock clock, long maxStaleness) {
+        this.clock = clock;
+        this.maxStaleness = maxStaleness;
+    }
+
+    /**
+     * Called when the container events start or stop being received. After they start, lookups miss until the
+     * containers are listed again.
+     */
+    public void setWatching(boolean watching) {
+        if (watching) {
+            listingNeeded = true;
+        }
+        this.watching = watching;
+    }
+
+    /**
+     * Replaces the content of the index with the result of a full container list.
+     */
+    public synchronized void containersListed(Collection<Container> containers) {
+        boolean wasWatching = watching;
+        Map<String, Container> listedContainers = new HashMap<>();
+        containers.forEach(container -> listedContainers.put(container.id(), container));
+        new ArrayList<>(namesById.keySet()).stream()
+                .filter(containerId -> !listedContainers.containsKey(containerId))
+                .forEach(this::containerRemoved);
+        listedContainers.values().forEach(container -> put(container.id(), container.names(),
+                getIpAddresses(container.networkSettings())));
+        if (wasWatching) {
+            lastListTime = clock.millis();
+            listingNeeded = false;
+        }
+    }
+
+    public synchronized void containerStarted(ContainerInfo containerInfo) {
+        put(containerInfo.id(), containerInfo.name() == null ? null : Collections.singletonList(containerInfo.name()),
+                getIpAddresses(containerInfo.networkSettings()));
+    }
+
+    public synchronized void containerRemoved(String containerId) {
+        List<String> names = namesById.remove(containerId);
+        if (names != null) {
+            names.forEach(name -> idsByName.remove(name, containerId));
+        }
+        List<String> ips = ipsById.remove(containerId);
+        if (ips != null) {
+            ips.forEach(ip -> idsByIp.remove(ip, containerId));
+        }
+    }
+
+    /**
+     * @param containerName name of the container, starting with "/" like Docker returns it.
+     * @return the id of the container, or null when it is not indexed or the index cannot be trusted.
+     */
+    public String getIdByName(String containerName) {
+        return lookup("name", idsByName, containerName.toLowerCase());
+    }
+
+    /**
+     * @return the id of the container with the given IP in any of its networks, or null when it is not indexed
+     * or the index cannot be trusted.
+     */
+    public String getIdByIp(String ipAddress) {
+        return lookup("ip", idsByIp, ipAddress);
+    }
+
+    private String lookup(String index, Map<String, String> ids, String key) {
+        String containerId = isUsable() ? ids.get(key) : null;
+        containerIndexLookups.labels(index, containerId == null ? "miss" : "hit").inc();
+        return containerId;
+    }
+
+    private boolean isUsable() {
+        return watching && !listingNeeded && clock.millis() - lastListTime < maxStaleness;
+    }
+
+    private void put(String containerId, List<String> names, List<String> ips) {
+        containerRemoved(containerId);
+        List<String> lowerCaseNames = new ArrayList<>();
+        if (names != null) {
+            names.forEach(name -> lowerCaseNames.add(name.toLowerCase()));
+        }
+        lowerCaseNames.forEach(name -> idsByName.put(name, containerId));
+        ips.forEach(ip -> idsByIp.put(ip, containerId));
+        namesById.put(containerId, lowerCaseNames);
+        ipsById.put(containerId, ips);
+    }
+
+    private static List<String> getIpAddresses(NetworkSettings networkSettings) {
+        List<String> ips = new ArrayList<>();
+        if (networkSettings == null) {
+            return ips;
+        }
+        if (networkSettings.ipAddress() != null && !networkSettings.ipAddress().trim().isEmpty()) {
+            ips.add(networkSettings.ipAddress());
+        }
+        if (networkSettings.networks() != null) {
+            networkSettings.networks().values().stream()
+                    .map(AttachedNetwork::ipAddress)
+                    .filter(Objects::nonNull)
+                    .filter(ip -> !ip.trim().isEmpty())
+                    .forEach(ips::add);
+        }
+        return ips;
+    }
+}
@@ -3,10 +3,12 @@ package de.zalando.ep.zalenium.container.kubernetes;
 import de.zalando.ep.zalenium.container.ContainerClient;
 import de.zalando.ep.zalenium.container.ContainerClientRegistration;
 import de.zalando.ep.zalenium.container.ContainerCreationStatus;
+import de.zalando.ep.zalenium.container.ContainerStateCache;
 import de.zalando.ep.zalenium.streams.InputStreamGroupIterator;
 import de.zalando.ep.zalenium.streams.MapInputStreamAdapter;
 import de.zalando.ep.zalenium.streams.TarInputStreamGroupWrapper;
 import de.zalando.ep.zalenium.util.Environment;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
 import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.ContainerStateTerminated;
 import io.fabric8.kubernetes.api.model.ContainerStatus;
@@ -16,7 +18,6 @@ import io.fabric8.kubernetes.api.model.HostAlias;
 import io.fabric8.kubernetes.api.model.LocalObjectReference;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodFluent;
-import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.PodSecurityContext;
 import io.fabric8.kubernetes.api.model.Quantity;
 import io.fabric8.kubernetes.api.model.SecurityContext;
@@ -24,6 +25,8 @@ import io.fabric8.kubernetes.api.model.Toleration;
 import io.fabric8.kubernetes.api.model.Volume;
 import io.fabric8.kubernetes.api.model.VolumeMount;
 import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.kubernetes.client.dsl.ExecListener;
 import io.fabric8.kubernetes.client.dsl.ExecWatch;
 import okhttp3.Response;
@@ -40,10 +43,16 @@ import java.net.URL;
 import java.net.UnknownHostException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Clock;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -61,6 +70,8 @@ public class KubernetesContainerClient implements ContainerClient {
     private static final String DEFAULT_ZALENIUM_CONTAINER_NAME = "zalenium";
     private static final String ZALENIUM_KUBERNETES_TOLERATIONS = "ZALENIUM_KUBERNETES_TOLERATIONS";
     private static final String ZALENIUM_KUBERNETES_NODE_SELECTOR = "ZALENIUM_KUBERNETES_NODE_SELECTOR";
+    private static final long MIN_REWATCH_DELAY = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_REWATCH_DELAY = TimeUnit.MINUTES.toMillis(1);
 
     private KubernetesClient client;
 
@@ -89,6 +100,14 @@ public class KubernetesContainerClient implements ContainerClient {
 
     private final Function<PodConfiguration, DoneablePod> createDoneablePod;
 
+    private final PodCache podCache = new PodCache(Clock.systemDefaultZone(),
+            ZaleniumConfiguration.getContainerReconciliationInterval() * 1000L,
+            () -> client.pods().withLabels(createdByZaleniumMap).list().getItems());
+
+    // Re-watches the pods when the watch fails, created when the pods are first watched
+    private ScheduledExecutorService podWatcher;
+    private final AtomicLong rewatchDelay = new AtomicLong(MIN_REWATCH_DELAY);
+
     public KubernetesContainerClient(Environment environment,
                                      Function<PodConfiguration, DoneablePod> createDoneablePod,
                                      KubernetesClient client) {
@@ -279,7 +298,7 @@ public class KubernetesContainerClient implements ContainerClient {
     private InputStreamGroupIterator copyFilesFromSharedVolume(String containerId, String folderName) {
         Map<String, File> streams = new HashMap<>();
 
-        Optional<String> oWorkDir = client.pods().withName(containerId).get()
+        Optional<String> oWorkDir = getPod(containerId)
                 .getSpec().getContainers().get(0).getEnv()
                 .stream()
                 .filter(env -> env.getName().equals("SHARED_DIR"))
@@ -454,7 +473,7 @@ public class KubernetesContainerClient implements ContainerClient {
 
     @Override
     public String getContainerIp(String containerName) {
-        Pod pod = client.pods().withName(containerName).get();
+        Pod pod = getPod(containerName);
         if (pod != null) {
             String podIP = pod.getStatus().getPodIP();
             logger.debug(String.format("Pod %s, IP -> %s", containerName, podIP));
@@ -466,21 +485,17 @@ public class KubernetesContainerClient implements ContainerClient {
     }
 
     public boolean isReady(ContainerCreationStatus container) {
-        Pod pod = client.pods().withName(container.getContainerName()).get();
+        Pod pod = getPod(container.getContainerName());
         if (pod == null) {
             return false;
         }
         else {
-            return pod.getStatus().getConditions().stream()
-                    .filter(condition -> condition.getType().equals("Ready"))
-                    .map(condition -> condition.getStatus().equals("True"))
-                    .findFirst()
-                    .orElse(false);
+            return isPodReady(pod);
         }
     }
 
     public boolean isTerminated(ContainerCreationStatus container) {
-        Pod pod = client.pods().withName(container.getContainerName()).get();
+        Pod pod = getPod(container.getContainerName());
         if (pod == null) {
             logger.info("Container {} has no pod - terminal.", container);
             return true;
@@ -498,6 +513,94 @@ public class KubernetesContainerClient implements ContainerClient {
         }
     }
 
+    @Override
+    public void watchContainers(ContainerStateCache containerStates) {
+        synchronized (this) {
+            if (podWatcher == null) {
+                podWatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "KubernetesContainerClient pod watcher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        watchPods(containerStates);
+    }
+
+    private void watchPods(ContainerStateCache containerStates) {
+        try {
+            client.pods().withLabels(createdByZaleniumMap).watch(new Watcher<Pod>() {
+                @Override
+                public void eventReceived(Action action, Pod pod) {
+                    rewatchDelay.set(MIN_REWATCH_DELAY);
+                    Pod previous = podCache.podChanged(action, pod);
+                    String podName = pod.getMetadata().getName();
+                    if (action == Action.DELETED) {
+                        containerStates.containerRemoved(podName);
+                    } else if (hasTerminatedContainer(pod)) {
+                        // Only the first terminal state, the pod is forgotten once it is seen terminated
+                        if (previous == null || !hasTerminatedContainer(previous)) {
+                            containerStates.containerTerminated(podName);
+                        }
+                    } else if (isPodReady(pod)) {
+                        containerStates.containerReady(podName);
+                    }
+                }
+
+                @Override
+                public void onClose(KubernetesClientException cause) {
+                    podCache.setWatching(false);
+                    containerStates.setWatching(false);
+                    if (cause != null) {
+                        logger.warn("Watch on the docker-selenium pods closed.", cause);
+                        scheduleRewatch(containerStates);
+                    }
+                }
+            });
+            podCache.setWatching(true);
+            containerStates.setWatching(true);
+        } catch (Exception e) {
+            logger.warn("Error while watching the docker-selenium pods, their state will be polled.", e);
+            podCache.setWatching(false);
+            containerStates.setWatching(false);
+            scheduleRewatch(containerStates);
+        }
+    }
+
+    /*
+        Watches the pods again after a delay that doubles on every failure, up to a minute, and is reset once events
+        come in again. The state is polled in the meantime.
+     */
+    private void scheduleRewatch(ContainerStateCache containerStates) {
+        long delay = rewatchDelay.getAndUpdate(current -> Math.min(MAX_REWATCH_DELAY, current * 2));
+        logger.info("Watching the docker-selenium pods again in {} ms.", delay);
+        try {
+            podWatcher.schedule(() -> watchPods(containerStates), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Not watching the docker-selenium pods again.", e);
+        }
+    }
+
+    private static boolean isPodReady(Pod pod) {
+        return pod.getStatus() != null && pod.getStatus().getConditions().stream()
+                .filter(condition -> condition.getType().equals("Ready"))
+                .map(condition -> condition.getStatus().equals("True"))
+                .findFirst()
+                .orElse(false);
+    }
+
+    private static boolean hasTerminatedContainer(Pod pod) {
+        return pod.getStatus() != null && pod.getStatus().getContainerStatuses().stream()
+                .anyMatch(status -> status.getState() != null && status.getState().getTerminated() != null);
+    }
+
+    /*
+        Pods are read from the cache while the pods are watched, and from the API server otherwise.
+     */
+    private Pod getPod(String podName) {
+        return podCache.getByName(podName, name -> client.pods().withName(name).get());
+    }
+
     private void deleteSeleniumPods() {
         logger.info("About to clean up any left over docker-selenium pods created by Zalenium");
         client.pods().withLabels(createdByZaleniumMap).delete();
@@ -507,23 +610,12 @@ public class KubernetesContainerClient implements ContainerClient {
     public ContainerClientRegistration registerNode(String zaleniumContainerName, URL remoteHost) {
         String podIpAddress = remoteHost.getHost();
 
-        // The only way to lookup a pod name by IP address is by looking at all pods in the namespace it seems.
-        PodList list = client.pods().withLabels(createdByZaleniumMap).list();
-
-        String containerId = null;
-        Pod currentPod = null;
-        for (Pod pod : list.getItems()) {
-
-            if (podIpAddress.equals(pod.getStatus().getPodIP())) {
-                containerId = pod.getMetadata().getName();
-                currentPod = pod;
-                break;
-            }
-        }
+        Pod currentPod = podCache.getByIp(podIpAddress);
 
-        if (containerId == null) {
+        if (currentPod == null) {
             throw new IllegalStateException("Unable to locate pod by ip address, registration will fail");
         }
+        String containerId = currentPod.getMetadata().getName();
         ContainerClientRegistration registration = new ContainerClientRegistration();
 
         List<EnvVar> podEnvironmentVariables = currentPod.getSpec().getContainers().get(0).getEnv();
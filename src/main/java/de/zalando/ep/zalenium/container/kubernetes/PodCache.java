@@ -0,0 +1,176 @@
+package de.zalando.ep.zalenium.container.kubernetes;
+
+import java.time.Clock;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.client.Watcher;
+import io.prometheus.client.Counter;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * In-process copy of the docker-selenium pods, indexed by pod name and by pod IP, kept up to date by a label
+ * selected watch, so lookups do not go to the API server.
+ *
+ * The cache is only used while the watch is open. Even then, all the pods are listed again once the last full
+ * list is older than the staleness bound, so events lost between a watch closing and reopening are not kept around
+ * for longer than that. Pods that are not found are fetched from the API server and added to the cache, their
+ * creation event may not have arrived yet.
+ */
+@SuppressWarnings("WeakerAccess")
+@ThreadSafe
+public class PodCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PodCache.class.getName());
+    private static final Counter podCacheLookups = Counter.build()
+            .name("zalenium_kubernetes_pod_cache_lookups_total")
+            .help("The number of pod lookups, by index (name or ip) and result (hit or miss).")
+            .labelNames("index", "result")
+            .register();
+
+    private final Map<String, Pod> podsByName = new ConcurrentHashMap<>();
+    private final Map<String, String> podNamesByIp = new ConcurrentHashMap<>();
+    private final Clock clock;
+    private final long maxStaleness;
+    private final Supplier<List<Pod>> listPods;
+    private volatile boolean watching = false;
+    private volatile boolean listingNeeded = true;
+    private volatile long lastListTime;
+
+    /**
+     * @param maxStaleness time in milliseconds after which all the pods are listed again.
+     * @param listPods lists all the docker-selenium pods from the API server.
+     */
+    public PodCache(Clock clock, long maxStaleness, Supplier<List<Pod>> listPods) {
+        this.clock = clock;
+        this.maxStaleness = maxStaleness;
+        this.listPods = listPods;
+    }
+
+    /**
+     * Called when the watch feeding the cache opens or closes. The pods are listed again on the next lookup after
+     * the watch opens.
+     */
+    public void setWatching(boolean watching) {
+        if (watching) {
+            listingNeeded = true;
+        }
+        this.watching = watching;
+    }
+
+    /**
+     * @return the pod as it was cached before the change, or null if it was not cached.
+     */
+    public Pod podChanged(Watcher.Action action, Pod pod) {
+        if (action == Watcher.Action.DELETED) {
+            return remove(pod.getMetadata().getName());
+        }
+        return put(pod);
+    }
+
+    /**
+     * @param fetchPod fetches the pod from the API server when it is not cached, it may return null.
+     * @return the pod with the given name, or null if it does not exist.
+     */
+    public Pod getByName(String podName, Function<String, Pod> fetchPod) {
+        if (isUsable()) {
+            Pod pod = podsByName.get(podName);
+            if (pod != null) {
+                podCacheLookups.labels("name", "hit").inc();
+                return pod;
+            }
+        }
+        podCacheLookups.labels("name", "miss").inc();
+        Pod pod = fetchPod.apply(podName);
+        if (pod != null && watching) {
+            put(pod);
+        }
+        return pod;
+    }
+
+    /**
+     * @return the pod with the given IP, or null if there is none.
+     */
+    public Pod getByIp(String podIp) {
+        if (isUsable()) {
+            String podName = podNamesByIp.get(podIp);
+            Pod pod = podName == null ? null : podsByName.get(podName);
+            if (pod != null) {
+                podCacheLookups.labels("ip", "hit").inc();
+                return pod;
+            }
+        }
+        podCacheLookups.labels("ip", "miss").inc();
+        // The only way to lookup a pod by IP address is by looking at all the pods
+        return listAllPods().stream()
+                .filter(pod -> pod.getStatus() != null && podIp.equals(pod.getStatus().getPodIP()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    private boolean isUsable() {
+        if (!watching) {
+            return false;
+        }
+        if (isStale()) {
+            synchronized (this) {
+                // Another lookup may have listed the pods while this one waited
+                if (isStale()) {
+                    listAllPods();
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean isStale() {
+        return listingNeeded || clock.millis() - lastListTime >= maxStaleness;
+    }
+
+    private synchronized List<Pod> listAllPods() {
+        List<Pod> pods = listPods.get();
+        if (watching) {
+            Set<String> listedPodNames = new HashSet<>();
+            for (Pod pod : pods) {
+                put(pod);
+                listedPodNames.add(pod.getMetadata().getName());
+            }
+            new HashSet<>(podsByName.keySet()).stream()
+                    .filter(podName -> !listedPodNames.contains(podName))
+                    .forEach(this::remove);
+            lastListTime = clock.millis();
+            listingNeeded = false;
+            LOGGER.debug("Pod cache refreshed with {} pods.", pods.size());
+        }
+        return pods;
+    }
+
+    private Pod put(Pod pod) {
+        String podName = pod.getMetadata().getName();
+        Pod previous = podsByName.put(podName, pod);
+        if (previous != null && previous.getStatus() != null && previous.getStatus().getPodIP() != null) {
+            podNamesByIp.remove(previous.getStatus().getPodIP(), podName);
+        }
+        if (pod.getStatus() != null && pod.getStatus().getPodIP() != null) {
+            podNamesByIp.put(pod.getStatus().getPodIP(), podName);
+        }
+        return previous;
+    }
+
+    private Pod remove(String podName) {
+        Pod removed = podsByName.remove(podName);
+        if (removed != null && removed.getStatus() != null && removed.getStatus().getPodIP() != null) {
+            podNamesByIp.remove(removed.getStatus().getPodIP(), podName);
+        }
+        return removed;
+    }
+}
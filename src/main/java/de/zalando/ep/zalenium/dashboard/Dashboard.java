@@ -1,9 +1,6 @@
 package de.zalando.ep.zalenium.dashboard;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import de.zalando.ep.zalenium.util.CommonProxyUtilities;
@@ -13,17 +10,10 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.time.Clock;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,7 +29,6 @@ public class Dashboard implements DashboardInterface {
     public static final String VIDEOS_FOLDER_NAME = "videos";
     public static final String LOGS_FOLDER_NAME = "logs";
     private static final String TEST_COUNT_FILE = "executedTestsInfo.json";
-    private static final String TEST_INFORMATION_FILE = "testInformation.json";
     private static final String DASHBOARD_FILE = "dashboard.html";
     private static final String DASHBOARD_TEMPLATE_FILE = "dashboard_template.html";
     private static final String EXECUTED_TESTS_FIELD = "executedTests";
@@ -50,6 +39,7 @@ public class Dashboard implements DashboardInterface {
     private static final String IMG_FOLDER = "/img";
     private static final String ZALENIUM_RETENTION_PERIOD = "ZALENIUM_RETENTION_PERIOD";
     private static final int DEFAULT_RETENTION_PERIOD = 3;
+    private static final long EXECUTED_TESTS_CHECKPOINT_INTERVAL = 10000;
     private static final Logger LOGGER = LoggerFactory.getLogger(Dashboard.class.getName());
     private static CommonProxyUtilities commonProxyUtilities = new CommonProxyUtilities();
     private static final Environment defaultEnvironment = new Environment();
@@ -57,6 +47,13 @@ public class Dashboard implements DashboardInterface {
     private static int executedTests = 0;
     private static int executedTestsWithVideo = 0;
     private static int retentionPeriod = 3;
+    private static File executedTestsFile;
+    private static boolean executedTestsChanged = false;
+    private static long lastExecutedTestsCheckpoint = 0;
+    private static File staticAssetsFolder;
+    private static TestHistoryStore testHistory;
+    private static DashboardRenderer dashboardRenderer;
+    private static File dashboardRendererFolder;
 
     public Dashboard() {
         retentionPeriod = env.getIntEnvVariable(ZALENIUM_RETENTION_PERIOD, DEFAULT_RETENTION_PERIOD);
@@ -91,25 +88,74 @@ public class Dashboard implements DashboardInterface {
         File testCountFile = new File(getLocalVideosPath(), TEST_COUNT_FILE);
         testInformation.setRetentionDate(commonProxyUtilities.getDateAndTime(testInformation.getTimestamp(), retentionPeriod));
 
-        try {
-            synchronizeExecutedTestsValues(testCountFile);
-            testInformation.buildSeleniumLogFileName();
-            testInformation.buildBrowserDriverLogFileName();
-            testInformation.setAddedToDashboardTime(new Date().getTime());
+        loadExecutedTestsValues(testCountFile);
+        testInformation.buildSeleniumLogFileName();
+        testInformation.buildBrowserDriverLogFileName();
+        testInformation.setAddedToDashboardTime(new Date().getTime());
 
-            executedTests++;
-            if (testInformation.isVideoRecorded()) {
-                executedTestsWithVideo++;
-            }
+        executedTests++;
+        if (testInformation.isVideoRecorded()) {
+            executedTestsWithVideo++;
+        }
+        executedTestsChanged = true;
 
-            LOGGER.debug("Test count: " + executedTests);
-            LOGGER.debug("Test count with video: " + executedTestsWithVideo);
+        LOGGER.debug("Test count: " + executedTests);
+        LOGGER.debug("Test count with video: " + executedTestsWithVideo);
+        if (!testCountFile.exists()
+                || new Date().getTime() - lastExecutedTestsCheckpoint >= EXECUTED_TESTS_CHECKPOINT_INTERVAL) {
+            checkpoint();
+        }
+
+        installStaticAssets();
+        getTestHistory().append(testInformation);
+        getDashboardRenderer().append(testInformation);
+    }
+
+    /**
+     * Writes the test counters, which are kept in memory between checkpoints.
+     */
+    @Override
+    public synchronized void checkpoint() {
+        if (!executedTestsChanged || executedTestsFile == null) {
+            return;
+        }
+        try {
             JsonObject testQuantities = new JsonObject();
             testQuantities.addProperty(EXECUTED_TESTS_FIELD, executedTests);
             testQuantities.addProperty(EXECUTED_TESTS_WITH_VIDEO_FIELD, executedTestsWithVideo);
-            FileUtils.writeStringToFile(testCountFile, testQuantities.toString(), UTF_8);
-            CommonProxyUtilities.setFilePermissions(testCountFile.toPath());
+            FileUtils.writeStringToFile(executedTestsFile, testQuantities.toString(), UTF_8);
+            CommonProxyUtilities.setFilePermissions(executedTestsFile.toPath());
+            executedTestsChanged = false;
+            lastExecutedTestsCheckpoint = new Date().getTime();
+        } catch (IOException e) {
+            LOGGER.warn("Error while saving the test count.", e);
+        }
+    }
 
+    /*
+        The counters are read from the file once, afterwards they are only written. When the file is gone, because
+        the dashboard was cleaned up or removed, counting starts again.
+     */
+    private void loadExecutedTestsValues(File testCountFile) {
+        if (!testCountFile.equals(executedTestsFile)) {
+            synchronizeExecutedTestsValues(testCountFile);
+            executedTestsFile = testCountFile;
+        } else if (!testCountFile.exists()) {
+            executedTests = 0;
+            executedTestsWithVideo = 0;
+        }
+    }
+
+    /*
+        The dashboard page, icon, styles, scripts and images are copied once to the videos folder, and again after
+        a reset removes them.
+     */
+    private void installStaticAssets() {
+        File videosFolder = new File(getLocalVideosPath());
+        if (videosFolder.equals(staticAssetsFolder)) {
+            return;
+        }
+        try {
             File dashboardHtml = new File(getLocalVideosPath(), DASHBOARD_FILE);
             setupDashboardFile(dashboardHtml);
 
@@ -135,19 +181,14 @@ public class Dashboard implements DashboardInterface {
                 FileUtils.copyDirectory(new File(getCurrentLocalPath() + IMG_FOLDER), imgFolder);
                 CommonProxyUtilities.setFilePermissions(imgFolder.toPath());
             }
-            saveTestInformation(testInformation);
+            staticAssetsFolder = videosFolder;
         } catch (IOException e) {
             LOGGER.warn("Error while updating the dashboard.", e);
         }
     }
 
     public synchronized void cleanupDashboard() throws IOException {
-        List<TestInformation> informationList = loadTestInformationFromFile();
-        Map<Boolean, List<TestInformation>> partitioned = informationList.stream()
-                .collect(Collectors.partitioningBy(testInformation -> testInformation.getRetentionDate().getTime() > new Date().getTime()));
-
-        List<TestInformation> validTestsInformation = partitioned.get(true);
-        List<TestInformation> invalidTestsInformation = partitioned.get(false);
+        List<TestInformation> invalidTestsInformation = getTestHistory().removeExpired();
 
         if(invalidTestsInformation.size() > 0) {
             LOGGER.info("Cleaning up " + invalidTestsInformation.size() + " test(s) from Dashboard");
@@ -157,13 +198,14 @@ public class Dashboard implements DashboardInterface {
                 deleteIfExists(new File(testInformation.getLogsFolderPath()));
             }
 
+            getDashboardRenderer().removeExpired(getTestHistory().getExpiringToday());
             cleanupFiles(false);
-            dumpTestInformationToFile(validTestsInformation);
         }
     }
 
     public synchronized void resetDashboard() throws IOException {
         LOGGER.info("Resetting Dashboard");
+        getTestHistory().reset();
         cleanupFiles(true);
     }
 
@@ -173,10 +215,14 @@ public class Dashboard implements DashboardInterface {
 
         deleteIfExists(dashboardHtml);
         deleteIfExists(testCountFile);
+        executedTests = 0;
+        executedTestsWithVideo = 0;
+        executedTestsChanged = false;
 
         if (reset) {
             File videosFolder = new File(getLocalVideosPath());
             FileUtils.cleanDirectory(videosFolder);
+            staticAssetsFolder = null;
         }
 
         setupDashboardFile(dashboardHtml);
@@ -219,122 +265,47 @@ public class Dashboard implements DashboardInterface {
         }
     }
 
-    @VisibleForTesting
-    public static List<TestInformation> loadTestInformationFromFile() {
-        try {
-            List<TestInformation> testInformation = new ArrayList<>();
-            File testInformationFile = new File(getLocalVideosPath(), TEST_INFORMATION_FILE);
-            if (testInformationFile.exists()) {
-                List<String> lines = FileUtils.readLines(testInformationFile, UTF_8);
-                Gson gson = new Gson();
-                for (String line : lines) {
-                    testInformation.add(gson.fromJson(line, TestInformation.class));
-                }
-            }
-            return testInformation;
-        } catch (Exception e) {
-            LOGGER.warn(e.toString(), e);
+    /**
+     * @return the history of the tests in the current videos folder, loaded the first time it is used.
+     */
+    public static synchronized TestHistoryStore getTestHistory() {
+        File videosFolder = new File(getLocalVideosPath());
+        if (testHistory == null || !testHistory.getFolder().equals(videosFolder)) {
+            testHistory = new TestHistoryStore(videosFolder, Clock.systemDefaultZone());
+            testHistory.load();
         }
-        return new ArrayList<>();
+        return testHistory;
     }
 
-    public static void dumpTestInformationToFile(List<TestInformation> testInformationList) {
-        try {
-            File testInformationFile = new File(getLocalVideosPath(), TEST_INFORMATION_FILE);
-            // Emptying the file first and then replacing it with what comes from testInformationList
-            FileUtils.writeStringToFile(testInformationFile, "", UTF_8);
-            Gson gson = new GsonBuilder().create();
-            for (TestInformation information : testInformationList) {
-                FileUtils.writeStringToFile(testInformationFile, gson.toJson(information) + System.lineSeparator(),
-                    UTF_8, true);
+    /**
+     * @return the renderer of the current videos folder, rendering the history that has not been rendered yet.
+     */
+    public static synchronized DashboardRenderer getDashboardRenderer() {
+        TestHistoryStore history = getTestHistory();
+        if (dashboardRenderer == null || !history.getFolder().equals(dashboardRendererFolder)) {
+            dashboardRenderer = new DashboardRenderer(history.getFolder(), Clock.systemDefaultZone());
+            dashboardRendererFolder = history.getFolder();
+            if (!dashboardRenderer.hasFragments()) {
+                dashboardRenderer.rebuild(history.getAll());
             }
-            CommonProxyUtilities.setFilePermissions(testInformationFile.toPath());
-        } catch (Exception e) {
-            LOGGER.warn(e.toString(), e);
         }
+        return dashboardRenderer;
+    }
+
+    @VisibleForTesting
+    public static List<TestInformation> loadTestInformationFromFile() {
+        return getTestHistory().getAll();
     }
 
     public static void saveDashboard() {
         LOGGER.info("Saving dashboard...");
-        List<TestInformation> executedTestsInformation = loadTestInformationFromFile();
-        executedTestsInformation.sort(Comparator.comparing(TestInformation::getAddedToDashboardTime));
-        String itemTemplate = loadTestItemTemplate();
-        List<String> testItems = new ArrayList<>();
-        for (TestInformation testInformation : executedTestsInformation) {
-            String platformLogo;
-            if (testInformation.getPlatform().toLowerCase().contains("mac")) {
-                platformLogo = "apple";
-            } else if (testInformation.getPlatform().toLowerCase().contains("windows")) {
-                platformLogo = "windows";
-            } else {
-                platformLogo = testInformation.getPlatform().toLowerCase();
-            }
-            String  buildDirectory = testInformation.getVideoFolderPath().replace("/home/seluser/videos", "");
-            buildDirectory = buildDirectory.trim().length() > 0 ? buildDirectory.replace("/", "").concat("/") : "";
-            String fileName = buildDirectory.concat(testInformation.getFileName());
-            String seleniumLogFileName = "logs/".concat(buildDirectory).concat(testInformation.getSeleniumLogFileName()
-                    .replace("logs/", ""));
-            String browserDriverLogFileName = "logs/".concat(buildDirectory).concat(testInformation.getBrowserDriverLogFileName()
-                    .replace("logs/", ""));
-            String testItem = itemTemplate
-                    .replace("{fileName}", fileName)
-                    .replace("{testName}", testInformation.getTestName())
-                    .replace("{seleniumSessionId}", testInformation.getSeleniumSessionId())
-                    .replace("{testStatus}", testInformation.getTestStatus().name())
-                    .replace("{testStatusLowerCase}", testInformation.getTestStatus().name().toLowerCase())
-                    .replace("{browser}", testInformation.getBrowser())
-                    .replace("{browserLowerCase}", testInformation.getBrowser().toLowerCase())
-                    .replace("{browserVersion}", testInformation.getBrowserVersion())
-                    .replace("{platformLogo}", platformLogo)
-                    .replace("{proxyName}", testInformation.getProxyName())
-                    .replace("{proxyNameLowerCase}", testInformation.getProxyName().toLowerCase())
-                    .replace("{timestamp}", testInformation.getTimestamp().toString())
-                    .replace("{addedToDashboardTime}", String.valueOf(testInformation.getAddedToDashboardTime()))
-                    .replace("{screenDimension}", testInformation.getScreenDimension())
-                    .replace("{timeZone}", testInformation.getTimeZone())
-                    .replace("{build}", testInformation.getBuild())
-                    .replace("{seleniumLogFileName}", seleniumLogFileName)
-                    .replace("{browserDriverLogFileName}", browserDriverLogFileName)
-                    .replace("{retentionDate}", testInformation.getRetentionDate().toString());
-            testItems.add(testItem);
-        }
-
         try {
             File dashboardHtml = new File(getLocalVideosPath(), DASHBOARD_FILE);
-            String dashboard = FileUtils.readFileToString(new File(getCurrentLocalPath(), DASHBOARD_TEMPLATE_FILE), UTF_8);
-            dashboard = dashboard.replace("list-group\">", String.format("%s%s", "list-group\">",
-                    String.join(System.lineSeparator(), Lists.reverse(testItems))))
-                    .replace("{retentionPeriod}", String.valueOf(retentionPeriod));
-            FileUtils.writeStringToFile(dashboardHtml, dashboard, UTF_8);
-            CommonProxyUtilities.setFilePermissions(dashboardHtml.toPath());
-        } catch (Exception e) {
-            LOGGER.warn(e.toString(), e);
-        }
-    }
-
-    private static String loadTestItemTemplate() {
-        String templateFile = "html_templates/test_item.html";
-        InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(templateFile);
-        try {
-            return IOUtils.toString(Objects.requireNonNull(inputStream), StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            LOGGER.warn(e.toString(), e);
-        }
-        return "";
-    }
-
-
-    private void saveTestInformation(TestInformation testInformation) {
-        try {
-            File testInformationFile = new File(getLocalVideosPath(), TEST_INFORMATION_FILE);
-            Gson gson = new GsonBuilder().create();
-            FileUtils.writeStringToFile(testInformationFile, gson.toJson(testInformation) + System.lineSeparator(),
-                UTF_8, true);
-            CommonProxyUtilities.setFilePermissions(testInformationFile.toPath());
+            getDashboardRenderer().writeDashboard(new File(getCurrentLocalPath(), DASHBOARD_TEMPLATE_FILE),
+                    dashboardHtml, retentionPeriod);
         } catch (Exception e) {
             LOGGER.warn(e.toString(), e);
         }
-
     }
 
     @VisibleForTesting
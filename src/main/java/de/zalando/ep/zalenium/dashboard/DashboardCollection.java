@@ -1,11 +1,18 @@
 package de.zalando.ep.zalenium.dashboard;
 
+import com.google.gson.JsonObject;
 import de.zalando.ep.zalenium.dashboard.remote.RemoteDashboard;
 import de.zalando.ep.zalenium.dashboard.remote.RemoteLogDashboard;
 import de.zalando.ep.zalenium.dashboard.remote.RemoteVideoDashboard;
+import de.zalando.ep.zalenium.servlet.EventStreamServlet;
+import de.zalando.ep.zalenium.util.MonitoredThreadPoolExecutor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -13,11 +20,23 @@ import static java.lang.System.*;
 
 
 /**
- * Class in charge of knowing which dashboard to maintain
+ * Class in charge of knowing which dashboard to maintain.
+ *
+ * Dashboards are only changed by a single writer thread. Sessions queue their updates and return, the writer applies
+ * them in order and lets the dashboards persist their state once there are no updates waiting. Cleanups and resets
+ * go through the same queue and wait for their turn.
  */
 @SuppressWarnings("WeakerAccess")
 public class DashboardCollection {
     private static final Logger LOGGER = Logger.getLogger(DashboardCollection.class.getName());
+    private static final int DASHBOARD_QUEUE_SIZE = 1000;
+    private static final long DASHBOARD_WAIT_SECONDS = 60;
+    /*
+        When the queue is full, the session applies its update itself, the dashboards are still consistent because
+        their methods are synchronized.
+     */
+    private static final ThreadPoolExecutor dashboardWriter = new MonitoredThreadPoolExecutor("dashboard-writer", 1,
+            DASHBOARD_QUEUE_SIZE, new ThreadPoolExecutor.CallerRunsPolicy());
 
     public static List<RemoteDashboard> remoteDashboards;
     public static DashboardInterface localDashboard = new Dashboard();
@@ -39,7 +58,74 @@ public class DashboardCollection {
         }
     }
 
-    public static synchronized void updateDashboard(TestInformation testInformation) {
+    public static void updateDashboard(TestInformation testInformation) {
+        dashboardWriter.execute(() -> {
+            applyUpdate(testInformation);
+            checkpointIfIdle();
+            JsonObject testData = EventStreamServlet.eventData("seleniumSessionId",
+                    testInformation.getSeleniumSessionId());
+            testData.addProperty("testName", testInformation.getTestName());
+            testData.addProperty("addedToDashboardTime", testInformation.getAddedToDashboardTime());
+            EventStreamServlet.publish(EventStreamServlet.TEST_FINISHED, testData);
+        });
+    }
+
+    public static void resetDashboard() {
+        runOnWriter(DashboardCollection::applyReset);
+    }
+
+    public static void cleanupDashboard() {
+        runOnWriter(DashboardCollection::applyCleanup);
+    }
+
+    /**
+     * Waits until the queued updates are applied and the dashboards have persisted them.
+     */
+    public static void flush() {
+        runOnWriter(DashboardCollection::checkpoint);
+    }
+
+    /**
+     * Applies the queued updates and saves the local dashboard page, used when Zalenium stops.
+     */
+    public static void saveDashboard() {
+        flush();
+        Dashboard.saveDashboard();
+    }
+
+    private static void runOnWriter(Runnable task) {
+        try {
+            dashboardWriter.submit(task).get(DASHBOARD_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.log(Level.WARNING, "Error while waiting for the dashboard: ", e);
+        }
+    }
+
+    private static void checkpointIfIdle() {
+        if (dashboardWriter.getQueue().isEmpty()) {
+            checkpoint();
+        }
+    }
+
+    private static void checkpoint() {
+        List<DashboardInterface> dashboards = new ArrayList<>();
+        if (!remoteDashboardsEnabled) {
+            dashboards.add(localDashboard);
+        } else if (remoteDashboards != null) {
+            dashboards.addAll(remoteDashboards);
+        }
+        for (DashboardInterface dashboard : dashboards) {
+            try {
+                dashboard.checkpoint();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error during checkpoint of dashboard: " + e.toString());
+            }
+        }
+    }
+
+    private static synchronized void applyUpdate(TestInformation testInformation) {
         String errMsg = "Error during update of dashboard: ";
 
         if( !initializedRemotes) {
@@ -63,7 +149,7 @@ public class DashboardCollection {
         }
     }
 
-    public static synchronized void resetDashboard() {
+    private static synchronized void applyReset() {
         String errMsg = "Error during cleanup of dashboard: ";
         if (!remoteDashboardsEnabled) {
             try {
@@ -84,7 +170,7 @@ public class DashboardCollection {
         }
     }
 
-    public static synchronized void cleanupDashboard() {
+    private static synchronized void applyCleanup() {
         String errMsg = "Error during cleanup of dashboard: ";
         if (!remoteDashboardsEnabled) {
             try {
@@ -2,24 +2,44 @@ package de.zalando.ep.zalenium.dashboard;
 
 import com.google.common.base.Strings;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Comparator;
-import java.util.Date;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.google.common.net.MediaType.JSON_UTF_8;
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * Returns the tests of the dashboard as a JSON array, in the order they were added.
+ *
+ * Parameters, all optional:
+ * - lastDateAddedToDashboard: only tests added after this time, to fetch what is new since the last request.
+ * - before and limit: the page of at most limit tests added before this time, newest first. The time the oldest
+ *   returned test was added is the "before" of the next page.
+ * - build, status, browser, proxy: only tests with these values, ignoring case.
+ * - search: only tests where every word of this text is in the name, browser, platform, build, status, proxy or
+ *   time zone, ignoring case.
+ *
+ * The ETag of the response changes every time a test is added or removed, so polling with If-None-Match costs
+ * nothing while nothing changes.
+ */
 public class DashboardInformationServlet extends HttpServlet {
 
+    private static final Gson gson = new Gson();
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         process(request, response);
@@ -27,29 +47,104 @@ public class DashboardInformationServlet extends HttpServlet {
 
     @SuppressWarnings("unused")
     protected void process(HttpServletRequest request, HttpServletResponse response) throws IOException {
-        String lastDateAddedToDashboardParameter = request.getParameter("lastDateAddedToDashboard");
-        Date lastDateAdded = null;
-        if (!Strings.isNullOrEmpty(lastDateAddedToDashboardParameter)) {
-            long lastDateAddedLong = Long.parseLong(lastDateAddedToDashboardParameter);
-            lastDateAdded = new Date(lastDateAddedLong);
-        }
         response.addHeader("Access-Control-Allow-Origin", "*");
         response.addHeader("Access-Control-Allow-Headers", "Content-Type,Authorization,Access-Control-Allow-Origin,*");
-        List<TestInformation> executedTestsInformation = Dashboard.loadTestInformationFromFile();
-        executedTestsInformation.sort(Comparator.comparing(TestInformation::getAddedToDashboardTime));
-        if (lastDateAdded != null) {
-            Date finalLastDateAdded = lastDateAdded;
-            executedTestsInformation = executedTestsInformation.stream()
-                    .filter(testInformation -> new Date(testInformation.getAddedToDashboardTime()).compareTo(finalLastDateAdded) > 0)
-                    .collect(Collectors.toList());
-        }
-        Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        byte[] testInformation = gson.toJson(executedTestsInformation).getBytes(UTF_8);
+        long lastDateAdded;
+        long before;
+        int limit;
+        Predicate<TestInformation> filter;
+        try {
+            lastDateAdded = getLongParameter(request, "lastDateAddedToDashboard", Long.MIN_VALUE);
+            before = getLongParameter(request, "before", Long.MAX_VALUE);
+            limit = (int) Math.min(getLongParameter(request, "limit", Integer.MAX_VALUE), Integer.MAX_VALUE);
+            filter = getFilter(request);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HTTP_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        TestHistoryStore testHistory = Dashboard.getTestHistory();
+        // Read before the tests, so a test added meanwhile changes the ETag of the next response
+        String eTag = "\"" + testHistory.getVersionTag() + "\"";
+        response.setHeader("ETag", eTag);
+        response.setHeader("Cache-Control", "no-cache");
+        if (matchesETag(request.getHeader("If-None-Match"), eTag)) {
+            response.setStatus(HTTP_NOT_MODIFIED);
+            return;
+        }
+
+        List<TestInformation> executedTestsInformation = testHistory.findNewest(lastDateAdded, before, filter, limit);
         response.setStatus(HTTP_OK);
         response.setContentType(JSON_UTF_8.toString());
-        response.setContentLength(testInformation.length);
-        try (ServletOutputStream out = response.getOutputStream()) {
-            out.write(testInformation);
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(response.getOutputStream(), UTF_8))) {
+            writer.beginArray();
+            for (TestInformation testInformation : executedTestsInformation) {
+                gson.toJson(testInformation, TestInformation.class, writer);
+            }
+            writer.endArray();
+        }
+    }
+
+    private static long getLongParameter(HttpServletRequest request, String name, long defaultValue) {
+        String value = request.getParameter(name);
+        if (Strings.isNullOrEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static Predicate<TestInformation> getFilter(HttpServletRequest request) {
+        Predicate<TestInformation> filter = testInformation -> true;
+        String build = request.getParameter("build");
+        if (!Strings.isNullOrEmpty(build)) {
+            filter = filter.and(testInformation -> build.equalsIgnoreCase(testInformation.getBuild()));
+        }
+        String status = request.getParameter("status");
+        if (!Strings.isNullOrEmpty(status)) {
+            TestInformation.TestStatus testStatus = Arrays.stream(TestInformation.TestStatus.values())
+                    .filter(value -> value.name().equalsIgnoreCase(status))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Invalid status: " + status));
+            filter = filter.and(testInformation -> testStatus == testInformation.getTestStatus());
+        }
+        String browser = request.getParameter("browser");
+        if (!Strings.isNullOrEmpty(browser)) {
+            filter = filter.and(testInformation -> browser.equalsIgnoreCase(testInformation.getBrowser()));
+        }
+        String proxy = request.getParameter("proxy");
+        if (!Strings.isNullOrEmpty(proxy)) {
+            filter = filter.and(testInformation -> proxy.equalsIgnoreCase(testInformation.getProxyName()));
+        }
+        String search = request.getParameter("search");
+        if (!Strings.isNullOrEmpty(search) && !search.trim().isEmpty()) {
+            List<String> words = Arrays.asList(search.trim().toLowerCase().split("\\s+"));
+            filter = filter.and(testInformation -> {
+                String searchableText = getSearchableText(testInformation);
+                return words.stream().allMatch(searchableText::contains);
+            });
+        }
+        return filter;
+    }
+
+    private static String getSearchableText(TestInformation testInformation) {
+        return Stream.of(testInformation.getTestName(), testInformation.getBrowser(), testInformation.getPlatform(),
+                testInformation.getBuild(), testInformation.getTestStatus(), testInformation.getProxyName(),
+                testInformation.getTimeZone())
+                .filter(Objects::nonNull)
+                .map(value -> value.toString().toLowerCase())
+                .collect(Collectors.joining(" "));
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
         }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .anyMatch(value -> value.equals(eTag) || value.equals("W/" + eTag) || value.equals("*"));
     }
 }
@@ -8,4 +8,10 @@ public interface DashboardInterface {
     void resetDashboard() throws Exception;
     void cleanupDashboard() throws Exception;
     void updateDashboard(TestInformation testInformation) throws Exception;
+
+    /**
+     * Persists what is kept in memory between updates, called when there are no updates waiting.
+     */
+    default void checkpoint() throws Exception {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,223 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import de.zalando.ep.zalenium.util.CommonProxyUtilities;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Renders the dashboard items incrementally. Each test is rendered once, when it is added to the dashboard, and
+ * appended as one line to a fragment file grouping the tests that expire on the same day. The dashboard page is
+ * put together from the fragments, newest first, without rendering the tests again.
+ *
+ * Fragments of past days only hold expired tests and are deleted as a whole, only the fragment of the current day
+ * is rendered again when some of its tests expire.
+ */
+@SuppressWarnings("WeakerAccess")
+public class DashboardRenderer {
+
+    static final String FRAGMENTS_FOLDER = "dashboard-fragments";
+    private static final String FRAGMENT_PREFIX = "tests-";
+    private static final String FRAGMENT_SUFFIX = ".html";
+    private static final String TEST_LIST_ELEMENT = "list-group\">";
+    private static final String TEST_ITEM_TEMPLATE = "html_templates/test_item.html";
+    private static final Logger LOGGER = LoggerFactory.getLogger(DashboardRenderer.class.getName());
+
+    private final File fragmentsFolder;
+    private final Clock clock;
+    private final String itemTemplate;
+
+    public DashboardRenderer(File videosFolder, Clock clock) {
+        this.fragmentsFolder = new File(videosFolder, FRAGMENTS_FOLDER);
+        this.clock = clock;
+        this.itemTemplate = loadTestItemTemplate();
+    }
+
+    public boolean hasFragments() {
+        return fragmentsFolder.exists();
+    }
+
+    public synchronized void append(TestInformation testInformation) {
+        try {
+            appendToFragment(getFragment(testInformation), Collections.singletonList(testInformation));
+        } catch (IOException e) {
+            LOGGER.warn("Error while rendering the dashboard item of " + testInformation.getTestName(), e);
+        }
+    }
+
+    /**
+     * Renders all the fragments again, e.g. for a history that was recorded before fragments existed.
+     *
+     * @param testsInformation the tests in the order they were added to the dashboard.
+     */
+    public synchronized void rebuild(List<TestInformation> testsInformation) {
+        listFragments().forEach(fragment -> Dashboard.deleteIfExists(fragment.toFile()));
+        try {
+            for (TestInformation testInformation : testsInformation) {
+                appendToFragment(getFragment(testInformation), Collections.singletonList(testInformation));
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Error while rendering the dashboard items", e);
+        }
+    }
+
+    /**
+     * Deletes the fragments of past days and renders the fragment of the current day again.
+     *
+     * @param expiringToday the tests still in the history that expire today, in the order they were added.
+     */
+    public synchronized void removeExpired(List<TestInformation> expiringToday) {
+        LocalDate today = LocalDate.now(clock);
+        for (Path fragment : listFragments()) {
+            LocalDate fragmentDate = TestHistoryStore.parseRetentionDay(fragment, FRAGMENT_PREFIX, FRAGMENT_SUFFIX);
+            if (fragmentDate != null && !fragmentDate.isAfter(today)) {
+                Dashboard.deleteIfExists(fragment.toFile());
+            }
+        }
+        String todayFragmentName = getFragmentName(today.format(DateTimeFormatter.BASIC_ISO_DATE));
+        try {
+            appendToFragment(fragmentsFolder.toPath().resolve(todayFragmentName), expiringToday);
+        } catch (IOException e) {
+            LOGGER.warn("Error while rendering the dashboard items expiring today", e);
+        }
+    }
+
+    /**
+     * Writes the dashboard page with all the rendered tests, newest first.
+     */
+    public synchronized void writeDashboard(File dashboardTemplate, File dashboardHtml, int retentionPeriod)
+            throws IOException {
+        String dashboard = FileUtils.readFileToString(dashboardTemplate, UTF_8)
+                .replace("{retentionPeriod}", String.valueOf(retentionPeriod));
+        int testListStart = dashboard.indexOf(TEST_LIST_ELEMENT) + TEST_LIST_ELEMENT.length();
+        List<Path> fragments = listFragments();
+        Collections.reverse(fragments);
+        try (BufferedWriter writer = Files.newBufferedWriter(dashboardHtml.toPath(), UTF_8)) {
+            writer.write(dashboard, 0, testListStart);
+            for (Path fragment : fragments) {
+                List<String> testItems = Files.readAllLines(fragment, UTF_8);
+                for (int i = testItems.size() - 1; i >= 0; i--) {
+                    writer.write(testItems.get(i));
+                    writer.newLine();
+                }
+            }
+            writer.write(dashboard, testListStart, dashboard.length() - testListStart);
+        }
+        CommonProxyUtilities.setFilePermissions(dashboardHtml.toPath());
+    }
+
+    /**
+     * @return the dashboard item of the test, in a single line.
+     */
+    public String renderTestItem(TestInformation testInformation) {
+        String platformLogo;
+        if (testInformation.getPlatform().toLowerCase().contains("mac")) {
+            platformLogo = "apple";
+        } else if (testInformation.getPlatform().toLowerCase().contains("windows")) {
+            platformLogo = "windows";
+        } else {
+            platformLogo = testInformation.getPlatform().toLowerCase();
+        }
+        String  buildDirectory = testInformation.getVideoFolderPath().replace("/home/seluser/videos", "");
+        buildDirectory = buildDirectory.trim().length() > 0 ? buildDirectory.replace("/", "").concat("/") : "";
+        String fileName = buildDirectory.concat(testInformation.getFileName());
+        String seleniumLogFileName = "logs/".concat(buildDirectory).concat(testInformation.getSeleniumLogFileName()
+                .replace("logs/", ""));
+        String browserDriverLogFileName = "logs/".concat(buildDirectory).concat(testInformation.getBrowserDriverLogFileName()
+                .replace("logs/", ""));
+        return itemTemplate
+                .replace("{fileName}", fileName)
+                .replace("{testName}", testInformation.getTestName())
+                .replace("{seleniumSessionId}", testInformation.getSeleniumSessionId())
+                .replace("{testStatus}", testInformation.getTestStatus().name())
+                .replace("{testStatusLowerCase}", testInformation.getTestStatus().name().toLowerCase())
+                .replace("{browser}", testInformation.getBrowser())
+                .replace("{browserLowerCase}", testInformation.getBrowser().toLowerCase())
+                .replace("{browserVersion}", testInformation.getBrowserVersion())
+                .replace("{platformLogo}", platformLogo)
+                .replace("{proxyName}", testInformation.getProxyName())
+                .replace("{proxyNameLowerCase}", testInformation.getProxyName().toLowerCase())
+                .replace("{timestamp}", testInformation.getTimestamp().toString())
+                .replace("{addedToDashboardTime}", String.valueOf(testInformation.getAddedToDashboardTime()))
+                .replace("{screenDimension}", testInformation.getScreenDimension())
+                .replace("{timeZone}", testInformation.getTimeZone())
+                .replace("{build}", testInformation.getBuild())
+                .replace("{seleniumLogFileName}", seleniumLogFileName)
+                .replace("{browserDriverLogFileName}", browserDriverLogFileName)
+                .replace("{retentionDate}", testInformation.getRetentionDate().toString())
+                .replaceAll("\\R\\s*", " ");
+    }
+
+    private void appendToFragment(Path fragment, List<TestInformation> testsInformation) throws IOException {
+        if (testsInformation.isEmpty()) {
+            return;
+        }
+        if (!fragmentsFolder.exists()) {
+            Files.createDirectories(fragmentsFolder.toPath());
+            CommonProxyUtilities.setFilePermissions(fragmentsFolder.toPath());
+        }
+        StringBuilder testItems = new StringBuilder();
+        for (TestInformation testInformation : testsInformation) {
+            testItems.append(renderTestItem(testInformation)).append(System.lineSeparator());
+        }
+        boolean created = !Files.exists(fragment);
+        Files.write(fragment, testItems.toString().getBytes(UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        if (created) {
+            CommonProxyUtilities.setFilePermissions(fragment);
+        }
+    }
+
+    private Path getFragment(TestInformation testInformation) {
+        return fragmentsFolder.toPath()
+                .resolve(getFragmentName(TestHistoryStore.getRetentionDay(testInformation, clock.getZone())));
+    }
+
+    private static String getFragmentName(String retentionDay) {
+        return FRAGMENT_PREFIX + retentionDay + FRAGMENT_SUFFIX;
+    }
+
+    private List<Path> listFragments() {
+        List<Path> fragments = new ArrayList<>();
+        if (!fragmentsFolder.exists()) {
+            return fragments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(fragmentsFolder.toPath(),
+                FRAGMENT_PREFIX + "*" + FRAGMENT_SUFFIX)) {
+            stream.forEach(fragments::add);
+        } catch (IOException e) {
+            LOGGER.warn("Error while listing the dashboard fragments in " + fragmentsFolder, e);
+        }
+        Collections.sort(fragments);
+        return fragments;
+    }
+
+    private static String loadTestItemTemplate() {
+        InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(TEST_ITEM_TEMPLATE);
+        try {
+            return IOUtils.toString(Objects.requireNonNull(inputStream), UTF_8);
+        } catch (IOException e) {
+            LOGGER.warn(e.toString(), e);
+        }
+        return "";
+    }
+}
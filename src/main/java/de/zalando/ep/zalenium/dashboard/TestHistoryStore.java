@@ -0,0 +1,379 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import de.zalando.ep.zalenium.util.CommonProxyUtilities;
+import io.prometheus.client.Gauge;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * History of the tests added to the dashboard, kept in memory and indexed by the time they were added and by
+ * retention date, so the dashboard does not read and parse the whole history on every request.
+ *
+ * Every test is appended as one JSON line to a segment file holding the tests that expire on the same day. Once
+ * that day is over all the tests in the segment are expired and the file is deleted, so applying the retention
+ * period never rewrites the history. A "testInformation.json" file written by previous versions is moved into
+ * the segments when the history is loaded.
+ */
+@SuppressWarnings("WeakerAccess")
+@ThreadSafe
+public class TestHistoryStore {
+
+    static final String TEST_INFORMATION_FILE = "testInformation.json";
+    private static final String SEGMENT_PREFIX = "testInformation-";
+    private static final String SEGMENT_SUFFIX = ".json";
+    private static final DateTimeFormatter SEGMENT_DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestHistoryStore.class.getName());
+    private static final Gauge historySize = Gauge.build()
+            .name("zalenium_dashboard_history_tests")
+            .help("The number of tests in the dashboard history.")
+            .register();
+
+    private final File folder;
+    private final Clock clock;
+    private final Gson gson = new Gson();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<Long, List<TestInformation>> byAddedTime = new TreeMap<>();
+    private final NavigableMap<Long, List<TestInformation>> byRetentionDate = new TreeMap<>();
+    private final long instanceId = ThreadLocalRandom.current().nextLong();
+    private volatile long version = 0;
+    private int size = 0;
+
+    public TestHistoryStore(File folder, Clock clock) {
+        this.folder = folder;
+        this.clock = clock;
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Reads the segments of the history into memory, migrating the history of previous versions first.
+     */
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            clearIndexes();
+            migrateTestInformationFile();
+            for (Path segment : listSegments()) {
+                try (BufferedReader reader = Files.newBufferedReader(segment, UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        TestInformation testInformation = parse(line);
+                        if (testInformation != null) {
+                            index(testInformation);
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.warn("Error while reading " + segment, e);
+                }
+            }
+            LOGGER.debug("Loaded {} tests from the dashboard history.", size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void append(TestInformation testInformation) {
+        lock.writeLock().lock();
+        try {
+            write(testInformation);
+            index(testInformation);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return all the tests, in the order they were added to the dashboard.
+     */
+    public List<TestInformation> getAll() {
+        return getAddedAfter(Long.MIN_VALUE);
+    }
+
+    /**
+     * @return the tests added to the dashboard after the given time, in the order they were added.
+     */
+    public List<TestInformation> getAddedAfter(long addedToDashboardTime) {
+        lock.readLock().lock();
+        try {
+            return flatten(byAddedTime.tailMap(addedToDashboardTime, false).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds a page of tests, walking back from the newest one added before the given time. The page holds at most
+     * limit tests, plus the ones added at the same time as its oldest test, so the time of the oldest test can be
+     * used as the cursor of the next page.
+     *
+     * @return the matching tests added between the given times (both exclusive), in the order they were added.
+     */
+    public List<TestInformation> findNewest(long addedAfter, long addedBefore, Predicate<TestInformation> filter,
+                                            int limit) {
+        lock.readLock().lock();
+        try {
+            List<TestInformation> page = new ArrayList<>();
+            if (addedAfter >= addedBefore) {
+                return page;
+            }
+            for (List<TestInformation> addedAtSameTime : byAddedTime.subMap(addedAfter, false, addedBefore, false)
+                    .descendingMap().values()) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                for (int i = addedAtSameTime.size() - 1; i >= 0; i--) {
+                    if (filter.test(addedAtSameTime.get(i))) {
+                        page.add(addedAtSameTime.get(i));
+                    }
+                }
+            }
+            Collections.reverse(page);
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the tests that expire during the current day, in the order they were added.
+     */
+    public List<TestInformation> getExpiringToday() {
+        LocalDate today = LocalDate.now(clock);
+        long startOfToday = today.atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        long startOfTomorrow = today.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        lock.readLock().lock();
+        try {
+            List<TestInformation> expiringToday =
+                    flatten(byRetentionDate.subMap(startOfToday, true, startOfTomorrow, false).values());
+            expiringToday.sort(Comparator.comparing(TestInformation::getAddedToDashboardTime));
+            return expiringToday;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a tag that changes every time a test is added or removed, also across restarts.
+     */
+    public String getVersionTag() {
+        return Long.toHexString(instanceId) + "-" + version;
+    }
+
+    /**
+     * Removes the tests whose retention date has passed, and deletes the segments where all tests have expired.
+     *
+     * @return the removed tests, so their videos and logs can be deleted.
+     */
+    public List<TestInformation> removeExpired() {
+        lock.writeLock().lock();
+        try {
+            NavigableMap<Long, List<TestInformation>> expired = byRetentionDate.headMap(clock.millis(), true);
+            List<TestInformation> removed = flatten(expired.values());
+            expired.clear();
+            unindex(removed);
+            LocalDate today = LocalDate.now(clock);
+            for (Path segment : listSegments()) {
+                LocalDate segmentDate = getSegmentDate(segment);
+                if (segmentDate != null && segmentDate.isBefore(today)) {
+                    Dashboard.deleteIfExists(segment.toFile());
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets all the tests and deletes the history files.
+     */
+    public void reset() {
+        lock.writeLock().lock();
+        try {
+            clearIndexes();
+            listSegments().forEach(segment -> Dashboard.deleteIfExists(segment.toFile()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void migrateTestInformationFile() {
+        File testInformationFile = new File(folder, TEST_INFORMATION_FILE);
+        if (!testInformationFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(testInformationFile.toPath(), UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                TestInformation testInformation = parse(line);
+                if (testInformation != null) {
+                    write(testInformation);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Error while migrating " + testInformationFile, e);
+            return;
+        }
+        Dashboard.deleteIfExists(testInformationFile);
+        LOGGER.info("Moved {} into the dashboard history segments.", testInformationFile);
+    }
+
+    private TestInformation parse(String line) {
+        if (line.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return gson.fromJson(line, TestInformation.class);
+        } catch (JsonParseException e) {
+            LOGGER.warn("Skipping invalid dashboard history entry: " + line, e);
+            return null;
+        }
+    }
+
+    private void write(TestInformation testInformation) {
+        Path segment = getSegment(testInformation);
+        try {
+            boolean created = !Files.exists(segment);
+            Files.write(segment, (gson.toJson(testInformation) + System.lineSeparator()).getBytes(UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (created) {
+                CommonProxyUtilities.setFilePermissions(segment);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Error while saving the test information to " + segment, e);
+        }
+    }
+
+    private Path getSegment(TestInformation testInformation) {
+        return folder.toPath().resolve(SEGMENT_PREFIX + getRetentionDay(testInformation, clock.getZone())
+                + SEGMENT_SUFFIX);
+    }
+
+    private static LocalDate getSegmentDate(Path segment) {
+        return parseRetentionDay(segment, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @return the day the test expires, as used in the names of the files grouping tests by retention day.
+     */
+    static String getRetentionDay(TestInformation testInformation, ZoneId zone) {
+        return testInformation.getRetentionDate() == null ? "never" :
+                Instant.ofEpochMilli(testInformation.getRetentionDate().getTime()).atZone(zone)
+                        .toLocalDate().format(SEGMENT_DATE_FORMAT);
+    }
+
+    /**
+     * @return the retention day in the name of a file grouping tests by retention day, or null if they never expire.
+     */
+    static LocalDate parseRetentionDay(Path file, String prefix, String suffix) {
+        String fileName = file.getFileName().toString();
+        String retentionDay = fileName.substring(prefix.length(), fileName.length() - suffix.length());
+        try {
+            return LocalDate.parse(retentionDay, SEGMENT_DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private List<Path> listSegments() {
+        List<Path> segments = new ArrayList<>();
+        if (!folder.exists()) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder.toPath(),
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        } catch (IOException e) {
+            LOGGER.warn("Error while listing the dashboard history in " + folder, e);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private void index(TestInformation testInformation) {
+        byAddedTime.computeIfAbsent(testInformation.getAddedToDashboardTime(), key -> new ArrayList<>())
+                .add(testInformation);
+        byRetentionDate.computeIfAbsent(getRetentionTime(testInformation), key -> new ArrayList<>())
+                .add(testInformation);
+        size++;
+        version++;
+        historySize.set(size);
+    }
+
+    // The retention index is cleared by the caller. The tests are removed with one pass over each list of tests
+    // added at the same time, TestInformation.equals compares file names so entries are removed by identity.
+    private void unindex(List<TestInformation> removed) {
+        Map<Long, Set<TestInformation>> removedByAddedTime = new HashMap<>();
+        for (TestInformation testInformation : removed) {
+            removedByAddedTime.computeIfAbsent(testInformation.getAddedToDashboardTime(),
+                    key -> Collections.newSetFromMap(new IdentityHashMap<>())).add(testInformation);
+        }
+        removedByAddedTime.forEach((addedTime, testsInformation) -> {
+            List<TestInformation> entries = byAddedTime.get(addedTime);
+            if (entries != null) {
+                entries.removeIf(testsInformation::contains);
+                if (entries.isEmpty()) {
+                    byAddedTime.remove(addedTime);
+                }
+            }
+        });
+        size -= removed.size();
+        version++;
+        historySize.set(size);
+    }
+
+    private void clearIndexes() {
+        byAddedTime.clear();
+        byRetentionDate.clear();
+        size = 0;
+        version++;
+        historySize.set(size);
+    }
+
+    private static long getRetentionTime(TestInformation testInformation) {
+        return testInformation.getRetentionDate() == null ? Long.MAX_VALUE :
+                testInformation.getRetentionDate().getTime();
+    }
+
+    private static List<TestInformation> flatten(Collection<List<TestInformation>> values) {
+        List<TestInformation> testInformation = new ArrayList<>();
+        values.forEach(testInformation::addAll);
+        return testInformation;
+    }
+}
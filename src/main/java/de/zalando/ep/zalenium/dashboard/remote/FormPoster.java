@@ -7,8 +7,9 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import de.zalando.ep.zalenium.util.HttpClientPool;
 
 
 
@@ -34,7 +35,6 @@ public class FormPoster {
         }
 
 
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         HttpPost uploadFile = new HttpPost(new URI(remoteHost));
         MultipartEntityBuilder builder = MultipartEntityBuilder.create();
 
@@ -50,7 +50,16 @@ public class FormPoster {
 
         HttpEntity multipart = builder.build();
         uploadFile.setEntity(multipart);
-        CloseableHttpResponse response = httpClient.execute(uploadFile);
-        return response;
+        // The connection goes back to the shared pool once the response is read, the file streams are done
+        try (CloseableHttpResponse response = HttpClientPool.getHttpClient().execute(uploadFile)) {
+            EntityUtils.consume(response.getEntity());
+            return response;
+        } finally {
+            for (FormField field : fields) {
+                if (field instanceof FormFile && ((FormFile) field).stream != null) {
+                    ((FormFile) field).stream.close();
+                }
+            }
+        }
     }
 }
@@ -3,8 +3,9 @@ package de.zalando.ep.zalenium.matcher;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
 import org.openqa.grid.internal.utils.DefaultCapabilityMatcher;
-import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.Dimension;
 import org.openqa.selenium.remote.CapabilityType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,37 +25,77 @@ public class DockerSeleniumCapabilityMatcher extends DefaultCapabilityMatcher {
             ZaleniumCapabilityType.RECORD_VIDEO_NO_PREFIX,
             ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX);
 
-    private static String chromeVersion = null;
-    private static String firefoxVersion = null;
+    private static volatile String chromeVersion = null;
+    private static volatile String firefoxVersion = null;
+    private static volatile ConfiguredDefaults configuredDefaults;
     private final Logger logger = LoggerFactory.getLogger(DockerSeleniumCapabilityMatcher.class.getName());
 
+    /*
+        For maps that were not normalized, both are read here on every call. The grid calls this one when it looks
+        at a slot on its own, Zalenium hands the normalized capabilities to the method below instead.
+     */
     @Override
     public boolean matches(Map<String, Object> nodeCapability, Map<String, Object> requestedCapability) {
-        logger.debug(String.format("Validating %s in node with capabilities %s", requestedCapability,
-                nodeCapability));
-
-        if (!requestedCapability.containsKey(CapabilityType.BROWSER_NAME)) {
-            logger.debug(String.format("Capability %s does not contain %s key, a docker-selenium " +
-                    "node cannot be started without it", requestedCapability, CapabilityType.BROWSER_NAME));
+        if (nodeCapability == null || requestedCapability == null) {
             return false;
         }
+        return matches(nodeCapability, NormalizedCapabilities.of(nodeCapability),
+                requestedCapability, NormalizedCapabilities.of(requestedCapability));
+    }
 
-        // DockerSeleniumRemoteProxy part
-        if (super.matches(nodeCapability, requestedCapability)) {
-            getChromeAndFirefoxVersions(nodeCapability);
+    /*
+        Called for every free node on every request waiting in the queue, so the capabilities are only read here
+        through their normalized values, computed by the caller when the node registered and when the request was
+        queued. Platform, browser, version and application name are compared the same way DefaultCapabilityMatcher
+        does, nothing is allocated or put into the maps. Only Safari requests, compared by the grid through the
+        Safari options, still go through the maps.
+     */
+    public boolean matches(Map<String, Object> nodeCapability, NormalizedCapabilities node,
+                           Map<String, Object> requestedCapability, NormalizedCapabilities requested) {
+        logger.debug("Validating {} in node with capabilities {}", requestedCapability, nodeCapability);
+
+        if (!requested.hasBrowserName()) {
+            logger.debug("Capability {} does not contain {} key, a docker-selenium node cannot be started " +
+                    "without it", requestedCapability, CapabilityType.BROWSER_NAME);
+            return false;
+        }
 
-            // Prefix Zalenium custom capabilities here (both node and requested)
-            prefixZaleniumCustomCapabilities(nodeCapability);
-            prefixZaleniumCustomCapabilities(requestedCapability);
+        boolean gridCapabilitiesMatch = requested.isSafari() ? super.matches(nodeCapability, requestedCapability)
+                : isPlatformMatching(node, requested)
+                    && isPropertyMatching(node.getBrowser(), requested.getBrowser())
+                    && isPropertyMatching(node.getBrowserVersion(), requested.getBrowserVersion())
+                    && isPropertyMatching(node.getApplicationName(), requested.getApplicationName())
+                    && isMarionetteMatching(node, requested);
 
-            boolean screenResolutionMatches = isScreenResolutionMatching(nodeCapability, requestedCapability);
-            boolean timeZoneCapabilityMatches = isTimeZoneMatching(nodeCapability, requestedCapability);
+        // DockerSeleniumRemoteProxy part
+        if (gridCapabilitiesMatch) {
+            boolean screenResolutionMatches = isScreenResolutionMatching(node, requested);
+            boolean timeZoneCapabilityMatches = isTimeZoneMatching(node, requested);
             return screenResolutionMatches && timeZoneCapabilityMatches;
         }
         return false;
     }
 
-    private void prefixZaleniumCustomCapabilities(Map<String, Object> capabilities) {
+    /**
+     * Keeps the Chrome and Firefox versions of a registering docker-selenium node, so the cloud testing matcher
+     * can request the same versions.
+     */
+    public static void nodeRegistered(NormalizedCapabilities node) {
+        String browserVersion = node.getVersion();
+        if (browserVersion != null) {
+            if (node.isChrome()) {
+              chromeVersion = browserVersion;
+            } else if (node.isFirefox()) {
+              firefoxVersion = browserVersion;
+            }
+        }
+    }
+
+    /**
+     * Moves the Zalenium custom capabilities given without prefix to their "zal:" prefixed key, the value without
+     * prefix wins. Done once, when a docker-selenium node gets a session, instead of on every match.
+     */
+    public static void prefixZaleniumCustomCapabilities(Map<String, Object> capabilities) {
         for (String zaleniumCustomCapability : ZALENIUM_CUSTOM_CAPABILITIES_NO_PREFIX) {
             if (capabilities.containsKey(zaleniumCustomCapability)) {
                 String prefixedCapability = ZaleniumCapabilityType.CUSTOM_CAPABILITY_PREFIX.concat(zaleniumCustomCapability);
@@ -64,31 +105,37 @@ public class DockerSeleniumCapabilityMatcher extends DefaultCapabilityMatcher {
         }
     }
 
-    private void getChromeAndFirefoxVersions(Map<String, Object> capabilities) {
-        String browser = capabilities.get(CapabilityType.BROWSER_NAME).toString();
-        if (capabilities.containsKey(CapabilityType.VERSION)) {
-            String browserVersion = capabilities.get(CapabilityType.VERSION).toString();
-            if (BrowserType.CHROME.equalsIgnoreCase(browser)) {
-              chromeVersion = browserVersion;
-            } else if (BrowserType.FIREFOX.equalsIgnoreCase(browser)) {
-              firefoxVersion = browserVersion;
-            }
+    private static boolean isPlatformMatching(NormalizedCapabilities node, NormalizedCapabilities requested) {
+        Object requestedPlatform = requested.getPlatform();
+        if (NormalizedCapabilities.isAnything(requestedPlatform)) {
+            return true;
         }
+        if (requested.getExtractedPlatform() != null) {
+            return node.getExtractedPlatform() != null && node.getExtractedPlatform().is(requested.getExtractedPlatform());
+        }
+        return node.getPlatform() != null && requestedPlatform.toString().equals(node.getPlatform().toString());
     }
 
-    private boolean isScreenResolutionMatching(Map<String, Object> nodeCapability, Map<String, Object> requestedCapability) {
-        boolean screenResolutionCapabilityMatches = true;
-        boolean screenSizeCapabilityIsRequested = false;
+    private static boolean isPropertyMatching(Object nodeValue, Object requestedValue) {
+        return NormalizedCapabilities.isAnything(requestedValue) || requestedValue.equals(nodeValue);
+    }
 
-        List<String> screenResolutionNames = Arrays.asList(ZaleniumCapabilityType.SCREEN_RESOLUTION,
-                ZaleniumCapabilityType.RESOLUTION, ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH);
+    private static boolean isMarionetteMatching(NormalizedCapabilities node, NormalizedCapabilities requested) {
+        if (!requested.isFirefoxValidated()) {
+            return true;
+        }
+        if (Boolean.FALSE.equals(requested.getMarionette())) {
+            return Boolean.FALSE.equals(node.getMarionette());
+        }
+        return !Boolean.FALSE.equals(node.getMarionette());
+    }
 
-        for (String screenResolutionName : screenResolutionNames) {
-            if (requestedCapability.containsKey(screenResolutionName)) {
-                screenSizeCapabilityIsRequested = true;
-                screenResolutionCapabilityMatches = nodeCapability.containsKey(screenResolutionName) &&
-                        requestedCapability.get(screenResolutionName).equals(nodeCapability.get(screenResolutionName));
-            }
+    private boolean isScreenResolutionMatching(NormalizedCapabilities node, NormalizedCapabilities requested) {
+        int requestedScreenResolution = requested.getLastScreenResolution();
+        if (requestedScreenResolution >= 0) {
+            Object nodeScreenResolution = node.getScreenResolution(requestedScreenResolution);
+            return nodeScreenResolution != null &&
+                    requested.getScreenResolution(requestedScreenResolution).equals(nodeScreenResolution);
         }
 
         /*
@@ -96,35 +143,45 @@ public class DockerSeleniumCapabilityMatcher extends DefaultCapabilityMatcher {
             and no special screen size was requested...
             then this validation prevents requests using nodes that were created with specific screen sizes
          */
-        String defaultScreenResolution = String.format("%sx%s",
-                DockeredSeleniumStarter.getConfiguredScreenSize().getWidth(),
-                DockeredSeleniumStarter.getConfiguredScreenSize().getHeight());
-        String nodeScreenResolution = nodeCapability.get(ZaleniumCapabilityType.SCREEN_RESOLUTION).toString();
-        if (!screenSizeCapabilityIsRequested && !defaultScreenResolution.equalsIgnoreCase(nodeScreenResolution)) {
-            screenResolutionCapabilityMatches = false;
-        }
-        return screenResolutionCapabilityMatches;
+        return getConfiguredDefaults().screenResolution.equalsIgnoreCase(node.getScreenResolution());
     }
 
-    private boolean isTimeZoneMatching(Map<String, Object> nodeCapability, Map<String, Object> requestedCapability) {
-        boolean timeZoneCapabilityMatches;
-
-        String defaultTimeZone = DockeredSeleniumStarter.getConfiguredTimeZone().getID();
-        String nodeTimeZone = nodeCapability.get(ZaleniumCapabilityType.TIME_ZONE).toString();
-
+    private boolean isTimeZoneMatching(NormalizedCapabilities node, NormalizedCapabilities requested) {
         /*
             If a time zone is not requested in the capabilities,
             and this node has a different time zone from the default/configured one...
             this will prevent that a request without a time zone uses a node created with a specific time zone
          */
-        if (requestedCapability.containsKey(ZaleniumCapabilityType.TIME_ZONE)) {
-            timeZoneCapabilityMatches = nodeCapability.containsKey(ZaleniumCapabilityType.TIME_ZONE) &&
-                    requestedCapability.get(ZaleniumCapabilityType.TIME_ZONE).equals(nodeCapability.get(ZaleniumCapabilityType.TIME_ZONE));
-        } else {
-            timeZoneCapabilityMatches = defaultTimeZone.equalsIgnoreCase(nodeTimeZone);
+        if (requested.getTimeZone() != null) {
+            return node.getTimeZone() != null && requested.getTimeZone().equals(node.getTimeZone());
         }
+        return getConfiguredDefaults().timeZone.equalsIgnoreCase(node.getTimeZoneId());
+    }
 
-        return timeZoneCapabilityMatches;
+    private static ConfiguredDefaults getConfiguredDefaults() {
+        Dimension screenSize = DockeredSeleniumStarter.getConfiguredScreenSize();
+        TimeZone timeZone = DockeredSeleniumStarter.getConfiguredTimeZone();
+        ConfiguredDefaults defaults = configuredDefaults;
+        if (defaults == null || defaults.screenSize != screenSize || defaults.configuredTimeZone != timeZone) {
+            defaults = new ConfiguredDefaults(screenSize, timeZone);
+            configuredDefaults = defaults;
+        }
+        return defaults;
+    }
+
+    // The configured screen size and time zone as the matcher compares them, built again when the configuration changes
+    private static final class ConfiguredDefaults {
+        private final Dimension screenSize;
+        private final TimeZone configuredTimeZone;
+        private final String screenResolution;
+        private final String timeZone;
+
+        private ConfiguredDefaults(Dimension screenSize, TimeZone configuredTimeZone) {
+            this.screenSize = screenSize;
+            this.configuredTimeZone = configuredTimeZone;
+            this.screenResolution = String.format("%sx%s", screenSize.getWidth(), screenSize.getHeight());
+            this.timeZone = configuredTimeZone.getID();
+        }
     }
 
     public static String getChromeVersion() {
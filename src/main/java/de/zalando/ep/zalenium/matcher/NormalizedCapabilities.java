@@ -0,0 +1,217 @@
+package de.zalando.ep.zalenium.matcher;
+
+import java.util.Map;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+/**
+ * The values of a capabilities map that the docker-selenium matcher looks at, read once instead of on every match.
+ * Zalenium capabilities are read with and without the "zal:" prefix, the value without the prefix wins, the same way
+ * it does once the capabilities are prefixed. Platform, browser, version and application name are read the way the
+ * validators of the grid DefaultCapabilityMatcher read them, so the matcher can compare them without going through
+ * the maps.
+ *
+ * Nothing is cached here: the node capabilities are normalized when the node registers, the requested ones when the
+ * request is added to the queue, and both are handed to the matcher from there. A map changed afterwards has to be
+ * normalized again.
+ */
+public final class NormalizedCapabilities {
+
+    // In the order the matcher checks them, the last one requested is the one that counts
+    static final int SCREEN_RESOLUTION = 0;
+    static final int RESOLUTION = 1;
+    static final int SCREEN_RESOLUTION_DASH = 2;
+    private static final String[][] SCREEN_RESOLUTION_KEYS = {
+            {ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, ZaleniumCapabilityType.SCREEN_RESOLUTION},
+            {ZaleniumCapabilityType.RESOLUTION_NO_PREFIX, ZaleniumCapabilityType.RESOLUTION},
+            {ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH_NO_PREFIX, ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH}};
+
+    private static final String BROWSER = "browser";
+    private static final String MARIONETTE = "marionette";
+    private static final String SAFARI_TECHNOLOGY_PREVIEW = "Safari Technology Preview";
+
+    private final boolean browserNamePresent;
+    private final Object platform;
+    private final Platform extractedPlatform;
+    private final Object browser;
+    private final Object browserVersion;
+    private final Object applicationName;
+    private final boolean firefoxValidated;
+    private final Boolean marionette;
+    private final boolean safari;
+    private final boolean chrome;
+    private final boolean firefox;
+    private final String version;
+    private final Object[] screenResolutions = new Object[SCREEN_RESOLUTION_KEYS.length];
+    private final int lastScreenResolution;
+    private final String screenResolution;
+    private final Object timeZone;
+    private final String timeZoneId;
+
+    private NormalizedCapabilities(Map<String, Object> capabilities) {
+        Object browserName = capabilities.get(CapabilityType.BROWSER_NAME);
+        browserNamePresent = capabilities.containsKey(CapabilityType.BROWSER_NAME);
+        chrome = browserName != null && BrowserType.CHROME.equalsIgnoreCase(browserName.toString());
+        firefox = browserName != null && BrowserType.FIREFOX.equalsIgnoreCase(browserName.toString());
+        Object nodeVersion = capabilities.get(CapabilityType.VERSION);
+        version = nodeVersion == null ? null : nodeVersion.toString();
+
+        platform = get(capabilities, CapabilityType.PLATFORM, CapabilityType.PLATFORM_NAME);
+        extractedPlatform = extractPlatform(platform);
+        browser = get(capabilities, CapabilityType.BROWSER_NAME, BROWSER);
+        browserVersion = get(capabilities, CapabilityType.BROWSER_VERSION, CapabilityType.VERSION);
+        applicationName = capabilities.get(CapabilityType.APPLICATION_NAME);
+        // The grid only applies the Firefox and Safari checks to the browserName key, compared case sensitive
+        firefoxValidated = BrowserType.FIREFOX.equals(browserName);
+        Object marionetteValue = capabilities.get(MARIONETTE);
+        marionette = marionetteValue == null ? null : Boolean.valueOf(marionetteValue.toString());
+        safari = BrowserType.SAFARI.equals(browserName) || SAFARI_TECHNOLOGY_PREVIEW.equals(browserName);
+
+        int last = -1;
+        for (int i = 0; i < SCREEN_RESOLUTION_KEYS.length; i++) {
+            screenResolutions[i] = get(capabilities, SCREEN_RESOLUTION_KEYS[i]);
+            if (screenResolutions[i] != null) {
+                last = i;
+            }
+        }
+        lastScreenResolution = last;
+        screenResolution = screenResolutions[SCREEN_RESOLUTION] == null ? null
+                : screenResolutions[SCREEN_RESOLUTION].toString();
+        timeZone = get(capabilities,
+                ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX, ZaleniumCapabilityType.TIME_ZONE);
+        timeZoneId = timeZone == null ? null : timeZone.toString();
+    }
+
+    private static Object get(Map<String, Object> capabilities, String... keys) {
+        for (String key : keys) {
+            Object value = capabilities.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static Platform extractPlatform(Object platform) {
+        if (platform == null || platform instanceof Platform) {
+            return (Platform) platform;
+        }
+        try {
+            return Platform.fromString(platform.toString());
+        } catch (WebDriverException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true when the value matches any node, the same values the grid treats as "anything".
+     */
+    static boolean isAnything(Object value) {
+        if (value == null) {
+            return true;
+        }
+        String text = value.toString();
+        return text.isEmpty() || "*".equals(text) || "any".equalsIgnoreCase(text);
+    }
+
+    public static NormalizedCapabilities of(Map<String, Object> capabilities) {
+        return new NormalizedCapabilities(capabilities);
+    }
+
+    boolean hasBrowserName() {
+        return browserNamePresent;
+    }
+
+    boolean isChrome() {
+        return chrome;
+    }
+
+    boolean isFirefox() {
+        return firefox;
+    }
+
+    String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the platform capability, or platformName when it is not present.
+     */
+    Object getPlatform() {
+        return platform;
+    }
+
+    /**
+     * @return the {@link Platform} of the platform capability, null when it is not one.
+     */
+    Platform getExtractedPlatform() {
+        return extractedPlatform;
+    }
+
+    /**
+     * @return the browserName capability, or browser when it is not present.
+     */
+    Object getBrowser() {
+        return browser;
+    }
+
+    /**
+     * @return the browserVersion capability, or version when it is not present.
+     */
+    Object getBrowserVersion() {
+        return browserVersion;
+    }
+
+    Object getApplicationName() {
+        return applicationName;
+    }
+
+    /**
+     * @return true when the browserName is exactly "firefox", the requests the grid checks marionette for.
+     */
+    boolean isFirefoxValidated() {
+        return firefoxValidated;
+    }
+
+    /**
+     * @return the marionette capability as a boolean, null when it is not present.
+     */
+    Boolean getMarionette() {
+        return marionette;
+    }
+
+    /**
+     * @return true when the browserName is one of the Safari ones, compared by the grid through the Safari options.
+     */
+    boolean isSafari() {
+        return safari;
+    }
+
+    /**
+     * @return the index of the last screen resolution capability present, -1 when there is none.
+     */
+    int getLastScreenResolution() {
+        return lastScreenResolution;
+    }
+
+    Object getScreenResolution(int index) {
+        return screenResolutions[index];
+    }
+
+    /**
+     * @return the value of the screenResolution capability, null when it is not present.
+     */
+    String getScreenResolution() {
+        return screenResolution;
+    }
+
+    Object getTimeZone() {
+        return timeZone;
+    }
+
+    String getTimeZoneId() {
+        return timeZoneId;
+    }
+}
@@ -5,8 +5,14 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -14,10 +20,18 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import de.zalando.ep.zalenium.dashboard.Dashboard;
+import com.google.common.annotations.VisibleForTesting;
+import de.zalando.ep.zalenium.dashboard.DashboardCollection;
+import de.zalando.ep.zalenium.matcher.NormalizedCapabilities;
 import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityMatcher;
 import org.apache.commons.lang3.tuple.Pair;
 import org.openqa.grid.common.exception.RemoteUnregisterException;
@@ -25,6 +39,7 @@ import org.openqa.grid.internal.BaseRemoteProxy;
 import org.openqa.grid.internal.ProxySet;
 import org.openqa.grid.internal.RemoteProxy;
 import org.openqa.grid.internal.TestSession;
+import org.openqa.grid.internal.TestSlot;
 import org.openqa.selenium.Platform;
 import org.openqa.selenium.remote.CapabilityType;
 import org.slf4j.Logger;
@@ -35,6 +50,8 @@ import de.vandermeer.asciitable.AsciiTable;
 import de.vandermeer.asciitable.CWC_LongestLine;
 import de.vandermeer.skb.interfaces.transformers.textformat.TextAlignment;
 import de.zalando.ep.zalenium.container.ContainerCreationStatus;
+import de.zalando.ep.zalenium.util.MonitoredThreadPoolExecutor;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
 import net.jcip.annotations.ThreadSafe;
 
 /**
@@ -77,12 +94,24 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
     
     private static final Logger STATUS_LOGGER = LoggerFactory.getLogger(LOGGER.getName() + ".Status");
 
+    private static final long REGISTRATION_WAIT_FOR_CREATION_MILLIS = 30 * 1000;
+
     private final Map<ContainerCreationStatus, ContainerStatus> startedContainers = new ConcurrentHashMap<>();
 
     private final DockeredSeleniumStarter starter;
 
     private final SessionRequestFilter filter;
 
+    private final FreeProxyIndex freeProxies = new FreeProxyIndex();
+
+    // Proxies that are not docker-selenium nodes (cloud providers, nodes registered by hand), not in the index.
+    private final Set<RemoteProxy> externalProxies = ConcurrentHashMap.newKeySet();
+
+    // Proxies with an Android slot, they are left out of Linux requests. Kept at registration to not check every slot.
+    private final Set<RemoteProxy> androidProxies = ConcurrentHashMap.newKeySet();
+
+    private volatile NodeSelectionPolicy nodeSelectionPolicy = NodeSelectionPolicy.COST_BASED;
+
     private long minContainers;
     private long maxContainers;
     private final long timeToWaitToStart;
@@ -90,6 +119,33 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
 
     private final Thread poller;
 
+    // Released when the container client pushes a state change, so the poller checks the containers right away.
+    private final Semaphore containersChanged = new Semaphore(0);
+
+    /*
+        Containers are created in these threads, so its size is the amount of containers created at the same time.
+        Saturation is not an issue here, a request that could not be queued is processed again in the next pass.
+     */
+    private final ThreadPoolExecutor containerStartExecutor = new MonitoredThreadPoolExecutor("container-start",
+            ZaleniumConfiguration.getContainerStartThreads(), ZaleniumConfiguration.getContainerStartQueueSize(),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    // Requests with a container start queued or running, compared by identity like in the SessionRequestFilter.
+    private final Set<Map<String, Object>> pendingStarts =
+            Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    // Shape of every started container, to know which requests the containers that did not register yet can serve.
+    private final Map<ContainerCreationStatus, ContainerShape> containerShapes = new ConcurrentHashMap<>();
+
+    // Containers being created, they count against the maximum like the started ones. Guarded by this.
+    private final Set<PendingContainer> creationsInFlight = new HashSet<>();
+
+    // Containers started ahead of the demand that no request has claimed yet. Guarded by this.
+    private final Set<PendingContainer> unclaimedContainers = new HashSet<>();
+
+    private volatile PreWarmingScaler preWarmingScaler;
+    private volatile Supplier<List<Map<String, Object>>> waitingRequests = Collections::emptyList;
+
     private long timeOfLastReport = 0;
     private boolean keepCheckingContainers = true;
 
@@ -108,7 +164,7 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         this.filter = new SessionRequestFilter(maxTimesToProcessRequest);
 
         Runtime.getRuntime().addShutdownHook(new Thread(this::stopCheckingContainers, "AutoStartProxySet stop checking containers."));
-        Runtime.getRuntime().addShutdownHook(new Thread(Dashboard::saveDashboard, "Saving dashboard."));
+        Runtime.getRuntime().addShutdownHook(new Thread(DashboardCollection::saveDashboard, "Saving dashboard."));
 
         poller = new Thread(() -> {
             LOGGER.info("Starting poller.");
@@ -128,7 +184,8 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
                 LOGGER.debug("Checked containers.");
 
                 try {
-                    Thread.sleep(checkContainersInterval);
+                    containersChanged.tryAcquire(checkContainersInterval, TimeUnit.MILLISECONDS);
+                    containersChanged.drainPermits();
                 } catch (InterruptedException e) {
                     LOGGER.info("Stopping polling thread.");
                     LOGGER.debug("Stopping polling thread.", e);
@@ -138,9 +195,43 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
 
         poller.setName("AutoStartProxyPoolPoller");
 
+        starter.watchContainers(containersChanged::release);
+
         poller.start();
     }
 
+    /**
+     * Starts containers ahead of the demand, based on the requests waiting for a session and on the recent
+     * arrival rate of requests.
+     *
+     * @param scaler decides how many containers of each shape are needed.
+     * @param waitingRequests capabilities of the requests waiting for a session, as received by the registry.
+     */
+    public void enablePreWarming(PreWarmingScaler scaler, Supplier<List<Map<String, Object>>> waitingRequests) {
+        this.waitingRequests = waitingRequests;
+        this.preWarmingScaler = scaler;
+    }
+
+    @VisibleForTesting
+    void setNodeSelectionPolicy(NodeSelectionPolicy nodeSelectionPolicy) {
+        this.nodeSelectionPolicy = nodeSelectionPolicy;
+    }
+
+    @VisibleForTesting
+    int getTrackedContainerShapes() {
+        return containerShapes.size();
+    }
+
+    /**
+     * Notifies the set that a new session request arrived in the registry.
+     */
+    public void newSessionRequested(Map<String, Object> desiredCapabilities) {
+        PreWarmingScaler scaler = preWarmingScaler;
+        if (scaler != null) {
+            scaler.requestArrived(desiredCapabilities);
+        }
+    }
+
     private void stopCheckingContainers() {
         this.keepCheckingContainers = false;
     }
@@ -148,6 +239,7 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
     @Override
     public void teardown() {
         poller.interrupt();
+        containerStartExecutor.shutdown();
         super.teardown();
     }
 
@@ -158,16 +250,23 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
      * proxy.
      */
     public TestSession getNewSession(Map<String, Object> desiredCapabilities) {
+        return getNewSession(desiredCapabilities, NormalizedCapabilities.of(desiredCapabilities));
+    }
+
+    /**
+     * Same as {@link #getNewSession(Map)}, with the capabilities already normalized when the request was queued.
+     */
+    public TestSession getNewSession(Map<String, Object> desiredCapabilities,
+                                     NormalizedCapabilities normalizedCapabilities) {
         // TestSession newSession = super.getNewSession(desiredCapabilities);
-        TestSession newSession = createNewSession(desiredCapabilities);
+        TestSession newSession = createNewSession(desiredCapabilities, normalizedCapabilities);
         if (newSession == null) {
             /*
-                This is done in a thread because we are in the middle of the assignRequestToProxy() pipeline, so if we
-                don't return to that method soon, it will never release the lock that it is holding and the whole
-                Grid will freeze. A previous bug shows that this is better because the docker daemon can be exhausted
-                and just hang during a container creation.
+                This is done in another thread because we are in the middle of the assignRequestToProxy() pipeline,
+                and the whole Grid waits until it is done. A previous bug shows that this is better because the docker
+                daemon can be exhausted and just hang during a container creation.
              */
-            new Thread(() -> this.start(desiredCapabilities)).start();
+            startInBackground(desiredCapabilities);
         }
         else {
             filter.testSessionHasStarted(desiredCapabilities);
@@ -175,32 +274,132 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         return newSession;
     }
 
-    // This is a copy of the super method, slightly modified to handle the case where platform is Linux and there
-    // is an Android registered. The matcher will return true because Android is part of the Linux family.
-    private TestSession createNewSession(Map<String, Object> desiredCapabilities) {
-        List<RemoteProxy> sorted = getSorted();
+    private void startInBackground(Map<String, Object> desiredCapabilities) {
+        if (!pendingStarts.add(desiredCapabilities)) {
+            LOGGER.debug("A container start is already pending for {}.", desiredCapabilities);
+            return;
+        }
+        try {
+            containerStartExecutor.execute(() -> {
+                try {
+                    this.start(desiredCapabilities);
+                } finally {
+                    pendingStarts.remove(desiredCapabilities);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingStarts.remove(desiredCapabilities);
+            LOGGER.debug("Container start queue is full, {} will be processed again later.", desiredCapabilities);
+        }
+    }
+
+    /*
+        Free docker-selenium nodes are looked up in an index bucketed by browser, screen resolution and time zone,
+        so only the nodes that can actually take the request are asked for a session, the best one first according
+        to the node selection policy. The rest of the proxies
+        (or all of them, when the request cannot be bucketed) are checked in the same way as the super method,
+        slightly modified to handle the case where platform is Linux and there is an Android registered. The matcher
+        will return true because Android is part of the Linux family.
+     */
+    private TestSession createNewSession(Map<String, Object> desiredCapabilities,
+                                         NormalizedCapabilities normalizedCapabilities) {
+        Optional<Collection<DockerSeleniumRemoteProxy>> candidates = freeProxies.getCandidates(desiredCapabilities);
+        if (!candidates.isPresent()) {
+            return createNewSession(desiredCapabilities, normalizedCapabilities, getSorted());
+        }
+
+        LOGGER.debug("Free nodes for the request: {}", candidates.get());
+        for (DockerSeleniumRemoteProxy proxy : rankCandidates(candidates.get())) {
+            TestSession newSession = getNewSession(proxy, desiredCapabilities, normalizedCapabilities);
+            if (newSession != null) {
+                return newSession;
+            }
+        }
+
+        List<RemoteProxy> sortedExternalProxies = externalProxies.stream()
+                .sorted(Comparator.comparingDouble(RemoteProxy::getResourceUsageInPercent)
+                        .thenComparingLong(RemoteProxy::getLastSessionStart))
+                .collect(Collectors.toList());
+        return createNewSession(desiredCapabilities, normalizedCapabilities, sortedExternalProxies);
+    }
+
+    private TestSession createNewSession(Map<String, Object> desiredCapabilities,
+                                         NormalizedCapabilities normalizedCapabilities, List<RemoteProxy> sorted) {
         LOGGER.debug("Available nodes: " + sorted);
 
         // Removing the proxies with Android so they are not taken into account to create a session.
         List<RemoteProxy> proxiesToConsider;
-        if (Platform.LINUX.equals(getPlatformFromCaps(desiredCapabilities))) {
+        if (Platform.LINUX.equals(getPlatformFromCaps(desiredCapabilities)) && !androidProxies.isEmpty()) {
             proxiesToConsider = sorted.stream()
-                    .filter(remoteProxy ->
-                            remoteProxy
-                                    .getTestSlots().stream()
-                                    .noneMatch(testSlot ->
-                                            Platform.ANDROID.equals(getPlatformFromCaps(testSlot.getCapabilities()))))
+                    .filter(remoteProxy -> !androidProxies.contains(remoteProxy))
                     .collect(Collectors.toList());
         } else {
             proxiesToConsider = sorted;
         }
 
         return proxiesToConsider.stream()
-                .map(proxy -> proxy.getNewSession(desiredCapabilities))
+                .map(proxy -> getNewSession(proxy, desiredCapabilities, normalizedCapabilities))
                 .filter(Objects::nonNull)
                 .findFirst().orElse(null);
     }
 
+    /*
+        Orders the free nodes by the cost of giving them the session, without asking them. Nodes that cannot take
+        sessions anymore leave the free index, nodes cleaning up are just skipped until they are released.
+     */
+    private List<DockerSeleniumRemoteProxy> rankCandidates(Collection<DockerSeleniumRemoteProxy> candidates) {
+        long now = System.currentTimeMillis();
+        List<Pair<DockerSeleniumRemoteProxy, Double>> ranked = new ArrayList<>(candidates.size());
+        for (DockerSeleniumRemoteProxy proxy : candidates) {
+            NodeState nodeState = NodeState.of(proxy, now);
+            double cost = nodeSelectionPolicy.cost(nodeState);
+            if (cost != NodeSelectionPolicy.UNAVAILABLE) {
+                ranked.add(Pair.of(proxy, cost));
+            } else if (nodeState.isUnavailable()) {
+                freeProxies.markBusy(proxy);
+            }
+        }
+        ranked.sort(Comparator.comparingDouble(Pair::getRight));
+        List<DockerSeleniumRemoteProxy> rankedProxies = new ArrayList<>(ranked.size());
+        ranked.forEach(pair -> rankedProxies.add(pair.getLeft()));
+        return rankedProxies;
+    }
+
+    /*
+        Asks the proxy for a session, and takes docker-selenium nodes out of the free index when they got a session
+        or cannot take more sessions.
+     */
+    private TestSession getNewSession(RemoteProxy proxy, Map<String, Object> desiredCapabilities,
+                                      NormalizedCapabilities normalizedCapabilities) {
+        if (!(proxy instanceof DockerSeleniumRemoteProxy)) {
+            return proxy.getNewSession(desiredCapabilities);
+        }
+        DockerSeleniumRemoteProxy dockerSeleniumRemoteProxy = (DockerSeleniumRemoteProxy) proxy;
+        TestSession newSession = dockerSeleniumRemoteProxy.getNewSession(desiredCapabilities, normalizedCapabilities);
+        if (newSession != null || !canTakeSessions(dockerSeleniumRemoteProxy)) {
+            freeProxies.markBusy(dockerSeleniumRemoteProxy);
+        }
+        return newSession;
+    }
+
+    private boolean canTakeSessions(DockerSeleniumRemoteProxy proxy) {
+        return !proxy.isTimedOut() && !proxy.isTestSessionLimitReached();
+    }
+
+    /**
+     * Notifies the set that the session running in the given slot was released, so the proxy can be offered
+     * again to new requests.
+     */
+    public void sessionReleased(TestSlot testSlot) {
+        RemoteProxy proxy = testSlot.getProxy();
+        if (proxy instanceof DockerSeleniumRemoteProxy) {
+            DockerSeleniumRemoteProxy dockerSeleniumRemoteProxy = (DockerSeleniumRemoteProxy) proxy;
+            if (canTakeSessions(dockerSeleniumRemoteProxy)) {
+                freeProxies.markFree(dockerSeleniumRemoteProxy);
+            }
+        }
+    }
+
     private Platform getPlatformFromCaps(Map<String, Object> desiredCapabilities) {
         Object requested = desiredCapabilities.get(CapabilityType.PLATFORM_NAME);
         if (requested == null) {
@@ -225,6 +424,16 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
 
         if (shouldAdd) {
             super.add(proxy);
+            boolean hasAndroidSlot = proxy.getTestSlots().stream()
+                    .anyMatch(testSlot -> Platform.ANDROID.equals(getPlatformFromCaps(testSlot.getCapabilities())));
+            if (hasAndroidSlot) {
+                androidProxies.add(proxy);
+            }
+            if (proxy instanceof DockerSeleniumRemoteProxy) {
+                freeProxies.add((DockerSeleniumRemoteProxy) proxy);
+            } else {
+                externalProxies.add(proxy);
+            }
         }
         else {
             // Won't be tracking the proxy, so it won't be removed and shutdown later - tear down.
@@ -252,7 +461,11 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
             } catch (Exception e) {
                 LOGGER.error("Failed to stop container [" + dockerSeleniumRemoteProxy.getId() + "].", e);
             }
+            freeProxies.remove(dockerSeleniumRemoteProxy);
+        } else {
+            externalProxies.remove(proxy);
         }
+        androidProxies.remove(proxy);
         return super.remove(proxy);
     }
 
@@ -272,27 +485,40 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
      * @param desiredCapabilities
      *            capabilities of the proxy to be started.
      */
-    public synchronized void start(Map<String, Object> desiredCapabilities) {
+    public void start(Map<String, Object> desiredCapabilities) {
+        PendingContainer pendingContainer = new PendingContainer(ContainerShape.fromRequest(desiredCapabilities));
+        synchronized (this) {
+            if (getContainerCount() >= this.maxContainers) {
+                LOGGER.debug("Not starting new container, there are [{}] of max [{}] created.", getContainerCount(),
+                        this.maxContainers);
+                return;
+            }
 
-        if (startedContainers.size() >= this.maxContainers) {
-            LOGGER.debug("Not starting new container, there are [{}] of max [{}] created.", startedContainers.size(),
-                    this.maxContainers);
-            return;
-        }
+            if (nodesAvailable(desiredCapabilities)) {
+                LOGGER.debug("A node is coming up soon for {}, won't start a new node yet.", desiredCapabilities);
+                return;
+            }
 
-        if (nodesAvailable(desiredCapabilities)) {
-            LOGGER.debug("A node is coming up soon for {}, won't start a new node yet.", desiredCapabilities);
-            return;
-        }
+            if (filter.hasRequestBeenProcessed(desiredCapabilities)) {
+                LOGGER.debug("Request {}, has been processed and it is waiting for a node.", desiredCapabilities);
+                return;
+            }
 
-        if (filter.hasRequestBeenProcessed(desiredCapabilities)) {
-            LOGGER.debug("Request {}, has been processed and it is waiting for a node.", desiredCapabilities);
-            return;
-        }
+            if (claimUnclaimedContainer(pendingContainer.shape)) {
+                filter.requestHasBeenProcessed(desiredCapabilities);
+                LOGGER.debug("A pre-warmed node is coming up for {}, won't start a new node.", desiredCapabilities);
+                return;
+            }
 
-        LOGGER.debug("No proxy available for new session, starting new.");
+            LOGGER.debug("No proxy available for new session, starting new.");
+            // Recorded before the container is created, so the request does not start another one meanwhile
+            filter.requestHasBeenProcessed(desiredCapabilities);
+            creationsInFlight.add(pendingContainer);
+        }
 
-        this.startContainer(desiredCapabilities);
+        if (createContainer(desiredCapabilities, pendingContainer) == null) {
+            filter.requestProcessingFailed(desiredCapabilities);
+        }
 
         filter.cleanProcessedCapabilities();
     }
@@ -302,12 +528,21 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
 
         ContainerStatus containerStatus = null;
 
-        for (Entry<ContainerCreationStatus, ContainerStatus> container : this.startedContainers.entrySet()) {
-            if (Objects.equals(container.getKey().getContainerName(), containerId)
-                    || Objects.equals(container.getKey().getContainerId(), containerId)) {
-                container.getValue().setProxy(Optional.of(proxy));
-                containerStatus = container.getValue();
-                break;
+        Optional<Entry<ContainerCreationStatus, ContainerStatus>> container = findStartedContainer(containerId);
+        if (!container.isPresent()) {
+            container = waitForContainerCreation(containerId, proxy.getRemoteHost().getPort());
+        }
+        if (container.isPresent()) {
+            container.get().getValue().setProxy(Optional.of(proxy));
+            containerStatus = container.get().getValue();
+            // A node that registers is running, no need to wait for the next check to know it
+            if (!containerStatus.isStarted()) {
+                containerStatus.setTimeStarted(Optional.of(clock.millis()));
+            }
+            // Once registered, the node is offered to every request through the free proxies index
+            ContainerCreationStatus creationStatus = container.get().getKey();
+            synchronized (this) {
+                unclaimedContainers.removeIf(pending -> creationStatus.equals(pending.created));
             }
         }
 
@@ -328,6 +563,38 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         }
     }
 
+    private Optional<Entry<ContainerCreationStatus, ContainerStatus>> findStartedContainer(String containerId) {
+        return this.startedContainers.entrySet().stream()
+                .filter(container -> Objects.equals(container.getKey().getContainerName(), containerId)
+                        || Objects.equals(container.getKey().getContainerId(), containerId))
+                .findFirst();
+    }
+
+    /*
+        Containers are created concurrently and a node can register before its creation is recorded, in that case
+        the registration waits a bit for the creation of its container instead of marking the node down. Nodes that
+        cannot belong to a creation in flight, e.g. left over from a previous hub, are not kept waiting.
+     */
+    private synchronized Optional<Entry<ContainerCreationStatus, ContainerStatus>> waitForContainerCreation(
+            String containerId, int nodePort) {
+        long deadline = System.currentTimeMillis() + REGISTRATION_WAIT_FOR_CREATION_MILLIS;
+        Optional<Entry<ContainerCreationStatus, ContainerStatus>> container = findStartedContainer(containerId);
+        while (!container.isPresent() && starter.isCreatingNode(nodePort)) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            container = findStartedContainer(containerId);
+        }
+        return container;
+    }
+
     /**
      * Checks the status of the containers.
      */
@@ -354,7 +621,7 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         for (ContainerCreationStatus containerCreationStatus : deadProxies) {
             String reason = String.format("Proxy %s is terminated. Removing from tracked set.",
                     containerCreationStatus.getContainerName());
-            ContainerStatus removedProxy = this.startedContainers.remove(containerCreationStatus);
+            ContainerStatus removedProxy = stopTracking(containerCreationStatus);
             Optional.ofNullable(removedProxy).flatMap(ContainerStatus::getProxy).ifPresent(proxy -> {
                 proxy.markDown();
                 if (this.contains(proxy)) {
@@ -367,19 +634,9 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         }
 
         // Creating proxies when needed
-        if (startedContainers.size() < this.minContainers) {
-            if (this.minContainers > this.maxContainers) {
-                LOGGER.info("Only up to {} containers will be started, since it is what is configured by " +
-                    "--maxDockerSeleniumContainers", this.maxContainers);
-                this.minContainers = this.maxContainers;
-            }
-            LOGGER.debug("AutoStarting container, because {} is less than min {}", startedContainers.size(),
-                    this.minContainers);
-            long outstanding = this.minContainers - startedContainers.size();
-            for (int i = 0; i < outstanding; i++) {
-                this.startContainer(Collections.emptyMap());
-            }
-        }
+        startMinContainers();
+
+        preWarm();
 
         // Removing from the tracked set the ones that took too long to register (we assume they died)
         Set<ContainerCreationStatus> tookTooLongToStartProxies = new HashSet<>();
@@ -407,7 +664,7 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
 
         for (ContainerCreationStatus tookTooLongToStartProxy : tookTooLongToStartProxies) {
             starter.stopContainer(tookTooLongToStartProxy.getContainerId());
-            this.startedContainers.remove(tookTooLongToStartProxy);
+            stopTracking(tookTooLongToStartProxy);
         }
 
 
@@ -417,10 +674,12 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
                 .filter(container -> !container.isShuttingDown())
                 .count();
 
-        if (runningCount > this.minContainers) {
-            LOGGER.debug("Timing out containers because active container count {} is greater than min {}.",
-                    runningCount, this.minContainers);
-            long extra = runningCount - minContainers;
+        PreWarmingScaler scaler = preWarmingScaler;
+        long containersToKeep = scaler == null ? minContainers : Math.max(minContainers, scaler.getTargetContainers());
+        if (runningCount > containersToKeep) {
+            LOGGER.debug("Timing out containers because active container count {} is greater than {}.",
+                    runningCount, containersToKeep);
+            long extra = runningCount - containersToKeep;
 
             this.startedContainers.entrySet().stream()
                     .filter(entry -> !entry.getValue().isShuttingDown())
@@ -436,24 +695,161 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         LOGGER.debug("{} proxies are idle and will be removed.", extraProxies.size());
     }
 
-    /**
-     * Starts a container. Records that a request has been processed so that a
-     * retried request will not cause extra proxies to be started.
+    /*
+        Containers leave the tracked set once they are terminated, or when they took too long to start. Extra
+        containers are only marked as shutting down, they leave when they are terminated.
      */
-    private synchronized void startContainer(Map<String, Object> desiredCapabilities) {
-        // Synchronized so that we record the container creation status before register
-        // can be called
-        ContainerCreationStatus startedContainer = starter.startDockerSeleniumContainer(desiredCapabilities);
-        if (startedContainer == null) {
-            LOGGER.error("Failed to start container.");
-        } else {
-            filter.requestHasBeenProcessed(desiredCapabilities);
-            startedContainers.put(startedContainer,
-                    new ContainerStatus(startedContainer.getContainerName(), clock.millis()));
-            LOGGER.debug("Created {}.", startedContainer);
+    private ContainerStatus stopTracking(ContainerCreationStatus containerCreationStatus) {
+        containerShapes.remove(containerCreationStatus);
+        starter.forgetContainer(containerCreationStatus);
+        return this.startedContainers.remove(containerCreationStatus);
+    }
+
+    private synchronized void startMinContainers() {
+        if (getContainerCount() < this.minContainers) {
+            if (this.minContainers > this.maxContainers) {
+                LOGGER.info("Only up to {} containers will be started, since it is what is configured by " +
+                    "--maxDockerSeleniumContainers", this.maxContainers);
+                this.minContainers = this.maxContainers;
+            }
+            LOGGER.debug("AutoStarting container, because {} is less than min {}", getContainerCount(),
+                    this.minContainers);
+            long outstanding = this.minContainers - getContainerCount();
+            for (int i = 0; i < outstanding; i++) {
+                launchContainer(Collections.emptyMap(), false, created -> { });
+            }
         }
     }
 
+    private synchronized int getContainerCount() {
+        return startedContainers.size() + creationsInFlight.size();
+    }
+
+    /*
+        Creates a container in the container start threads, so a batch of containers is created at the same time.
+        The container counts as in flight right away, so the next checks do not start it again. A claimable container
+        is not started for a specific request and can be claimed by any request of the same shape. The callback gets
+        the created container, or null when it could not be created.
+     */
+    private synchronized void launchContainer(Map<String, Object> desiredCapabilities, boolean claimable,
+                                              Consumer<ContainerCreationStatus> whenDone) {
+        PendingContainer pendingContainer = new PendingContainer(ContainerShape.fromRequest(desiredCapabilities));
+        creationsInFlight.add(pendingContainer);
+        if (claimable) {
+            unclaimedContainers.add(pendingContainer);
+        }
+        try {
+            containerStartExecutor.execute(() -> whenDone.accept(createContainer(desiredCapabilities,
+                    pendingContainer)));
+        } catch (RejectedExecutionException e) {
+            creationsInFlight.remove(pendingContainer);
+            unclaimedContainers.remove(pendingContainer);
+            LOGGER.debug("Container start queue is full, the container will be started in a later check.");
+            whenDone.accept(null);
+        }
+    }
+
+    /*
+        Creates a container that was already added to the creations in flight. The lock is not held while the
+        container is created, the Docker or Kubernetes call can take long and other containers can be created
+        at the same time.
+     */
+    private ContainerCreationStatus createContainer(Map<String, Object> desiredCapabilities,
+                                                    PendingContainer pendingContainer) {
+        ContainerCreationStatus startedContainer = null;
+        try {
+            startedContainer = starter.startDockerSeleniumContainer(desiredCapabilities);
+        } catch (Exception e) {
+            LOGGER.error("Error while creating container.", e);
+        } finally {
+            synchronized (this) {
+                creationsInFlight.remove(pendingContainer);
+                if (startedContainer == null) {
+                    LOGGER.error("Failed to start container.");
+                    unclaimedContainers.remove(pendingContainer);
+                } else {
+                    pendingContainer.created = startedContainer;
+                    containerShapes.put(startedContainer, pendingContainer.shape);
+                    startedContainers.put(startedContainer,
+                            new ContainerStatus(startedContainer.getContainerName(), clock.millis()));
+                    starter.containerRecorded(startedContainer);
+                    LOGGER.debug("Created {}.", startedContainer);
+                }
+                // Registrations could be waiting for this container
+                notifyAll();
+            }
+        }
+        return startedContainer;
+    }
+
+    /*
+        Starts in one batch the containers the scaler considers missing. Waiting requests that have no container
+        on its way are recorded as processed, like when a container is started for them in getNewSession(), the rest
+        of the containers are started for the expected requests and can be claimed by the first one that arrives.
+     */
+    private synchronized void preWarm() {
+        PreWarmingScaler scaler = preWarmingScaler;
+        if (scaler == null) {
+            return;
+        }
+        containerShapes.keySet().retainAll(startedContainers.keySet());
+        unclaimedContainers.removeIf(pending -> pending.created != null
+                && !startedContainers.containsKey(pending.created));
+
+        ContainerShape defaultShape = ContainerShape.fromRequest(Collections.emptyMap());
+        Map<ContainerShape, Integer> availableContainers = new HashMap<>();
+        int busyContainers = 0;
+        for (Entry<ContainerCreationStatus, ContainerStatus> container : startedContainers.entrySet()) {
+            ContainerStatus containerStatus = container.getValue();
+            Optional<DockerSeleniumRemoteProxy> proxy = containerStatus.getProxy();
+            if (containerStatus.isShuttingDown() || (proxy.isPresent() && !canTakeSessions(proxy.get()))) {
+                continue;
+            }
+            if (proxy.isPresent() && proxy.get().isBusy() && !proxy.get().isCleaningUpBeforeNextSession()) {
+                busyContainers++;
+            } else {
+                availableContainers.merge(containerShapes.getOrDefault(container.getKey(), defaultShape), 1,
+                        Integer::sum);
+            }
+        }
+        creationsInFlight.forEach(pending -> availableContainers.merge(pending.shape, 1, Integer::sum));
+
+        List<Map<String, Object>> requests = waitingRequests.get();
+        int capacity = (int) Math.max(0, maxContainers - getContainerCount());
+        Map<ContainerShape, Integer> toStart = scaler.plan(requests, availableContainers, busyContainers, capacity);
+
+        toStart.forEach((shape, amount) -> {
+            Iterator<Map<String, Object>> requestsWithoutContainer = requests.stream()
+                    .filter(request -> !filter.isRequestBeingProcessed(request))
+                    .filter(request -> shape.equals(ContainerShape.fromRequest(request)))
+                    .iterator();
+            for (int i = 0; i < amount; i++) {
+                if (requestsWithoutContainer.hasNext()) {
+                    Map<String, Object> request = requestsWithoutContainer.next();
+                    filter.requestHasBeenProcessed(request);
+                    launchContainer(request, false, created -> {
+                        if (created == null) {
+                            filter.requestProcessingFailed(request);
+                        }
+                    });
+                } else {
+                    launchContainer(shape.toCapabilities(), true, created -> { });
+                }
+            }
+        });
+    }
+
+    private synchronized boolean claimUnclaimedContainer(ContainerShape shape) {
+        Iterator<PendingContainer> containers = unclaimedContainers.iterator();
+        while (containers.hasNext()) {
+            if (shape.equals(containers.next().shape)) {
+                containers.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean nodesAvailable(Map<String, Object> requestedCapability) {
         if (!waitForAvailableNodes) {
             LOGGER.debug("Not waiting for available slots, creating nodes when possible.");
@@ -540,6 +936,17 @@ public class AutoStartProxySet extends ProxySet implements Iterable<RemoteProxy>
         return Collections.unmodifiableMap(startedContainers);
     }
 
+    // A container from the moment it is decided to create it, until it registers or the creation fails.
+    private static final class PendingContainer {
+        private final ContainerShape shape;
+        // Only accessed while holding the lock of the proxy set.
+        private ContainerCreationStatus created;
+
+        private PendingContainer(ContainerShape shape) {
+            this.shape = shape;
+        }
+    }
+
     @SuppressWarnings({"WeakerAccess", "OptionalUsedAsFieldOrParameterType"})
     public static final class ContainerStatus {
         private final String containerId;
@@ -88,6 +88,10 @@ public class BrowserStackRemoteProxy extends CloudTestingRemoteProxy {
         String browserStackBaseTestUrl = "https://api.browserstack.com/automate/sessions/";
         String browserStackTestUrl = browserStackBaseTestUrl + String.format("%s.json", seleniumSessionId);
         for (int i = 0; i < 5; i++) {
+            if (i > 0) {
+                // The previous response did not have the video yet
+                getCommonProxyUtilities().forgetJSONFromUrl(browserStackTestUrl, BROWSER_STACK_USER);
+            }
             try {
                 JsonObject testData = getCommonProxyUtilities().readJSONFromUrl(browserStackTestUrl, BROWSER_STACK_USER,
                     BROWSER_STACK_KEY).getAsJsonObject();
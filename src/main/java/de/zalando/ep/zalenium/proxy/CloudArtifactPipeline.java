@@ -0,0 +1,284 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Runs what happens after a cloud testing provider test finishes (fetching its information, downloading the video
+ * and logs, adding it to the dashboard) on a bounded amount of threads instead of one new thread per test.
+ *
+ * Each provider runs at most maxRunningPerProvider tests at the same time, so a large run of one provider neither
+ * hits its API with hundreds of calls at once nor keeps the tests of other providers waiting. The tests of a provider
+ * are taken completed ones first, then in the order they finished.
+ *
+ * Every pending test is written to the journal folder until it is done. After a restart, the tests found there are
+ * queued again when their provider registers.
+ */
+class CloudArtifactPipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CloudArtifactPipeline.class.getName());
+    private static final String JOURNAL_FILE_SUFFIX = ".json";
+    private static final Gson GSON = new Gson();
+    private static final Gauge cloudArtifactJobs = Gauge.build()
+            .name("zalenium_cloud_artifact_jobs")
+            .help("The number of finished cloud tests whose artifacts are pending or being downloaded, by provider.")
+            .labelNames("provider", "state")
+            .register();
+    private static final Counter cloudArtifactJobsRejected = Counter.build()
+            .name("zalenium_cloud_artifact_jobs_rejected_total")
+            .help("The number of finished cloud tests not added to the dashboard because the queue was full.")
+            .labelNames("provider")
+            .register();
+
+    private final Executor executor;
+    private final int maxRunningPerProvider;
+    private final int maxPending;
+    private final Supplier<Path> journalFolder;
+    private final Map<String, ProviderQueue> providers = new HashMap<>();
+    private final Set<String> recoveredProviders = new HashSet<>();
+    private int pending;
+    private long sequence;
+
+    CloudArtifactPipeline(Executor executor, int maxRunningPerProvider, int maxPending,
+                          Supplier<Path> journalFolder) {
+        this.executor = executor;
+        this.maxRunningPerProvider = maxRunningPerProvider;
+        this.maxPending = maxPending;
+        this.journalFolder = journalFolder;
+    }
+
+    /**
+     * Processes the artifacts of the given test on the pipeline threads.
+     *
+     * @return false when the test was not queued, because the queue is full or the test is already in it.
+     */
+    boolean submit(Job job, Worker worker) {
+        // Written before queueing, the test can be done and its journal deleted before enqueue returns
+        writeJournal(job);
+        Admission admission = enqueue(job, worker);
+        if (admission == Admission.REJECTED) {
+            deleteJournal(job);
+        }
+        return admission == Admission.QUEUED;
+    }
+
+    /**
+     * Queues the tests of the provider that were pending when Zalenium stopped. Done once per provider.
+     */
+    void recover(String provider, Worker worker) {
+        synchronized (this) {
+            if (!recoveredProviders.add(provider)) {
+                return;
+            }
+        }
+        Path folder = journalFolder.get();
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        int recovered = 0;
+        try (DirectoryStream<Path> journal = Files.newDirectoryStream(folder, "*" + JOURNAL_FILE_SUFFIX)) {
+            for (Path journalFile : journal) {
+                Job job = readJournal(journalFile);
+                if (job != null && provider.equals(job.provider) && enqueue(job, worker) == Admission.QUEUED) {
+                    recovered++;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not read the pending {} tests from {}", provider, folder, e);
+        }
+        if (recovered > 0) {
+            LOGGER.info("Downloading the artifacts of {} {} tests that were pending before the restart",
+                    recovered, provider);
+        }
+    }
+
+    private synchronized Admission enqueue(Job job, Worker worker) {
+        ProviderQueue queue = providers.computeIfAbsent(job.provider, ProviderQueue::new);
+        if (queue.contains(job.seleniumSessionId)) {
+            return Admission.ALREADY_QUEUED;
+        }
+        if (pending >= maxPending) {
+            LOGGER.warn("Too many {} tests waiting for their artifacts, {} will not be added to the dashboard",
+                    job.provider, job.seleniumSessionId);
+            cloudArtifactJobsRejected.labels(job.provider).inc();
+            return Admission.REJECTED;
+        }
+        pending++;
+        queue.add(new PendingJob(job, worker, sequence++));
+        dispatch(queue);
+        return Admission.QUEUED;
+    }
+
+    // Holding the lock, starts the next tests of the provider while it has room for them
+    private void dispatch(ProviderQueue queue) {
+        while (queue.running < maxRunningPerProvider && !queue.waiting.isEmpty()) {
+            PendingJob next = queue.waiting.poll();
+            try {
+                executor.execute(() -> run(queue, next));
+            } catch (RejectedExecutionException e) {
+                // Tried again when the next test of the provider is done or queued
+                LOGGER.warn("Could not start the artifacts download of {} test {}", next.job.provider,
+                        next.job.seleniumSessionId, e);
+                queue.waiting.add(next);
+                break;
+            }
+            queue.running++;
+            queue.updateMetrics();
+        }
+    }
+
+    private void run(ProviderQueue queue, PendingJob pendingJob) {
+        try {
+            pendingJob.worker.process(pendingJob.job);
+        } catch (Exception e) {
+            LOGGER.error("Could not process the artifacts of {} test {}", pendingJob.job.provider,
+                    pendingJob.job.seleniumSessionId, e);
+        } finally {
+            deleteJournal(pendingJob.job);
+            synchronized (this) {
+                pending--;
+                queue.running--;
+                queue.sessionIds.remove(pendingJob.job.seleniumSessionId);
+                queue.updateMetrics();
+                dispatch(queue);
+            }
+        }
+    }
+
+    private void writeJournal(Job job) {
+        try {
+            Path folder = journalFolder.get();
+            Files.createDirectories(folder);
+            Files.write(folder.resolve(job.getJournalFileName()), GSON.toJson(job).getBytes(UTF_8));
+        } catch (IOException e) {
+            LOGGER.warn("Could not save the pending {} test {}, it will not be resumed after a restart",
+                    job.provider, job.seleniumSessionId, e);
+        }
+    }
+
+    private static Job readJournal(Path journalFile) {
+        try {
+            Job job = GSON.fromJson(new String(Files.readAllBytes(journalFile), UTF_8), Job.class);
+            if (job != null && job.provider != null && job.seleniumSessionId != null) {
+                return job;
+            }
+            LOGGER.warn("Ignoring the incomplete pending test {}", journalFile);
+        } catch (IOException | JsonParseException e) {
+            LOGGER.warn("Ignoring the unreadable pending test {}", journalFile, e);
+        }
+        return null;
+    }
+
+    private void deleteJournal(Job job) {
+        try {
+            Files.deleteIfExists(journalFolder.get().resolve(job.getJournalFileName()));
+        } catch (IOException e) {
+            LOGGER.debug(e.toString(), e);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * What is needed to process a finished test, saved in the journal while it is pending.
+     */
+    static final class Job {
+        private final String provider;
+        private final String seleniumSessionId;
+        private final boolean testCompleted;
+
+        Job(String provider, String seleniumSessionId, boolean testCompleted) {
+            this.provider = provider;
+            this.seleniumSessionId = seleniumSessionId;
+            this.testCompleted = testCompleted;
+        }
+
+        String getSeleniumSessionId() {
+            return seleniumSessionId;
+        }
+
+        boolean isTestCompleted() {
+            return testCompleted;
+        }
+
+        private String getJournalFileName() {
+            return (provider + "-" + seleniumSessionId).replaceAll("[^A-Za-z0-9._-]", "_") + JOURNAL_FILE_SUFFIX;
+        }
+    }
+
+    private enum Admission { QUEUED, ALREADY_QUEUED, REJECTED }
+
+    @FunctionalInterface
+    interface Worker {
+        void process(Job job) throws Exception;
+    }
+
+    private static final class PendingJob {
+        // Completed tests first, then in the order they were queued
+        private static final Comparator<PendingJob> PRIORITY = Comparator
+                .comparing((PendingJob pendingJob) -> !pendingJob.job.testCompleted)
+                .thenComparingLong(pendingJob -> pendingJob.sequence);
+
+        private final Job job;
+        private final Worker worker;
+        private final long sequence;
+
+        private PendingJob(Job job, Worker worker, long sequence) {
+            this.job = job;
+            this.worker = worker;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class ProviderQueue {
+        private final String provider;
+        private final PriorityQueue<PendingJob> waiting = new PriorityQueue<>(PendingJob.PRIORITY);
+        private final Set<String> sessionIds = new HashSet<>();
+        private int running;
+
+        private ProviderQueue(String provider) {
+            this.provider = provider;
+        }
+
+        private boolean contains(String seleniumSessionId) {
+            return sessionIds.contains(seleniumSessionId);
+        }
+
+        private void add(PendingJob pendingJob) {
+            waiting.add(pendingJob);
+            sessionIds.add(pendingJob.job.seleniumSessionId);
+            updateMetrics();
+        }
+
+        private void updateMetrics() {
+            cloudArtifactJobs.labels(provider, "pending").set(waiting.size());
+            cloudArtifactJobs.labels(provider, "running").set(running);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import de.zalando.ep.zalenium.dashboard.Dashboard;
 import de.zalando.ep.zalenium.dashboard.DashboardCollection;
 import de.zalando.ep.zalenium.dashboard.TestInformation;
 import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityMatcher;
@@ -16,6 +17,8 @@ import de.zalando.ep.zalenium.servlet.renderer.CloudProxyHtmlRenderer;
 import de.zalando.ep.zalenium.util.CommonProxyUtilities;
 import de.zalando.ep.zalenium.util.Environment;
 import de.zalando.ep.zalenium.util.GoogleAnalyticsApi;
+import de.zalando.ep.zalenium.util.MonitoredThreadPoolExecutor;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
 import org.apache.commons.io.FileUtils;
 import org.openqa.grid.common.RegistrationRequest;
 import org.openqa.grid.internal.GridRegistry;
@@ -40,7 +43,13 @@ import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -55,14 +64,28 @@ public class CloudTestingRemoteProxy extends DefaultRemoteProxy {
     @VisibleForTesting
     public static boolean addToDashboardCalled = false;
     private static final Logger logger = LoggerFactory.getLogger(CloudTestingRemoteProxy.class.getName());
+    private static final String PENDING_ARTIFACTS_FOLDER = ".pending-cloud-artifacts";
     private static final GoogleAnalyticsApi defaultGA = new GoogleAnalyticsApi();
     private static final CommonProxyUtilities defaultCommonProxyUtilities = new CommonProxyUtilities();
     private static final Environment defaultEnvironment = new Environment();
     private static GoogleAnalyticsApi ga = defaultGA;
     private static CommonProxyUtilities commonProxyUtilities = defaultCommonProxyUtilities;
     private static Environment env = defaultEnvironment;
+    /*
+        Finished tests are processed in the pipeline threads, a few per provider at a time. When all the log download
+        threads are busy, the pipeline thread downloads the log itself.
+     */
+    private static final ExecutorService ARTIFACT_EXECUTOR = new MonitoredThreadPoolExecutor(
+            "cloud-artifacts", ZaleniumConfiguration.getCloudArtifactThreads(),
+            ZaleniumConfiguration.getCloudArtifactQueueSize(), new ThreadPoolExecutor.AbortPolicy());
+    private static final ExecutorService LOG_DOWNLOAD_EXECUTOR = new MonitoredThreadPoolExecutor(
+            "cloud-log-downloads", ZaleniumConfiguration.getCloudArtifactThreads(),
+            ZaleniumConfiguration.getCloudArtifactThreads(), new ThreadPoolExecutor.CallerRunsPolicy());
+    private static final CloudArtifactPipeline ARTIFACT_PIPELINE = new CloudArtifactPipeline(ARTIFACT_EXECUTOR,
+            ZaleniumConfiguration.getCloudArtifactThreadsPerProvider(),
+            ZaleniumConfiguration.getCloudArtifactQueueSize(),
+            () -> Paths.get(Dashboard.getLocalVideosPath(), PENDING_ARTIFACTS_FOLDER));
     private final HtmlRenderer renderer = new CloudProxyHtmlRenderer(this);
-    private CloudProxyNodePoller cloudProxyNodePoller = null;
     private CapabilityMatcher capabilityHelper;
     private long maxTestIdleTime = DEFAULT_MAX_TEST_IDLE_TIME_SECS;
     private JsonObject metadata;
@@ -143,7 +166,11 @@ public class CloudTestingRemoteProxy extends DefaultRemoteProxy {
 
         logger.info("Test will be forwarded to {} - {}", getProxyName(), requestedCapability);
         Thread.currentThread().setName(currentName);
-        return super.getNewSession(requestedCapability);
+        TestSession newSession = super.getNewSession(requestedCapability);
+        if (newSession != null) {
+            watchIdleSession(newSession, getMaxTestIdleTime() * 1000L);
+        }
+        return newSession;
     }
 
 
@@ -213,9 +240,16 @@ public class CloudTestingRemoteProxy extends DefaultRemoteProxy {
             }
         }
         super.afterCommand(session, request, response);
+        watchIdleSession(session, getMaxTestIdleTime() * 1000L);
         Thread.currentThread().setName(currentName);
     }
 
+    @Override
+    public void afterSession(TestSession session) {
+        IdleSessionReaper.getInstance().cancel(session);
+        super.afterSession(session);
+    }
+
     @Override
     public HtmlRenderer getHtmlRender() {
         return this.renderer;
@@ -267,40 +301,61 @@ public class CloudTestingRemoteProxy extends DefaultRemoteProxy {
 
     public void addTestToDashboard(String seleniumSessionId, boolean testCompleted) {
         addToDashboardCalled = false;
-        new Thread(() -> {
-            try {
-                TestInformation testInformation = getTestInformation(seleniumSessionId);
-                TestInformation.TestStatus status = testCompleted ?
-                        TestInformation.TestStatus.COMPLETED : TestInformation.TestStatus.TIMEOUT;
-                testInformation.setTestStatus(status);
-                String fileNameWithFullPath = testInformation.getVideoFolderPath() + "/" + testInformation.getFileName();
-                commonProxyUtilities.downloadFile(testInformation.getVideoUrl(), fileNameWithFullPath,
-                        getUserNameValue(), getAccessKeyValue(), useAuthenticationToDownloadFile());
-                for (String logUrl : testInformation.getLogUrls()) {
-                    String fileName = logUrl.substring(logUrl.lastIndexOf('/') + 1);
-                    // In order to not try to save questionable characters that the filesystem might disagree with
-
-                    if(fileName.contains("?")){
-                        fileName = fileName.substring(0, fileName.indexOf('?'));
-                    }
-                    fileNameWithFullPath = testInformation.getLogsFolderPath() + "/" + fileName;
-                    commonProxyUtilities.downloadFile(logUrl, fileNameWithFullPath,
-                            getUserNameValue(), getAccessKeyValue(), useAuthenticationToDownloadFile(), 2);
-                }
-                for (RemoteLogFile remoteLogFile : testInformation.getRemoteLogFiles()) {
-                    fileNameWithFullPath = testInformation.getLogsFolderPath() + "/" + remoteLogFile.getLocalFileName();
-                    commonProxyUtilities.downloadFile(remoteLogFile.getRemoteUrl(), fileNameWithFullPath,
-                            getUserNameValue(), getAccessKeyValue(), remoteLogFile.isAuthenticationRequired(), 2);
+        CloudArtifactPipeline.Job job = new CloudArtifactPipeline.Job(String.valueOf(getProxyName()),
+                seleniumSessionId, testCompleted);
+        ARTIFACT_PIPELINE.submit(job, this::processFinishedTest);
+    }
+
+    private void processFinishedTest(CloudArtifactPipeline.Job job) throws InterruptedException, IOException {
+        String currentName = Thread.currentThread().getName();
+        Thread.currentThread().setName(getProxyName() + " addTestToDashboard seleniumSessionId ["
+                + job.getSeleniumSessionId() + "] testCompleted [" + job.isTestCompleted() + "]");
+        try {
+            TestInformation testInformation = getTestInformation(job.getSeleniumSessionId());
+            TestInformation.TestStatus status = job.isTestCompleted() ?
+                    TestInformation.TestStatus.COMPLETED : TestInformation.TestStatus.TIMEOUT;
+            testInformation.setTestStatus(status);
+            String fileNameWithFullPath = testInformation.getVideoFolderPath() + "/" + testInformation.getFileName();
+            commonProxyUtilities.downloadFile(testInformation.getVideoUrl(), fileNameWithFullPath,
+                    getUserNameValue(), getAccessKeyValue(), useAuthenticationToDownloadFile());
+
+            // The logs of the test are downloaded in parallel, and all of them before updating the dashboard
+            List<CompletableFuture<Void>> logDownloads = new ArrayList<>();
+            for (String logUrl : testInformation.getLogUrls()) {
+                String fileName = logUrl.substring(logUrl.lastIndexOf('/') + 1);
+                // In order to not try to save questionable characters that the filesystem might disagree with
+
+                if(fileName.contains("?")){
+                    fileName = fileName.substring(0, fileName.indexOf('?'));
                 }
+                String logFileNameWithFullPath = testInformation.getLogsFolderPath() + "/" + fileName;
+                logDownloads.add(downloadLog(logUrl, logFileNameWithFullPath, useAuthenticationToDownloadFile()));
+            }
+            for (RemoteLogFile remoteLogFile : testInformation.getRemoteLogFiles()) {
+                String logFileNameWithFullPath = testInformation.getLogsFolderPath() + "/"
+                        + remoteLogFile.getLocalFileName();
+                logDownloads.add(downloadLog(remoteLogFile.getRemoteUrl(), logFileNameWithFullPath,
+                        remoteLogFile.isAuthenticationRequired()));
+            }
+            CompletableFuture.allOf(logDownloads.toArray(new CompletableFuture[0])).join();
+
+            createFeatureNotImplementedFile(testInformation.getLogsFolderPath());
+            DashboardCollection.updateDashboard(testInformation);
+            addToDashboardCalled = true;
+        } finally {
+            Thread.currentThread().setName(currentName);
+        }
+    }
 
-                createFeatureNotImplementedFile(testInformation.getLogsFolderPath());
-                DashboardCollection.updateDashboard(testInformation);
-                addToDashboardCalled = true;
-            } catch (Exception e) {
-                logger.error(e.toString(), e);
+    private CompletableFuture<Void> downloadLog(String logUrl, String fileNameWithFullPath, boolean authenticate) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                commonProxyUtilities.downloadFile(logUrl, fileNameWithFullPath, getUserNameValue(),
+                        getAccessKeyValue(), authenticate, 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
-        }, getProxyName() + " addTestToDashboard seleniumSessionId [" + seleniumSessionId + "] testCompleted ["
-                + testCompleted + "]").start();
+        }, LOG_DOWNLOAD_EXECUTOR);
     }
 
     @Override
@@ -346,13 +401,17 @@ public class CloudTestingRemoteProxy extends DefaultRemoteProxy {
 
     @Override
     public void startPolling() {
-        cloudProxyNodePoller = new CloudProxyNodePoller(this);
-        cloudProxyNodePoller.start();
+        ARTIFACT_PIPELINE.recover(String.valueOf(getProxyName()), this::processFinishedTest);
     }
 
     @Override
     public void stopPolling() {
-        cloudProxyNodePoller.interrupt();
+        for (TestSlot testSlot : getTestSlots()) {
+            TestSession session = testSlot.getSession();
+            if (session != null) {
+                IdleSessionReaper.getInstance().cancel(session);
+            }
+        }
     }
 
     @Override
@@ -375,62 +434,41 @@ public class CloudTestingRemoteProxy extends DefaultRemoteProxy {
     }
 
     /*
-        Method to check for test inactivity, and terminate idle sessions
+        Sessions are watched by the shared IdleSessionReaper from the moment they are created, and their deadline is
+        moved after every command. It could happen that the test did not finish properly so we need to release the
+        slot as well.
      */
-    @VisibleForTesting
-    public void terminateIdleSessions() {
-        String currentName = Thread.currentThread().getName();
-        Thread.currentThread().setName(getProxyName());
-        for (TestSlot testSlot : getTestSlots()) {
-            if (testSlot.getSession() != null &&
-                    (testSlot.getSession().getInactivityTime() >= (getMaxTestIdleTime() * 1000L))) {
-                long executionTime = (System.currentTimeMillis() - testSlot.getLastSessionStart()) / 1000;
-                getGa().testEvent(getProxyClassName(), testSlot.getSession().getRequestedCapabilities().toString(),
-                        executionTime);
-                // If it is null, it is probable that the test never reached the cloud service.
-                if (testSlot.getSession().getExternalKey() != null) {
-                    addTestToDashboard(testSlot.getSession().getExternalKey().getKey(), false);
-                }
-                getRegistry().forceRelease(testSlot, SessionTerminationReason.ORPHAN);
-                logger.warn("Releasing slot and terminating session due to inactivity.");
-            }
-        }
-        Thread.currentThread().setName(currentName);
+    private void watchIdleSession(TestSession session, long delayMillis) {
+        IdleSessionReaper.getInstance().watch(session, delayMillis, () -> terminateIdleSession(session));
     }
 
     /*
-        Class to poll continuously the slots status to check if there is an idle test. It could happen that the test
-        did not finish properly so we need to release the slot as well.
-    */
-    static class CloudProxyNodePoller extends Thread {
-
-        private static long sleepTimeBetweenChecks = 500;
-        private CloudTestingRemoteProxy cloudProxy;
-
-        CloudProxyNodePoller(CloudTestingRemoteProxy cloudProxy) {
-            this.cloudProxy = cloudProxy;
+        Method to check for test inactivity when the deadline of a session is reached, and terminate it when idle
+     */
+    @VisibleForTesting
+    void terminateIdleSession(TestSession session) {
+        TestSlot testSlot = session.getSlot();
+        if (testSlot.getSession() != session) {
+            // The session finished meanwhile
+            return;
         }
-
-        protected long getSleepTimeBetweenChecks() {
-            return sleepTimeBetweenChecks;
+        long maxTestIdleTimeMillis = getMaxTestIdleTime() * 1000L;
+        long inactivityTime = session.getInactivityTime();
+        if (inactivityTime < maxTestIdleTimeMillis) {
+            watchIdleSession(session, maxTestIdleTimeMillis - inactivityTime);
+            return;
         }
-
-        @Override
-        public void run() {
-            while (true) {
-                /*
-                    Checking continuously for idle sessions. It may happen that the session is terminated abnormally
-                    remotely and the slot needs to be released locally as well.
-                */
-                cloudProxy.terminateIdleSessions();
-                try {
-                    Thread.sleep(getSleepTimeBetweenChecks());
-                } catch (InterruptedException e) {
-                    logger.debug(cloudProxy.getProxyName() + " Error while sleeping the thread.", e);
-                    return;
-                }
-            }
+        String currentName = Thread.currentThread().getName();
+        Thread.currentThread().setName(getProxyName());
+        long executionTime = (System.currentTimeMillis() - testSlot.getLastSessionStart()) / 1000;
+        getGa().testEvent(getProxyClassName(), session.getRequestedCapabilities().toString(), executionTime);
+        // If it is null, it is probable that the test never reached the cloud service.
+        if (session.getExternalKey() != null) {
+            addTestToDashboard(session.getExternalKey().getKey(), false);
         }
+        getRegistry().forceRelease(testSlot, SessionTerminationReason.ORPHAN);
+        logger.warn("Releasing slot and terminating session due to inactivity.");
+        Thread.currentThread().setName(currentName);
     }
 
 }
@@ -0,0 +1,112 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+
+import org.openqa.selenium.Dimension;
+
+import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityType;
+
+/**
+ * The part of the capabilities that is fixed when a docker-selenium container is created: screen resolution and
+ * time zone. Every container runs all the supported browsers, so two requests with the same shape can be served
+ * by the same container.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ContainerShape {
+
+    private static final List<String> SCREEN_RESOLUTION_CAPABILITIES = Arrays.asList(
+            ZaleniumCapabilityType.SCREEN_RESOLUTION, ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX,
+            ZaleniumCapabilityType.RESOLUTION, ZaleniumCapabilityType.RESOLUTION_NO_PREFIX,
+            ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH, ZaleniumCapabilityType.SCREEN_RESOLUTION_DASH_NO_PREFIX);
+    private static final List<String> TIME_ZONE_CAPABILITIES = Arrays.asList(ZaleniumCapabilityType.TIME_ZONE,
+            ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX);
+
+    private final String screenResolution;
+    private final String timeZone;
+
+    private ContainerShape(String screenResolution, String timeZone) {
+        this.screenResolution = screenResolution;
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * Shape of a registered node, taken from the capabilities of one of its test slots.
+     */
+    public static ContainerShape fromNode(Map<String, Object> nodeCapability) {
+        return new ContainerShape(getFirstCapability(nodeCapability, SCREEN_RESOLUTION_CAPABILITIES, ""),
+                getFirstCapability(nodeCapability, TIME_ZONE_CAPABILITIES, ""));
+    }
+
+    /**
+     * Shape of the container needed by a request, falling back to the configured screen resolution and time zone
+     * when the request does not specify them.
+     */
+    public static ContainerShape fromRequest(Map<String, Object> requestedCapability) {
+        Dimension screenSize = DockeredSeleniumStarter.getConfiguredScreenSize();
+        String defaultScreenResolution = screenSize.getWidth() + "x" + screenSize.getHeight();
+        String defaultTimeZone = DockeredSeleniumStarter.getConfiguredTimeZone().getID().toLowerCase();
+        return new ContainerShape(
+                getFirstCapability(requestedCapability, SCREEN_RESOLUTION_CAPABILITIES, defaultScreenResolution),
+                getFirstCapability(requestedCapability, TIME_ZONE_CAPABILITIES, defaultTimeZone));
+    }
+
+    /**
+     * Capabilities that can be passed to {@link DockeredSeleniumStarter} to create a container with this shape.
+     */
+    public Map<String, Object> toCapabilities() {
+        Map<String, Object> capabilities = new HashMap<>();
+        if (!screenResolution.isEmpty()) {
+            capabilities.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, screenResolution);
+        }
+        if (!timeZone.isEmpty()) {
+            // Shapes are compared in lower case, but time zone ids are case sensitive when the container is created
+            capabilities.put(ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX, findTimeZoneId(timeZone));
+        }
+        return capabilities;
+    }
+
+    private static String findTimeZoneId(String lowerCaseTimeZone) {
+        return Arrays.stream(TimeZone.getAvailableIDs())
+                .filter(id -> id.equalsIgnoreCase(lowerCaseTimeZone))
+                .findFirst()
+                .orElse(lowerCaseTimeZone);
+    }
+
+    private static String getFirstCapability(Map<String, Object> capabilities, List<String> capabilityNames,
+                                             String defaultValue) {
+        for (String capabilityName : capabilityNames) {
+            Object value = capabilities.get(capabilityName);
+            if (value != null) {
+                return value.toString().toLowerCase();
+            }
+        }
+        return defaultValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ContainerShape that = (ContainerShape) o;
+        return screenResolution.equals(that.screenResolution) && timeZone.equals(that.timeZone);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(screenResolution, timeZone);
+    }
+
+    @Override
+    public String toString() {
+        return screenResolution + "/" + timeZone;
+    }
+}
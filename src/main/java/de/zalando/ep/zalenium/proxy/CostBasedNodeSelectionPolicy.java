@@ -0,0 +1,32 @@
+package de.zalando.ep.zalenium.proxy;
+
+/**
+ * Gives the session to the node that keeps the most capacity warm:
+ * - Nodes cleaning up after the previous session are not asked, they would refuse the session.
+ * - Nodes idle for the longest time come first, they are the next ones to be shut down for being idle, and using
+ *   them keeps the containers that already started.
+ * - Nodes with fewer sessions left before being recycled come first, so nodes reach ZALENIUM_MAX_TEST_SESSIONS
+ *   one after the other instead of all of them recycling at the same time.
+ * - Nodes that already ran a session come before fresh ones.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CostBasedNodeSelectionPolicy implements NodeSelectionPolicy {
+
+    static final double IDLE_WEIGHT = 2;
+    static final double SESSIONS_LEFT_WEIGHT = 1;
+    static final double COLD_WEIGHT = 0.5;
+
+    @Override
+    public double cost(NodeState node) {
+        if (node.isUnavailable() || node.isCleaningUp()) {
+            return UNAVAILABLE;
+        }
+        double idleCost = 1;
+        if (node.getMaxIdleMillis() > 0) {
+            idleCost -= Math.min(1, (double) node.getIdleMillis() / node.getMaxIdleMillis());
+        }
+        double sessionsLeftCost = (double) node.getSessionsLeft() / Math.max(1, node.getMaxSessions());
+        double coldCost = node.isWarm() ? 0 : 1;
+        return IDLE_WEIGHT * idleCost + SESSIONS_LEFT_WEIGHT * sessionsLeftCost + COLD_WEIGHT * coldCost;
+    }
+}
@@ -5,12 +5,20 @@ import java.nio.file.CopyOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
@@ -18,6 +26,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import de.zalando.ep.zalenium.streams.InputStreamDescriptor;
+import de.zalando.ep.zalenium.streams.InputStreamDescriptors;
 import de.zalando.ep.zalenium.streams.InputStreamGroupIterator;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -31,7 +40,6 @@ import org.openqa.grid.internal.GridRegistry;
 import org.openqa.grid.internal.SessionTerminationReason;
 import org.openqa.grid.internal.TestSession;
 import org.openqa.grid.internal.TestSlot;
-import org.openqa.grid.internal.utils.CapabilityMatcher;
 import org.openqa.grid.internal.utils.HtmlRenderer;
 import org.openqa.grid.selenium.proxy.DefaultRemoteProxy;
 import org.openqa.grid.web.servlet.console.DefaultProxyHtmlRenderer;
@@ -55,10 +63,16 @@ import de.zalando.ep.zalenium.container.swarm.SwarmUtilities;
 import de.zalando.ep.zalenium.dashboard.DashboardCollection;
 import de.zalando.ep.zalenium.dashboard.TestInformation;
 import de.zalando.ep.zalenium.matcher.DockerSeleniumCapabilityMatcher;
+import de.zalando.ep.zalenium.matcher.NormalizedCapabilities;
 import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityType;
+import de.zalando.ep.zalenium.servlet.renderer.ProxyHtmlCache;
 import de.zalando.ep.zalenium.util.CommonProxyUtilities;
 import de.zalando.ep.zalenium.util.Environment;
 import de.zalando.ep.zalenium.util.GoogleAnalyticsApi;
+import de.zalando.ep.zalenium.util.MonitoredThreadPoolExecutor;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
 
 /*
     The implementation of this class was inspired on https://gist.github.com/krmahadevan/4649607
@@ -83,6 +97,26 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
     private static final boolean DEFAULT_KEEP_ONLY_FAILED_TESTS = false;
     private static final Environment defaultEnvironment = new Environment();
     private static final ExecutorService EXECUTOR_SERVICE = Executors.newFixedThreadPool(5);
+    private static final String VIDEOS_FOLDER = "/videos/";
+    private static final String LOGS_FOLDER = "/var/log/cont/";
+    private static final String ARTIFACTS_STAGING_FOLDER = "/tmp/zalenium-artifacts";
+    /*
+        Artifacts of reused nodes are copied in these threads. When all of them are busy and the queue is full, the
+        node copies its artifacts itself before being released, like when it is not reused.
+     */
+    private static final ExecutorService ARTIFACT_TRANSFER_EXECUTOR = new MonitoredThreadPoolExecutor(
+            "artifact-transfer", ZaleniumConfiguration.getArtifactTransferThreads(),
+            ZaleniumConfiguration.getArtifactTransferQueueSize(), new ThreadPoolExecutor.CallerRunsPolicy());
+    private static final Counter artifactTransferBytes = Counter.build()
+            .name("zalenium_artifact_transfer_bytes_total")
+            .help("The number of bytes of videos and logs copied from the nodes, by artifact type.")
+            .labelNames("type")
+            .register();
+    private static final Histogram artifactTransferDuration = Histogram.build()
+            .name("zalenium_artifact_transfer_seconds")
+            .help("The time taken to copy the videos and logs of a session from a node, by artifact type.")
+            .labelNames("type")
+            .register();
     private static int maxTestSessions;
     private static boolean keepOnlyFailedTests;
     private static boolean videoRecordingEnabledGlobal;
@@ -101,16 +135,24 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
     private String testName;
     private TestInformation testInformation;
     private GoogleAnalyticsApi ga = new GoogleAnalyticsApi();
-    private CapabilityMatcher capabilityHelper;
+    private DockerSeleniumCapabilityMatcher capabilityHelper;
+    // The slot capabilities do not change after registering, so they are normalized once for the matcher
+    private final Map<TestSlot, NormalizedCapabilities> normalizedSlotCapabilities = new HashMap<>();
     private long lastCommandTime = 0;
     private long cleanupStartedTime = 0;
     private AtomicBoolean timedOut = new AtomicBoolean(false);
     private long timeRegistered = System.currentTimeMillis();
     private boolean stopRecordingByCookie = false;
+    private final Set<Future<?>> pendingArtifactTransfers = ConcurrentHashMap.newKeySet();
 
     public DockerSeleniumRemoteProxy(RegistrationRequest request, GridRegistry registry) {
         super(request, registry);
         try {
+            for (TestSlot testSlot : getTestSlots()) {
+                NormalizedCapabilities normalized = NormalizedCapabilities.of(testSlot.getCapabilities());
+                normalizedSlotCapabilities.put(testSlot, normalized);
+                DockerSeleniumCapabilityMatcher.nodeRegistered(normalized);
+            }
             this.amountOfExecutedTests = 0;
             readEnvVars();
             containerClient.setNodeId(getId());
@@ -168,6 +210,15 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         return lastCommandTime;
     }
 
+    // When the node was registered or got its last command, whatever happened last
+    long getLastUsedTime() {
+        return Math.max(timeRegistered, lastCommandTime);
+    }
+
+    static int getMaxTestSessions() {
+        return maxTestSessions;
+    }
+
     @Override
     public void startPolling() {
         // All the health status of containers/pods is controlled by the AutoStartProxySet class.
@@ -207,11 +258,17 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         return this.renderer;
     }
 
+    @Override
+    public TestSession getNewSession(Map<String, Object> requestedCapability) {
+        return getNewSession(requestedCapability, NormalizedCapabilities.of(requestedCapability));
+    }
+
     /*
-        Incrementing the number of tests that will be executed when the session is assigned.
+        Incrementing the number of tests that will be executed when the session is assigned. The requested
+        capabilities come normalized from the registry, where they were read once when the request was queued.
      */
-    @Override
-    public synchronized TestSession getNewSession(Map<String, Object> requestedCapability) {
+    public synchronized TestSession getNewSession(Map<String, Object> requestedCapability,
+                                                  NormalizedCapabilities normalizedRequest) {
 
         String currentName = configureThreadName();
         LOGGER.debug("Getting new session request {}", requestedCapability);
@@ -225,7 +282,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         /*
             Validate first if the capability is matched
          */
-        if (!hasCapability(requestedCapability)) {
+        if (!hasCapability(requestedCapability, normalizedRequest)) {
             return null;
         }
 
@@ -248,6 +305,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
 
     private TestSession createNewSession(Map<String, Object> requestedCapability) {
         String currentName = configureThreadName();
+        DockerSeleniumCapabilityMatcher.prefixZaleniumCustomCapabilities(requestedCapability);
         TestSession newSession = super.getNewSession(requestedCapability);
         if (newSession == null) {
             // The node has been marked down.
@@ -261,6 +319,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         maxTestIdleTimeSecs = getConfiguredIdleTimeout(requestedCapability);
 
         lastCommandTime = System.currentTimeMillis();
+        watchIdleTest(getMaxTestIdleTimeSecs() * 1000L);
 
         setThreadName(currentName);
         ensureTestInformation(newSession);
@@ -268,13 +327,32 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
     }
 
     @Override
-    public CapabilityMatcher getCapabilityHelper() {
+    public DockerSeleniumCapabilityMatcher getCapabilityHelper() {
         if (capabilityHelper == null) {
             capabilityHelper = new DockerSeleniumCapabilityMatcher();
         }
         return capabilityHelper;
     }
 
+    /*
+        The slots were normalized when the node registered, only the request is read here.
+     */
+    @Override
+    public boolean hasCapability(Map<String, Object> requestedCapability) {
+        return hasCapability(requestedCapability, NormalizedCapabilities.of(requestedCapability));
+    }
+
+    private boolean hasCapability(Map<String, Object> requestedCapability, NormalizedCapabilities normalizedRequest) {
+        for (TestSlot testSlot : getTestSlots()) {
+            NormalizedCapabilities normalizedSlot = normalizedSlotCapabilities.get(testSlot);
+            if (normalizedSlot != null && getCapabilityHelper().matches(testSlot.getCapabilities(), normalizedSlot,
+                    requestedCapability, normalizedRequest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private long getConfiguredIdleTimeout(Map<String, Object> requestedCapability) {
         long configuredIdleTimeout;
         try {
@@ -346,6 +424,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                         if (!newTestName.isEmpty()) {
                             testName = newTestName;
                             testInformation.setTestName(testName);
+                            ProxyHtmlCache.invalidate(getId());
                         }
                     }
                     else if(CommonProxyUtilities.metadataCookieName.equalsIgnoreCase(cookieName)) {
@@ -381,6 +460,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
             }
         }
         this.lastCommandTime = System.currentTimeMillis();
+        watchIdleTest(getMaxTestIdleTimeSecs() * 1000L);
         setThreadName(currentName);
     }
 
@@ -409,9 +489,13 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
             setVideoRecordingEnabledSession(videoRecording);
         }
         String testFileNameTemplate = getCapability(requestedCapability, ZaleniumCapabilityType.TEST_FILE_NAME_TEMPLATE, "");
-        String screenResolution = getCapability(session.getSlot().getCapabilities(), ZaleniumCapabilityType.SCREEN_RESOLUTION, "N/A");
-        String browserVersion = getCapability(session.getSlot().getCapabilities(), CapabilityType.VERSION, "");
-        String timeZone = getCapability(session.getSlot().getCapabilities(), ZaleniumCapabilityType.TIME_ZONE, "N/A");
+        // The node capabilities are not prefixed, the matcher reads them with and without prefix
+        Map<String, Object> nodeCapability = session.getSlot().getCapabilities();
+        String screenResolution = getCapability(nodeCapability, ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX,
+                getCapability(nodeCapability, ZaleniumCapabilityType.SCREEN_RESOLUTION, "N/A"));
+        String browserVersion = getCapability(nodeCapability, CapabilityType.VERSION, "");
+        String timeZone = getCapability(nodeCapability, ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX,
+                getCapability(nodeCapability, ZaleniumCapabilityType.TIME_ZONE, "N/A"));
         testInformation = new TestInformation.TestInformationBuilder()
                 .withTestName(testName)
                 .withSeleniumSessionId(seleniumSessionId)
@@ -426,6 +510,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                 .withTestStatus(TestInformation.TestStatus.COMPLETED)
                 .build();
         testInformation.setVideoRecorded(isVideoRecordingEnabled());
+        ProxyHtmlCache.invalidate(getId());
 
         super.beforeSession(session);
     }
@@ -433,6 +518,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
     @Override
     public void afterSession(TestSession session) {
         String currentName = configureThreadName();
+        IdleSessionReaper.getInstance().cancel(this);
         try {
             // This means that the shutdown command was triggered before receiving this afterSession command
             if (!TestInformation.TestStatus.TIMEOUT.equals(testInformation.getTestStatus())) {
@@ -526,6 +612,27 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         return false;
     }
 
+    /*
+        The test is watched by the shared IdleSessionReaper, its deadline moves after every command. So an idle test
+        is stopped when it reaches the idle timeout, without waiting for the next check of the containers.
+     */
+    private void watchIdleTest(long delayMillis) {
+        IdleSessionReaper.getInstance().watch(this, delayMillis, this::shutdownIfIdleTest);
+    }
+
+    private void shutdownIfIdleTest() {
+        if (!isBusy() || isTimedOut()) {
+            return;
+        }
+        long idleTimeMillis = System.currentTimeMillis() - getLastUsedTime();
+        long maxTestIdleTimeMillis = getMaxTestIdleTimeSecs() * 1000L;
+        if (idleTimeMillis <= maxTestIdleTimeMillis) {
+            watchIdleTest(maxTestIdleTimeMillis - idleTimeMillis + 1);
+            return;
+        }
+        shutdownIfStale();
+    }
+
     /*
         Method to check for test inactivity, each node only has one slot
      */
@@ -668,13 +775,19 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
 
     @VisibleForTesting
     void copyVideos(final String containerId) {
+        copyVideos(containerId, VIDEOS_FOLDER, testInformation, testName);
+    }
+
+    private void copyVideos(final String containerId, final String folderName, final TestInformation testInformation,
+                            final String testName) {
         if (testInformation == null || StringUtils.isEmpty(containerId)) {
             // No tests run or container has been removed, nothing to copy and nothing to update.
             return;
         }
         String currentName = configureThreadName();
         boolean videoWasCopied = false;
-        InputStreamGroupIterator tarStream = containerClient.copyFiles(containerId, "/videos/");
+        Histogram.Timer transferTimer = artifactTransferDuration.labels("video").startTimer();
+        InputStreamGroupIterator tarStream = containerClient.copyFiles(containerId, folderName);
         try {
             InputStreamDescriptor entry;
             while ((entry = tarStream.next()) != null) {
@@ -693,7 +806,8 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                     videoFile = Paths.get(String.format("%s/%s", testInformation.getVideoFolderPath(),
                             testInformation.getFileName()));
                 }
-                Files.copy(entry.get(), videoFile, StandardCopyOption.REPLACE_EXISTING);
+                long copiedBytes = InputStreamDescriptors.copyTo(entry, videoFile, isStaged(folderName));
+                artifactTransferBytes.labels("video").inc(copiedBytes);
                 CommonProxyUtilities.setFilePermissions(videoFile);
                 videoWasCopied = true;
                 testInformation.setFileCount(testInformation.getFileCount() + 1);
@@ -709,6 +823,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
             }
             ga.trackException(e);
         } finally {
+            transferTimer.observeDuration();
             if (!videoWasCopied) {
                 testInformation.setVideoRecorded(false);
             }
@@ -716,8 +831,20 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
         setThreadName(currentName);
     }
 
+    /*
+        Staged artifacts are removed once copied, so they can be moved instead of copied when the node shares a
+        volume with Zalenium.
+     */
+    private static boolean isStaged(String folderName) {
+        return folderName.startsWith(ARTIFACTS_STAGING_FOLDER);
+    }
+
     @VisibleForTesting
     void copyLogs(final String containerId) {
+        copyLogs(containerId, LOGS_FOLDER, testInformation);
+    }
+
+    private void copyLogs(final String containerId, final String folderName, final TestInformation testInformation) {
         if (SwarmUtilities.isSwarmActive()) {
             // Disabling logs in swarm mode
             return;
@@ -728,7 +855,10 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
             return;
         }
         String currentName = configureThreadName();
-        InputStreamGroupIterator tarStream = containerClient.copyFiles(containerId, "/var/log/cont/");
+        // Entries are named after the copied folder, e.g. "cont/selenium.log"
+        String folderPrefix = Paths.get(folderName).getFileName() + "/";
+        Histogram.Timer transferTimer = artifactTransferDuration.labels("logs").startTimer();
+        InputStreamGroupIterator tarStream = containerClient.copyFiles(containerId, folderName);
         try {
             InputStreamDescriptor entry;
             while ((entry = tarStream.next()) != null) {
@@ -737,9 +867,10 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                     CommonProxyUtilities.setFilePermissions(directories);
                     CommonProxyUtilities.setFilePermissions(directories.getParent());
                 }
-                String fileName = entry.name().replace("cont/", "");
+                String fileName = entry.name().replace(folderPrefix, "");
                 Path logFile = Paths.get(String.format("%s/%s", testInformation.getLogsFolderPath(), fileName));
-                Files.copy(entry.get(), logFile);
+                artifactTransferBytes.labels("logs").inc(
+                        InputStreamDescriptors.copyTo(entry, logFile, isStaged(folderName)));
                 CommonProxyUtilities.setFilePermissions(logFile);
             }
             LOGGER.debug("Logs copied to: {}", testInformation.getLogsFolderPath());
@@ -753,6 +884,8 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                 LOGGER.debug("Error while copying the logs", e);
             }
             ga.trackException(e);
+        } finally {
+            transferTimer.observeDuration();
         }
         setThreadName(currentName);
     }
@@ -807,18 +940,81 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                     processContainerAction(DockerSeleniumContainerAction.SEND_NOTIFICATION,
                         testInformation.getTestStatus().getTestNotificationMessage(), getContainerId());
                 }
-                videoRecording(DockerSeleniumContainerAction.STOP_RECORDING);
-                processContainerAction(DockerSeleniumContainerAction.TRANSFER_LOGS, getContainerId());
-                processContainerAction(DockerSeleniumContainerAction.CLEANUP_CONTAINER,
-                    getContainerId());
-
-                if (testInformation != null && keepVideoAndLogs()) {
-                    DashboardCollection.updateDashboard(testInformation);
+                if (!willShutdown && testInformation != null && keepVideoAndLogs()) {
+                    stopRecordingAndTransferArtifacts();
+                    processContainerAction(DockerSeleniumContainerAction.CLEANUP_CONTAINER, getContainerId());
+                } else {
+                    videoRecording(DockerSeleniumContainerAction.STOP_RECORDING);
+                    processContainerAction(DockerSeleniumContainerAction.TRANSFER_LOGS, getContainerId());
+                    processContainerAction(DockerSeleniumContainerAction.CLEANUP_CONTAINER,
+                        getContainerId());
+
+                    if (testInformation != null && keepVideoAndLogs()) {
+                        DashboardCollection.updateDashboard(testInformation);
+                    }
                 }
             } finally {
                 this.unsetCleaningMarker();
+                ProxyHtmlCache.invalidate(getId());
+            }
+        }
+    }
+
+    /*
+        The node is going to be reused, so the video and the logs are moved aside inside the container once the
+        recording is finalized, and copied in the background. The node is released for the next session without
+        waiting for the copy, the cleanup and the next recording do not touch the staged files.
+     */
+    private void stopRecordingAndTransferArtifacts() {
+        final String containerId = getContainerId();
+        final TestInformation sessionInformation = testInformation;
+        final String sessionTestName = testName;
+        final boolean copyVideo = isVideoRecordingEnabled();
+        if (copyVideo) {
+            String[] stopRecording = {"bash", "-c", DockerSeleniumContainerAction.STOP_RECORDING.getContainerAction()};
+            containerClient.executeCommand(containerId, stopRecording, true);
+        }
+
+        // Paths are relative to SHARED_DIR when the artifacts are in a shared volume, like in copyFiles
+        final String stagingFolder = String.format("%s/%s", ARTIFACTS_STAGING_FOLDER, UUID.randomUUID());
+        String[] stageArtifacts = {"bash", "-c", String.format("mkdir -p ${SHARED_DIR}%1$s/videos ${SHARED_DIR}%1$s/logs"
+                + " && (mv ${SHARED_DIR}%2$s* ${SHARED_DIR}%1$s/videos/; cp -r ${SHARED_DIR}%3$s. ${SHARED_DIR}%1$s/logs/)",
+                stagingFolder, VIDEOS_FOLDER, LOGS_FOLDER)};
+        containerClient.executeCommand(containerId, stageArtifacts, true);
+
+        Future<?> transfer = ARTIFACT_TRANSFER_EXECUTOR.submit(() -> {
+            try {
+                if (copyVideo) {
+                    copyVideos(containerId, stagingFolder + VIDEOS_FOLDER, sessionInformation, sessionTestName);
+                }
+                copyLogs(containerId, stagingFolder + "/logs/", sessionInformation);
+                String[] removeStagedArtifacts = {"bash", "-c", String.format("rm -rf ${SHARED_DIR}%s", stagingFolder)};
+                containerClient.executeCommand(containerId, removeStagedArtifacts, false);
+                DashboardCollection.updateDashboard(sessionInformation);
+            } catch (Exception e) {
+                LOGGER.warn("Error while transferring the artifacts of " + sessionInformation.getTestName(), e);
+                ga.trackException(e);
+            }
+        });
+        pendingArtifactTransfers.add(transfer);
+        pendingArtifactTransfers.removeIf(Future::isDone);
+    }
+
+    /*
+        The container is about to be stopped, the artifacts staged in it need to be copied first.
+     */
+    private void waitForArtifactTransfers() {
+        for (Future<?> transfer : pendingArtifactTransfers) {
+            try {
+                transfer.get(getProxyCleanUpTimeout(), TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                LOGGER.warn("Artifacts transfer did not finish before stopping the container.", e);
             }
         }
+        pendingArtifactTransfers.clear();
     }
 
     private boolean keepVideoAndLogs() {
@@ -846,6 +1042,7 @@ public class DockerSeleniumRemoteProxy extends DefaultRemoteProxy {
                     getMaxTestIdleTimeSecs());
         }
 
+        waitForArtifactTransfers();
         containerClient.stopContainer(getContainerId());
 
         addNewEvent(new RemoteUnregisterException(shutdownReason));
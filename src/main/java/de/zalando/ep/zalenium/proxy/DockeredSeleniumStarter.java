@@ -1,5 +1,6 @@
 package de.zalando.ep.zalenium.proxy;
 
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -28,8 +29,11 @@ import com.google.common.annotations.VisibleForTesting;
 import de.zalando.ep.zalenium.container.ContainerClient;
 import de.zalando.ep.zalenium.container.ContainerCreationStatus;
 import de.zalando.ep.zalenium.container.ContainerFactory;
+import de.zalando.ep.zalenium.container.ContainerStateCache;
+import de.zalando.ep.zalenium.container.ContainerStateCache.Check;
 import de.zalando.ep.zalenium.matcher.ZaleniumCapabilityType;
 import de.zalando.ep.zalenium.util.Environment;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -87,6 +91,11 @@ public class DockeredSeleniumStarter {
     private static Map<String, String> zaleniumProxyVars = new HashMap<>();
     private static String hubIpAddress = null;
     private static String seleniumNodeHost = DEFAULT_SELENIUM_NODE_HOST;
+    private final ContainerStateCache containerStates = new ContainerStateCache(Clock.systemDefaultZone(),
+            ZaleniumConfiguration.getContainerReconciliationInterval() * 1000L);
+    // Node ports of the containers being created, until they are recorded by the proxy set. Kubernetes pods share
+    // the same port, so each port is counted. Guarded by itself.
+    private final Map<String, Integer> nodePortsInCreation = new HashMap<>();
 
     static {
         readConfigurationFromEnvVariables();
@@ -308,7 +317,48 @@ public class DockeredSeleniumStarter {
         Map<String, String> envVars = buildEnvVars(effectiveTimeZone, effectiveScreenSize, hostIpAddress, sendAnonymousUsageInfo,
                 nodePolling, nodeRegisterCycle, seleniumNodeParams, seleniumNodeHost, containerPort);
 
-        return containerClient.createContainer(getContainerName(), latestImage, envVars, String.valueOf(containerPort));
+        String nodePort = String.valueOf(containerPort);
+        boolean created = false;
+        nodeCreationStarted(nodePort);
+        try {
+            ContainerCreationStatus containerCreationStatus = containerClient.createContainer(getContainerName(),
+                    latestImage, envVars, nodePort);
+            created = containerCreationStatus != null && containerCreationStatus.isCreated();
+            return containerCreationStatus;
+        } finally {
+            if (!created) {
+                nodeCreationEnded(nodePort);
+            }
+        }
+    }
+
+    /**
+     * @return true when a container whose node listens on the given port is being created and was not recorded yet,
+     * so a node registering on that port could belong to it.
+     */
+    public boolean isCreatingNode(int nodePort) {
+        synchronized (nodePortsInCreation) {
+            return nodePortsInCreation.containsKey(String.valueOf(nodePort));
+        }
+    }
+
+    /**
+     * Called once the created container is tracked, its node is not considered in creation anymore.
+     */
+    public void containerRecorded(ContainerCreationStatus creationStatus) {
+        nodeCreationEnded(creationStatus.getNodePort());
+    }
+
+    private void nodeCreationStarted(String nodePort) {
+        synchronized (nodePortsInCreation) {
+            nodePortsInCreation.merge(nodePort, 1, Integer::sum);
+        }
+    }
+
+    private void nodeCreationEnded(String nodePort) {
+        synchronized (nodePortsInCreation) {
+            nodePortsInCreation.computeIfPresent(nodePort, (port, count) -> count > 1 ? count - 1 : null);
+        }
     }
 
     private Map<String, String> buildEnvVars(TimeZone timeZone, Dimension screenSize, String hostIpAddress,
@@ -357,12 +407,33 @@ public class DockeredSeleniumStarter {
         return envVars;
     }
 
+    /**
+     * Starts receiving the state changes of the containers from the container client, if it supports it. The
+     * listener is called after each change, so the containers can be checked right away.
+     */
+    public void watchContainers(Runnable onStateChange) {
+        containerStates.addListener(onStateChange);
+        containerClient.watchContainers(containerStates);
+    }
+
     public boolean containerHasStarted(ContainerCreationStatus creationStatus) {
-        return containerClient.isReady(creationStatus);
+        if (containerStates.isReady(creationStatus)) {
+            return true;
+        }
+        return containerStates.needsPolling(creationStatus, Check.READY) && containerClient.isReady(creationStatus);
     }
 
     public boolean containerHasFinished(ContainerCreationStatus creationStatus) {
-        return containerClient.isTerminated(creationStatus);
+        return containerStates.isTerminated(creationStatus)
+                || (containerStates.needsPolling(creationStatus, Check.TERMINATED)
+                        && containerClient.isTerminated(creationStatus));
+    }
+
+    /**
+     * Drops the state of a container that is not tracked anymore, however it left.
+     */
+    public void forgetContainer(ContainerCreationStatus creationStatus) {
+        containerStates.forget(creationStatus);
     }
 
     public void stopContainer(String containerId) {
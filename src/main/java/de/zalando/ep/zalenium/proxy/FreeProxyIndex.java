@@ -0,0 +1,127 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.grid.internal.TestSlot;
+import org.openqa.selenium.remote.CapabilityType;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Keeps track of the docker-selenium proxies that can take a new session, bucketed by the capabilities that
+ * need to match exactly: browser name, screen resolution and time zone.
+ *
+ * The index only narrows down the proxies that are worth asking for a session, the final decision is still taken by
+ * the proxy and its capability matcher (which also validates version and platform). Proxies leave their buckets
+ * when a session is assigned to them or when they cannot take more sessions, and come back when the session
+ * is released.
+ */
+@SuppressWarnings("WeakerAccess")
+@ThreadSafe
+public class FreeProxyIndex {
+
+    private static final List<String> ANY_BROWSER = Arrays.asList("any", "", "*");
+
+    private final Map<CapabilityKey, Set<DockerSeleniumRemoteProxy>> freeProxies = new ConcurrentHashMap<>();
+    private final Map<DockerSeleniumRemoteProxy, Set<CapabilityKey>> proxyKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a registered proxy to the index, it is considered free until a session is assigned to it.
+     */
+    public void add(DockerSeleniumRemoteProxy proxy) {
+        Set<CapabilityKey> keys = new HashSet<>();
+        for (TestSlot testSlot : proxy.getTestSlots()) {
+            keys.add(CapabilityKey.fromNode(testSlot.getCapabilities()));
+        }
+        proxyKeys.put(proxy, keys);
+        markFree(proxy);
+    }
+
+    public void remove(DockerSeleniumRemoteProxy proxy) {
+        Set<CapabilityKey> keys = proxyKeys.remove(proxy);
+        if (keys != null) {
+            keys.forEach(key -> bucket(key).remove(proxy));
+        }
+    }
+
+    public void markBusy(DockerSeleniumRemoteProxy proxy) {
+        proxyKeys.getOrDefault(proxy, Collections.emptySet()).forEach(key -> bucket(key).remove(proxy));
+    }
+
+    public void markFree(DockerSeleniumRemoteProxy proxy) {
+        proxyKeys.getOrDefault(proxy, Collections.emptySet()).forEach(key -> bucket(key).add(proxy));
+    }
+
+    public boolean contains(DockerSeleniumRemoteProxy proxy) {
+        return proxyKeys.containsKey(proxy);
+    }
+
+    /**
+     * Returns the free proxies whose bucket matches the requested capabilities, or an empty optional when the
+     * request cannot be bucketed (e.g. no browser or a wildcard browser was requested) and all proxies need to
+     * be considered.
+     */
+    public Optional<Collection<DockerSeleniumRemoteProxy>> getCandidates(Map<String, Object> requestedCapability) {
+        Object browserName = requestedCapability.get(CapabilityType.BROWSER_NAME);
+        if (browserName == null || ANY_BROWSER.contains(browserName.toString().toLowerCase())) {
+            return Optional.empty();
+        }
+        CapabilityKey key = CapabilityKey.fromRequest(requestedCapability);
+        return Optional.of(Collections.unmodifiableCollection(bucket(key)));
+    }
+
+    private Set<DockerSeleniumRemoteProxy> bucket(CapabilityKey key) {
+        return freeProxies.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    private static final class CapabilityKey {
+        private final String browserName;
+        private final ContainerShape shape;
+
+        private CapabilityKey(String browserName, ContainerShape shape) {
+            this.browserName = browserName;
+            this.shape = shape;
+        }
+
+        static CapabilityKey fromNode(Map<String, Object> nodeCapability) {
+            return new CapabilityKey(String.valueOf(nodeCapability.get(CapabilityType.BROWSER_NAME)).toLowerCase(),
+                    ContainerShape.fromNode(nodeCapability));
+        }
+
+        static CapabilityKey fromRequest(Map<String, Object> requestedCapability) {
+            return new CapabilityKey(requestedCapability.get(CapabilityType.BROWSER_NAME).toString().toLowerCase(),
+                    ContainerShape.fromRequest(requestedCapability));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CapabilityKey that = (CapabilityKey) o;
+            return browserName.equals(that.browserName) && shape.equals(that.shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(browserName, shape);
+        }
+
+        @Override
+        public String toString() {
+            return "CapabilityKey [browserName=" + browserName + ", shape=" + shape + "]";
+        }
+    }
+}
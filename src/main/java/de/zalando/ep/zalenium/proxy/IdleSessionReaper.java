@@ -0,0 +1,183 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/**
+ * Finds the idle sessions of every proxy with one shared thread, instead of one thread per proxy checking all of its
+ * slots every few hundred milliseconds.
+ *
+ * Each watched session has a deadline, the moment it becomes idle if nothing else happens. The thread sleeps until
+ * the earliest deadline and only wakes up for the sessions that reached it. Moving a deadline later, which is what
+ * every command does, only updates the session: its old deadline is checked when it is reached and queued again at
+ * the new one. So a command costs no queue operation, and waking up costs only the sessions whose deadline passed.
+ */
+final class IdleSessionReaper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdleSessionReaper.class.getName());
+    private static final Gauge idleSessionWatches = Gauge.build()
+            .name("zalenium_idle_session_watches")
+            .help("The number of sessions watched for inactivity.")
+            .register();
+    private static final Counter idleSessionsExpired = Counter.build()
+            .name("zalenium_idle_session_deadlines_expired_total")
+            .help("The number of sessions that reached their inactivity deadline.")
+            .register();
+
+    private static volatile IdleSessionReaper instance;
+
+    private final Clock clock;
+    // Guarded by this
+    private final Map<Object, Watch> watches = new HashMap<>();
+    // Guarded by this, can hold deadlines of cancelled or moved watches, they are skipped when reached
+    private final PriorityQueue<Deadline> deadlines =
+            new PriorityQueue<>(Comparator.comparingLong((Deadline deadline) -> deadline.time));
+
+    @VisibleForTesting
+    IdleSessionReaper(Clock clock) {
+        this.clock = clock;
+    }
+
+    static IdleSessionReaper getInstance() {
+        IdleSessionReaper reaper = instance;
+        if (reaper == null) {
+            synchronized (IdleSessionReaper.class) {
+                reaper = instance;
+                if (reaper == null) {
+                    reaper = new IdleSessionReaper(Clock.systemUTC());
+                    Thread thread = new Thread(reaper::run, "IdleSessionReaper");
+                    thread.setDaemon(true);
+                    thread.start();
+                    instance = reaper;
+                }
+            }
+        }
+        return reaper;
+    }
+
+    /**
+     * Runs onIdle after delayMillis, unless the key is watched again or cancelled before. The callback runs in the
+     * reaper thread, it should check that the session is still idle and hand over anything slow.
+     */
+    synchronized void watch(Object key, long delayMillis, Runnable onIdle) {
+        long deadline = clock.millis() + Math.max(0, delayMillis);
+        Watch watch = watches.get(key);
+        if (watch == null) {
+            watch = new Watch(key);
+            watches.put(key, watch);
+            idleSessionWatches.inc();
+        }
+        watch.onIdle = onIdle;
+        watch.deadline = deadline;
+        if (watch.queuedDeadline == 0 || deadline < watch.queuedDeadline) {
+            watch.queuedDeadline = deadline;
+            deadlines.add(new Deadline(watch, deadline));
+            notifyAll();
+        }
+    }
+
+    synchronized void cancel(Object key) {
+        if (watches.remove(key) != null) {
+            idleSessionWatches.dec();
+        }
+    }
+
+    /**
+     * Runs the callbacks of the watches whose deadline passed.
+     */
+    @VisibleForTesting
+    void expireDueWatches() {
+        List<Watch> expired = new ArrayList<>();
+        synchronized (this) {
+            long now = clock.millis();
+            Deadline next;
+            while ((next = deadlines.peek()) != null && next.time <= now) {
+                deadlines.poll();
+                Watch watch = next.watch;
+                if (watches.get(watch.key) != watch || watch.queuedDeadline != next.time) {
+                    continue;
+                }
+                if (watch.deadline > now) {
+                    watch.queuedDeadline = watch.deadline;
+                    deadlines.add(new Deadline(watch, watch.deadline));
+                    continue;
+                }
+                watches.remove(watch.key);
+                idleSessionWatches.dec();
+                expired.add(watch);
+            }
+        }
+        for (Watch watch : expired) {
+            idleSessionsExpired.inc();
+            try {
+                watch.onIdle.run();
+            } catch (Exception e) {
+                LOGGER.warn("Error while terminating the idle session of {}", watch.key, e);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int getWatchedSessions() {
+        return watches.size();
+    }
+
+    private void run() {
+        LOGGER.info("Watching sessions for inactivity.");
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                expireDueWatches();
+                synchronized (this) {
+                    Deadline next = deadlines.peek();
+                    if (next == null) {
+                        wait();
+                    } else {
+                        long waitMillis = next.time - clock.millis();
+                        if (waitMillis > 0) {
+                            wait(waitMillis);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.debug("Stopped watching sessions for inactivity.", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Watch {
+        private final Object key;
+        private Runnable onIdle;
+        // When the session becomes idle
+        private long deadline;
+        // The earliest deadline of this watch in the queue, 0 when none
+        private long queuedDeadline;
+
+        private Watch(Object key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Deadline {
+        private final Watch watch;
+        private final long time;
+
+        private Deadline(Watch watch, long time) {
+            this.watch = watch;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package de.zalando.ep.zalenium.proxy;
+
+/**
+ * Decides which of the free docker-selenium nodes gets a new session. The nodes are asked for the session from the
+ * lowest cost to the highest, nodes with an infinite cost are not asked at all.
+ */
+@FunctionalInterface
+public interface NodeSelectionPolicy {
+
+    double UNAVAILABLE = Double.POSITIVE_INFINITY;
+
+    /**
+     * Asks the nodes in the order they are found, like the grid does.
+     */
+    NodeSelectionPolicy FIRST_FREE = node -> 0;
+
+    /**
+     * Asks first the nodes that will keep the grid warm, see {@link CostBasedNodeSelectionPolicy}.
+     */
+    NodeSelectionPolicy COST_BASED = new CostBasedNodeSelectionPolicy();
+
+    /**
+     * @return the cost of giving the next session to the node, {@link #UNAVAILABLE} when it cannot take it.
+     */
+    double cost(NodeState node);
+}
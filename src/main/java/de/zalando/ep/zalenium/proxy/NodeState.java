@@ -0,0 +1,78 @@
+package de.zalando.ep.zalenium.proxy;
+
+/**
+ * What the node selection policies know about a free docker-selenium node when a session is requested. Taken once
+ * per request without locking the proxy, it can be slightly outdated, the proxy still has the final word.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class NodeState {
+
+    private final int executedSessions;
+    private final int maxSessions;
+    private final long idleMillis;
+    private final long maxIdleMillis;
+    private final boolean cleaningUp;
+    private final boolean timedOut;
+
+    public NodeState(int executedSessions, int maxSessions, long idleMillis, long maxIdleMillis, boolean cleaningUp,
+                     boolean timedOut) {
+        this.executedSessions = executedSessions;
+        this.maxSessions = maxSessions;
+        this.idleMillis = idleMillis;
+        this.maxIdleMillis = maxIdleMillis;
+        this.cleaningUp = cleaningUp;
+        this.timedOut = timedOut;
+    }
+
+    static NodeState of(DockerSeleniumRemoteProxy proxy, long now) {
+        return new NodeState(proxy.getAmountOfExecutedTests(), DockerSeleniumRemoteProxy.getMaxTestSessions(),
+                Math.max(0, now - proxy.getLastUsedTime()), proxy.getMaxTestIdleTimeSecs() * 1000L,
+                proxy.isCleaningUpBeforeNextSession(), proxy.isTimedOut());
+    }
+
+    /**
+     * @return true when the node already ran a session, so its browser and caches are warm.
+     */
+    public boolean isWarm() {
+        return executedSessions > 0;
+    }
+
+    /**
+     * @return the sessions the node can run before it is recycled.
+     */
+    public int getSessionsLeft() {
+        return Math.max(0, maxSessions - executedSessions);
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public long getIdleMillis() {
+        return idleMillis;
+    }
+
+    /**
+     * @return how long the node can stay idle before it is shut down.
+     */
+    public long getMaxIdleMillis() {
+        return maxIdleMillis;
+    }
+
+    public boolean isCleaningUp() {
+        return cleaningUp;
+    }
+
+    /**
+     * @return true when the node cannot take a session at all.
+     */
+    public boolean isUnavailable() {
+        return timedOut || getSessionsLeft() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "NodeState [executedSessions=" + executedSessions + ", maxSessions=" + maxSessions + ", idleMillis="
+                + idleMillis + ", cleaningUp=" + cleaningUp + ", timedOut=" + timedOut + "]";
+    }
+}
@@ -0,0 +1,183 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Decides how many docker-selenium containers should be started ahead of time, so bursts of requests do not pay
+ * the whole container boot time for every node.
+ *
+ * The demand for each container shape (screen resolution and time zone) is the amount of requests waiting for it,
+ * plus the requests expected to arrive while a container boots. The expected requests are estimated with an
+ * exponentially smoothed arrival rate. Containers are started for the demand that is not covered by containers
+ * which are free, cleaning up or still starting.
+ *
+ * The amount of containers to keep running goes up as soon as the demand grows, but only goes down after the demand
+ * stayed below it for the configured delay, so containers are not stopped and started again when the demand
+ * oscillates.
+ */
+@SuppressWarnings("WeakerAccess")
+@ThreadSafe
+public class PreWarmingScaler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PreWarmingScaler.class.getName());
+    // Weight of the last interval in the smoothed arrival rate.
+    private static final double SMOOTHING_FACTOR = 0.3;
+    // Smoothed rates below this (one request every ~17 minutes) are forgotten.
+    private static final double MIN_TRACKED_RATE = 0.001;
+    private static final Gauge arrivalRate = Gauge.build()
+            .name("zalenium_prewarm_arrival_rate")
+            .help("Smoothed rate of new session requests per second, by container shape.")
+            .labelNames("shape")
+            .register();
+    private static final Gauge targetContainers = Gauge.build()
+            .name("zalenium_prewarm_target_containers")
+            .help("The number of containers the pre-warming scaler wants to keep running.")
+            .register();
+    private static final Counter containersRequested = Counter.build()
+            .name("zalenium_prewarm_containers_requested_total")
+            .help("The number of containers the pre-warming scaler decided to start, by container shape.")
+            .labelNames("shape")
+            .register();
+    private static final Counter scalingDecisions = Counter.build()
+            .name("zalenium_prewarm_scaling_decisions_total")
+            .help("The number of times the pre-warming scaler changed its target, by direction.")
+            .labelNames("direction")
+            .register();
+
+    private final Clock clock;
+    private final long lookaheadMillis;
+    private final long scaleDownDelayMillis;
+    private final Map<ContainerShape, LongAdder> arrivals = new ConcurrentHashMap<>();
+
+    // Only accessed while holding the lock of this instance.
+    private final Map<ContainerShape, Double> arrivalRates = new HashMap<>();
+    private long lastUpdateTime;
+    private long target = 0;
+    private long lastTimeTargetWasNeeded;
+
+    /**
+     * @param lookaheadMillis time window of expected requests to have containers for, roughly the container boot time.
+     * @param scaleDownDelayMillis time the demand needs to stay below the target before the target is lowered.
+     */
+    public PreWarmingScaler(Clock clock, long lookaheadMillis, long scaleDownDelayMillis) {
+        this.clock = clock;
+        this.lookaheadMillis = lookaheadMillis;
+        this.scaleDownDelayMillis = scaleDownDelayMillis;
+        this.lastUpdateTime = clock.millis();
+        this.lastTimeTargetWasNeeded = lastUpdateTime;
+    }
+
+    public void requestArrived(Map<String, Object> requestedCapability) {
+        arrivals.computeIfAbsent(ContainerShape.fromRequest(requestedCapability), shape -> new LongAdder()).increment();
+    }
+
+    /**
+     * Computes how many containers of each shape need to be started.
+     *
+     * @param waitingRequests capabilities of the requests waiting for a session.
+     * @param availableContainers containers of each shape that are free, cleaning up or still starting.
+     * @param busyContainers containers running a test.
+     * @param capacity how many containers can still be started.
+     * @return the amount of containers to start per shape, never more than the capacity in total.
+     */
+    public synchronized Map<ContainerShape, Integer> plan(Collection<Map<String, Object>> waitingRequests,
+                                                          Map<ContainerShape, Integer> availableContainers,
+                                                          int busyContainers, int capacity) {
+        long now = clock.millis();
+        updateArrivalRates(now);
+
+        Map<ContainerShape, Integer> demand = new HashMap<>();
+        waitingRequests.forEach(request -> demand.merge(ContainerShape.fromRequest(request), 1, Integer::sum));
+        double lookaheadSeconds = lookaheadMillis / 1000.0;
+        arrivalRates.forEach((shape, rate) -> {
+            int expected = (int) Math.round(rate * lookaheadSeconds);
+            if (expected > 0) {
+                demand.merge(shape, expected, Integer::sum);
+            }
+        });
+
+        updateTarget(now, busyContainers + demand.values().stream().mapToLong(Integer::longValue).sum());
+
+        Map<ContainerShape, Integer> toStart = new HashMap<>();
+        int remainingCapacity = capacity;
+        for (Map.Entry<ContainerShape, Integer> shapeDemand : demand.entrySet()) {
+            ContainerShape shape = shapeDemand.getKey();
+            int missing = shapeDemand.getValue() - availableContainers.getOrDefault(shape, 0);
+            int containers = Math.min(missing, remainingCapacity);
+            if (containers > 0) {
+                toStart.put(shape, containers);
+                containersRequested.labels(shape.toString()).inc(containers);
+                remainingCapacity -= containers;
+                LOGGER.debug("Demand for {} is {}, starting {} containers.", shape, shapeDemand.getValue(), containers);
+            }
+        }
+        return toStart;
+    }
+
+    /**
+     * @return the amount of containers (busy or not) that should be kept running for the current demand.
+     */
+    public synchronized long getTargetContainers() {
+        return target;
+    }
+
+    private void updateArrivalRates(long now) {
+        long elapsed = now - lastUpdateTime;
+        if (elapsed <= 0) {
+            return;
+        }
+        lastUpdateTime = now;
+        double elapsedSeconds = elapsed / 1000.0;
+
+        Set<ContainerShape> shapes = new HashSet<>(arrivalRates.keySet());
+        shapes.addAll(arrivals.keySet());
+        for (ContainerShape shape : shapes) {
+            LongAdder counter = arrivals.get(shape);
+            double observedRate = counter == null ? 0 : counter.sumThenReset() / elapsedSeconds;
+            // A shape seen for the first time starts from zero, so a single request does not look like a burst
+            double previousRate = arrivalRates.getOrDefault(shape, 0.0);
+            double rate = SMOOTHING_FACTOR * observedRate + (1 - SMOOTHING_FACTOR) * previousRate;
+            if (rate < MIN_TRACKED_RATE) {
+                arrivalRates.remove(shape);
+                if (counter != null) {
+                    arrivals.remove(shape, counter);
+                }
+                arrivalRate.remove(shape.toString());
+            } else {
+                arrivalRates.put(shape, rate);
+                arrivalRate.labels(shape.toString()).set(rate);
+            }
+        }
+    }
+
+    private void updateTarget(long now, long neededContainers) {
+        if (neededContainers >= target) {
+            if (neededContainers > target) {
+                LOGGER.debug("Raising pre-warming target from {} to {}.", target, neededContainers);
+                scalingDecisions.labels("up").inc();
+            }
+            target = neededContainers;
+            lastTimeTargetWasNeeded = now;
+        } else if (now - lastTimeTargetWasNeeded >= scaleDownDelayMillis) {
+            LOGGER.debug("Lowering pre-warming target from {} to {}.", target, neededContainers);
+            scalingDecisions.labels("down").inc();
+            target = neededContainers;
+            lastTimeTargetWasNeeded = now;
+        }
+        targetContainers.set(target);
+    }
+}
@@ -41,12 +41,26 @@ public class SessionRequestFilter {
         return false;
     }
     
+    /**
+     * Like {@link #hasRequestBeenProcessed(Map)} but without counting it as a new attempt.
+     */
+    public boolean isRequestBeingProcessed(Map<String, Object> requestedCapability) {
+        return processedCapabilitiesMap.containsKey(System.identityHashCode(requestedCapability));
+    }
+
     public void requestHasBeenProcessed(Map<String, Object> desiredCapabilities) {
         ProcessedCapabilities processedCapabilities = new ProcessedCapabilities(desiredCapabilities,
                 System.identityHashCode(desiredCapabilities));
         processedCapabilitiesMap.put(processedCapabilities.getIdentityHashCode(), processedCapabilities);
     }
     
+    /**
+     * Forgets a request recorded as processed, because the container started for it could not be created.
+     */
+    public void requestProcessingFailed(Map<String, Object> desiredCapabilities) {
+        processedCapabilitiesMap.remove(System.identityHashCode(desiredCapabilities));
+    }
+
     /**
      * Notify the Session Request Filter that a Test Session has started for the given desiredCapabilities.
      * 
@@ -94,6 +94,10 @@ public class TestingBotRemoteProxy extends CloudTestingRemoteProxy {
         String testingBotTestUrl = "https://api.testingbot.com/v1/tests/%s";
         testingBotTestUrl = String.format(testingBotTestUrl, seleniumSessionId);
         for (int i = 0; i < 5; i++) {
+            if (i > 0) {
+                // The previous response did not have the video yet
+                getCommonProxyUtilities().forgetJSONFromUrl(testingBotTestUrl, TESTINGBOT_KEY);
+            }
             JsonObject testData = getCommonProxyUtilities().readJSONFromUrl(testingBotTestUrl, TESTINGBOT_KEY,
                     TESTINGBOT_SECRET).getAsJsonObject();
             String testName = testData.get("name").isJsonNull() ? null : testData.get("name").getAsString();
@@ -0,0 +1,55 @@
+package de.zalando.ep.zalenium.registry;
+
+import de.zalando.ep.zalenium.container.ContainerClientRegistration;
+import de.zalando.ep.zalenium.proxy.DockerSeleniumRemoteProxy;
+import org.openqa.grid.internal.RemoteProxy;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The host and noVNC port of every registered docker-selenium node, so authorizing a VNC request is a single
+ * lookup. The registry adds the nodes when they are registered and removes them when they are removed.
+ */
+public class VncAuthorizationIndex {
+
+    private final ConcurrentMap<String, RemoteProxy> authorizedNodes = new ConcurrentHashMap<>();
+
+    public void proxyAdded(RemoteProxy proxy) {
+        String key = getKey(proxy);
+        if (key != null) {
+            authorizedNodes.put(key, proxy);
+        }
+    }
+
+    public void proxyRemoved(RemoteProxy proxy) {
+        String key = getKey(proxy);
+        if (key != null) {
+            // Only if the address was not taken over by a node registered since
+            authorizedNodes.remove(key, proxy);
+        }
+    }
+
+    public void clear() {
+        authorizedNodes.clear();
+    }
+
+    public boolean isAuthorized(String host, String noVncPort) {
+        return authorizedNodes.containsKey(getKey(host, noVncPort));
+    }
+
+    private static String getKey(RemoteProxy proxy) {
+        if (!(proxy instanceof DockerSeleniumRemoteProxy)) {
+            return null;
+        }
+        ContainerClientRegistration registration = ((DockerSeleniumRemoteProxy) proxy).getRegistration();
+        if (registration == null || registration.getIpAddress() == null || registration.getNoVncPort() == null) {
+            return null;
+        }
+        return getKey(registration.getIpAddress(), registration.getNoVncPort().toString());
+    }
+
+    private static String getKey(String host, String noVncPort) {
+        return host + ":" + noVncPort;
+    }
+}
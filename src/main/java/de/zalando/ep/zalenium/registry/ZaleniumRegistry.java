@@ -22,11 +22,17 @@ import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.http.HttpClient;
 import org.openqa.selenium.remote.server.log.LoggingManager;
 
+import de.zalando.ep.zalenium.matcher.NormalizedCapabilities;
 import de.zalando.ep.zalenium.proxy.AutoStartProxySet;
 import de.zalando.ep.zalenium.proxy.DockerSeleniumRemoteProxy;
 import de.zalando.ep.zalenium.proxy.DockeredSeleniumStarter;
+import de.zalando.ep.zalenium.proxy.PreWarmingScaler;
+import de.zalando.ep.zalenium.servlet.EventStreamServlet;
+import de.zalando.ep.zalenium.servlet.renderer.ProxyHtmlCache;
 import de.zalando.ep.zalenium.util.Environment;
+import de.zalando.ep.zalenium.util.MonitoredThreadPoolExecutor;
 import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
+import com.google.gson.JsonObject;
 import io.prometheus.client.Collector;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
@@ -34,15 +40,21 @@ import io.prometheus.client.Histogram;
 import java.net.URL;
 import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -67,15 +79,36 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
             .register();
     private static final Gauge seleniumTestSessionsWaiting = Gauge.build()
             .name("selenium_test_sessions_waiting").help("The number of Selenium test sessions that are waiting for a container").register();
-    // lock for anything modifying the tests session currently running on this
-    // registry.
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition testSessionAvailable = lock.newCondition();
+    /*
+        Signals the matcher that something changed in the registry (new request, released session, registered node).
+        Request intake, session release and node registration only publish the change and return, they never wait
+        for a matching pass to finish. The matcher drains all pending signals before starting a new pass.
+     */
+    private final Semaphore matcherStateChanged = new Semaphore(0);
+    // Slots released since the last matching pass, consumed by the matcher to update the free nodes index.
+    private final Queue<TestSlot> releasedSlots = new ConcurrentLinkedQueue<>();
+    /*
+        New session requests are published here and moved to the newSessionQueue by the matcher before each pass,
+        the newSessionQueue is locked during the whole pass and adding to it directly would wait for it.
+     */
+    private final Queue<RequestHandler> incomingRequests = new ConcurrentLinkedQueue<>();
+    /*
+        Requests waiting for a session, wherever they are, so they can be counted and inspected without waiting for
+        the newSessionQueue lock. Compared by identity, request handlers with the same creation time are equal.
+        Each one is kept with its capabilities normalized once for the docker-selenium matcher.
+     */
+    private final Map<RequestHandler, NormalizedCapabilities> waitingRequests =
+            Collections.synchronizedMap(new IdentityHashMap<>());
     private final ProxySet proxies;
     private final ActiveTestSessions activeTestSessions = new ActiveTestSessions();
     private final NewSessionRequestQueue newSessionQueue;
     private final Matcher matcherThread = new Matcher();
     private final Set<RemoteProxy> registeringProxies = ConcurrentHashMap.newKeySet();
+    private final VncAuthorizationIndex vncAuthorizationIndex = new VncAuthorizationIndex();
+    // When all threads are busy and the queue is full, the thread terminating the session runs the release itself.
+    private final ThreadPoolExecutor sessionTerminationExecutor = new MonitoredThreadPoolExecutor(
+            "session-termination", ZaleniumConfiguration.getSessionTerminationThreads(),
+            ZaleniumConfiguration.getSessionTerminationQueueSize(), new ThreadPoolExecutor.CallerRunsPolicy());
     private volatile boolean stop = false;
 
     @SuppressWarnings("unused")
@@ -98,6 +131,12 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
         AutoStartProxySet autoStart = new AutoStartProxySet(false, minContainers, maxContainers, timeToWaitToStart,
             waitForAvailableNodes, starter, Clock.systemDefaultZone(), maxTimesToProcessRequest, checkContainersInterval);
+        if (ZaleniumConfiguration.isPreWarmingEnabled()) {
+            autoStart.enablePreWarming(new PreWarmingScaler(Clock.systemDefaultZone(),
+                    ZaleniumConfiguration.getPreWarmingLookahead() * 1000L,
+                    ZaleniumConfiguration.getPreWarmingScaleDownDelay() * 1000L),
+                    this::getWaitingRequestCapabilities);
+        }
         proxies = autoStart;
         this.matcherThread.setUncaughtExceptionHandler(new UncaughtExceptionHandler());
 
@@ -148,7 +187,7 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
         matcherThread.start();
 
         // freynaud : TODO
-        // Grid registry is in a valid state when testSessionAvailable.await(); from
+        // Grid registry is in a valid state when matcherStateChanged.tryAcquire(); from
         // assignRequestToProxy is reached. Not before.
         try {
             Thread.sleep(250);
@@ -159,9 +198,9 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
     /**
      * Ends this test session for the hub, releasing the resources in the hub / registry. It does not
-     * release anything on the remote. The resources are released in a separate thread, so the call
-     * returns immediately. It allows release with long duration not to block the test while the hub is
-     * releasing the resource.
+     * release anything on the remote. The resources are released in a bounded thread pool, so the call
+     * returns immediately unless the pool is saturated. It allows release with long duration not to block the
+     * test while the hub is releasing the resource.
      *
      * @param session The session to terminate
      * @param reason  the reason for termination
@@ -174,8 +213,17 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
         }
         String internalKey = Optional.ofNullable(session.getInternalKey()).orElse("No internal key");
         ExternalSessionKey externalKey = Optional.ofNullable(session.getExternalKey()).orElse(new ExternalSessionKey("No external key was assigned"));
-        new Thread(() -> _release(session.getSlot(), reason), "Terminate Test Session int id: ["
-                + internalKey + "] ext id: [" + externalKey + "] container: [" + remoteName + "]").start();
+        String threadName = "Terminate Test Session int id: [" + internalKey + "] ext id: [" + externalKey
+                + "] container: [" + remoteName + "]";
+        sessionTerminationExecutor.execute(() -> {
+            String currentName = Thread.currentThread().getName();
+            Thread.currentThread().setName(threadName);
+            try {
+                _release(session.getSlot(), reason);
+            } finally {
+                Thread.currentThread().setName(currentName);
+            }
+        });
     }
 
     /**
@@ -196,13 +244,8 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
         final String internalKey = testSlot.getInternalKey();
 
-        try {
-            lock.lock();
-            testSlot.finishReleaseProcess();
-            release(internalKey, reason);
-        } finally {
-            lock.unlock();
-        }
+        testSlot.finishReleaseProcess();
+        release(internalKey, reason);
     }
 
     /**
@@ -218,6 +261,9 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
             final RemoteProxy p = proxies.remove(proxy);
             p.getTestSlots().forEach(testSlot -> forceRelease(testSlot, SessionTerminationReason.PROXY_REREGISTRATION));
             p.teardown();
+            vncAuthorizationIndex.proxyRemoved(p);
+            ProxyHtmlCache.remove(p.getId());
+            EventStreamServlet.publish(EventStreamServlet.NODE_REMOVED, EventStreamServlet.eventData("id", p.getId()));
         }
     }
 
@@ -234,6 +280,13 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
         testSlot.doFinishRelease();
     }
 
+    /**
+     * @return the VNC addresses of the registered nodes.
+     */
+    public VncAuthorizationIndex getVncAuthorizationIndex() {
+        return vncAuthorizationIndex;
+    }
+
     /**
      * @see GridRegistry#stop()
      */
@@ -241,7 +294,9 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
         stop = true;
         matcherThread.interrupt();
         newSessionQueue.stop();
+        sessionTerminationExecutor.shutdown();
         proxies.teardown();
+        vncAuthorizationIndex.clear();
     }
 
     /**
@@ -249,29 +304,33 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      */
     public void addNewSessionRequest(RequestHandler handler) {
         try {
-            lock.lock();
             Map<String, Object> requestedCapabilities = handler.getRequest().getDesiredCapabilities();
             proxies.verifyAbilityToHandleDesiredCapabilities(requestedCapabilities);
             requestedCapabilities.forEach((k, v) -> MDC.put(k,v.toString()));
             LOG.info("Adding sessionRequest for " + requestedCapabilities.toString());
-            newSessionQueue.add(handler);
+            waitingRequests.put(handler, NormalizedCapabilities.of(requestedCapabilities));
+            incomingRequests.add(handler);
             seleniumTestSessionsWaiting.inc();
+            if (proxies instanceof AutoStartProxySet) {
+                ((AutoStartProxySet) proxies).newSessionRequested(requestedCapabilities);
+            }
             fireMatcherStateChanged();
         } finally {
             MDC.clear();
-            lock.unlock();
         }
     }
 
     /**
      * iterates the list of incoming session request to find a potential match in the list of proxies.
-     * If something changes in the registry, the matcher iteration is stopped to account for that
-     * change.
+     * A new iteration starts when something changes in the registry, or after 5 seconds at the latest.
      */
     private void assignRequestToProxy() {
         while (!stop) {
             try {
-                testSessionAvailable.await(5, TimeUnit.SECONDS);
+                matcherStateChanged.tryAcquire(5, TimeUnit.SECONDS);
+                matcherStateChanged.drainPermits();
+                processReleasedSlots();
+                processIncomingRequests();
                 newSessionQueue.processQueue(this::takeRequestHandler, getHub().getConfiguration().prioritizer);
                 // Just make sure we delete anything that is logged on this thread from memory
                 LoggingManager.perSessionLogHandler().clearThreadTempLogs();
@@ -284,8 +343,27 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
     }
 
+    private void processReleasedSlots() {
+        TestSlot releasedSlot;
+        while ((releasedSlot = releasedSlots.poll()) != null) {
+            if (proxies instanceof AutoStartProxySet) {
+                ((AutoStartProxySet) proxies).sessionReleased(releasedSlot);
+            }
+        }
+    }
+
+    private void processIncomingRequests() {
+        // Synchronized with removeNewSessionRequest so a request is always found in one of both queues.
+        synchronized (incomingRequests) {
+            RequestHandler handler;
+            while ((handler = incomingRequests.poll()) != null) {
+                newSessionQueue.add(handler);
+            }
+        }
+    }
+
     private boolean takeRequestHandler(RequestHandler handler) {
-        final TestSession session = proxies.getNewSession(handler.getRequest().getDesiredCapabilities());
+        final TestSession session = getNewSession(handler);
         final boolean sessionCreated = session != null;
         if (sessionCreated) {
             String remoteName = session.getSlot().getProxy().getId();
@@ -296,13 +374,27 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
                                   timeToAssignProxy / 1000,
                                   timeToAssignProxy);
             seleniumTestSessionStartLatency.observe(timeToAssignProxy / Collector.MILLISECONDS_PER_SECOND);
+            waitingRequests.remove(handler);
             seleniumTestSessionsWaiting.dec();
             activeTestSessions.add(session);
             handler.bindSession(session);
+            ProxyHtmlCache.invalidate(remoteName);
+            JsonObject sessionData = EventStreamServlet.eventData("id", remoteName);
+            sessionData.addProperty("internalKey", session.getInternalKey());
+            EventStreamServlet.publish(EventStreamServlet.SESSION_STARTED, sessionData);
         }
         return sessionCreated;
     }
 
+    private TestSession getNewSession(RequestHandler handler) {
+        Map<String, Object> requestedCapabilities = handler.getRequest().getDesiredCapabilities();
+        NormalizedCapabilities normalizedCapabilities = waitingRequests.get(handler);
+        if (proxies instanceof AutoStartProxySet && normalizedCapabilities != null) {
+            return ((AutoStartProxySet) proxies).getNewSession(requestedCapabilities, normalizedCapabilities);
+        }
+        return proxies.getNewSession(requestedCapabilities);
+    }
+
     /**
      * mark the session as finished for the registry. The resources that were associated to it are now
      * free to be reserved by other tests
@@ -311,14 +403,14 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      * @param reason  the reason for the release
      */
     private void release(TestSession session, SessionTerminationReason reason) {
-        try {
-            lock.lock();
-            boolean removed = activeTestSessions.remove(session, reason);
-            if (removed) {
-                fireMatcherStateChanged();
-            }
-        } finally {
-            lock.unlock();
+        boolean removed = activeTestSessions.remove(session, reason);
+        if (removed) {
+            releasedSlots.add(session.getSlot());
+            fireMatcherStateChanged();
+            ProxyHtmlCache.invalidate(session.getSlot().getProxy().getId());
+            JsonObject sessionData = EventStreamServlet.eventData("id", session.getSlot().getProxy().getId());
+            sessionData.addProperty("internalKey", session.getInternalKey());
+            EventStreamServlet.publish(EventStreamServlet.SESSION_FINISHED, sessionData);
         }
     }
 
@@ -344,33 +436,24 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
     	LOG.debug("Received a node registration request {}", proxy);
 
-        try {
-            lock.lock();
-
-            /*
-                We don't reuse proxies in a long period, so it is unlikely that a proxy registers twice as an intended
-                behaviour. This creates a race condition when the proxy is trying to register itself several times
-                since it does not get a confirmation from the hub. Nevertheless, this still applies to nodes
-                registered by hand by any user.
-             */
-            if (proxy instanceof DockerSeleniumRemoteProxy) {
-                if (proxies.contains(proxy)) {
-                    LOG.debug("Proxy '{}' is already registered.", proxy);
-                    return;
-                }
-            } else {
-                removeIfPresent(proxy);
-            }
-
-            if (registeringProxies.contains(proxy)) {
-                LOG.debug("Proxy '{}' is already queued for registration.", proxy);
+        /*
+            We don't reuse proxies in a long period, so it is unlikely that a proxy registers twice as an intended
+            behaviour. This creates a race condition when the proxy is trying to register itself several times
+            since it does not get a confirmation from the hub. Nevertheless, this still applies to nodes
+            registered by hand by any user.
+         */
+        if (proxy instanceof DockerSeleniumRemoteProxy) {
+            if (proxies.contains(proxy)) {
+                LOG.debug("Proxy '{}' is already registered.", proxy);
                 return;
             }
+        } else {
+            removeIfPresent(proxy);
+        }
 
-            registeringProxies.add(proxy);
-            fireMatcherStateChanged();
-        } finally {
-            lock.unlock();
+        if (!registeringProxies.add(proxy)) {
+            LOG.debug("Proxy '{}' is already queued for registration.", proxy);
+            return;
         }
 
         boolean listenerOk = true;
@@ -385,18 +468,20 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
         }
 
         try {
-            lock.lock();
-            registeringProxies.remove(proxy);
             if (listenerOk) {
                 if (proxy instanceof SelfHealingProxy) {
                     ((SelfHealingProxy) proxy).startPolling();
                 }
                 proxies.add(proxy);
+                vncAuthorizationIndex.proxyAdded(proxy);
                 LOG.info("Registered a node {}", proxy);
                 fireMatcherStateChanged();
+                EventStreamServlet.publish(EventStreamServlet.NODE_REGISTERED,
+                        EventStreamServlet.eventData("id", proxy.getId()));
             }
         } finally {
-            lock.unlock();
+            // Removed only after the proxy was added, so a concurrent registration of the same proxy is ignored.
+            registeringProxies.remove(proxy);
         }
 
     }
@@ -409,7 +494,7 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
     }
 
     private void fireMatcherStateChanged() {
-        testSessionAvailable.signalAll();
+        matcherStateChanged.release();
     }
 
     /**
@@ -445,14 +530,18 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      */
     public int getNewSessionRequestCount() {
         // may race
-        return newSessionQueue.getNewSessionRequestCount();
+        return waitingRequests.size();
     }
 
     /**
      * @see GridRegistry#clearNewSessionRequests()
      */
     public void clearNewSessionRequests() {
+        synchronized (incomingRequests) {
+            incomingRequests.clear();
+        }
         newSessionQueue.clearNewSessionRequests();
+        waitingRequests.clear();
         seleniumTestSessionsWaiting.set(0);
     }
 
@@ -460,8 +549,15 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      * @see GridRegistry#removeNewSessionRequest(RequestHandler)
      */
     public boolean removeNewSessionRequest(RequestHandler request) {
-        boolean wasRemoved = newSessionQueue.removeNewSessionRequest(request);
+        boolean wasRemoved;
+        synchronized (incomingRequests) {
+            wasRemoved = incomingRequests.remove(request);
+        }
+        if (!wasRemoved) {
+            wasRemoved = newSessionQueue.removeNewSessionRequest(request);
+        }
         if (wasRemoved) {
+            waitingRequests.remove(request);
             seleniumTestSessionsWaiting.dec();
         }
         return wasRemoved;
@@ -471,7 +567,22 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
      * @see GridRegistry#getDesiredCapabilities()
      */
     public Iterable<DesiredCapabilities> getDesiredCapabilities() {
-        return newSessionQueue.getDesiredCapabilities();
+        List<DesiredCapabilities> desiredCapabilities = new ArrayList<>();
+        getWaitingRequestCapabilities().forEach(capabilities ->
+                desiredCapabilities.add(new DesiredCapabilities(capabilities)));
+        return desiredCapabilities;
+    }
+
+    /*
+        The capabilities of the waiting requests as they were received (not copies), so they can be compared by
+        identity with the ones the proxy set gets when the matcher asks for a new session.
+     */
+    private List<Map<String, Object>> getWaitingRequestCapabilities() {
+        synchronized (waitingRequests) {
+            return waitingRequests.keySet().stream()
+                    .map(handler -> handler.getRequest().getDesiredCapabilities())
+                    .collect(Collectors.toList());
+        }
     }
 
     /**
@@ -537,12 +648,7 @@ public class ZaleniumRegistry extends BaseGridRegistry implements GridRegistry {
 
         @Override
         public void run() {
-            try {
-                lock.lock();
-                assignRequestToProxy();
-            } finally {
-                lock.unlock();
-            }
+            assignRequestToProxy();
         }
 
     }
@@ -0,0 +1,246 @@
+package de.zalando.ep.zalenium.servlet;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.JsonObject;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Pushes what happens in the grid to the browsers as Server-Sent Events, so the dashboard and the live preview
+ * fetch what changed when it changes, instead of polling.
+ *
+ * Events are written without blocking: each client has a small queue of pending events, written whenever its
+ * connection can take them. Publishing never waits for a client and costs nothing when nobody is connected. A client
+ * that does not keep up, its queue is full or nothing could be written to it for two heartbeats, is disconnected, and
+ * reconnects by itself once it can.
+ */
+public class EventStreamServlet extends HttpServlet {
+
+    public static final String TEST_FINISHED = "test-finished";
+    public static final String NODE_REGISTERED = "node-registered";
+    public static final String NODE_REMOVED = "node-removed";
+    public static final String SESSION_STARTED = "session-started";
+    public static final String SESSION_FINISHED = "session-finished";
+
+    private static final long serialVersionUID = 1L;
+    private static final long HEARTBEAT_INTERVAL_SECONDS = 30;
+    private static final long WRITE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(2 * HEARTBEAT_INTERVAL_SECONDS);
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+    @VisibleForTesting
+    static final int MAX_PENDING_EVENTS = 100;
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventStreamServlet.class.getName());
+    private static final Gauge eventStreamClients = Gauge.build()
+            .name("zalenium_event_stream_clients")
+            .help("The number of browsers connected to the event stream.")
+            .register();
+    private static final Counter eventStreamEvents = Counter.build()
+            .name("zalenium_event_stream_events_total")
+            .help("The number of events sent to the event stream, by event type.")
+            .labelNames("event")
+            .register();
+    private static final Counter eventStreamSlowClients = Counter.build()
+            .name("zalenium_event_stream_slow_clients_total")
+            .help("The number of browsers disconnected from the event stream because they did not keep up.")
+            .register();
+    private static final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    // Only runs the heartbeat, events are written by whoever publishes them or by the container when a client is ready
+    private static final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "event-stream-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // Comments keep idle connections open through proxies, and reveal the clients that went away
+        heartbeat.scheduleAtFixedRate(() -> send(": heartbeat\n\n"), HEARTBEAT_INTERVAL_SECONDS,
+                HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HTTP_OK);
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding(UTF_8.name());
+        response.setHeader("Cache-Control", "no-cache");
+        // Stops nginx from buffering the events
+        response.setHeader("X-Accel-Buffering", "no");
+        response.addHeader("Access-Control-Allow-Origin", "*");
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0);
+        Client client = new Client(asyncContext, response.getOutputStream());
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                disconnect(client);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                disconnect(client);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                disconnect(client);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        clients.add(client);
+        eventStreamClients.set(clients.size());
+        client.send(("retry: " + RECONNECT_DELAY_MILLIS + "\n\n").getBytes(UTF_8));
+        // From here on the output stream does not block, it is written when the container says it is ready
+        response.getOutputStream().setWriteListener(client);
+    }
+
+    /**
+     * Sends an event to all the connected clients.
+     *
+     * @param event one of the event types of this class.
+     * @param data  what the event is about, e.g. the id of the node.
+     */
+    public static void publish(String event, JsonObject data) {
+        if (clients.isEmpty()) {
+            return;
+        }
+        eventStreamEvents.labels(event).inc();
+        send("event: " + event + "\ndata: " + data.toString() + "\n\n");
+    }
+
+    public static JsonObject eventData(String property, String value) {
+        JsonObject data = new JsonObject();
+        data.addProperty(property, value);
+        return data;
+    }
+
+    private static void send(String message) {
+        byte[] bytes = message.getBytes(UTF_8);
+        for (Client client : clients) {
+            client.send(bytes);
+        }
+    }
+
+    private static void disconnect(Client client) {
+        clients.remove(client);
+        eventStreamClients.set(clients.size());
+    }
+
+    /*
+        A connected browser. The output stream is only written while it is ready, the rest waits in the queue until
+        the container calls onWritePossible().
+     */
+    private static final class Client implements WriteListener {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream outputStream;
+        // Everything below is guarded by this
+        private final Queue<byte[]> pendingEvents = new ArrayDeque<>();
+        private boolean writeListenerSet;
+        private boolean flushNeeded;
+        // When the stream stopped being ready with events pending, 0 while it keeps up
+        private long blockedSince;
+        private boolean closed;
+
+        private Client(AsyncContext asyncContext, ServletOutputStream outputStream) {
+            this.asyncContext = asyncContext;
+            this.outputStream = outputStream;
+        }
+
+        private synchronized void send(byte[] event) {
+            if (closed) {
+                return;
+            }
+            pendingEvents.add(event);
+            if (pendingEvents.size() > MAX_PENDING_EVENTS
+                    || (blockedSince > 0 && System.currentTimeMillis() - blockedSince > WRITE_TIMEOUT_MILLIS)) {
+                LOGGER.debug("Event stream client is not keeping up, disconnecting it.");
+                eventStreamSlowClients.inc();
+                close();
+            } else if (writeListenerSet) {
+                writeOrClose();
+            }
+        }
+
+        @Override
+        public synchronized void onWritePossible() {
+            writeListenerSet = true;
+            if (!closed) {
+                writeOrClose();
+            }
+        }
+
+        @Override
+        public synchronized void onError(Throwable throwable) {
+            LOGGER.debug("Event stream client disconnected", throwable);
+            close();
+        }
+
+        private void writeOrClose() {
+            try {
+                write();
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.debug("Event stream client disconnected", e);
+                close();
+            }
+        }
+
+        // Writes the pending events while the stream takes them without blocking
+        private void write() throws IOException {
+            while (outputStream.isReady()) {
+                byte[] event = pendingEvents.poll();
+                if (event == null) {
+                    if (!flushNeeded) {
+                        blockedSince = 0;
+                        return;
+                    }
+                    flushNeeded = false;
+                    outputStream.flush();
+                } else {
+                    outputStream.write(event);
+                    flushNeeded = true;
+                }
+            }
+            if (blockedSince == 0) {
+                blockedSince = System.currentTimeMillis();
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingEvents.clear();
+            disconnect(this);
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException alreadyCompleted) {
+                // Nothing to do, the request is already over
+            }
+        }
+    }
+}
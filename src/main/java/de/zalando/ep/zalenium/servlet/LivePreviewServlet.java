@@ -6,9 +6,10 @@ package de.zalando.ep.zalenium.servlet;
     The code here is based on the ConsoleServlet class from the Selenium Grid
  */
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -20,18 +21,18 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.openqa.grid.internal.GridRegistry;
 import org.openqa.grid.internal.RemoteProxy;
-import org.openqa.grid.internal.utils.HtmlRenderer;
 import org.openqa.grid.web.servlet.RegistryBasedServlet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.io.ByteStreams;
-
 import de.zalando.ep.zalenium.proxy.DockerSeleniumRemoteProxy;
 import de.zalando.ep.zalenium.servlet.renderer.LiveNodeHtmlRenderer;
+import de.zalando.ep.zalenium.servlet.renderer.ProxyHtmlCache;
 import de.zalando.ep.zalenium.servlet.renderer.TemplateRenderer;
 import de.zalando.ep.zalenium.util.Environment;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 
 public class LivePreviewServlet extends RegistryBasedServlet {
 
@@ -83,50 +84,69 @@ public class LivePreviewServlet extends RegistryBasedServlet {
             LOGGER.debug(e.toString(), e);
         }
 
+        String proxyId = request.getParameter("proxy");
+        if (proxyId != null) {
+            processProxy(getRegistry().getProxyById(proxyId), testBuild, filterActiveSessions, response);
+            return;
+        }
+
         List<String> nodes = new ArrayList<>();
         for (RemoteProxy proxy : getRegistry().getAllProxies()) {
-            if (proxy instanceof DockerSeleniumRemoteProxy) {
-                DockerSeleniumRemoteProxy dockerSeleniumRemoteProxy = (DockerSeleniumRemoteProxy) proxy;
-                HtmlRenderer renderer = new LiveNodeHtmlRenderer(dockerSeleniumRemoteProxy);
-                // Render the nodes that are part of an specified test build
-                if ((testBuild.isEmpty() || testBuild.equalsIgnoreCase(dockerSeleniumRemoteProxy.getTestBuild()))
-                        && (!filterActiveSessions || proxy.isBusy())) {
-                    nodes.add(renderer.renderSummary());
-                }
+            if (isShown(proxy, testBuild, filterActiveSessions)) {
+                nodes.add(renderProxy((DockerSeleniumRemoteProxy) proxy));
             }
         }
 
         int size = nodes.size();
         int rightColumnSize = size / 2;
         int leftColumnSize = size - rightColumnSize;
-
-        StringBuilder leftColumnNodes = new StringBuilder();
-        for (int i = 0; i < leftColumnSize; i++) {
-            leftColumnNodes.append(nodes.get(i));
-        }
-
-        StringBuilder rightColumnNodes = new StringBuilder();
-        for (int i = leftColumnSize; i < nodes.size(); i++) {
-            rightColumnNodes.append(nodes.get(i));
-        }
+        Map<String, List<String>> livePreviewColumns = new HashMap<>();
+        livePreviewColumns.put("{{leftColumnNodes}}", nodes.subList(0, leftColumnSize));
+        livePreviewColumns.put("{{rightColumnNodes}}", nodes.subList(leftColumnSize, size));
 
         Map<String, String> livePreviewValues = new HashMap<>();
         livePreviewValues.put("{{refreshInterval}}", refresh);
-        livePreviewValues.put("{{leftColumnNodes}}", leftColumnNodes.toString());
-        livePreviewValues.put("{{rightColumnNodes}}", rightColumnNodes.toString());
         livePreviewValues.put("{{contextPath}}", contextPath);
         String templateFile = "html_templates/live_preview_servlet.html";
         TemplateRenderer templateRenderer = new TemplateRenderer(templateFile);
-        String renderTemplate = templateRenderer.renderTemplate(livePreviewValues);
+        response.setContentType("text/html");
+        response.setCharacterEncoding("UTF-8");
+        response.setStatus(200);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), UTF_8))) {
+            templateRenderer.renderTemplate(livePreviewValues, livePreviewColumns, writer);
+        }
+    }
 
+    /*
+        Only the html of one node, the live preview fetches it to add or update that node when the event stream
+        reports a change. Nodes that are gone or not shown with the given filters are not found.
+     */
+    private void processProxy(RemoteProxy proxy, String testBuild, boolean filterActiveSessions,
+                              HttpServletResponse response) throws IOException {
         response.setContentType("text/html");
         response.setCharacterEncoding("UTF-8");
+        if (!isShown(proxy, testBuild, filterActiveSessions)) {
+            response.setStatus(404);
+            return;
+        }
         response.setStatus(200);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), UTF_8))) {
+            writer.write(renderProxy((DockerSeleniumRemoteProxy) proxy));
+        }
+    }
 
-        try (InputStream in = new ByteArrayInputStream(renderTemplate.getBytes("UTF-8"))) {
-            ByteStreams.copy(in, response.getOutputStream());
-        } finally {
-            response.getOutputStream().close();
+    // Render the nodes that are part of an specified test build
+    private static boolean isShown(RemoteProxy proxy, String testBuild, boolean filterActiveSessions) {
+        if (!(proxy instanceof DockerSeleniumRemoteProxy)) {
+            return false;
         }
+        DockerSeleniumRemoteProxy dockerSeleniumRemoteProxy = (DockerSeleniumRemoteProxy) proxy;
+        return (testBuild.isEmpty() || testBuild.equalsIgnoreCase(dockerSeleniumRemoteProxy.getTestBuild()))
+                && (!filterActiveSessions || proxy.isBusy());
+    }
+
+    private static String renderProxy(DockerSeleniumRemoteProxy proxy) {
+        return ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.LIVE_PREVIEW,
+                () -> new LiveNodeHtmlRenderer(proxy).renderSummary());
     }
 }
@@ -2,12 +2,12 @@ package de.zalando.ep.zalenium.servlet;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import javax.servlet.http.HttpServletRequest;
@@ -17,19 +17,25 @@ import org.openqa.grid.internal.GridRegistry;
 import org.openqa.grid.web.servlet.RegistryBasedServlet;
 
 import de.zalando.ep.zalenium.proxy.DockerSeleniumRemoteProxy;
+import de.zalando.ep.zalenium.registry.ZaleniumRegistry;
 
 /**
  * Authenticates the VNC requests to ensure that they are trying to access hosts and ports that the registry knows
  * about, otherwise authentication is denied. 
  * <p>
  * This is to stop the nginx proxy becoming an open proxy into the SDN.
+ * <p>
+ * nginx asks for every VNC request, so the {@link ZaleniumRegistry} keeps the addresses of the nodes indexed.
  */
 public class VncAuthenticationServlet extends RegistryBasedServlet {
     
     private static final int UNAUTHORISED = 403;
     private static final int AUTHORISED = 200;
-    private static Pattern VNC_REGEX = Pattern.compile("\\/vnc\\/host\\/(?<host>[^\\/]+)\\/port\\/(?<port>\\d+)\\/");
-    private static Pattern WEB_SOCKET_REGEX = Pattern.compile("\\/proxy\\/(?<host>[^:]+):(?<port>\\d+)\\/websockify");
+    private static final Pattern VNC_REGEX = Pattern.compile("\\/vnc\\/host\\/(?<host>[^\\/]+)\\/port\\/(?<port>\\d+)\\/");
+    private static final Pattern WEB_SOCKET_REGEX = Pattern.compile("\\/proxy\\/(?<host>[^:]+):(?<port>\\d+)\\/websockify");
+    private static final Pattern[] VNC_REGEXES = {VNC_REGEX, WEB_SOCKET_REGEX};
+    private static final int MAX_UNMATCHED_URLS = 256;
+    private static final Map<String, Boolean> unmatchedUrls = new ConcurrentHashMap<>();
     
     private static final Logger LOGGER = LoggerFactory.getLogger(VncAuthenticationServlet.class.getName());
 
@@ -70,36 +76,56 @@ public class VncAuthenticationServlet extends RegistryBasedServlet {
 
     private void authenticate(HttpServletRequest request, HttpServletResponse response) {
         // We could get a null header, so we should handle this situation
-        Optional<String> urlToAuthenticate = Optional.ofNullable(request.getHeader("X-Original-URI"));
-        
-        Optional<String> path = urlToAuthenticate.flatMap(s -> {
-            try {
-                return Optional.of(new URI(s).getPath());
-            } catch (URISyntaxException e) {
-                LOGGER.error("Failed to parse url [" + s + "]", e);
-                return Optional.empty();
-            }
-        });
-        
+        String urlToAuthenticate = request.getHeader("X-Original-URI");
+        boolean authorised = urlToAuthenticate != null && !unmatchedUrls.containsKey(urlToAuthenticate)
+                && isAuthorised(urlToAuthenticate);
+        response.setStatus(authorised ? AUTHORISED : UNAUTHORISED);
+    }
+
+    private boolean isAuthorised(String urlToAuthenticate) {
+        String path;
+        try {
+            path = new URI(urlToAuthenticate).getPath();
+        } catch (URISyntaxException e) {
+            LOGGER.error("Failed to parse url [" + urlToAuthenticate + "]", e);
+            rememberUnmatched(urlToAuthenticate);
+            return false;
+        }
+
         // Apply the regexes looking for the first one that matches
-        Optional<Matcher> matcher = path.flatMap(p -> getRegexStream().map(regex -> regex.matcher(p)).filter(Matcher::find).findFirst());
-        
-        Optional<String> host = matcher.map(res -> res.group("host"));
-        Optional<String> port = matcher.map(res -> res.group("port"));
-        
-        // Find the first docker selenium remote proxies that matches the host and port, if so return 200, otherwise 403 forbidden
-        Integer httpCode = StreamSupport.stream(getRegistry().getAllProxies().spliterator(), false)
-        .filter(proxy -> proxy instanceof DockerSeleniumRemoteProxy)
-        .map(proxy -> ((DockerSeleniumRemoteProxy)proxy).getRegistration())
-        .filter(reg -> host.equals(Optional.of(reg.getIpAddress())) && port.equals(Optional.of(reg.getNoVncPort().toString())))
-        .findAny()
-        .map(x -> AUTHORISED)
-        .orElse(UNAUTHORISED);
-        
-        response.setStatus(httpCode);
+        Matcher matcher = null;
+        if (path != null) {
+            for (Pattern regex : VNC_REGEXES) {
+                Matcher candidate = regex.matcher(path);
+                if (candidate.find()) {
+                    matcher = candidate;
+                    break;
+                }
+            }
+        }
+        if (matcher == null) {
+            rememberUnmatched(urlToAuthenticate);
+            return false;
+        }
+        String host = matcher.group("host");
+        String port = matcher.group("port");
+
+        GridRegistry registry = getRegistry();
+        if (registry instanceof ZaleniumRegistry) {
+            return ((ZaleniumRegistry) registry).getVncAuthorizationIndex().isAuthorized(host, port);
+        }
+        // Other registries do not index the nodes, find a docker selenium remote proxy with the host and port
+        return StreamSupport.stream(registry.getAllProxies().spliterator(), false)
+                .filter(proxy -> proxy instanceof DockerSeleniumRemoteProxy)
+                .map(proxy -> ((DockerSeleniumRemoteProxy) proxy).getRegistration())
+                .anyMatch(reg -> host.equals(reg.getIpAddress()) && port.equals(reg.getNoVncPort().toString()));
     }
-    
-    private Stream<Pattern> getRegexStream() {
-        return Stream.of(VNC_REGEX, WEB_SOCKET_REGEX);
+
+    // Urls that are not VNC urls never will be, they are denied without parsing them again
+    private static void rememberUnmatched(String urlToAuthenticate) {
+        if (unmatchedUrls.size() >= MAX_UNMATCHED_URLS) {
+            unmatchedUrls.clear();
+        }
+        unmatchedUrls.put(urlToAuthenticate, Boolean.TRUE);
     }
 }
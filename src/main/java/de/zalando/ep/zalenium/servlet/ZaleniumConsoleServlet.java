@@ -1,9 +1,10 @@
 package de.zalando.ep.zalenium.servlet;
 
-import com.google.common.io.ByteStreams;
+import de.zalando.ep.zalenium.servlet.renderer.ProxyHtmlCache;
 import de.zalando.ep.zalenium.servlet.renderer.TemplateRenderer;
 import de.zalando.ep.zalenium.util.Environment;
 
+import com.google.common.html.HtmlEscapers;
 import org.openqa.grid.internal.GridRegistry;
 import org.openqa.grid.internal.RemoteProxy;
 import org.openqa.grid.internal.utils.configuration.GridHubConfiguration;
@@ -13,13 +14,17 @@ import org.openqa.selenium.BuildInfo;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /*
     Taken from the original org.openqa.grid.web.servlet.beta.ConsoleServlet
@@ -57,6 +62,12 @@ public class ZaleniumConsoleServlet extends RegistryBasedServlet {
     protected void process(HttpServletRequest request, HttpServletResponse response)
             throws IOException {
 
+        String proxyId = request.getParameter("proxy");
+        if (proxyId != null) {
+            processProxy(proxyId, response);
+            return;
+        }
+
         // Refreshing every 20 minutes by default
         int refresh = 1200;
         if (request.getParameter("refresh") != null) {
@@ -65,21 +76,15 @@ public class ZaleniumConsoleServlet extends RegistryBasedServlet {
 
         List<String> nodes = new ArrayList<>();
         for (RemoteProxy proxy : getRegistry().getAllProxies()) {
-            nodes.add(proxy.getHtmlRender().renderSummary());
+            nodes.add(renderProxy(proxy));
         }
 
         int size = nodes.size();
         int rightColumnSize = size / 2;
         int leftColumnSize = size - rightColumnSize;
-
-        StringBuilder leftColumnNodes = new StringBuilder();
-        for (int i = 0; i < leftColumnSize; i++) {
-            leftColumnNodes.append(nodes.get(i));
-        }
-        StringBuilder rightColumnNodes = new StringBuilder();
-        for (int i = leftColumnSize; i < nodes.size(); i++) {
-            rightColumnNodes.append(nodes.get(i));
-        }
+        Map<String, List<String>> consoleColumns = new HashMap<>();
+        consoleColumns.put("{{leftColumnNodes}}", nodes.subList(0, leftColumnSize));
+        consoleColumns.put("{{rightColumnNodes}}", nodes.subList(leftColumnSize, size));
 
         String hubConfigLinkVisible = "";
         String hubConfigVisible = "hidden";
@@ -91,8 +96,6 @@ public class ZaleniumConsoleServlet extends RegistryBasedServlet {
         Map<String, String> consoleValues = new HashMap<>();
         consoleValues.put("{{refreshInterval}}", String.valueOf(refresh));
         consoleValues.put("{{coreVersion}}", coreVersion);
-        consoleValues.put("{{leftColumnNodes}}", leftColumnNodes.toString());
-        consoleValues.put("{{rightColumnNodes}}", rightColumnNodes.toString());
         consoleValues.put("{{unprocessedRequests}}", getUnprocessedRequests());
         consoleValues.put("{{requestQueue}}", getRequestQueue());
         consoleValues.put("{{hubConfigLinkVisible}}", hubConfigLinkVisible);
@@ -100,18 +103,43 @@ public class ZaleniumConsoleServlet extends RegistryBasedServlet {
         consoleValues.put("{{hubConfig}}", getConfigInfo(request.getParameter("configDebug") != null));
         consoleValues.put("{{contextPath}}", contextPath);
 
-        String renderTemplate = templateRenderer.renderTemplate(consoleValues);
+        response.setContentType("text/html");
+        response.setCharacterEncoding("UTF-8");
+        response.setStatus(200);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), UTF_8))) {
+            templateRenderer.renderTemplate(consoleValues, consoleColumns, writer);
+        }
+    }
 
+    /*
+        Only the html of one proxy, the console fetches it to update that proxy when the event stream reports a change.
+     */
+    private void processProxy(String proxyId, HttpServletResponse response) throws IOException {
+        RemoteProxy proxy = getRegistry().getProxyById(proxyId);
         response.setContentType("text/html");
         response.setCharacterEncoding("UTF-8");
+        if (proxy == null) {
+            response.setStatus(404);
+            return;
+        }
         response.setStatus(200);
-        try (InputStream in = new ByteArrayInputStream(renderTemplate.getBytes("UTF-8"))) {
-            ByteStreams.copy(in, response.getOutputStream());
-        } finally {
-            response.getOutputStream().close();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), UTF_8))) {
+            writer.write(renderProxy(proxy));
         }
     }
 
+    private static String renderProxy(RemoteProxy proxy) {
+        return ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.CONSOLE,
+                () -> withProxyId(proxy.getHtmlRender().renderSummary(), proxy.getId()));
+    }
+
+    // The proxies are found by id in the page when they are updated, the Selenium renderer does not add it
+    private static String withProxyId(String html, String proxyId) {
+        String proxyWithId = String.format("<div class='proxy' data-proxy-id='%s'>",
+                HtmlEscapers.htmlEscaper().escape(proxyId));
+        return html.replaceFirst("<div class='proxy'>", Matcher.quoteReplacement(proxyWithId));
+    }
+
     private String getUnprocessedRequests() {
         int numUnprocessedRequests = getRegistry().getNewSessionRequestCount();
         String unprocessedRequests = "";
@@ -0,0 +1,96 @@
+package de.zalando.ep.zalenium.servlet.renderer;
+
+import io.prometheus.client.Counter;
+import org.openqa.grid.internal.RemoteProxy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the html of each proxy shown in the console and in the live preview, so refreshing them only renders the
+ * proxies that changed since the last refresh.
+ *
+ * The html of a proxy is invalidated by the registry and by the proxy itself when its state changes: it is
+ * registered or removed, a session starts or finishes, the test name changes or the node is cleaned up. The last
+ * command of a running session shown in the slot title is not a state change, it is refreshed with the next one.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ProxyHtmlCache {
+
+    public static final String CONSOLE = "console";
+    public static final String LIVE_PREVIEW = "live-preview";
+
+    private static final ConcurrentMap<String, CachedProxy> proxies = new ConcurrentHashMap<>();
+    private static final Counter proxyHtmlRequests = Counter.build()
+            .name("zalenium_proxy_html_requests_total")
+            .help("The number of times the html of a proxy was needed, by whether it was cached or rendered.")
+            .labelNames("result")
+            .register();
+
+    private ProxyHtmlCache() {
+    }
+
+    /**
+     * @param proxy    the proxy to render.
+     * @param view     where the html is shown, one of the views of this class.
+     * @param renderer renders the html when it is not cached.
+     * @return the html of the proxy for the view.
+     */
+    public static String getHtml(RemoteProxy proxy, String view, Supplier<String> renderer) {
+        // A proxy registered again with the same id is a new proxy, nothing of the previous one is reused
+        CachedProxy cachedProxy = proxies.compute(proxy.getId(),
+                (id, cached) -> cached == null || cached.proxy != proxy ? new CachedProxy(proxy) : cached);
+        String html = cachedProxy.fragments.get(view);
+        if (html != null) {
+            proxyHtmlRequests.labels("cached").inc();
+            return html;
+        }
+        proxyHtmlRequests.labels("rendered").inc();
+        long version = cachedProxy.getVersion();
+        html = renderer.get();
+        cachedProxy.put(version, view, html);
+        return html;
+    }
+
+    public static void invalidate(String proxyId) {
+        CachedProxy cachedProxy = proxies.get(proxyId);
+        if (cachedProxy != null) {
+            cachedProxy.invalidate();
+        }
+    }
+
+    public static void remove(String proxyId) {
+        CachedProxy cachedProxy = proxies.remove(proxyId);
+        if (cachedProxy != null) {
+            cachedProxy.invalidate();
+        }
+    }
+
+    private static final class CachedProxy {
+        private final RemoteProxy proxy;
+        private final Map<String, String> fragments = new ConcurrentHashMap<>();
+        private long version;
+
+        private CachedProxy(RemoteProxy proxy) {
+            this.proxy = proxy;
+        }
+
+        private synchronized long getVersion() {
+            return version;
+        }
+
+        // Html rendered while the proxy changed is not kept, it might show the state before the change
+        private synchronized void put(long renderedVersion, String view, String html) {
+            if (renderedVersion == version) {
+                fragments.put(view, html);
+            }
+        }
+
+        private synchronized void invalidate() {
+            version++;
+            fragments.clear();
+        }
+    }
+}
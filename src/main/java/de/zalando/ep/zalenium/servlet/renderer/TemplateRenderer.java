@@ -1,94 +1,213 @@
 package de.zalando.ep.zalenium.servlet.renderer;
 
-import de.zalando.ep.zalenium.servlet.LivePreviewServlet;
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Renders the html templates. A template is parsed once, the first time it is used, into a list of text,
+ * placeholders ({{name}}) and sections ({{#name}}...{{/name}}), and rendered in a single pass over that list.
+ *
+ * Values are looked up with the placeholder as key, e.g. "{{proxyId}}". The value of a section replaces the whole
+ * section, usually it is made of the section content rendered once per item with {@link #renderSection}.
+ * Placeholders and sections without a value are written as they are. A placeholder can also be given a list of
+ * values, e.g. the html of each node, which are written one after the other without being joined first.
+ */
 @SuppressWarnings("WeakerAccess")
 public class TemplateRenderer {
-    private final Logger logger = LoggerFactory.getLogger(LivePreviewServlet.class.getName());
-    private String templateFile;
-    private String templateContents;
+    private static final Logger logger = LoggerFactory.getLogger(TemplateRenderer.class.getName());
+    private static final Map<String, CompiledTemplate> compiledTemplates = new ConcurrentHashMap<>();
+    private static final String TAG_START = "{{";
+    private static final String TAG_END = "}}";
+
+    private final CompiledTemplate template;
 
     public TemplateRenderer(String templateFile) {
-        this.templateFile = templateFile;
-        loadTemplate();
+        this.template = compiledTemplates.computeIfAbsent(templateFile,
+                file -> CompiledTemplate.compile(loadTemplate(file)));
     }
 
-    private void loadTemplate() {
-        if (templateContents == null || templateContents.isEmpty()) {
-            InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(templateFile);
-            try {
-                templateContents = IOUtils.toString(inputStream, StandardCharsets.UTF_8);
-            } catch (IOException e) {
-                templateContents = "";
-                logger.error(e.toString(), e);
-            }
+    private static String loadTemplate(String templateFile) {
+        InputStream inputStream = Thread.currentThread().getContextClassLoader().getResourceAsStream(templateFile);
+        try {
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        } catch (IOException | NullPointerException e) {
+            logger.error(e.toString(), e);
+            return "";
         }
     }
 
-    // Just to avoid overwriting the original template variable by mistake
-    @SuppressWarnings("UnnecessaryLocalVariable")
-    private String getTemplateContents() {
-        String copyOfTemplateContents = templateContents;
-        return copyOfTemplateContents;
+    public String renderSection(String section, Map<String, String> renderValues) {
+        StringWriter writer = new StringWriter();
+        renderSection(section, renderValues, writer);
+        return writer.toString();
     }
 
-    private String getTemplateSection(String section, boolean complete) {
-        loadTemplate();
-        String sectionCopy = section.replace("{", "").replace("}", "");
-        String sectionBeginning = String.format("{{#%s}}", sectionCopy);
-        String sectionEnding = String.format("{{/%s}}", sectionCopy);
-        String templateSection = getTemplateContents();
-        if (complete) {
-            return templateSection.substring(templateSection.indexOf(sectionBeginning),
-                    templateSection.indexOf(sectionEnding) + sectionEnding.length());
-        } else {
-            return templateSection.substring(templateSection.indexOf(sectionBeginning),
-                    templateSection.indexOf(sectionEnding)).replace(sectionBeginning, "");
+    public void renderSection(String section, Map<String, String> renderValues, Writer writer) {
+        Section templateSection = template.sections.get(section);
+        if (templateSection == null) {
+            throw new IllegalArgumentException("Section " + section + " not found in the template");
         }
+        write(templateSection.content, renderValues, Collections.emptyMap(), writer);
+    }
+
+    public String renderTemplate(Map<String, String> renderValues) {
+        StringWriter writer = new StringWriter();
+        renderTemplate(renderValues, writer);
+        return writer.toString();
+    }
+
+    public void renderTemplate(Map<String, String> renderValues, Writer writer) {
+        renderTemplate(renderValues, Collections.emptyMap(), writer);
     }
 
-    private String filterSectionName(String section, String content) {
-        String sectionCopy = section.replace("{", "").replace("}", "");
-        String sectionBeginning = String.format("{{#%s}}", sectionCopy);
-        String sectionEnding = String.format("{{/%s}}", sectionCopy);
-        return content.replace(sectionBeginning, "").replace(sectionEnding, "");
+    public void renderTemplate(Map<String, String> renderValues, Map<String, List<String>> renderLists,
+                               Writer writer) {
+        write(template.content, renderValues, renderLists, writer);
     }
 
-    private String renderValue(String renderedTemplate, String key, String value) {
-        String renderedTemplateCopy = renderedTemplate;
-        if (renderedTemplateCopy.contains(key)) {
-            renderedTemplateCopy = renderedTemplateCopy.replace(key, value);
-        } else {
-            renderedTemplateCopy = renderedTemplateCopy.replace(getTemplateSection(key, true), key);
-            String sectionContent = filterSectionName(key, value);
-            renderedTemplateCopy = renderedTemplateCopy.replace(key, sectionContent);
+    private static void write(List<Segment> segments, Map<String, String> renderValues,
+                              Map<String, List<String>> renderLists, Writer writer) {
+        try {
+            for (Segment segment : segments) {
+                segment.write(renderValues, renderLists, writer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return renderedTemplateCopy;
     }
 
-    public String renderSection(String section, Map<String, String> renderValues) {
-        String templateSection = getTemplateSection(section, false);
-        for (Map.Entry<String, String> mapEntry : renderValues.entrySet()) {
-            templateSection = renderValue(templateSection, mapEntry.getKey(), mapEntry.getValue());
+    private interface Segment {
+        void write(Map<String, String> renderValues, Map<String, List<String>> renderLists, Writer writer)
+                throws IOException;
+    }
+
+    private static final class Text implements Segment {
+        private final String text;
+
+        private Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void write(Map<String, String> renderValues, Map<String, List<String>> renderLists, Writer writer)
+                throws IOException {
+            writer.write(text);
         }
-        return templateSection;
     }
 
-    public String renderTemplate(Map<String, String> renderValues) {
-        String renderedTemplate = getTemplateContents();
-        for (Map.Entry<String, String> mapEntry : renderValues.entrySet()) {
-            renderedTemplate = renderValue(renderedTemplate, mapEntry.getKey(), mapEntry.getValue());
+    private static final class Placeholder implements Segment {
+        private final String key;
+
+        private Placeholder(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void write(Map<String, String> renderValues, Map<String, List<String>> renderLists, Writer writer)
+                throws IOException {
+            String value = renderValues.get(key);
+            if (value != null) {
+                writer.write(value);
+                return;
+            }
+            List<String> values = renderLists.get(key);
+            if (values == null) {
+                writer.write(key);
+                return;
+            }
+            for (String listValue : values) {
+                writer.write(listValue);
+            }
+        }
+    }
+
+    private static final class Section implements Segment {
+        private final String key;
+        private final String beginning;
+        private final String ending;
+        private final List<Segment> content = new ArrayList<>();
+
+        private Section(String name) {
+            this.key = TAG_START + name + TAG_END;
+            this.beginning = TAG_START + "#" + name + TAG_END;
+            this.ending = TAG_START + "/" + name + TAG_END;
+        }
+
+        @Override
+        public void write(Map<String, String> renderValues, Map<String, List<String>> renderLists, Writer writer)
+                throws IOException {
+            String value = renderValues.get(key);
+            if (value != null) {
+                writer.write(value);
+                return;
+            }
+            writer.write(beginning);
+            for (Segment segment : content) {
+                segment.write(renderValues, renderLists, writer);
+            }
+            writer.write(ending);
+        }
+    }
+
+    private static final class CompiledTemplate {
+        private final List<Segment> content;
+        // By key, e.g. "{{tabBrowsers}}", the first one when a section is repeated
+        private final Map<String, Section> sections;
+
+        private CompiledTemplate(List<Segment> content, Map<String, Section> sections) {
+            this.content = content;
+            this.sections = Collections.unmodifiableMap(sections);
+        }
+
+        private static CompiledTemplate compile(String template) {
+            List<Segment> content = new ArrayList<>();
+            Map<String, Section> sections = new HashMap<>();
+            List<List<Segment>> open = new ArrayList<>();
+            List<Section> openSections = new ArrayList<>();
+            open.add(content);
+            int position = 0;
+            while (position < template.length()) {
+                List<Segment> current = open.get(open.size() - 1);
+                int tagStart = template.indexOf(TAG_START, position);
+                int tagEnd = tagStart < 0 ? -1 : template.indexOf(TAG_END, tagStart + TAG_START.length());
+                if (tagEnd < 0) {
+                    current.add(new Text(template.substring(position)));
+                    break;
+                }
+                if (tagStart > position) {
+                    current.add(new Text(template.substring(position, tagStart)));
+                }
+                String tag = template.substring(tagStart + TAG_START.length(), tagEnd);
+                if (tag.startsWith("#")) {
+                    Section section = new Section(tag.substring(1));
+                    current.add(section);
+                    sections.putIfAbsent(section.key, section);
+                    open.add(section.content);
+                    openSections.add(section);
+                } else if (tag.startsWith("/") && !openSections.isEmpty()
+                        && openSections.get(openSections.size() - 1).ending.equals(TAG_START + tag + TAG_END)) {
+                    open.remove(open.size() - 1);
+                    openSections.remove(openSections.size() - 1);
+                } else {
+                    current.add(new Placeholder(TAG_START + tag + TAG_END));
+                }
+                position = tagEnd + TAG_END.length();
+            }
+            return new CompiledTemplate(content, sections);
         }
-        return renderedTemplate;
     }
 }
@@ -0,0 +1,45 @@
+package de.zalando.ep.zalenium.streams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Descriptor of a file, the stream is only opened when it is read, so consumers using the path directly do not
+ * leave it open.
+ */
+public final class FileInputStreamDescriptor implements InputStreamDescriptor {
+    private final Path path;
+    private final String name;
+    private InputStream is;
+
+    public FileInputStreamDescriptor(Path path, String name) {
+        this.path = path;
+        this.name = name;
+    }
+
+    @Override
+    public synchronized InputStream get() {
+        if (is == null) {
+            try {
+                is = Files.newInputStream(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return is;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Optional<Path> path() {
+        return Optional.of(path);
+    }
+}
@@ -1,10 +1,20 @@
 package de.zalando.ep.zalenium.streams;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
 
 public interface InputStreamDescriptor {
 
     InputStream get();
     String name();
 
-}
\ No newline at end of file
+    /**
+     * The file behind the stream, when the content is a file on a filesystem reachable from here, e.g. a shared
+     * volume. It lets consumers move or copy the file without reading it through the stream.
+     */
+    default Optional<Path> path() {
+        return Optional.empty();
+    }
+
+}
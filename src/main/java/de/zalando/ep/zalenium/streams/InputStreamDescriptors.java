@@ -0,0 +1,62 @@
+package de.zalando.ep.zalenium.streams;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class InputStreamDescriptors {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InputStreamDescriptors.class.getName());
+
+    private InputStreamDescriptors() {
+    }
+
+    /**
+     * Writes the content of the descriptor to the target file, replacing it if it exists.
+     *
+     * When the descriptor exposes a file, it is renamed into place if the source can be consumed and both files
+     * are on the same filesystem, otherwise it is copied with {@link FileChannel#transferTo}, so the content does
+     * not go through the JVM heap. The stream is only read when there is no file behind it.
+     *
+     * @param sourceDisposable whether the file behind the descriptor can be moved away, e.g. because it was staged
+     *                         only to be copied.
+     * @return the number of bytes written to the target.
+     */
+    public static long copyTo(InputStreamDescriptor descriptor, Path target, boolean sourceDisposable)
+            throws IOException {
+        Optional<Path> source = descriptor.path();
+        if (!source.isPresent()) {
+            return Files.copy(descriptor.get(), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (sourceDisposable) {
+            try {
+                Files.move(source.get(), target, StandardCopyOption.ATOMIC_MOVE);
+                return Files.size(target);
+            } catch (AtomicMoveNotSupportedException e) {
+                LOGGER.debug("{} and {} are on different filesystems, copying instead", source.get(), target);
+            }
+        }
+        return transfer(source.get(), target);
+    }
+
+    private static long transfer(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            return position;
+        }
+    }
+}
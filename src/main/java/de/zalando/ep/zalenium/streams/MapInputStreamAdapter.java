@@ -1,6 +1,5 @@
 package de.zalando.ep.zalenium.streams;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Iterator;
 import java.io.File;
@@ -20,8 +19,8 @@ public class MapInputStreamAdapter implements  InputStreamGroupIterator{
         return streams.hasNext() ? getNextDescriptor() : null;
     }
 
-    private InputStreamDescriptor getNextDescriptor() throws IOException {
+    private InputStreamDescriptor getNextDescriptor() {
         Map.Entry<String, File> entry = streams.next();
-        return new DefaultInputStreamDescriptor(new FileInputStream(entry.getValue()), entry.getKey());
+        return new FileInputStreamDescriptor(entry.getValue().toPath(), entry.getKey());
     }
-}
\ No newline at end of file
+}
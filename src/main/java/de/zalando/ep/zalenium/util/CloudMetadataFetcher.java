@@ -0,0 +1,265 @@
+package de.zalando.ep.zalenium.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import io.prometheus.client.Counter;
+
+/**
+ * Reads the test information and account details from the REST API of the cloud testing providers.
+ *
+ * Requests to each provider go through a token bucket, so a large run does not send hundreds of them at once and
+ * get rate limited. When the provider rate limits anyway (429 or 503), its Retry-After is respected by every request
+ * to that provider, not only by the one that got it.
+ *
+ * Responses are kept for a few seconds, and lookups of the same URL at the same time are sent only once. Callers
+ * that poll a URL until its content changes forget the kept response before asking again.
+ */
+@SuppressWarnings("WeakerAccess")
+public class CloudMetadataFetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CloudMetadataFetcher.class.getName());
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long DEFAULT_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final long MAX_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    private static final long MAX_RETRY_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final Counter cloudApiThrottled = Counter.build()
+            .name("zalenium_cloud_api_throttled_total")
+            .help("The number of requests rate limited by cloud testing providers (429 or 503), by host.")
+            .labelNames("host")
+            .register();
+    private static final Counter cloudApiRateLimitWait = Counter.build()
+            .name("zalenium_cloud_api_rate_limit_wait_seconds_total")
+            .help("The time requests to cloud testing providers waited for the rate limit, by host.")
+            .labelNames("host")
+            .register();
+
+    private final double requestsPerSecond;
+    private final int burst;
+    private final long retryMillis;
+    private final Cache<String, JsonElement> responses;
+    private final Map<String, TokenBucket> rateLimits = new ConcurrentHashMap<>();
+
+    public CloudMetadataFetcher() {
+        this(ZaleniumConfiguration.getCloudApiRequestsPerSecond(), ZaleniumConfiguration.getCloudApiBurst(),
+                TimeUnit.SECONDS.toMillis(ZaleniumConfiguration.getCloudApiCacheTtl()), DEFAULT_RETRY_MILLIS);
+    }
+
+    @VisibleForTesting
+    CloudMetadataFetcher(double requestsPerSecond, int burst, long cacheTtlMillis, long retryMillis) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.retryMillis = retryMillis;
+        this.responses = cacheTtlMillis > 0 ?
+                CacheBuilder.newBuilder().expireAfterWrite(cacheTtlMillis, TimeUnit.MILLISECONDS).build() : null;
+    }
+
+    /**
+     * @return the parsed response, or null when it could not be read after retrying.
+     */
+    public JsonElement fetch(String jsonUrl, String user, String password) {
+        if (responses == null) {
+            return fetchWithRetries(jsonUrl, user, password);
+        }
+        try {
+            // Concurrent lookups of the same key wait for the first one instead of sending their own request
+            return responses.get(user + "@" + jsonUrl, () -> {
+                JsonElement response = fetchWithRetries(jsonUrl, user, password);
+                if (response == null) {
+                    throw new IOException("No response from " + jsonUrl);
+                }
+                return response;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            LOG.debug(e.toString(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Drops the kept response of the URL, so the next lookup asks the provider again.
+     */
+    public void forget(String jsonUrl, String user) {
+        if (responses != null) {
+            responses.invalidate(user + "@" + jsonUrl);
+        }
+    }
+
+    private JsonElement fetchWithRetries(String jsonUrl, String user, String password) {
+        String host = getHost(jsonUrl);
+        TokenBucket rateLimit = rateLimits.computeIfAbsent(host, h -> new TokenBucket(requestsPerSecond, burst));
+        try {
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                long waitNanos = rateLimit.reserve(System.nanoTime());
+                if (waitNanos > 0) {
+                    cloudApiRateLimitWait.labels(host).inc(waitNanos / 1e9);
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+                try {
+                    JsonElement response = fetchOnce(jsonUrl, user, password, host, rateLimit);
+                    if (response != null) {
+                        return response;
+                    }
+                    // Rate limited, the next attempt waits for the paused token bucket
+                } catch (IOException | RuntimeException e) {
+                    LOG.error(e.toString(), e);
+                    if (attempt < MAX_ATTEMPTS) {
+                        LOG.info("Trying download once again from {}", jsonUrl);
+                        Thread.sleep(retryMillis(attempt));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.debug(e.toString(), e);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        LOG.error("Could not read {} after {} attempts", jsonUrl, MAX_ATTEMPTS);
+        return null;
+    }
+
+    /*
+        Returns null when the provider rate limited the request, after pausing its token bucket.
+     */
+    private JsonElement fetchOnce(String jsonUrl, String user, String password, String host,
+                                  TokenBucket rateLimit) throws IOException {
+        HttpGet get = new HttpGet(jsonUrl);
+        String userPass = user + ":" + password;
+        String basicAuth = "Basic " + new String(new Base64().encode(userPass.getBytes()));
+        get.setHeader(HttpHeaders.AUTHORIZATION, basicAuth);
+        try (CloseableHttpResponse response = HttpClientPool.getHttpClient().execute(get)) {
+            String jsonText = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            int status = response.getStatusLine().getStatusCode();
+            if (status == TOO_MANY_REQUESTS || status == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                cloudApiThrottled.labels(host).inc();
+                long retryAfterMillis = getRetryAfterMillis(response.getFirstHeader(HttpHeaders.RETRY_AFTER));
+                if (retryAfterMillis < 0) {
+                    retryAfterMillis = retryMillis;
+                }
+                // Every request to this provider waits, not only this one
+                rateLimit.pauseUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+                LOG.warn("Rate limited by {}, waiting {} ms", host, retryAfterMillis);
+                return null;
+            }
+            if (status >= 400) {
+                throw new IOException("Server returned HTTP response code: " + status + " for URL: " + jsonUrl);
+            }
+            return new JsonParser().parse(jsonText);
+        }
+    }
+
+    @VisibleForTesting
+    long retryMillis(int attempt) {
+        return Math.min(MAX_RETRY_MILLIS, retryMillis << Math.min(attempt - 1, 20));
+    }
+
+    /*
+        Retry-After is either an amount of seconds or an HTTP date, -1 when missing or not understood.
+     */
+    @VisibleForTesting
+    static long getRetryAfterMillis(Header retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        String value = retryAfter.getValue().trim();
+        long millis;
+        try {
+            millis = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            if (date == null) {
+                return -1;
+            }
+            millis = date.getTime() - System.currentTimeMillis();
+        }
+        return Math.min(MAX_RETRY_AFTER_MILLIS, Math.max(0, millis));
+    }
+
+    private static String getHost(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? url : host;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Holds up to burst requests, refilled at requestsPerSecond. A request that finds it empty takes a token in
+     * advance and waits until it would have been refilled, so waiting requests go out at the configured rate.
+     * Times are System.nanoTime() values, only their differences are meaningful.
+     */
+    static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt;
+        private boolean started;
+
+        TokenBucket(double requestsPerSecond, int burst) {
+            this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = burst;
+            this.tokens = burst;
+        }
+
+        /**
+         * Takes a token, @return nanoseconds to wait before sending the request.
+         */
+        synchronized long reserve(long now) {
+            refill(now);
+            tokens--;
+            long waitNanos = Math.max(0, refilledAt - now);
+            if (tokens < 0) {
+                waitNanos += (long) Math.ceil(-tokens / tokensPerNano);
+            }
+            return waitNanos;
+        }
+
+        /**
+         * Nothing is sent until the given time, then requests go out one by one at the configured rate.
+         */
+        synchronized void pauseUntil(long time) {
+            if (!started || time - refilledAt > 0) {
+                started = true;
+                refilledAt = time;
+            }
+            tokens = Math.min(tokens, 1);
+        }
+
+        private void refill(long now) {
+            if (!started) {
+                started = true;
+                refilledAt = now;
+            } else if (now - refilledAt > 0) {
+                tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+                refilledAt = now;
+            }
+        }
+    }
+}
@@ -1,22 +1,10 @@
 package de.zalando.ep.zalenium.util;
 
 import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
-import org.apache.commons.codec.binary.Base64;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.net.URLConnection;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -33,44 +21,21 @@ public class CommonProxyUtilities {
 
     private static final Logger LOG = LoggerFactory.getLogger(CommonProxyUtilities.class.getName());
     public static final String metadataCookieName = "zaleniumMetadata";
+    private final FileDownloader fileDownloader = new FileDownloader();
+    private final CloudMetadataFetcher cloudMetadataFetcher = new CloudMetadataFetcher();
 
     /*
-        Reading a JSON with DockerSelenium capabilities from a given URL
-        http://stackoverflow.com/questions/4308554/simplest-way-to-read-json-from-a-url-in-java
-        http://stackoverflow.com/questions/496651/connecting-to-remote-url-which-requires-authentication-using-java
+        Reading a JSON from a cloud testing provider REST API, rate limited per provider and retried when it fails.
      */
     public JsonElement readJSONFromUrl(String jsonUrl, String user, String password) {
-        int maxAttempts = 10;
-        int currentAttempts = 0;
-        while (currentAttempts < maxAttempts) {
-            try {
-                URL url = new URL(jsonUrl);
-                URLConnection urlConnection = url.openConnection();
-                String userPass = user + ":" + password;
-                String basicAuth = "Basic " + new String(new Base64().encode(userPass.getBytes()));
-                urlConnection.setRequestProperty("Authorization", basicAuth);
+        return cloudMetadataFetcher.fetch(jsonUrl, user, password);
+    }
 
-                InputStream is = urlConnection.getInputStream();
-                BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
-                String jsonText = readAll(rd);
-                is.close();
-                return new JsonParser().parse(jsonText);
-            } catch (Exception e) {
-                currentAttempts++;
-                LOG.error(e.toString(), e);
-                if (currentAttempts >= maxAttempts) {
-                    LOG.error(e.toString(), e);
-                } else {
-                    LOG.info("Trying download once again from " + jsonUrl);
-                    try {
-                        Thread.sleep(1000 * 5);
-                    } catch (InterruptedException iE) {
-                        LOG.debug(iE.toString(), iE);
-                    }
-                }
-            }
-        }
-        return null;
+    /*
+        The next read of the JSON goes to the provider again, for lookups repeated until the provider updates it.
+     */
+    public void forgetJSONFromUrl(String jsonUrl, String user) {
+        cloudMetadataFetcher.forget(jsonUrl, user);
     }
 
     public String currentLocalPath() {
@@ -90,63 +55,12 @@ public class CommonProxyUtilities {
     }
 
     /*
-        Downloading a file, method adapted from:
-        http://code.runnable.com/Uu83dm5vSScIAACw/download-a-file-from-the-web-for-java-files-and-save
+        Streams the file to disk, resuming and retrying with backoff while the provider has not finished it yet.
      */
     public void downloadFile(String fileUrl, String fileNameWithFullPath, String user, String password,
                              boolean authenticate, int maxAttempts)
             throws InterruptedException {
-        int currentAttempts = 0;
-        // Videos are usually not ready right away, we put a little sleep to avoid falling into the catch/retry.
-        Thread.sleep(1000 * 5);
-        while (currentAttempts < maxAttempts) {
-            try {
-                URL link = new URL(fileUrl);
-                String userPass = user + ":" + password;
-                URLConnection urlConnection = link.openConnection();
-                if (authenticate) {
-                    String basicAuth = "Basic " + new String(new Base64().encode(userPass.getBytes()));
-                    urlConnection.setRequestProperty("Authorization", basicAuth);
-                }
-
-                urlConnection.setRequestProperty("Accept", "*/*");
-                //Code to download
-                InputStream in = new BufferedInputStream(urlConnection.getInputStream());
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                byte[] buf = new byte[1024];
-                int n;
-                while (-1!=(n=in.read(buf)))
-                {
-                    out.write(buf, 0, n);
-                }
-                out.close();
-                in.close();
-                byte[] response = out.toByteArray();
-                File fileToDownload = new File(fileNameWithFullPath);
-                if (!Files.exists(fileToDownload.getParentFile().toPath())) {
-                    Files.createDirectory(fileToDownload.getParentFile().toPath());
-                }
-                FileOutputStream fos = new FileOutputStream(fileNameWithFullPath);
-                fos.write(response);
-                fos.close();
-                //End download code
-                setFilePermissions(Paths.get(fileNameWithFullPath));
-                currentAttempts = maxAttempts + 1;
-                LOG.info("File downloaded to " + fileNameWithFullPath);
-            } catch (IOException e) {
-                // Catching this exception generally means that the file was not ready, so we try again.
-                currentAttempts++;
-                if (currentAttempts >= maxAttempts) {
-                    LOG.info(e.toString(), e);
-                } else {
-                    LOG.info("Trying download once again from " + fileUrl);
-                    Thread.sleep(currentAttempts * 5 * 1000);
-                }
-            } catch (Exception e) {
-                currentAttempts = maxAttempts + 1;
-                LOG.error(e.toString(), e);
-            }
-        }
+        fileDownloader.download(fileUrl, Paths.get(fileNameWithFullPath), user, password, authenticate, maxAttempts);
     }
 
     public String getDateAndTimeFormatted(Date d) {
@@ -174,13 +88,4 @@ public class CommonProxyUtilities {
         }
     }
 
-    private static String readAll(Reader reader) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = reader.read()) != -1) {
-            sb.append((char) cp);
-        }
-        return sb.toString();
-    }
-
 }
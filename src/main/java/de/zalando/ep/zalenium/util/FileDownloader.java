@@ -0,0 +1,212 @@
+package de.zalando.ep.zalenium.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Downloads the videos and logs of the cloud testing providers straight to disk. The file is written next to its
+ * final name with a ".part" suffix and moved in place once complete, so the dashboard never sees half a video.
+ *
+ * Videos are usually not ready right after the test, failed attempts are retried with an exponential backoff and
+ * some jitter, and a retry asks with a Range header only for the bytes that are still missing. Downloads use the
+ * connections of the {@link HttpClientPool}.
+ */
+@SuppressWarnings("WeakerAccess")
+public class FileDownloader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileDownloader.class.getName());
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 5 * 1000;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 60 * 1000;
+    private static final String PARTIAL_FILE_SUFFIX = ".part";
+
+    private static final Counter downloadedBytes = Counter.build()
+            .name("zalenium_artifact_download_bytes_total")
+            .help("The number of bytes of videos and logs downloaded from cloud testing providers, by host.")
+            .labelNames("host")
+            .register();
+    private static final Counter downloads = Counter.build()
+            .name("zalenium_artifact_downloads_total")
+            .help("The number of videos and logs downloaded from cloud testing providers, by host and result.")
+            .labelNames("host", "result")
+            .register();
+    private static final Counter downloadRetries = Counter.build()
+            .name("zalenium_artifact_download_retries_total")
+            .help("The number of times a video or log download was attempted again, by host.")
+            .labelNames("host")
+            .register();
+    private static final Histogram downloadDuration = Histogram.build()
+            .name("zalenium_artifact_download_duration_seconds")
+            .help("The time it took to download a video or log including retries, in seconds, by host.")
+            .labelNames("host")
+            .buckets(1, 5, 10, 30, 60, 120, 300, 600)
+            .register();
+
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public FileDownloader() {
+        this(DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    @VisibleForTesting
+    FileDownloader(long initialBackoffMillis, long maxBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * @return true when the file was downloaded, false when all the attempts failed.
+     */
+    public boolean download(String fileUrl, Path target, String user, String password, boolean authenticate,
+                            int maxAttempts) throws InterruptedException {
+        String host = hostOf(fileUrl);
+        Path partialFile = target.resolveSibling(target.getFileName() + PARTIAL_FILE_SUFFIX);
+        Histogram.Timer timer = downloadDuration.labels(host).startTimer();
+        try {
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            IOException lastFailure = null;
+            for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+                try {
+                    transfer(fileUrl, partialFile, host, user, password, authenticate);
+                    moveInPlace(partialFile, target);
+                    CommonProxyUtilities.setFilePermissions(target);
+                    downloads.labels(host, "downloaded").inc();
+                    LOG.info("File downloaded to " + target);
+                    return true;
+                } catch (IOException e) {
+                    // Generally means that the file was not ready, so we try again.
+                    lastFailure = e;
+                }
+                if (attempt < maxAttempts) {
+                    long backoffMillis = backoffMillis(attempt);
+                    LOG.info("Trying download once again from {} in {} ms", fileUrl, backoffMillis);
+                    downloadRetries.labels(host).inc();
+                    Thread.sleep(backoffMillis);
+                }
+            }
+            if (lastFailure != null) {
+                LOG.info(lastFailure.toString(), lastFailure);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.error(e.toString(), e);
+        } finally {
+            timer.observeDuration();
+        }
+        downloads.labels(host, "failed").inc();
+        deletePartialFile(partialFile);
+        return false;
+    }
+
+    private void transfer(String fileUrl, Path partialFile, String host, String user, String password,
+                          boolean authenticate) throws IOException {
+        long offset = Files.exists(partialFile) ? Files.size(partialFile) : 0;
+        HttpGet get = new HttpGet(fileUrl);
+        if (authenticate) {
+            String userPass = user + ":" + password;
+            String basicAuth = "Basic " + new String(new Base64().encode(userPass.getBytes(UTF_8)), UTF_8);
+            get.setHeader(HttpHeaders.AUTHORIZATION, basicAuth);
+        }
+        get.setHeader(HttpHeaders.ACCEPT, "*/*");
+        if (offset > 0) {
+            get.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+        }
+
+        try (CloseableHttpResponse response = HttpClientPool.getHttpClient().execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                // What we have does not fit the file anymore, start over
+                EntityUtils.consumeQuietly(entity);
+                Files.deleteIfExists(partialFile);
+                throw new IOException("Range not satisfiable for " + fileUrl + " from byte " + offset);
+            }
+            if (status >= 400 || entity == null) {
+                EntityUtils.consumeQuietly(entity);
+                throw new IOException("Server returned HTTP response code: " + status + " for URL: " + fileUrl);
+            }
+
+            boolean append = offset > 0 && status == HttpStatus.SC_PARTIAL_CONTENT;
+            StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+            long expected = entity.getContentLength();
+            long transferred = 0;
+            try (InputStream in = entity.getContent();
+                 OutputStream out = Files.newOutputStream(partialFile, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, mode)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    transferred += read;
+                }
+            } finally {
+                downloadedBytes.labels(host).inc(transferred);
+            }
+            if (expected >= 0 && transferred < expected) {
+                // The connection was dropped, the next attempt asks for the rest
+                throw new IOException("Got " + transferred + " of " + expected + " bytes from " + fileUrl);
+            }
+        }
+    }
+
+    private static void moveInPlace(Path partialFile, Path target) throws IOException {
+        try {
+            Files.move(partialFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partialFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deletePartialFile(Path partialFile) {
+        try {
+            Files.deleteIfExists(partialFile);
+        } catch (IOException e) {
+            LOG.debug(e.toString(), e);
+        }
+    }
+
+    // Half of the exponential delay plus a random part of the other half, so retries of many downloads spread out
+    @VisibleForTesting
+    long backoffMillis(int attempt) {
+        long delay = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private static String hostOf(String fileUrl) {
+        try {
+            String host = new URI(fileUrl).getHost();
+            return host == null || host.isEmpty() ? "unknown" : host;
+        } catch (URISyntaxException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package de.zalando.ep.zalenium.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+
+/**
+ * The HTTP client shared by every call to the cloud testing providers and to the remote dashboard. Connections are
+ * pooled and kept alive, so fetching the test information, downloading the video and logs and uploading them do not
+ * open a new connection, and do a new TLS handshake, each time.
+ *
+ * Requests and opened connections are counted by host, the difference between both is the amount of requests that
+ * reused a connection.
+ */
+@SuppressWarnings("WeakerAccess")
+public class HttpClientPool {
+
+    private static final long IDLE_CONNECTION_SECONDS = 30;
+
+    private static final Counter httpRequests = Counter.build()
+            .name("zalenium_http_requests_total")
+            .help("The number of requests sent to cloud testing providers and the remote dashboard, by host.")
+            .labelNames("host")
+            .register();
+    private static final Counter httpConnectionsOpened = Counter.build()
+            .name("zalenium_http_connections_opened_total")
+            .help("The number of connections opened to cloud testing providers and the remote dashboard, by host.")
+            .labelNames("host")
+            .register();
+    private static final Gauge httpPoolConnections = Gauge.build()
+            .name("zalenium_http_pool_connections")
+            .help("The number of pooled connections leased and available, and of requests waiting for one.")
+            .labelNames("state")
+            .register();
+
+    private static volatile CloseableHttpClient httpClient;
+
+    private HttpClientPool() {
+    }
+
+    public static CloseableHttpClient getHttpClient() {
+        CloseableHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (HttpClientPool.class) {
+                client = httpClient;
+                if (client == null) {
+                    client = createHttpClient();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private static CloseableHttpClient createHttpClient() {
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", SSLConnectionSocketFactory.getSocketFactory())
+                .build();
+        HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connectionFactory = (route, config) -> {
+            httpConnectionsOpened.labels(route.getTargetHost().getHostName()).inc();
+            return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+        };
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(socketFactories, connectionFactory);
+        connectionManager.setMaxTotal(ZaleniumConfiguration.getHttpMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(ZaleniumConfiguration.getHttpMaxConnectionsPerHost());
+        httpPoolConnections.setChild(poolStat(() -> connectionManager.getTotalStats().getLeased()), "leased");
+        httpPoolConnections.setChild(poolStat(() -> connectionManager.getTotalStats().getAvailable()), "available");
+        httpPoolConnections.setChild(poolStat(() -> connectionManager.getTotalStats().getPending()), "pending");
+
+        int connectTimeoutMillis = (int) TimeUnit.SECONDS.toMillis(ZaleniumConfiguration.getHttpConnectTimeout());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setConnectionRequestTimeout(connectTimeoutMillis)
+                .setSocketTimeout((int) TimeUnit.SECONDS.toMillis(ZaleniumConfiguration.getHttpSocketTimeout()))
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .addInterceptorFirst((HttpRequestInterceptor) (request, context) -> {
+                    HttpHost target = HttpClientContext.adapt(context).getTargetHost();
+                    httpRequests.labels(target == null ? "unknown" : target.getHostName()).inc();
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_CONNECTION_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    private static Gauge.Child poolStat(IntSupplier stat) {
+        return new Gauge.Child() {
+            @Override
+            public double get() {
+                return stat.getAsInt();
+            }
+        };
+    }
+
+    @VisibleForTesting
+    static double getRequests(String host) {
+        return httpRequests.labels(host).get();
+    }
+
+    @VisibleForTesting
+    static double getConnectionsOpened(String host) {
+        return httpConnectionsOpened.labels(host).get();
+    }
+}
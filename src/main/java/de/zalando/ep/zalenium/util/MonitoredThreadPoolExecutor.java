@@ -0,0 +1,125 @@
+package de.zalando.ep.zalenium.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+
+/**
+ * Thread pool with a bounded number of threads and a bounded queue, which exports its queue depth, the time tasks
+ * wait in the queue, the time they take to run and the amount of rejected tasks as Prometheus metrics.
+ *
+ * What happens when the pool is saturated is decided by the given {@link RejectedExecutionHandler}, e.g.
+ * {@link ThreadPoolExecutor.CallerRunsPolicy} to slow down the producer, or {@link ThreadPoolExecutor.AbortPolicy}
+ * to let the producer decide.
+ */
+@SuppressWarnings("WeakerAccess")
+public class MonitoredThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final Gauge executorQueueSize = Gauge.build()
+            .name("zalenium_executor_queue_size")
+            .help("The number of tasks waiting in the executor queue.")
+            .labelNames("executor")
+            .register();
+    private static final Gauge executorActiveThreads = Gauge.build()
+            .name("zalenium_executor_active_threads")
+            .help("The number of threads of the executor that are running tasks.")
+            .labelNames("executor")
+            .register();
+    private static final Histogram executorTaskWait = Histogram.build()
+            .name("zalenium_executor_task_wait_seconds")
+            .help("The time tasks waited in the executor queue before running, in seconds.")
+            .labelNames("executor")
+            .register();
+    private static final Histogram executorTaskDuration = Histogram.build()
+            .name("zalenium_executor_task_duration_seconds")
+            .help("The time tasks took to run in the executor, in seconds.")
+            .labelNames("executor")
+            .register();
+    private static final Counter executorRejectedTasks = Counter.build()
+            .name("zalenium_executor_rejected_tasks_total")
+            .help("The number of tasks rejected because the executor was saturated.")
+            .labelNames("executor")
+            .register();
+
+    private final String name;
+
+    public MonitoredThreadPoolExecutor(String name, int threads, int queueSize,
+                                       RejectedExecutionHandler rejectedExecutionHandler) {
+        super(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                new NamedThreadFactory(name), countRejections(name, rejectedExecutionHandler));
+        this.name = name;
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(command));
+        executorQueueSize.labels(name).set(getQueue().size());
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        executorQueueSize.labels(name).set(getQueue().size());
+        executorActiveThreads.labels(name).inc();
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        executorActiveThreads.labels(name).dec();
+        super.afterExecute(r, t);
+    }
+
+    private static RejectedExecutionHandler countRejections(String name, RejectedExecutionHandler handler) {
+        return (runnable, executor) -> {
+            executorRejectedTasks.labels(name).inc();
+            handler.rejectedExecution(runnable, executor);
+        };
+    }
+
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long createdTime = System.currentTimeMillis();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long waitTime = System.currentTimeMillis() - createdTime;
+            executorTaskWait.labels(name).observe(waitTime / Collector.MILLISECONDS_PER_SECOND);
+            Histogram.Timer timer = executorTaskDuration.labels(name).startTimer();
+            try {
+                task.run();
+            } finally {
+                timer.observeDuration();
+            }
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String name;
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(false);
+            return thread;
+        }
+    }
+}
@@ -21,6 +21,44 @@ public class ZaleniumConfiguration {
     @VisibleForTesting
     public static final int DEFAULT_CHECK_CONTAINERS_INTERVAL = 5000;
     @VisibleForTesting
+    public static final int DEFAULT_SESSION_TERMINATION_THREADS = 50;
+    @VisibleForTesting
+    public static final int DEFAULT_SESSION_TERMINATION_QUEUE_SIZE = 1000;
+    @VisibleForTesting
+    public static final int DEFAULT_CONTAINER_START_THREADS = 5;
+    @VisibleForTesting
+    public static final int DEFAULT_CONTAINER_START_QUEUE_SIZE = 100;
+    @VisibleForTesting
+    public static final int DEFAULT_ARTIFACT_TRANSFER_THREADS = 5;
+    @VisibleForTesting
+    public static final int DEFAULT_ARTIFACT_TRANSFER_QUEUE_SIZE = 100;
+    @VisibleForTesting
+    public static final int DEFAULT_PRE_WARMING_LOOKAHEAD = 15;
+    @VisibleForTesting
+    public static final int DEFAULT_PRE_WARMING_SCALE_DOWN_DELAY = 120;
+    @VisibleForTesting
+    public static final int DEFAULT_CONTAINER_RECONCILIATION_INTERVAL = 60;
+    @VisibleForTesting
+    public static final int DEFAULT_HTTP_MAX_CONNECTIONS = 50;
+    @VisibleForTesting
+    public static final int DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST = 10;
+    @VisibleForTesting
+    public static final int DEFAULT_HTTP_CONNECT_TIMEOUT = 30;
+    @VisibleForTesting
+    public static final int DEFAULT_HTTP_SOCKET_TIMEOUT = 60;
+    @VisibleForTesting
+    public static final int DEFAULT_CLOUD_ARTIFACT_THREADS = 10;
+    @VisibleForTesting
+    public static final int DEFAULT_CLOUD_ARTIFACT_THREADS_PER_PROVIDER = 3;
+    @VisibleForTesting
+    public static final int DEFAULT_CLOUD_ARTIFACT_QUEUE_SIZE = 1000;
+    @VisibleForTesting
+    public static final int DEFAULT_CLOUD_API_REQUESTS_PER_SECOND = 5;
+    @VisibleForTesting
+    public static final int DEFAULT_CLOUD_API_BURST = 10;
+    @VisibleForTesting
+    public static final int DEFAULT_CLOUD_API_CACHE_TTL = 5;
+    @VisibleForTesting
     public static final String ZALENIUM_DESIRED_CONTAINERS = "ZALENIUM_DESIRED_CONTAINERS";
     @VisibleForTesting
     public static final String ZALENIUM_SWARM_OVERLAY_NETWORK = "ZALENIUM_SWARM_OVERLAY_NETWORK";
@@ -30,6 +68,26 @@ public class ZaleniumConfiguration {
     private static final String TIME_TO_WAIT_TO_START = "TIME_TO_WAIT_TO_START";
     private static final String MAX_TIMES_TO_PROCESS_REQUEST = "MAX_TIMES_TO_PROCESS_REQUEST";
     private static final String CHECK_CONTAINERS_INTERVAL = "CHECK_CONTAINERS_INTERVAL";
+    private static final String SESSION_TERMINATION_THREADS = "ZALENIUM_SESSION_TERMINATION_THREADS";
+    private static final String SESSION_TERMINATION_QUEUE_SIZE = "ZALENIUM_SESSION_TERMINATION_QUEUE_SIZE";
+    private static final String CONTAINER_START_THREADS = "ZALENIUM_CONTAINER_START_THREADS";
+    private static final String CONTAINER_START_QUEUE_SIZE = "ZALENIUM_CONTAINER_START_QUEUE_SIZE";
+    private static final String ARTIFACT_TRANSFER_THREADS = "ZALENIUM_ARTIFACT_TRANSFER_THREADS";
+    private static final String ARTIFACT_TRANSFER_QUEUE_SIZE = "ZALENIUM_ARTIFACT_TRANSFER_QUEUE_SIZE";
+    private static final String PRE_WARMING_ENABLED = "ZALENIUM_PRE_WARMING_ENABLED";
+    private static final String PRE_WARMING_LOOKAHEAD = "ZALENIUM_PRE_WARMING_LOOKAHEAD";
+    private static final String PRE_WARMING_SCALE_DOWN_DELAY = "ZALENIUM_PRE_WARMING_SCALE_DOWN_DELAY";
+    private static final String CONTAINER_RECONCILIATION_INTERVAL = "ZALENIUM_CONTAINER_RECONCILIATION_INTERVAL";
+    private static final String HTTP_MAX_CONNECTIONS = "ZALENIUM_HTTP_MAX_CONNECTIONS";
+    private static final String HTTP_MAX_CONNECTIONS_PER_HOST = "ZALENIUM_HTTP_MAX_CONNECTIONS_PER_HOST";
+    private static final String HTTP_CONNECT_TIMEOUT = "ZALENIUM_HTTP_CONNECT_TIMEOUT";
+    private static final String HTTP_SOCKET_TIMEOUT = "ZALENIUM_HTTP_SOCKET_TIMEOUT";
+    private static final String CLOUD_ARTIFACT_THREADS = "ZALENIUM_CLOUD_ARTIFACT_THREADS";
+    private static final String CLOUD_ARTIFACT_THREADS_PER_PROVIDER = "ZALENIUM_CLOUD_ARTIFACT_THREADS_PER_PROVIDER";
+    private static final String CLOUD_ARTIFACT_QUEUE_SIZE = "ZALENIUM_CLOUD_ARTIFACT_QUEUE_SIZE";
+    private static final String CLOUD_API_REQUESTS_PER_SECOND = "ZALENIUM_CLOUD_API_REQUESTS_PER_SECOND";
+    private static final String CLOUD_API_BURST = "ZALENIUM_CLOUD_API_BURST";
+    private static final String CLOUD_API_CACHE_TTL = "ZALENIUM_CLOUD_API_CACHE_TTL";
 
     // Intended to start Zalenium locally for debugging or development. See ZaleniumRegistryTest#runLocally
     @VisibleForTesting
@@ -45,6 +103,26 @@ public class ZaleniumConfiguration {
     private static int timeToWaitToStart;
     private static int maxTimesToProcessRequest;
     private static int checkContainersInterval;
+    private static int sessionTerminationThreads = DEFAULT_SESSION_TERMINATION_THREADS;
+    private static int sessionTerminationQueueSize = DEFAULT_SESSION_TERMINATION_QUEUE_SIZE;
+    private static int containerStartThreads = DEFAULT_CONTAINER_START_THREADS;
+    private static int containerStartQueueSize = DEFAULT_CONTAINER_START_QUEUE_SIZE;
+    private static int artifactTransferThreads = DEFAULT_ARTIFACT_TRANSFER_THREADS;
+    private static int artifactTransferQueueSize = DEFAULT_ARTIFACT_TRANSFER_QUEUE_SIZE;
+    private static boolean preWarmingEnabled;
+    private static int preWarmingLookahead = DEFAULT_PRE_WARMING_LOOKAHEAD;
+    private static int preWarmingScaleDownDelay = DEFAULT_PRE_WARMING_SCALE_DOWN_DELAY;
+    private static int containerReconciliationInterval = DEFAULT_CONTAINER_RECONCILIATION_INTERVAL;
+    private static int httpMaxConnections = DEFAULT_HTTP_MAX_CONNECTIONS;
+    private static int httpMaxConnectionsPerHost = DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST;
+    private static int httpConnectTimeout = DEFAULT_HTTP_CONNECT_TIMEOUT;
+    private static int httpSocketTimeout = DEFAULT_HTTP_SOCKET_TIMEOUT;
+    private static int cloudArtifactThreads = DEFAULT_CLOUD_ARTIFACT_THREADS;
+    private static int cloudArtifactThreadsPerProvider = DEFAULT_CLOUD_ARTIFACT_THREADS_PER_PROVIDER;
+    private static int cloudArtifactQueueSize = DEFAULT_CLOUD_ARTIFACT_QUEUE_SIZE;
+    private static int cloudApiRequestsPerSecond = DEFAULT_CLOUD_API_REQUESTS_PER_SECOND;
+    private static int cloudApiBurst = DEFAULT_CLOUD_API_BURST;
+    private static int cloudApiCacheTtl = DEFAULT_CLOUD_API_CACHE_TTL;
     private static String currentUser;
     private static String HOST_UID;
     private static String HOST_GID;
@@ -83,6 +161,43 @@ public class ZaleniumConfiguration {
         int checkContainers = env.getIntEnvVariable(CHECK_CONTAINERS_INTERVAL, DEFAULT_CHECK_CONTAINERS_INTERVAL);
         setCheckContainersInterval(checkContainers);
 
+        setSessionTerminationThreads(env.getIntEnvVariable(SESSION_TERMINATION_THREADS,
+                DEFAULT_SESSION_TERMINATION_THREADS));
+        setSessionTerminationQueueSize(env.getIntEnvVariable(SESSION_TERMINATION_QUEUE_SIZE,
+                DEFAULT_SESSION_TERMINATION_QUEUE_SIZE));
+        setContainerStartThreads(env.getIntEnvVariable(CONTAINER_START_THREADS, DEFAULT_CONTAINER_START_THREADS));
+        setContainerStartQueueSize(env.getIntEnvVariable(CONTAINER_START_QUEUE_SIZE,
+                DEFAULT_CONTAINER_START_QUEUE_SIZE));
+        setArtifactTransferThreads(env.getIntEnvVariable(ARTIFACT_TRANSFER_THREADS,
+                DEFAULT_ARTIFACT_TRANSFER_THREADS));
+        setArtifactTransferQueueSize(env.getIntEnvVariable(ARTIFACT_TRANSFER_QUEUE_SIZE,
+                DEFAULT_ARTIFACT_TRANSFER_QUEUE_SIZE));
+
+        setPreWarmingEnabled(env.getBooleanEnvVariable(PRE_WARMING_ENABLED, false));
+        setPreWarmingLookahead(env.getIntEnvVariable(PRE_WARMING_LOOKAHEAD, DEFAULT_PRE_WARMING_LOOKAHEAD));
+        setPreWarmingScaleDownDelay(env.getIntEnvVariable(PRE_WARMING_SCALE_DOWN_DELAY,
+                DEFAULT_PRE_WARMING_SCALE_DOWN_DELAY));
+
+        setContainerReconciliationInterval(env.getIntEnvVariable(CONTAINER_RECONCILIATION_INTERVAL,
+                DEFAULT_CONTAINER_RECONCILIATION_INTERVAL));
+
+        setHttpMaxConnections(env.getIntEnvVariable(HTTP_MAX_CONNECTIONS, DEFAULT_HTTP_MAX_CONNECTIONS));
+        setHttpMaxConnectionsPerHost(env.getIntEnvVariable(HTTP_MAX_CONNECTIONS_PER_HOST,
+                DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST));
+        setHttpConnectTimeout(env.getIntEnvVariable(HTTP_CONNECT_TIMEOUT, DEFAULT_HTTP_CONNECT_TIMEOUT));
+        setHttpSocketTimeout(env.getIntEnvVariable(HTTP_SOCKET_TIMEOUT, DEFAULT_HTTP_SOCKET_TIMEOUT));
+
+        setCloudArtifactThreads(env.getIntEnvVariable(CLOUD_ARTIFACT_THREADS, DEFAULT_CLOUD_ARTIFACT_THREADS));
+        setCloudArtifactThreadsPerProvider(env.getIntEnvVariable(CLOUD_ARTIFACT_THREADS_PER_PROVIDER,
+                DEFAULT_CLOUD_ARTIFACT_THREADS_PER_PROVIDER));
+        setCloudArtifactQueueSize(env.getIntEnvVariable(CLOUD_ARTIFACT_QUEUE_SIZE,
+                DEFAULT_CLOUD_ARTIFACT_QUEUE_SIZE));
+
+        setCloudApiRequestsPerSecond(env.getIntEnvVariable(CLOUD_API_REQUESTS_PER_SECOND,
+                DEFAULT_CLOUD_API_REQUESTS_PER_SECOND));
+        setCloudApiBurst(env.getIntEnvVariable(CLOUD_API_BURST, DEFAULT_CLOUD_API_BURST));
+        setCloudApiCacheTtl(env.getIntEnvVariable(CLOUD_API_CACHE_TTL, DEFAULT_CLOUD_API_CACHE_TTL));
+
         currentUser = System.getProperty("user.name", "seluser");
         HOST_GID = env.getStringEnvVariable("HOST_GID", "1000");
         HOST_UID = env.getStringEnvVariable("HOST_UID", "1000");
@@ -97,6 +212,214 @@ public class ZaleniumConfiguration {
                 DEFAULT_CHECK_CONTAINERS_INTERVAL : checkContainersInterval;
     }
 
+    public static int getSessionTerminationThreads() {
+        return sessionTerminationThreads;
+    }
+
+    public static void setSessionTerminationThreads(int sessionTerminationThreads) {
+        ZaleniumConfiguration.sessionTerminationThreads = sessionTerminationThreads < 1 ?
+                DEFAULT_SESSION_TERMINATION_THREADS : sessionTerminationThreads;
+    }
+
+    public static int getSessionTerminationQueueSize() {
+        return sessionTerminationQueueSize;
+    }
+
+    public static void setSessionTerminationQueueSize(int sessionTerminationQueueSize) {
+        ZaleniumConfiguration.sessionTerminationQueueSize = sessionTerminationQueueSize < 1 ?
+                DEFAULT_SESSION_TERMINATION_QUEUE_SIZE : sessionTerminationQueueSize;
+    }
+
+    public static int getContainerStartThreads() {
+        return containerStartThreads;
+    }
+
+    public static void setContainerStartThreads(int containerStartThreads) {
+        ZaleniumConfiguration.containerStartThreads = containerStartThreads < 1 ?
+                DEFAULT_CONTAINER_START_THREADS : containerStartThreads;
+    }
+
+    public static int getContainerStartQueueSize() {
+        return containerStartQueueSize;
+    }
+
+    public static void setContainerStartQueueSize(int containerStartQueueSize) {
+        ZaleniumConfiguration.containerStartQueueSize = containerStartQueueSize < 1 ?
+                DEFAULT_CONTAINER_START_QUEUE_SIZE : containerStartQueueSize;
+    }
+
+    public static int getArtifactTransferThreads() {
+        return artifactTransferThreads;
+    }
+
+    public static void setArtifactTransferThreads(int artifactTransferThreads) {
+        ZaleniumConfiguration.artifactTransferThreads = artifactTransferThreads < 1 ?
+                DEFAULT_ARTIFACT_TRANSFER_THREADS : artifactTransferThreads;
+    }
+
+    public static int getArtifactTransferQueueSize() {
+        return artifactTransferQueueSize;
+    }
+
+    public static void setArtifactTransferQueueSize(int artifactTransferQueueSize) {
+        ZaleniumConfiguration.artifactTransferQueueSize = artifactTransferQueueSize < 1 ?
+                DEFAULT_ARTIFACT_TRANSFER_QUEUE_SIZE : artifactTransferQueueSize;
+    }
+
+    public static boolean isPreWarmingEnabled() {
+        return preWarmingEnabled;
+    }
+
+    public static void setPreWarmingEnabled(boolean preWarmingEnabled) {
+        ZaleniumConfiguration.preWarmingEnabled = preWarmingEnabled;
+    }
+
+    /**
+     * @return seconds of expected requests the pre-warmed containers should cover, roughly the container boot time.
+     */
+    public static int getPreWarmingLookahead() {
+        return preWarmingLookahead;
+    }
+
+    public static void setPreWarmingLookahead(int preWarmingLookahead) {
+        ZaleniumConfiguration.preWarmingLookahead = preWarmingLookahead < 0 ?
+                DEFAULT_PRE_WARMING_LOOKAHEAD : preWarmingLookahead;
+    }
+
+    /**
+     * @return seconds the demand needs to stay low before pre-warmed containers are allowed to go away.
+     */
+    public static int getPreWarmingScaleDownDelay() {
+        return preWarmingScaleDownDelay;
+    }
+
+    public static void setPreWarmingScaleDownDelay(int preWarmingScaleDownDelay) {
+        ZaleniumConfiguration.preWarmingScaleDownDelay = preWarmingScaleDownDelay < 0 ?
+                DEFAULT_PRE_WARMING_SCALE_DOWN_DELAY : preWarmingScaleDownDelay;
+    }
+
+    /**
+     * @return seconds between two polls of the same container while its state changes are received as events.
+     */
+    public static int getContainerReconciliationInterval() {
+        return containerReconciliationInterval;
+    }
+
+    public static void setContainerReconciliationInterval(int containerReconciliationInterval) {
+        ZaleniumConfiguration.containerReconciliationInterval = containerReconciliationInterval <= 0 ?
+                DEFAULT_CONTAINER_RECONCILIATION_INTERVAL : containerReconciliationInterval;
+    }
+
+    /**
+     * @return connections kept open to the cloud testing providers and the remote dashboard, all hosts together.
+     */
+    public static int getHttpMaxConnections() {
+        return httpMaxConnections;
+    }
+
+    public static void setHttpMaxConnections(int httpMaxConnections) {
+        ZaleniumConfiguration.httpMaxConnections = httpMaxConnections < 1 ?
+                DEFAULT_HTTP_MAX_CONNECTIONS : httpMaxConnections;
+    }
+
+    public static int getHttpMaxConnectionsPerHost() {
+        return httpMaxConnectionsPerHost;
+    }
+
+    public static void setHttpMaxConnectionsPerHost(int httpMaxConnectionsPerHost) {
+        ZaleniumConfiguration.httpMaxConnectionsPerHost = httpMaxConnectionsPerHost < 1 ?
+                DEFAULT_HTTP_MAX_CONNECTIONS_PER_HOST : httpMaxConnectionsPerHost;
+    }
+
+    /**
+     * @return seconds to wait for a connection to be established, or for a free one in the pool.
+     */
+    public static int getHttpConnectTimeout() {
+        return httpConnectTimeout;
+    }
+
+    public static void setHttpConnectTimeout(int httpConnectTimeout) {
+        ZaleniumConfiguration.httpConnectTimeout = httpConnectTimeout <= 0 ?
+                DEFAULT_HTTP_CONNECT_TIMEOUT : httpConnectTimeout;
+    }
+
+    /**
+     * @return seconds to wait for data once connected.
+     */
+    public static int getHttpSocketTimeout() {
+        return httpSocketTimeout;
+    }
+
+    public static void setHttpSocketTimeout(int httpSocketTimeout) {
+        ZaleniumConfiguration.httpSocketTimeout = httpSocketTimeout <= 0 ?
+                DEFAULT_HTTP_SOCKET_TIMEOUT : httpSocketTimeout;
+    }
+
+    /**
+     * @return tests of cloud testing providers whose video and logs are downloaded at the same time, all providers
+     * together. Also the amount of log files downloaded at the same time.
+     */
+    public static int getCloudArtifactThreads() {
+        return cloudArtifactThreads;
+    }
+
+    public static void setCloudArtifactThreads(int cloudArtifactThreads) {
+        ZaleniumConfiguration.cloudArtifactThreads = cloudArtifactThreads < 1 ?
+                DEFAULT_CLOUD_ARTIFACT_THREADS : cloudArtifactThreads;
+    }
+
+    public static int getCloudArtifactThreadsPerProvider() {
+        return cloudArtifactThreadsPerProvider;
+    }
+
+    public static void setCloudArtifactThreadsPerProvider(int cloudArtifactThreadsPerProvider) {
+        ZaleniumConfiguration.cloudArtifactThreadsPerProvider = cloudArtifactThreadsPerProvider < 1 ?
+                DEFAULT_CLOUD_ARTIFACT_THREADS_PER_PROVIDER : cloudArtifactThreadsPerProvider;
+    }
+
+    public static int getCloudArtifactQueueSize() {
+        return cloudArtifactQueueSize;
+    }
+
+    public static void setCloudArtifactQueueSize(int cloudArtifactQueueSize) {
+        ZaleniumConfiguration.cloudArtifactQueueSize = cloudArtifactQueueSize < 1 ?
+                DEFAULT_CLOUD_ARTIFACT_QUEUE_SIZE : cloudArtifactQueueSize;
+    }
+
+    /**
+     * @return requests per second sent to the REST API of each cloud testing provider, on average.
+     */
+    public static int getCloudApiRequestsPerSecond() {
+        return cloudApiRequestsPerSecond;
+    }
+
+    public static void setCloudApiRequestsPerSecond(int cloudApiRequestsPerSecond) {
+        ZaleniumConfiguration.cloudApiRequestsPerSecond = cloudApiRequestsPerSecond < 1 ?
+                DEFAULT_CLOUD_API_REQUESTS_PER_SECOND : cloudApiRequestsPerSecond;
+    }
+
+    /**
+     * @return requests sent at once to the REST API of a cloud testing provider after it was not used for a while.
+     */
+    public static int getCloudApiBurst() {
+        return cloudApiBurst;
+    }
+
+    public static void setCloudApiBurst(int cloudApiBurst) {
+        ZaleniumConfiguration.cloudApiBurst = cloudApiBurst < 1 ? DEFAULT_CLOUD_API_BURST : cloudApiBurst;
+    }
+
+    /**
+     * @return seconds a response of a cloud testing provider REST API is reused, 0 to not reuse them.
+     */
+    public static int getCloudApiCacheTtl() {
+        return cloudApiCacheTtl;
+    }
+
+    public static void setCloudApiCacheTtl(int cloudApiCacheTtl) {
+        ZaleniumConfiguration.cloudApiCacheTtl = cloudApiCacheTtl < 0 ? DEFAULT_CLOUD_API_CACHE_TTL : cloudApiCacheTtl;
+    }
+
     public static int getMaxTimesToProcessRequest() {
         return maxTimesToProcessRequest;
     }
@@ -0,0 +1,135 @@
+package de.zalando.ep.zalenium.container;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import de.zalando.ep.zalenium.container.ContainerStateCache.Check;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContainerStateCacheTest {
+
+    private static final long RECONCILIATION_INTERVAL = 60000;
+
+    private Clock clock;
+    private ContainerStateCache containerStates;
+    private ContainerCreationStatus container;
+
+    @Before
+    public void setUp() {
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(1000L);
+        containerStates = new ContainerStateCache(clock, RECONCILIATION_INTERVAL);
+        container = new ContainerCreationStatus(true, "zalenium_abc123", "f00ba4", "40000");
+    }
+
+    @Test
+    public void containersArePolledOnEveryCheckWhenNotWatching() {
+        assertTrue(containerStates.needsPolling(container, Check.READY));
+        assertTrue(containerStates.needsPolling(container, Check.READY));
+    }
+
+    @Test
+    public void containersArePolledOnlyEveryReconciliationIntervalWhenWatching() {
+        containerStates.setWatching(true);
+
+        assertFalse(containerStates.needsPolling(container, Check.READY));
+        Mockito.when(clock.millis()).thenReturn(1000L + RECONCILIATION_INTERVAL - 1);
+        assertFalse(containerStates.needsPolling(container, Check.READY));
+        Mockito.when(clock.millis()).thenReturn(1000L + RECONCILIATION_INTERVAL);
+        assertTrue(containerStates.needsPolling(container, Check.READY));
+        assertFalse(containerStates.needsPolling(container, Check.READY));
+    }
+
+    @Test
+    public void changedContainersArePolledOnTheNextCheck() {
+        containerStates.setWatching(true);
+        assertFalse(containerStates.needsPolling(container, Check.READY));
+
+        containerStates.containerChanged("f00ba4");
+
+        assertTrue(containerStates.needsPolling(container, Check.READY));
+        assertFalse(containerStates.needsPolling(container, Check.READY));
+    }
+
+    @Test
+    public void readinessAndTerminationAreReconciledSeparately() {
+        containerStates.setWatching(true);
+        assertFalse(containerStates.needsPolling(container, Check.TERMINATED));
+        assertFalse(containerStates.needsPolling(container, Check.READY));
+
+        Mockito.when(clock.millis()).thenReturn(1000L + RECONCILIATION_INTERVAL);
+        assertTrue(containerStates.needsPolling(container, Check.TERMINATED));
+        assertTrue(containerStates.needsPolling(container, Check.READY));
+
+        containerStates.containerChanged("f00ba4");
+        assertTrue(containerStates.needsPolling(container, Check.TERMINATED));
+        assertTrue(containerStates.needsPolling(container, Check.READY));
+    }
+
+    @Test
+    public void stateIsFoundByNameOrId() {
+        containerStates.containerReady("zalenium_abc123");
+        containerStates.containerTerminated("f00ba4");
+
+        assertTrue(containerStates.isReady(container));
+        assertTrue(containerStates.isTerminated(container));
+    }
+
+    @Test
+    public void listenersAreNotifiedOnceForEachStateChange() {
+        AtomicInteger notifications = new AtomicInteger();
+        containerStates.addListener(notifications::incrementAndGet);
+
+        containerStates.containerReady("f00ba4");
+        containerStates.containerReady("f00ba4");
+        containerStates.containerTerminated("f00ba4");
+
+        assertEquals(2, notifications.get());
+    }
+
+    @Test
+    public void forgottenContainersHaveNoState() {
+        containerStates.containerReady("zalenium_abc123");
+        containerStates.containerTerminated("f00ba4");
+
+        containerStates.forget(container);
+
+        assertFalse(containerStates.isReady(container));
+        assertFalse(containerStates.isTerminated(container));
+    }
+
+    @Test
+    public void containersRemovedAfterBeingForgottenLeaveNothingBehind() {
+        containerStates.setWatching(true);
+        assertFalse(containerStates.needsPolling(container, Check.TERMINATED));
+
+        containerStates.containerTerminated("f00ba4");
+        assertTrue(containerStates.isTerminated(container));
+        containerStates.forget(container);
+        containerStates.containerRemoved("f00ba4");
+
+        assertFalse(containerStates.isTerminated(container));
+        assertEquals(0, containerStates.size());
+    }
+
+    @Test
+    public void containersRemovedWhileTrackedArePolledOnTheNextCheck() {
+        containerStates.setWatching(true);
+        assertFalse(containerStates.needsPolling(container, Check.TERMINATED));
+
+        containerStates.containerTerminated("f00ba4");
+        containerStates.containerRemoved("f00ba4");
+
+        assertFalse(containerStates.isTerminated(container));
+        assertTrue(containerStates.needsPolling(container, Check.TERMINATED));
+        containerStates.forget(container);
+        assertEquals(0, containerStates.size());
+    }
+}
@@ -0,0 +1,111 @@
+package de.zalando.ep.zalenium.container;
+
+import java.time.Clock;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.docker.client.messages.AttachedNetwork;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.NetworkSettings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DockerContainerIndexTest {
+
+    private static final long MAX_STALENESS = 60000;
+
+    private Clock clock;
+    private DockerContainerIndex containerIndex;
+
+    @Before
+    public void setUp() {
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(1000L);
+        containerIndex = new DockerContainerIndex(clock, MAX_STALENESS);
+    }
+
+    @Test
+    public void lookupsMissWhenEventsAreNotReceived() {
+        containerIndex.containersListed(Collections.singletonList(container("f00ba4", "/zalenium_abc123", "172.17.0.3")));
+
+        assertNull(containerIndex.getIdByName("/zalenium_abc123"));
+        assertNull(containerIndex.getIdByIp("172.17.0.3"));
+    }
+
+    @Test
+    public void listedContainersAreFoundByNameAndIp() {
+        containerIndex.setWatching(true);
+        assertNull(containerIndex.getIdByName("/zalenium_abc123"));
+
+        containerIndex.containersListed(Collections.singletonList(container("f00ba4", "/zalenium_abc123", "172.17.0.3")));
+
+        assertEquals("f00ba4", containerIndex.getIdByName("/ZALENIUM_abc123"));
+        assertEquals("f00ba4", containerIndex.getIdByIp("172.17.0.3"));
+    }
+
+    @Test
+    public void lookupsMissWhenTheLastListIsTooOld() {
+        containerIndex.setWatching(true);
+        containerIndex.containersListed(Collections.singletonList(container("f00ba4", "/zalenium_abc123", "172.17.0.3")));
+
+        Mockito.when(clock.millis()).thenReturn(1000L + MAX_STALENESS);
+
+        assertNull(containerIndex.getIdByName("/zalenium_abc123"));
+    }
+
+    @Test
+    public void startedAndRemovedContainersUpdateTheIndex() {
+        containerIndex.setWatching(true);
+        containerIndex.containersListed(Collections.emptyList());
+
+        NetworkSettings networkSettings = networkSettings("172.17.0.4");
+        ContainerInfo containerInfo = Mockito.mock(ContainerInfo.class);
+        Mockito.when(containerInfo.id()).thenReturn("c0ffee");
+        Mockito.when(containerInfo.name()).thenReturn("/zalenium_def456");
+        Mockito.when(containerInfo.networkSettings()).thenReturn(networkSettings);
+        containerIndex.containerStarted(containerInfo);
+
+        assertEquals("c0ffee", containerIndex.getIdByName("/zalenium_def456"));
+        assertEquals("c0ffee", containerIndex.getIdByIp("172.17.0.4"));
+
+        containerIndex.containerRemoved("c0ffee");
+
+        assertNull(containerIndex.getIdByName("/zalenium_def456"));
+        assertNull(containerIndex.getIdByIp("172.17.0.4"));
+    }
+
+    @Test
+    public void containersMissingFromAListAreRemoved() {
+        containerIndex.setWatching(true);
+        containerIndex.containersListed(Collections.singletonList(container("f00ba4", "/zalenium_abc123", "172.17.0.3")));
+
+        containerIndex.containersListed(Collections.singletonList(container("c0ffee", "/zalenium_def456", "172.17.0.3")));
+
+        assertNull(containerIndex.getIdByName("/zalenium_abc123"));
+        assertEquals("c0ffee", containerIndex.getIdByIp("172.17.0.3"));
+    }
+
+    private static Container container(String id, String name, String ip) {
+        NetworkSettings networkSettings = networkSettings(ip);
+        Container container = Mockito.mock(Container.class);
+        Mockito.when(container.id()).thenReturn(id);
+        Mockito.when(container.names()).thenReturn(ImmutableList.of(name));
+        Mockito.when(container.networkSettings()).thenReturn(networkSettings);
+        return container;
+    }
+
+    private static NetworkSettings networkSettings(String ip) {
+        AttachedNetwork network = Mockito.mock(AttachedNetwork.class);
+        Mockito.when(network.ipAddress()).thenReturn(ip);
+        NetworkSettings networkSettings = Mockito.mock(NetworkSettings.class);
+        Mockito.when(networkSettings.networks()).thenReturn(ImmutableMap.of("bridge", network));
+        return networkSettings;
+    }
+}
@@ -0,0 +1,115 @@
+package de.zalando.ep.zalenium.container.kubernetes;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.Watcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PodCacheTest {
+
+    private static final long MAX_STALENESS = 60000;
+
+    private Clock clock;
+    private List<Pod> pods;
+    private AtomicInteger podLists;
+    private AtomicInteger podFetches;
+    private PodCache podCache;
+
+    @Before
+    public void setUp() {
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(1000L);
+        pods = new ArrayList<>();
+        podLists = new AtomicInteger();
+        podFetches = new AtomicInteger();
+        podCache = new PodCache(clock, MAX_STALENESS, () -> {
+            podLists.incrementAndGet();
+            return new ArrayList<>(pods);
+        });
+    }
+
+    @Test
+    public void podsAreFetchedEveryTimeWhenNotWatching() {
+        Pod pod = pod("selenium-1", "10.0.0.1");
+        pods.add(pod);
+
+        assertSame(pod, podCache.getByName("selenium-1", this::fetch));
+        assertSame(pod, podCache.getByName("selenium-1", this::fetch));
+        assertSame(pod, podCache.getByIp("10.0.0.1"));
+
+        assertEquals(2, podFetches.get());
+        assertEquals(1, podLists.get());
+    }
+
+    @Test
+    public void podsAreListedOnceWhenTheWatchOpens() {
+        Pod pod = pod("selenium-1", "10.0.0.1");
+        pods.add(pod);
+        podCache.setWatching(true);
+
+        assertSame(pod, podCache.getByName("selenium-1", this::fetch));
+        assertSame(pod, podCache.getByIp("10.0.0.1"));
+        assertSame(pod, podCache.getByName("selenium-1", this::fetch));
+
+        assertEquals(0, podFetches.get());
+        assertEquals(1, podLists.get());
+    }
+
+    @Test
+    public void podsAreListedAgainWhenTheCacheIsStale() {
+        podCache.setWatching(true);
+        assertNull(podCache.getByName("selenium-1", this::fetch));
+        assertEquals(1, podLists.get());
+
+        Pod pod = pod("selenium-1", "10.0.0.1");
+        pods.add(pod);
+        Mockito.when(clock.millis()).thenReturn(1000L + MAX_STALENESS);
+
+        assertSame(pod, podCache.getByName("selenium-1", this::fetch));
+        assertEquals(1, podFetches.get());
+        assertEquals(2, podLists.get());
+    }
+
+    @Test
+    public void watchEventsUpdateTheIndexes() {
+        podCache.setWatching(true);
+        podCache.getByIp("10.0.0.1");
+
+        Pod pod = pod("selenium-1", "10.0.0.1");
+        podCache.podChanged(Watcher.Action.ADDED, pod);
+        assertSame(pod, podCache.getByIp("10.0.0.1"));
+
+        Pod movedPod = pod("selenium-1", "10.0.0.2");
+        podCache.podChanged(Watcher.Action.MODIFIED, movedPod);
+        assertSame(movedPod, podCache.getByIp("10.0.0.2"));
+        assertSame(movedPod, podCache.getByName("selenium-1", this::fetch));
+
+        podCache.podChanged(Watcher.Action.DELETED, movedPod);
+        assertNull(podCache.getByName("selenium-1", this::fetch));
+        assertEquals(1, podFetches.get());
+    }
+
+    private Pod fetch(String podName) {
+        podFetches.incrementAndGet();
+        return pods.stream().filter(pod -> pod.getMetadata().getName().equals(podName)).findFirst().orElse(null);
+    }
+
+    private static Pod pod(String name, String ip) {
+        return new PodBuilder()
+                .withNewMetadata().withName(name).endMetadata()
+                .withNewStatus().withPodIP(ip).endStatus()
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Date;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import de.zalando.ep.zalenium.util.CommonProxyUtilities;
+import de.zalando.ep.zalenium.util.TestUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+public class DashboardInformationServletTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private DashboardInformationServlet dashboardInformationServlet;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private ServletOutputStream outputStream;
+
+    @Before
+    public void initMocksAndService() throws IOException {
+        TestUtils.ensureRequiredFilesExistForCleanup(temporaryFolder);
+        CommonProxyUtilities proxyUtilities = TestUtils.mockCommonProxyUtilitiesForDashboardTesting(temporaryFolder);
+        Dashboard.setCommonProxyUtilities(proxyUtilities);
+        TestHistoryStore testHistory = Dashboard.getTestHistory();
+        testHistory.append(testInformation("login", "build-1", TestInformation.TestStatus.SUCCESS, 1000));
+        testHistory.append(testInformation("logout", "build-1", TestInformation.TestStatus.FAILED, 2000));
+        testHistory.append(testInformation("search", "build-2", TestInformation.TestStatus.SUCCESS, 3000));
+        testHistory.append(testInformation("checkout", "build-2", TestInformation.TestStatus.SUCCESS, 4000));
+
+        dashboardInformationServlet = new DashboardInformationServlet();
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        outputStream = TestUtils.getMockedServletOutputStream();
+        when(response.getOutputStream()).thenReturn(outputStream);
+    }
+
+    @After
+    public void restoreCommonProxyUtilities() {
+        Dashboard.restoreCommonProxyUtilities();
+    }
+
+    @Test
+    public void allTestsAreReturnedWithoutParameters() throws IOException {
+        dashboardInformationServlet.doGet(request, response);
+
+        assertTestNames("login", "logout", "search", "checkout");
+    }
+
+    @Test
+    public void testsAddedAfterTheLastDateAreReturned() throws IOException {
+        when(request.getParameter("lastDateAddedToDashboard")).thenReturn("2000");
+
+        dashboardInformationServlet.doGet(request, response);
+
+        assertTestNames("search", "checkout");
+    }
+
+    @Test
+    public void testsArePaginatedFromTheNewest() throws IOException {
+        when(request.getParameter("limit")).thenReturn("2");
+        when(request.getParameter("before")).thenReturn("4000");
+
+        dashboardInformationServlet.doGet(request, response);
+
+        assertTestNames("logout", "search");
+    }
+
+    @Test
+    public void testsAddedAfterAnEmptyFirstPageAreReturned() throws IOException {
+        TestHistoryStore testHistory = Dashboard.getTestHistory();
+        testHistory.reset();
+        when(request.getParameter("limit")).thenReturn("100");
+
+        dashboardInformationServlet.doGet(request, response);
+        assertTestNames();
+
+        testHistory.append(testInformation("login", "build-1", TestInformation.TestStatus.SUCCESS, 5000));
+        outputStream = TestUtils.getMockedServletOutputStream();
+        when(response.getOutputStream()).thenReturn(outputStream);
+        dashboardInformationServlet.doGet(request, response);
+
+        assertTestNames("login");
+    }
+
+    @Test
+    public void testsAreFiltered() throws IOException {
+        when(request.getParameter("build")).thenReturn("BUILD-1");
+        when(request.getParameter("status")).thenReturn("success");
+        when(request.getParameter("search")).thenReturn("LOG");
+
+        dashboardInformationServlet.doGet(request, response);
+
+        assertTestNames("login");
+    }
+
+    @Test
+    public void everySearchedWordIsFoundInAnyField() throws IOException {
+        when(request.getParameter("search")).thenReturn(" build-2  Chrome success ");
+
+        dashboardInformationServlet.doGet(request, response);
+
+        assertTestNames("search", "checkout");
+    }
+
+    @Test
+    public void invalidParametersAreRejected() throws IOException {
+        when(request.getParameter("status")).thenReturn("unknown");
+
+        dashboardInformationServlet.doGet(request, response);
+
+        verify(response).sendError(eq(400), eq("Invalid status: unknown"));
+    }
+
+    @Test
+    public void unchangedTestsAreNotReturnedAgain() throws IOException {
+        dashboardInformationServlet.doGet(request, response);
+        ArgumentCaptor<String> eTag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), eTag.capture());
+
+        HttpServletResponse notModifiedResponse = mock(HttpServletResponse.class);
+        when(request.getHeader("If-None-Match")).thenReturn(eTag.getValue());
+        dashboardInformationServlet.doGet(request, notModifiedResponse);
+
+        verify(notModifiedResponse).setStatus(304);
+        verify(notModifiedResponse, never()).getOutputStream();
+    }
+
+    private void assertTestNames(String... testNames) {
+        JsonArray testsInformation = new JsonParser().parse(outputStream.toString()).getAsJsonArray();
+        Assert.assertEquals(testNames.length, testsInformation.size());
+        for (int i = 0; i < testNames.length; i++) {
+            Assert.assertEquals(testNames[i], testsInformation.get(i).getAsJsonObject().get("testName").getAsString());
+        }
+    }
+
+    private static TestInformation testInformation(String testName, String build, TestInformation.TestStatus status,
+                                                   long addedToDashboardTime) {
+        TestInformation testInformation = new TestInformation.TestInformationBuilder()
+                .withSeleniumSessionId(testName)
+                .withTestName(testName)
+                .withProxyName("Zalenium")
+                .withBrowser("chrome")
+                .withBrowserVersion("70")
+                .withPlatform("linux")
+                .withBuild(build)
+                .withTestStatus(status)
+                .build();
+        testInformation.setAddedToDashboardTime(addedToDashboardTime);
+        testInformation.setRetentionDate(new Date(System.currentTimeMillis() + 86400000));
+        return testInformation;
+    }
+}
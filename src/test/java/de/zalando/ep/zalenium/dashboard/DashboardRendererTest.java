@@ -0,0 +1,100 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class DashboardRendererTest {
+
+    private static final long NOW = Instant.parse("2019-03-10T12:00:00Z").toEpochMilli();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private DashboardRenderer dashboardRenderer;
+    private File dashboardTemplate;
+    private File dashboardHtml;
+
+    @Before
+    public void setUp() throws IOException {
+        Clock clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+        Mockito.when(clock.instant()).thenReturn(Instant.ofEpochMilli(NOW));
+        dashboardRenderer = new DashboardRenderer(temporaryFolder.getRoot(), clock);
+        dashboardTemplate = temporaryFolder.newFile("dashboard_template.html");
+        FileUtils.writeStringToFile(dashboardTemplate,
+                "<div id=\"tests\" class=\"list-group\"></div><p>{retentionPeriod}</p>", UTF_8);
+        dashboardHtml = new File(temporaryFolder.getRoot(), "dashboard.html");
+    }
+
+    @Test
+    public void testsAreRenderedNewestFirst() throws IOException {
+        dashboardRenderer.append(testInformation("first", 1));
+        dashboardRenderer.append(testInformation("second", 2));
+        dashboardRenderer.append(testInformation("third", 1));
+
+        dashboardRenderer.writeDashboard(dashboardTemplate, dashboardHtml, 3);
+
+        String dashboard = FileUtils.readFileToString(dashboardHtml, UTF_8);
+        Assert.assertTrue(dashboard.indexOf("data-test-name=\"second\"") < dashboard.indexOf("data-test-name=\"third\""));
+        Assert.assertTrue(dashboard.indexOf("data-test-name=\"third\"") < dashboard.indexOf("data-test-name=\"first\""));
+        Assert.assertTrue(dashboard.endsWith("</div><p>3</p>"));
+    }
+
+    @Test
+    public void renderedTestsAreSingleLines() {
+        String testItem = dashboardRenderer.renderTestItem(testInformation("first", 1));
+
+        Assert.assertFalse(testItem.contains("\n"));
+        Assert.assertTrue(testItem.contains("data-test-name=\"first\""));
+    }
+
+    @Test
+    public void expiredTestsAreRemoved() throws IOException {
+        TestInformation expired = testInformation("expired", -1);
+        TestInformation expiringToday = testInformation("expiringToday", 0);
+        TestInformation valid = testInformation("valid", 1);
+        dashboardRenderer.rebuild(Arrays.asList(expired, expiringToday, valid));
+        expiringToday.setRetentionDate(new Date(NOW - 1));
+
+        dashboardRenderer.removeExpired(Collections.emptyList());
+        dashboardRenderer.writeDashboard(dashboardTemplate, dashboardHtml, 3);
+
+        String dashboard = FileUtils.readFileToString(dashboardHtml, UTF_8);
+        Assert.assertFalse(dashboard.contains("data-test-name=\"expired\""));
+        Assert.assertFalse(dashboard.contains("data-test-name=\"expiringToday\""));
+        Assert.assertTrue(dashboard.contains("data-test-name=\"valid\""));
+    }
+
+    private static TestInformation testInformation(String testName, int retentionDays) {
+        TestInformation testInformation = new TestInformation.TestInformationBuilder()
+                .withSeleniumSessionId(testName)
+                .withTestName(testName)
+                .withProxyName("Zalenium")
+                .withBrowser("chrome")
+                .withBrowserVersion("70")
+                .withPlatform("linux")
+                .withTestStatus(TestInformation.TestStatus.COMPLETED)
+                .build();
+        testInformation.buildSeleniumLogFileName();
+        testInformation.buildBrowserDriverLogFileName();
+        testInformation.setRetentionDate(new Date(NOW + TimeUnit.DAYS.toMillis(retentionDays) + 1));
+        return testInformation;
+    }
+}
@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.IOException;
 
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import de.zalando.ep.zalenium.util.CommonProxyUtilities;
 import de.zalando.ep.zalenium.util.TestUtils;
 import org.apache.commons.io.FileUtils;
@@ -86,10 +87,26 @@ public class DashboardTest {
         FileUtils.writeStringToFile(testCountFile, testQuantities.toString(), UTF_8);
         Dashboard.setExecutedTests(0, 0);
         DashboardCollection.updateDashboard(ti);
+        DashboardCollection.flush();
         Assert.assertEquals(1, Dashboard.getExecutedTests());
         Assert.assertEquals(1, Dashboard.getExecutedTestsWithVideo());
     }
 
+    @Test
+    public void queuedUpdatesAreCountedAndSaved() throws IOException {
+        DashboardCollection.updateDashboard(ti);
+        DashboardCollection.updateDashboard(ti);
+        DashboardCollection.updateDashboard(ti);
+        DashboardCollection.flush();
+
+        File testCountFile = new File(temporaryFolder.getRoot().getAbsolutePath() + "/" + Dashboard.VIDEOS_FOLDER_NAME
+                + "/" + TEST_COUNT_FILE_NAME);
+        JsonObject testQuantities = new JsonParser().parse(FileUtils.readFileToString(testCountFile, UTF_8))
+                .getAsJsonObject();
+        Assert.assertEquals(3, testQuantities.get("executedTests").getAsInt());
+        Assert.assertEquals(3, testQuantities.get("executedTestsWithVideo").getAsInt());
+    }
+
     private void cleanTempVideosFolder() throws IOException {
         FileUtils.cleanDirectory(new File(temporaryFolder.getRoot().getAbsolutePath()));
     }
@@ -0,0 +1,159 @@
+package de.zalando.ep.zalenium.dashboard;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class TestHistoryStoreTest {
+
+    private static final long NOW = Instant.parse("2019-03-10T12:00:00Z").toEpochMilli();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Clock clock;
+    private TestHistoryStore testHistory;
+
+    @Before
+    public void setUp() {
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(NOW);
+        Mockito.when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+        Mockito.when(clock.instant()).thenAnswer(invocation -> Instant.ofEpochMilli(clock.millis()));
+        testHistory = new TestHistoryStore(temporaryFolder.getRoot(), clock);
+        testHistory.load();
+    }
+
+    @Test
+    public void testsAreFoundByAddedTime() {
+        TestInformation first = testInformation("first", "build-1", TestInformation.TestStatus.SUCCESS, 1000, 1);
+        TestInformation second = testInformation("second", "build-2", TestInformation.TestStatus.FAILED, 2000, 1);
+        TestInformation third = testInformation("third", "build-1", TestInformation.TestStatus.FAILED, 3000, 1);
+        testHistory.append(first);
+        testHistory.append(third);
+        testHistory.append(second);
+
+        assertTestNames(testHistory.getAll(), "first", "second", "third");
+        assertTestNames(testHistory.getAddedAfter(1000), "second", "third");
+    }
+
+    @Test
+    public void pagesEndAfterTheTestsAddedAtTheSameTime() {
+        testHistory.append(testInformation("first", "build-1", TestInformation.TestStatus.SUCCESS, 1000, 1));
+        testHistory.append(testInformation("second", "build-1", TestInformation.TestStatus.SUCCESS, 2000, 1));
+        testHistory.append(testInformation("third", "build-1", TestInformation.TestStatus.SUCCESS, 2000, 1));
+        testHistory.append(testInformation("fourth", "build-1", TestInformation.TestStatus.SUCCESS, 3000, 1));
+
+        assertTestNames(testHistory.findNewest(Long.MIN_VALUE, Long.MAX_VALUE, test -> true, 2),
+                "second", "third", "fourth");
+        assertTestNames(testHistory.findNewest(Long.MIN_VALUE, 2000, test -> true, 2), "first");
+        assertTestNames(testHistory.findNewest(Long.MIN_VALUE, Long.MAX_VALUE,
+                test -> !"third".equals(test.getTestName()), 2), "second", "fourth");
+    }
+
+    @Test
+    public void appendedTestsAreLoadedAgain() {
+        testHistory.append(testInformation("first", "build-1", TestInformation.TestStatus.SUCCESS, 1000, 1));
+        testHistory.append(testInformation("second", "build-1", TestInformation.TestStatus.SUCCESS, 2000, 2));
+
+        TestHistoryStore reloaded = new TestHistoryStore(temporaryFolder.getRoot(), clock);
+        reloaded.load();
+
+        assertTestNames(reloaded.getAll(), "first", "second");
+    }
+
+    @Test
+    public void expiredTestsAreRemovedAndTheirSegmentsDeleted() {
+        testHistory.append(testInformation("expired", "build-1", TestInformation.TestStatus.SUCCESS, 1000, -1));
+        testHistory.append(testInformation("expiredToday", "build-1", TestInformation.TestStatus.SUCCESS, 2000, 0));
+        testHistory.append(testInformation("valid", "build-1", TestInformation.TestStatus.SUCCESS, 3000, 1));
+
+        List<TestInformation> removed = testHistory.removeExpired();
+
+        assertTestNames(removed, "expired", "expiredToday");
+        assertTestNames(testHistory.getAll(), "valid");
+        assertTestNames(testHistory.getAddedAfter(1000), "valid");
+        Assert.assertFalse(new File(temporaryFolder.getRoot(), "testInformation-20190309.json").exists());
+        Assert.assertTrue(new File(temporaryFolder.getRoot(), "testInformation-20190310.json").exists());
+    }
+
+    @Test
+    public void onlyExpiredTestsAddedAtTheSameTimeAreRemoved() {
+        testHistory.append(testInformation("expired", "build-1", TestInformation.TestStatus.SUCCESS, 1000, -1));
+        testHistory.append(testInformation("valid", "build-1", TestInformation.TestStatus.SUCCESS, 1000, 1));
+        testHistory.append(testInformation("expiredToday", "build-1", TestInformation.TestStatus.SUCCESS, 1000, 0));
+
+        List<TestInformation> removed = testHistory.removeExpired();
+
+        assertTestNames(removed, "expired", "expiredToday");
+        assertTestNames(testHistory.getAll(), "valid");
+    }
+
+    @Test
+    public void testsExpiringTodayAreFoundByRetentionDate() {
+        TestInformation laterToday = testInformation("laterToday", "build-1", TestInformation.TestStatus.SUCCESS,
+                2000, 0);
+        laterToday.setRetentionDate(new Date(NOW + TimeUnit.HOURS.toMillis(1)));
+        TestInformation earlierToday = testInformation("earlierToday", "build-1", TestInformation.TestStatus.SUCCESS,
+                3000, 0);
+        testHistory.append(testInformation("tomorrow", "build-1", TestInformation.TestStatus.SUCCESS, 1000, 1));
+        testHistory.append(laterToday);
+        testHistory.append(earlierToday);
+
+        assertTestNames(testHistory.getExpiringToday(), "laterToday", "earlierToday");
+    }
+
+    @Test
+    public void previousTestInformationFileIsMigrated() throws IOException {
+        File testInformationFile = new File(temporaryFolder.getRoot(), TestHistoryStore.TEST_INFORMATION_FILE);
+        Gson gson = new Gson();
+        FileUtils.writeStringToFile(testInformationFile, gson.toJson(testInformation("old", "build-1",
+                TestInformation.TestStatus.SUCCESS, 1000, 1)) + System.lineSeparator(), UTF_8);
+
+        testHistory.load();
+
+        assertTestNames(testHistory.getAll(), "old");
+        Assert.assertFalse(testInformationFile.exists());
+        Assert.assertTrue(new File(temporaryFolder.getRoot(), "testInformation-20190311.json").exists());
+    }
+
+    private static TestInformation testInformation(String testName, String build, TestInformation.TestStatus status,
+                                                   long addedToDashboardTime, int retentionDays) {
+        TestInformation testInformation = new TestInformation.TestInformationBuilder()
+                .withSeleniumSessionId(testName)
+                .withTestName(testName)
+                .withProxyName("Zalenium")
+                .withBrowser("chrome")
+                .withBrowserVersion("70")
+                .withPlatform("linux")
+                .withBuild(build)
+                .withTestStatus(status)
+                .build();
+        testInformation.setAddedToDashboardTime(addedToDashboardTime);
+        testInformation.setRetentionDate(new Date(NOW + TimeUnit.DAYS.toMillis(retentionDays) - (retentionDays == 0 ? 1 : 0)));
+        return testInformation;
+    }
+
+    private static void assertTestNames(List<TestInformation> testInformation, String... testNames) {
+        Assert.assertEquals(testNames.length, testInformation.size());
+        for (int i = 0; i < testNames.length; i++) {
+            Assert.assertEquals(testNames[i], testInformation.get(i).getTestName());
+        }
+    }
+}
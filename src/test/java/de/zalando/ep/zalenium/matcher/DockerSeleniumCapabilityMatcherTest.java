@@ -0,0 +1,211 @@
+package de.zalando.ep.zalenium.matcher;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.grid.internal.utils.DefaultCapabilityMatcher;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+import de.zalando.ep.zalenium.proxy.DockeredSeleniumStarter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DockerSeleniumCapabilityMatcherTest {
+
+    private final DockerSeleniumCapabilityMatcher matcher = new DockerSeleniumCapabilityMatcher();
+    private final Dimension configuredScreenSize = DockeredSeleniumStarter.getConfiguredScreenSize();
+
+    @After
+    public void restoreConfiguration() {
+        DockeredSeleniumStarter.setConfiguredScreenSize(configuredScreenSize);
+    }
+
+    @Test
+    public void requestsWithoutBrowserNameDoNotMatch() {
+        Map<String, Object> requested = new HashMap<>();
+        requested.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+
+        assertFalse(matcher.matches(node(defaultScreenResolution(), defaultTimeZone()), requested));
+    }
+
+    @Test
+    public void requestsWithoutScreenResolutionOrTimeZoneOnlyMatchDefaultNodes() {
+        Map<String, Object> requested = requested(BrowserType.CHROME);
+
+        assertTrue(matcher.matches(node(defaultScreenResolution(), defaultTimeZone()), requested));
+        assertFalse(matcher.matches(node("1280x760", defaultTimeZone()), requested));
+        assertFalse(matcher.matches(node(defaultScreenResolution(), "America/Montreal"), requested));
+    }
+
+    @Test
+    public void requestedScreenResolutionMatchesWithAndWithoutPrefix() {
+        Map<String, Object> requested = requested(BrowserType.CHROME);
+        requested.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, "1280x760");
+        Map<String, Object> prefixedNode = node("1280x760", defaultTimeZone());
+        DockerSeleniumCapabilityMatcher.prefixZaleniumCustomCapabilities(prefixedNode);
+
+        assertTrue(matcher.matches(node("1280x760", defaultTimeZone()), requested));
+        assertTrue(matcher.matches(prefixedNode, requested));
+        assertFalse(matcher.matches(node(defaultScreenResolution(), defaultTimeZone()), requested));
+    }
+
+    @Test
+    public void requestedTimeZoneMustBeTheNodeOne() {
+        Map<String, Object> requested = requested(BrowserType.FIREFOX);
+        requested.put(ZaleniumCapabilityType.TIME_ZONE, "America/Montreal");
+
+        assertTrue(matcher.matches(node(defaultScreenResolution(), "America/Montreal", BrowserType.FIREFOX),
+                requested));
+        assertFalse(matcher.matches(node(defaultScreenResolution(), defaultTimeZone(), BrowserType.FIREFOX),
+                requested));
+    }
+
+    @Test
+    public void matchingDoesNotChangeTheCapabilities() {
+        Map<String, Object> requested = requested(BrowserType.CHROME);
+        requested.put(ZaleniumCapabilityType.TEST_NAME_NO_PREFIX, "someTest");
+        requested.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, "1280x760");
+        Map<String, Object> requestedBefore = new HashMap<>(requested);
+        Map<String, Object> node = node("1280x760", defaultTimeZone());
+        Map<String, Object> nodeBefore = new HashMap<>(node);
+
+        assertTrue(matcher.matches(node, requested));
+        assertEquals(requestedBefore, requested);
+        assertEquals(nodeBefore, node);
+    }
+
+    @Test
+    public void capabilitiesAddedAfterMatchingAreSeen() {
+        Map<String, Object> requested = requested(BrowserType.CHROME);
+        Map<String, Object> node = node("1280x760", defaultTimeZone());
+        assertFalse(matcher.matches(node, requested));
+
+        requested.put(ZaleniumCapabilityType.SCREEN_RESOLUTION, "1280x760");
+
+        assertTrue(matcher.matches(node, requested));
+    }
+
+    @Test
+    public void configuredScreenSizeChangesAreSeen() {
+        Map<String, Object> requested = requested(BrowserType.CHROME);
+        Map<String, Object> node = node("1280x760", defaultTimeZone());
+        assertFalse(matcher.matches(node, requested));
+
+        DockeredSeleniumStarter.setConfiguredScreenSize(new Dimension(1280, 760));
+
+        assertTrue(matcher.matches(node, requested));
+    }
+
+    @Test
+    public void replacedCapabilitiesAreSeen() {
+        Map<String, Object> requested = requested(BrowserType.CHROME);
+        requested.put(ZaleniumCapabilityType.SCREEN_RESOLUTION, "1280x760");
+        Map<String, Object> node = node("1280x760", defaultTimeZone());
+        assertTrue(matcher.matches(node, requested));
+
+        requested.put(ZaleniumCapabilityType.SCREEN_RESOLUTION, "1024x768");
+
+        assertFalse(matcher.matches(node, requested));
+    }
+
+    @Test
+    public void normalizedCapabilitiesAreUsedAsGiven() {
+        Map<String, Object> requested = requested(BrowserType.CHROME);
+        requested.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, "1280x760");
+        Map<String, Object> node = node("1280x760", defaultTimeZone());
+        NormalizedCapabilities normalizedNode = NormalizedCapabilities.of(node);
+        NormalizedCapabilities normalizedRequest = NormalizedCapabilities.of(requested);
+
+        DockerSeleniumCapabilityMatcher.prefixZaleniumCustomCapabilities(requested);
+
+        assertTrue(matcher.matches(node, normalizedNode, requested, normalizedRequest));
+        assertFalse(matcher.matches(node, normalizedNode, requested,
+                NormalizedCapabilities.of(requested(BrowserType.CHROME))));
+    }
+
+    @Test
+    public void platformBrowserAndVersionAreComparedLikeTheGrid() {
+        Map<String, Object> node = node(defaultScreenResolution(), defaultTimeZone());
+        node.put(CapabilityType.VERSION, "70.0");
+        NormalizedCapabilities normalizedNode = NormalizedCapabilities.of(node);
+
+        Map<String, Object> anyPlatform = requested(BrowserType.CHROME);
+        anyPlatform.put(CapabilityType.PLATFORM_NAME, "ANY");
+        Map<String, Object> windows = requested(BrowserType.CHROME);
+        windows.put(CapabilityType.PLATFORM_NAME, Platform.WINDOWS);
+        Map<String, Object> sameVersion = requested(BrowserType.CHROME);
+        sameVersion.put(CapabilityType.BROWSER_VERSION, "70.0");
+        Map<String, Object> otherVersion = requested(BrowserType.CHROME);
+        otherVersion.put(CapabilityType.VERSION, "69.0");
+
+        for (Map<String, Object> requested : Arrays.asList(anyPlatform, sameVersion)) {
+            assertTrue(matcher.matches(node, normalizedNode, requested, NormalizedCapabilities.of(requested)));
+            assertTrue(new DefaultCapabilityMatcher().matches(node, requested));
+        }
+        for (Map<String, Object> requested : Arrays.asList(windows, otherVersion, requested(BrowserType.FIREFOX))) {
+            assertFalse(matcher.matches(node, normalizedNode, requested, NormalizedCapabilities.of(requested)));
+            assertFalse(new DefaultCapabilityMatcher().matches(node, requested));
+        }
+    }
+
+    @Test
+    public void firefoxRequestsWithoutMarionetteOnlyMatchNodesWithoutIt() {
+        Map<String, Object> requested = requested(BrowserType.FIREFOX);
+        requested.put("marionette", false);
+        Map<String, Object> node = node(defaultScreenResolution(), defaultTimeZone(), BrowserType.FIREFOX);
+
+        assertFalse(matcher.matches(node, requested));
+        assertTrue(matcher.matches(node, requested(BrowserType.FIREFOX)));
+
+        node.put("marionette", "false");
+
+        assertTrue(matcher.matches(node, requested));
+        assertFalse(matcher.matches(node, requested(BrowserType.FIREFOX)));
+    }
+
+    @Test
+    public void nodeBrowserVersionsAreKeptWhenTheNodeRegisters() {
+        Map<String, Object> node = node(defaultScreenResolution(), defaultTimeZone());
+        node.put(CapabilityType.VERSION, "70.0");
+
+        DockerSeleniumCapabilityMatcher.nodeRegistered(NormalizedCapabilities.of(node));
+
+        assertEquals("70.0", DockerSeleniumCapabilityMatcher.getChromeVersion());
+    }
+
+    private static Map<String, Object> requested(String browser) {
+        Map<String, Object> requested = new HashMap<>();
+        requested.put(CapabilityType.BROWSER_NAME, browser);
+        requested.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+        return requested;
+    }
+
+    private static Map<String, Object> node(String screenResolution, String timeZone) {
+        return node(screenResolution, timeZone, BrowserType.CHROME);
+    }
+
+    private static Map<String, Object> node(String screenResolution, String timeZone, String browser) {
+        Map<String, Object> node = new HashMap<>();
+        node.put(CapabilityType.BROWSER_NAME, browser);
+        node.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+        node.put(ZaleniumCapabilityType.SCREEN_RESOLUTION_NO_PREFIX, screenResolution);
+        node.put(ZaleniumCapabilityType.TIME_ZONE_NO_PREFIX, timeZone);
+        return node;
+    }
+
+    private static String defaultScreenResolution() {
+        Dimension screenSize = DockeredSeleniumStarter.getConfiguredScreenSize();
+        return screenSize.getWidth() + "x" + screenSize.getHeight();
+    }
+
+    private static String defaultTimeZone() {
+        return DockeredSeleniumStarter.getConfiguredTimeZone().getID();
+    }
+}
@@ -3,10 +3,15 @@ package de.zalando.ep.zalenium.proxy;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -18,6 +23,9 @@ import org.openqa.selenium.remote.CapabilityType;
 import org.testng.Assert;
 
 import de.zalando.ep.zalenium.container.ContainerCreationStatus;
+import de.zalando.ep.zalenium.util.ZaleniumConfiguration;
+
+import static org.awaitility.Awaitility.await;
 
 @SuppressWarnings("Duplicates")
 public class AutoStartProxySetTest {
@@ -58,6 +66,73 @@ public class AutoStartProxySetTest {
         Mockito.verify(starter, Mockito.timeout(5000).times(5)).startDockerSeleniumContainer(Collections.emptyMap());
     }
 
+    @Test
+    public void containersAreCreatedConcurrentlyUpToTheConfiguredLimit() {
+        // Given a container client that takes half a second to create each container.
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
+        int containers = 10;
+        long creationTime = 500;
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger created = new AtomicInteger();
+        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(creationTime);
+            inFlight.decrementAndGet();
+            int id = created.incrementAndGet();
+            return new ContainerCreationStatus(true, "name" + id, "id" + id, String.valueOf(40000 + id));
+        });
+
+        // When the proxy set needs to start ten containers.
+        long start = System.currentTimeMillis();
+        AutoStartProxySet autoStartProxySet = new AutoStartProxySet(false, containers, containers, 1000, false,
+                starter, clock, 30, 30000);
+        await().atMost(containers * creationTime, TimeUnit.MILLISECONDS)
+                .until(() -> autoStartProxySet.getStartedContainers().size() == containers);
+        long timeToAllNodes = System.currentTimeMillis() - start;
+
+        // Then they are created at the same time, but not more than the configured amount at once.
+        int limit = ZaleniumConfiguration.getContainerStartThreads();
+        Assert.assertTrue(timeToAllNodes < containers * creationTime,
+                "Creating " + containers + " containers took " + timeToAllNodes + " ms");
+        Assert.assertEquals(maxInFlight.get(), Math.min(limit, containers));
+        autoStartProxySet.teardown();
+    }
+
+    @Test
+    public void preWarmingStartsContainersForWaitingRequestsInOneBatch() {
+        // Given a proxy set with pre-warming enabled and three requests waiting for a node.
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
+
+        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(
+                new ContainerCreationStatus(true, "name1", "id1", "40000"),
+                new ContainerCreationStatus(true, "name2", "id2", "40001"),
+                new ContainerCreationStatus(true, "name3", "id3", "40002"));
+
+        List<Map<String, Object>> waitingRequests = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> requestedCapability = new HashMap<>();
+            requestedCapability.put(CapabilityType.BROWSER_NAME, BrowserType.CHROME);
+            requestedCapability.put("screenResolution", "1280x720");
+            waitingRequests.add(requestedCapability);
+        }
+
+        AutoStartProxySet autoStartProxySet = new AutoStartProxySet(false, 0, 5, 1000, false, starter, clock, 30, 100);
+        autoStartProxySet.enablePreWarming(new PreWarmingScaler(clock, 0, 0), () -> waitingRequests);
+
+        // Then a container is started for each one of them, and only once.
+        Mockito.verify(starter, Mockito.timeout(2000).times(3)).startDockerSeleniumContainer(Mockito.any());
+        Mockito.verify(starter, Mockito.after(500).times(3)).startDockerSeleniumContainer(Mockito.any());
+
+        // And the requests do not start another container when the matcher asks for a session.
+        autoStartProxySet.getNewSession(waitingRequests.get(0));
+        Mockito.verify(starter, Mockito.after(500).times(3)).startDockerSeleniumContainer(Mockito.any());
+        autoStartProxySet.teardown();
+    }
+
     @Test
     public void containerIsStartedWhenScreenResolutionIsProvided() {
         // Given a proxy set that will not autostart containers.
@@ -300,6 +375,26 @@ public class AutoStartProxySetTest {
         Mockito.verify(starter).stopContainer("container_id");
     }
 
+    @Test
+    public void terminatedContainersAreNoLongerTracked() {
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
+        DockeredSeleniumStarter starter = Mockito.mock(DockeredSeleniumStarter.class);
+        ContainerCreationStatus containerCreationStatus = new ContainerCreationStatus(true, "name", "container_id",
+                "40000");
+        Mockito.when(starter.startDockerSeleniumContainer(Mockito.any())).thenReturn(containerCreationStatus);
+        AtomicBoolean terminated = new AtomicBoolean(false);
+        Mockito.when(starter.containerHasFinished(containerCreationStatus)).thenAnswer(i -> terminated.get());
+
+        AutoStartProxySet autoStartProxySet = new AutoStartProxySet(false, 0, 5, 1000, false, starter, clock, 30, 100);
+
+        autoStartProxySet.getNewSession(Collections.emptyMap());
+        await().atMost(2, TimeUnit.SECONDS).until(() -> autoStartProxySet.getTrackedContainerShapes() == 1);
+
+        terminated.set(true);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> autoStartProxySet.getTrackedContainerShapes() == 0);
+    }
+
     @Test
     public void orphanedContainersAreMarkedDown() {
         Clock clock = Clock.fixed(Instant.ofEpochMilli(10000), ZoneId.systemDefault());
@@ -317,9 +412,9 @@ public class AutoStartProxySetTest {
         DockerSeleniumRemoteProxy remoteProxy = Mockito.mock(DockerSeleniumRemoteProxy.class);
         Mockito.when(remoteProxy.getContainerId()).thenReturn(containerId);
         if (isBusy) {
-            Mockito.when(remoteProxy.getNewSession(Mockito.any())).thenReturn(null);
+            Mockito.when(remoteProxy.getNewSession(Mockito.any(), Mockito.any())).thenReturn(null);
         } else {
-            Mockito.when(remoteProxy.getNewSession(Mockito.any()))
+            Mockito.when(remoteProxy.getNewSession(Mockito.any(), Mockito.any()))
                     .thenReturn(new TestSession(null, null, Clock.systemDefaultZone()));
         }
         return remoteProxy;
@@ -0,0 +1,148 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class CloudArtifactPipelineTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+    private ExecutorService executor;
+    private Path journalFolder;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(10);
+        journalFolder = temporaryFolder.getRoot().toPath().resolve("pending");
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void eachProviderRunsAtMostItsLimit() {
+        CloudArtifactPipeline pipeline = pipeline(2, 100);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CloudArtifactPipeline.Worker worker = job -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            processed.add(job.getSeleniumSessionId());
+        };
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(pipeline.submit(new CloudArtifactPipeline.Job("SauceLabs", "session" + i, true), worker));
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 8);
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, pipeline.getPending());
+    }
+
+    @Test
+    public void completedTestsGoBeforeTimedOutOnes() {
+        CloudArtifactPipeline pipeline = pipeline(1, 100);
+        pipeline.submit(new CloudArtifactPipeline.Job("BrowserStack", "blocking", true), blockingWorker());
+        pipeline.submit(new CloudArtifactPipeline.Job("BrowserStack", "timedOut", false), recordingWorker());
+        pipeline.submit(new CloudArtifactPipeline.Job("BrowserStack", "completed1", true), recordingWorker());
+        pipeline.submit(new CloudArtifactPipeline.Job("BrowserStack", "completed2", true), recordingWorker());
+
+        release.countDown();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 3);
+        assertThat(processed, contains("completed1", "completed2", "timedOut"));
+    }
+
+    @Test
+    public void aBusyProviderDoesNotDelayOthers() {
+        CloudArtifactPipeline pipeline = pipeline(1, 100);
+        pipeline.submit(new CloudArtifactPipeline.Job("SauceLabs", "blocking", true), blockingWorker());
+        pipeline.submit(new CloudArtifactPipeline.Job("SauceLabs", "waiting", true), recordingWorker());
+
+        pipeline.submit(new CloudArtifactPipeline.Job("TestingBot", "other", true), recordingWorker());
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.contains("other"));
+        assertFalse(processed.contains("waiting"));
+    }
+
+    @Test
+    public void testsBeyondTheQueueSizeAreRejected() {
+        CloudArtifactPipeline pipeline = pipeline(1, 2);
+
+        assertTrue(pipeline.submit(new CloudArtifactPipeline.Job("LambdaTest", "first", true), blockingWorker()));
+        assertTrue(pipeline.submit(new CloudArtifactPipeline.Job("LambdaTest", "second", true), recordingWorker()));
+        assertFalse(pipeline.submit(new CloudArtifactPipeline.Job("LambdaTest", "third", true), recordingWorker()));
+        assertFalse(Files.exists(journalFolder.resolve("LambdaTest-third.json")));
+    }
+
+    @Test
+    public void pendingTestsAreResumedAfterARestart() throws IOException {
+        CloudArtifactPipeline beforeRestart = pipeline(1, 100);
+        beforeRestart.submit(new CloudArtifactPipeline.Job("CBT", "running", true), blockingWorker());
+        beforeRestart.submit(new CloudArtifactPipeline.Job("CBT", "waiting", false), recordingWorker());
+        beforeRestart.submit(new CloudArtifactPipeline.Job("SauceLabs", "otherProvider", true), blockingWorker());
+        Files.write(journalFolder.resolve("garbage.json"), "{not json".getBytes());
+
+        CloudArtifactPipeline afterRestart = pipeline(2, 100);
+        afterRestart.recover("CBT", recordingWorker());
+        afterRestart.recover("CBT", recordingWorker());
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.size() == 2);
+        assertThat(processed, containsInAnyOrder("running", "waiting"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !Files.exists(journalFolder.resolve("CBT-running.json")));
+        assertTrue(Files.exists(journalFolder.resolve("SauceLabs-otherProvider.json")));
+    }
+
+    @Test
+    public void failingTestsDoNotBlockTheProvider() {
+        CloudArtifactPipeline pipeline = pipeline(1, 100);
+        pipeline.submit(new CloudArtifactPipeline.Job("SauceLabs", "failing", true), job -> {
+            throw new IllegalStateException("No test information");
+        });
+        pipeline.submit(new CloudArtifactPipeline.Job("SauceLabs", "next", true), recordingWorker());
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> processed.contains("next"));
+        assertFalse(Files.exists(journalFolder.resolve("SauceLabs-failing.json")));
+    }
+
+    private CloudArtifactPipeline pipeline(int maxRunningPerProvider, int maxPending) {
+        return new CloudArtifactPipeline(executor, maxRunningPerProvider, maxPending, () -> journalFolder);
+    }
+
+    private CloudArtifactPipeline.Worker recordingWorker() {
+        return job -> processed.add(job.getSeleniumSessionId());
+    }
+
+    private CloudArtifactPipeline.Worker blockingWorker() {
+        return job -> release.await();
+    }
+}
@@ -2,6 +2,9 @@ package de.zalando.ep.zalenium.proxy;
 
 import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -55,6 +58,7 @@ import de.zalando.ep.zalenium.container.ContainerFactory;
 import de.zalando.ep.zalenium.container.kubernetes.KubernetesContainerClient;
 import de.zalando.ep.zalenium.dashboard.Dashboard;
 import de.zalando.ep.zalenium.dashboard.TestInformation;
+import de.zalando.ep.zalenium.streams.InputStreamGroupIterator;
 
 
 @SuppressWarnings("Duplicates")
@@ -547,6 +551,58 @@ public class DockerSeleniumRemoteProxyTest {
         }
     }
 
+    @Test
+    public void artifactsOfReusedNodesAreCopiedInTheBackground() throws MalformedObjectNameException, IOException {
+
+        try {
+            Environment environment = mock(Environment.class);
+            when(environment.getBooleanEnvVariable(DockerSeleniumRemoteProxy.ZALENIUM_VIDEO_RECORDING_ENABLED,
+                    DockerSeleniumRemoteProxy.DEFAULT_VIDEO_RECORDING_ENABLED)).thenReturn(true);
+            when(environment.getIntEnvVariable(DockerSeleniumRemoteProxy.ZALENIUM_MAX_TEST_SESSIONS, 1))
+                    .thenReturn(2);
+            DockerSeleniumRemoteProxy.setEnv(environment);
+            DockerSeleniumRemoteProxy.readEnvVars();
+
+            CommonProxyUtilities commonProxyUtilities = TestUtils.mockCommonProxyUtilitiesForDashboardTesting(temporaryFolder);
+            TestUtils.ensureRequiredInputFilesExist(temporaryFolder);
+            Dashboard.setCommonProxyUtilities(commonProxyUtilities);
+
+            ContainerClient mockedContainerClient = mock(ContainerClient.class);
+            when(mockedContainerClient.copyFiles(any(), any())).thenReturn(mock(InputStreamGroupIterator.class));
+            DockerSeleniumRemoteProxy spyProxy = spy(proxy);
+            spyProxy.setContainerClient(mockedContainerClient);
+            String containerId = "zalenium_reused";
+            doReturn(containerId).when(spyProxy).getContainerId();
+
+            TestSession newSession = spyProxy.getNewSession(getCapabilitySupportedByDockerSelenium());
+            newSession.setExternalKey(new ExternalSessionKey("DockerSeleniumRemoteProxy Test"));
+            WebDriverRequest webDriverRequest = mock(WebDriverRequest.class);
+            HttpServletResponse response = mock(HttpServletResponse.class);
+            when(webDriverRequest.getMethod()).thenReturn("POST");
+            when(webDriverRequest.getRequestType()).thenReturn(RequestType.START_SESSION);
+            spyProxy.afterCommand(newSession, webDriverRequest, response);
+
+            webDriverRequest = mock(WebDriverRequest.class);
+            when(webDriverRequest.getMethod()).thenReturn("DELETE");
+            when(webDriverRequest.getRequestType()).thenReturn(RequestType.STOP_SESSION);
+            newSession.getSlot().doFinishRelease();
+            spyProxy.afterCommand(newSession, webDriverRequest, response);
+            spyProxy.afterSession(newSession);
+
+            // The artifacts are moved aside before cleaning up, and copied from there
+            verify(mockedContainerClient).executeCommand(eq(containerId),
+                    argThat(command -> command[2].contains("/tmp/zalenium-artifacts/")), eq(true));
+            verify(mockedContainerClient, never()).copyFiles(containerId, "/videos/");
+            verify(mockedContainerClient, timeout(10000))
+                    .copyFiles(eq(containerId), argThat(folder -> folder.startsWith("/tmp/zalenium-artifacts/")
+                            && folder.endsWith("/videos/")));
+        } finally {
+            DockerSeleniumRemoteProxy.restoreEnvironment();
+            DockerSeleniumRemoteProxy.readEnvVars();
+            Dashboard.restoreCommonProxyUtilities();
+        }
+    }
+
     @Test
     public void videoRecordingIsDisabledViaCapability() {
         Map<String, Object> requestedCapability = getCapabilitySupportedByDockerSelenium();
@@ -6,6 +6,7 @@ import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.withSettings;
 
 import de.zalando.ep.zalenium.container.ContainerClient;
+import de.zalando.ep.zalenium.container.ContainerCreationStatus;
 import de.zalando.ep.zalenium.container.ContainerFactory;
 import de.zalando.ep.zalenium.container.DockerContainerClient;
 import de.zalando.ep.zalenium.container.kubernetes.KubernetesContainerClient;
@@ -29,6 +30,7 @@ import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.TimeZone;
 import java.util.function.Supplier;
 
@@ -104,6 +106,30 @@ public class DockeredSeleniumStarterTest {
         ZaleniumConfiguration.restoreEnvironment();
     }
 
+    @Test
+    public void nodesAreInCreationUntilTheirContainerIsRecorded() {
+        ContainerClient creatingClient = mock(ContainerClient.class);
+        DockeredSeleniumStarter.setContainerClient(creatingClient);
+        DockeredSeleniumStarter starter = new DockeredSeleniumStarter();
+        ContainerCreationStatus created = new ContainerCreationStatus(true, "name", "id", "40000");
+        when(creatingClient.createContainer(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Assert.assertTrue(starter.isCreatingNode(40000));
+            return created;
+        });
+
+        starter.startDockerSeleniumContainer(Collections.emptyMap());
+        Assert.assertTrue(starter.isCreatingNode(40000));
+        Assert.assertFalse(starter.isCreatingNode(40001));
+
+        starter.containerRecorded(created);
+        Assert.assertFalse(starter.isCreatingNode(40000));
+
+        when(creatingClient.createContainer(any(), any(), any(), any()))
+                .thenReturn(new ContainerCreationStatus(false));
+        starter.startDockerSeleniumContainer(Collections.emptyMap());
+        Assert.assertFalse(starter.isCreatingNode(40000));
+    }
+
     /*
         Tests checking the environment variables setup to have a given number of containers on startup
      */
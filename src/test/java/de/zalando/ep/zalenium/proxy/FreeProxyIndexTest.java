@@ -0,0 +1,115 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openqa.grid.common.SeleniumProtocol;
+import org.openqa.grid.internal.TestSlot;
+import org.openqa.selenium.MutableCapabilities;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+import de.zalando.ep.zalenium.matcher.DockerSeleniumCapabilityMatcher;
+import de.zalando.ep.zalenium.util.TestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FreeProxyIndexTest {
+
+    @Test
+    public void freeProxyIsFoundForDefaultRequest() {
+        FreeProxyIndex index = new FreeProxyIndex();
+        DockerSeleniumRemoteProxy proxy = proxy("default");
+        index.add(proxy);
+
+        Optional<Collection<DockerSeleniumRemoteProxy>> candidates = index.getCandidates(request(BrowserType.CHROME));
+
+        assertTrue(candidates.isPresent());
+        assertTrue(candidates.get().contains(proxy));
+    }
+
+    @Test
+    public void proxiesWithAnotherScreenResolutionAreNotCandidates() {
+        FreeProxyIndex index = new FreeProxyIndex();
+        DockerSeleniumRemoteProxy proxy = proxy("default");
+        index.add(proxy);
+
+        Map<String, Object> request = request(BrowserType.FIREFOX);
+        request.put("screenResolution", "1280x720");
+
+        Optional<Collection<DockerSeleniumRemoteProxy>> candidates = index.getCandidates(request);
+
+        assertTrue(candidates.isPresent());
+        assertTrue(candidates.get().isEmpty());
+    }
+
+    @Test
+    public void busyProxiesAreNotCandidatesUntilMarkedFree() {
+        FreeProxyIndex index = new FreeProxyIndex();
+        DockerSeleniumRemoteProxy proxy = proxy("busy");
+        index.add(proxy);
+
+        index.markBusy(proxy);
+        assertTrue(index.getCandidates(request(BrowserType.CHROME)).get().isEmpty());
+
+        index.markFree(proxy);
+        assertTrue(index.getCandidates(request(BrowserType.CHROME)).get().contains(proxy));
+    }
+
+    @Test
+    public void removedProxiesAreNotMarkedFreeAgain() {
+        FreeProxyIndex index = new FreeProxyIndex();
+        DockerSeleniumRemoteProxy proxy = proxy("removed");
+        index.add(proxy);
+
+        index.remove(proxy);
+        index.markFree(proxy);
+
+        assertFalse(index.contains(proxy));
+        assertTrue(index.getCandidates(request(BrowserType.FIREFOX)).get().isEmpty());
+    }
+
+    @Test
+    public void requestsWithoutBrowserAreNotBucketed() {
+        FreeProxyIndex index = new FreeProxyIndex();
+
+        assertFalse(index.getCandidates(new HashMap<>()).isPresent());
+        assertFalse(index.getCandidates(request("ANY")).isPresent());
+    }
+
+    @Test
+    public void onlyMatchingBrowserIsReturned() {
+        FreeProxyIndex index = new FreeProxyIndex();
+        index.add(proxy("first"));
+        index.add(proxy("second"));
+
+        assertEquals(2, index.getCandidates(request(BrowserType.CHROME)).get().size());
+        assertTrue(index.getCandidates(request(BrowserType.SAFARI)).get().isEmpty());
+    }
+
+    private static Map<String, Object> request(String browserName) {
+        Map<String, Object> request = new HashMap<>();
+        request.put(CapabilityType.BROWSER_NAME, browserName);
+        return request;
+    }
+
+    private static DockerSeleniumRemoteProxy proxy(String id) {
+        DockerSeleniumRemoteProxy proxy = Mockito.mock(DockerSeleniumRemoteProxy.class);
+        Mockito.when(proxy.getId()).thenReturn(id);
+        Mockito.when(proxy.getCapabilityHelper()).thenReturn(new DockerSeleniumCapabilityMatcher());
+        List<MutableCapabilities> capabilities = TestUtils.getDockerSeleniumCapabilitiesForTesting();
+        List<TestSlot> testSlots = capabilities.stream()
+                .map(capability -> new TestSlot(proxy, SeleniumProtocol.WebDriver, capability.asMap()))
+                .collect(Collectors.toList());
+        Mockito.when(proxy.getTestSlots()).thenReturn(testSlots);
+        return proxy;
+    }
+}
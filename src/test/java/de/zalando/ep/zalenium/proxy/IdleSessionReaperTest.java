@@ -0,0 +1,113 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.when;
+
+public class IdleSessionReaperTest {
+
+    private final List<String> idleSessions = new CopyOnWriteArrayList<>();
+    private Clock clock;
+    private IdleSessionReaper reaper;
+
+    @Before
+    public void setUp() {
+        clock = Mockito.mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        reaper = new IdleSessionReaper(clock);
+    }
+
+    @Test
+    public void sessionsExpireWhenTheirDeadlineIsReached() {
+        watch("first", 1000);
+        watch("second", 3000);
+
+        advanceTo(999);
+        assertThat(idleSessions, empty());
+
+        advanceTo(1000);
+        assertThat(idleSessions, contains("first"));
+
+        advanceTo(5000);
+        assertThat(idleSessions, contains("first", "second"));
+        assertEquals(0, reaper.getWatchedSessions());
+    }
+
+    @Test
+    public void watchingAgainMovesTheDeadline() {
+        watch("session", 1000);
+
+        advanceTo(800);
+        watch("session", 1000);
+
+        advanceTo(1500);
+        assertThat(idleSessions, empty());
+
+        advanceTo(1800);
+        assertThat(idleSessions, contains("session"));
+    }
+
+    @Test
+    public void deadlinesCanAlsoBeMovedEarlier() {
+        watch("session", 5000);
+        watch("session", 100);
+
+        advanceTo(100);
+        assertThat(idleSessions, contains("session"));
+
+        advanceTo(5000);
+        assertThat(idleSessions, contains("session"));
+    }
+
+    @Test
+    public void cancelledSessionsDoNotExpire() {
+        watch("finished", 1000);
+        watch("running", 1000);
+        reaper.cancel("finished");
+
+        advanceTo(2000);
+        assertThat(idleSessions, contains("running"));
+    }
+
+    @Test
+    public void sessionsCanBeWatchedAgainFromTheirCallback() {
+        reaper.watch("session", 1000, () -> {
+            idleSessions.add("session");
+            reaper.watch("session", 1000, () -> idleSessions.add("again"));
+        });
+
+        advanceTo(1000);
+        advanceTo(2000);
+        assertThat(idleSessions, contains("session", "again"));
+    }
+
+    @Test
+    public void failingCallbacksDoNotStopOtherSessions() {
+        reaper.watch("failing", 1000, () -> {
+            throw new IllegalStateException("Could not release the slot");
+        });
+        watch("session", 1000);
+
+        advanceTo(1000);
+        assertThat(idleSessions, contains("session"));
+    }
+
+    private void watch(String session, long delayMillis) {
+        reaper.watch(session, delayMillis, () -> idleSessions.add(session));
+    }
+
+    private void advanceTo(long millis) {
+        when(clock.millis()).thenReturn(millis);
+        reaper.expireDueWatches();
+    }
+}
@@ -0,0 +1,59 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class NodeSelectionPolicyTest {
+
+    private static final long MAX_IDLE_MILLIS = 90 * 1000;
+    private static final NodeSelectionPolicy POLICY = NodeSelectionPolicy.COST_BASED;
+
+    @Test
+    public void nodesThatCannotTakeTheSessionAreNotAsked() {
+        assertEquals(NodeSelectionPolicy.UNAVAILABLE, POLICY.cost(node(1, 1, 0, false)), 0);
+        assertEquals(NodeSelectionPolicy.UNAVAILABLE, POLICY.cost(node(0, 5, 0, true)), 0);
+        assertEquals(NodeSelectionPolicy.UNAVAILABLE,
+                POLICY.cost(new NodeState(0, 5, 0, MAX_IDLE_MILLIS, false, true)), 0);
+    }
+
+    @Test
+    public void nodesAboutToBeShutDownForBeingIdleComeFirst() {
+        assertThat(POLICY.cost(node(0, 1, 80 * 1000, false)), lessThan(POLICY.cost(node(0, 1, 5 * 1000, false))));
+    }
+
+    @Test
+    public void nodesCloserToBeingRecycledComeFirst() {
+        assertThat(POLICY.cost(node(4, 5, 0, false)), lessThan(POLICY.cost(node(1, 5, 0, false))));
+    }
+
+    @Test
+    public void warmNodesComeBeforeFreshOnes() {
+        assertThat(POLICY.cost(node(1, 10, 0, false)), lessThan(POLICY.cost(node(0, 10, 0, false))));
+    }
+
+    @Test
+    public void recordedRequestsNeedFewerColdStarts() throws IOException {
+        List<NodeSelectionSimulator.RecordedRequest> requests =
+                NodeSelectionSimulator.loadRequests("node-selection/ci-bursts.csv");
+        NodeSelectionSimulator simulator = new NodeSelectionSimulator(5, MAX_IDLE_MILLIS, 5 * 1000, 20 * 1000);
+
+        NodeSelectionSimulator.Result firstFree = simulator.replay(requests, NodeSelectionPolicy.FIRST_FREE);
+        NodeSelectionSimulator.Result costBased = simulator.replay(requests, NodeSelectionPolicy.COST_BASED);
+
+        String results = "first free " + firstFree + ", cost based " + costBased;
+        assertThat(results, costBased.coldStarts, lessThan(firstFree.coldStarts));
+        assertThat(results, costBased.totalWaitMillis, lessThanOrEqualTo(firstFree.totalWaitMillis));
+        assertThat(results, costBased.maxNodes, lessThanOrEqualTo(firstFree.maxNodes));
+    }
+
+    private static NodeState node(int executedSessions, int maxSessions, long idleMillis, boolean cleaningUp) {
+        return new NodeState(executedSessions, maxSessions, idleMillis, MAX_IDLE_MILLIS, cleaningUp, false);
+    }
+}
@@ -0,0 +1,230 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Replays a recorded stream of session requests against simulated docker-selenium nodes, to compare how node
+ * selection policies behave. Nodes are started when a request finds no free node, run up to maxSessions sessions
+ * with a cleanup in between, and are shut down after maxIdleMillis without sessions.
+ *
+ * Recorded streams are csv files with one request per line: arrival second, duration in seconds and browser.
+ */
+class NodeSelectionSimulator {
+
+    private final int maxSessions;
+    private final long maxIdleMillis;
+    private final long cleanupMillis;
+    private final long startMillis;
+
+    NodeSelectionSimulator(int maxSessions, long maxIdleMillis, long cleanupMillis, long startMillis) {
+        this.maxSessions = maxSessions;
+        this.maxIdleMillis = maxIdleMillis;
+        this.cleanupMillis = cleanupMillis;
+        this.startMillis = startMillis;
+    }
+
+    static List<RecordedRequest> loadRequests(String resource) throws IOException {
+        List<RecordedRequest> requests = new ArrayList<>();
+        InputStream inputStream = NodeSelectionSimulator.class.getClassLoader().getResourceAsStream(resource);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Objects.requireNonNull(inputStream), UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                requests.add(new RecordedRequest(Long.parseLong(fields[0].trim()) * 1000,
+                        Long.parseLong(fields[1].trim()) * 1000, fields[2].trim()));
+            }
+        }
+        return requests;
+    }
+
+    Result replay(List<RecordedRequest> requests, NodeSelectionPolicy policy) {
+        return new Run(policy).replay(requests);
+    }
+
+    static final class RecordedRequest {
+        private final long arrivalMillis;
+        private final long durationMillis;
+        private final String browser;
+
+        RecordedRequest(long arrivalMillis, long durationMillis, String browser) {
+            this.arrivalMillis = arrivalMillis;
+            this.durationMillis = durationMillis;
+            this.browser = browser;
+        }
+    }
+
+    static final class Result {
+        int coldStarts;
+        long totalWaitMillis;
+        int maxNodes;
+
+        @Override
+        public String toString() {
+            return "Result [coldStarts=" + coldStarts + ", totalWaitMillis="
+                    + totalWaitMillis + ", maxNodes=" + maxNodes + "]";
+        }
+    }
+
+    private enum NodeStatus { STARTING, FREE, BUSY, CLEANING, GONE }
+
+    private static final class Node {
+        private final String browser;
+        private NodeStatus status = NodeStatus.STARTING;
+        private int executedSessions;
+        private long lastUsedMillis;
+
+        private Node(String browser) {
+            this.browser = browser;
+        }
+    }
+
+    private static final class Event {
+        private final long timeMillis;
+        private final long sequence;
+        private final Runnable action;
+
+        private Event(long timeMillis, long sequence, Runnable action) {
+            this.timeMillis = timeMillis;
+            this.sequence = sequence;
+            this.action = action;
+        }
+    }
+
+    private final class Run {
+        private final NodeSelectionPolicy policy;
+        private final Result result = new Result();
+        private final PriorityQueue<Event> events = new PriorityQueue<>(
+                Comparator.<Event>comparingLong(event -> event.timeMillis).thenComparingLong(event -> event.sequence));
+        // In the order they were started, the order the first free policy asks them
+        private final List<Node> nodes = new ArrayList<>();
+        private final Deque<Pending> waiting = new ArrayDeque<>();
+        private long now;
+        private long sequence;
+
+        private Run(NodeSelectionPolicy policy) {
+            this.policy = policy;
+        }
+
+        private Result replay(List<RecordedRequest> requests) {
+            requests.forEach(request -> schedule(request.arrivalMillis, () -> {
+                waiting.add(new Pending(request, now));
+                assignWaitingRequests();
+            }));
+            while (!events.isEmpty()) {
+                Event event = events.poll();
+                now = event.timeMillis;
+                event.action.run();
+            }
+            return result;
+        }
+
+        private void schedule(long timeMillis, Runnable action) {
+            events.add(new Event(timeMillis, sequence++, action));
+        }
+
+        private void assignWaitingRequests() {
+            List<Pending> unassigned = new ArrayList<>();
+            while (!waiting.isEmpty()) {
+                Pending pending = waiting.poll();
+                if (!assign(pending)) {
+                    unassigned.add(pending);
+                }
+            }
+            waiting.addAll(unassigned);
+            startNodesForWaitingRequests();
+        }
+
+        private boolean assign(Pending pending) {
+            Node cheapest = null;
+            double cheapestCost = NodeSelectionPolicy.UNAVAILABLE;
+            // Nodes cleaning up are left out for every policy, so the comparison is only about the ranking
+            for (Node node : nodes) {
+                if (node.browser.equals(pending.request.browser) && node.status == NodeStatus.FREE) {
+                    double cost = policy.cost(new NodeState(node.executedSessions, maxSessions,
+                            now - node.lastUsedMillis, maxIdleMillis, false, false));
+                    // Ties go to the node started first, the order the first free policy asks them
+                    if (cost != NodeSelectionPolicy.UNAVAILABLE && (cheapest == null || cost < cheapestCost)) {
+                        cheapest = node;
+                        cheapestCost = cost;
+                    }
+                }
+            }
+            if (cheapest == null) {
+                return false;
+            }
+            startSession(cheapest, pending);
+            return true;
+        }
+
+        private void startSession(Node node, Pending pending) {
+            node.status = NodeStatus.BUSY;
+            result.totalWaitMillis += now - pending.arrivalMillis;
+            schedule(now + pending.request.durationMillis, () -> {
+                node.executedSessions++;
+                node.lastUsedMillis = now;
+                if (node.executedSessions >= maxSessions) {
+                    node.status = NodeStatus.GONE;
+                    return;
+                }
+                node.status = NodeStatus.CLEANING;
+                schedule(now + cleanupMillis, () -> nodeFree(node));
+            });
+        }
+
+        private void nodeFree(Node node) {
+            node.status = NodeStatus.FREE;
+            long freeSince = now;
+            schedule(now + maxIdleMillis, () -> {
+                if (node.status == NodeStatus.FREE && node.lastUsedMillis <= freeSince) {
+                    node.status = NodeStatus.GONE;
+                }
+            });
+            assignWaitingRequests();
+        }
+
+        private void startNodesForWaitingRequests() {
+            for (Pending pending : waiting) {
+                if (pending.node == null) {
+                    Node node = new Node(pending.request.browser);
+                    pending.node = node;
+                    nodes.add(node);
+                    result.coldStarts++;
+                    result.maxNodes = Math.max(result.maxNodes, (int) nodes.stream()
+                            .filter(started -> started.status != NodeStatus.GONE).count());
+                    schedule(now + startMillis, () -> {
+                        node.lastUsedMillis = now;
+                        nodeFree(node);
+                    });
+                }
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final RecordedRequest request;
+        private final long arrivalMillis;
+        // Started for this request, any other request for the same browser can take it first
+        private Node node;
+
+        private Pending(RecordedRequest request, long arrivalMillis) {
+            this.request = request;
+            this.arrivalMillis = arrivalMillis;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package de.zalando.ep.zalenium.proxy;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openqa.selenium.remote.BrowserType;
+import org.openqa.selenium.remote.CapabilityType;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PreWarmingScalerTest {
+
+    private static final long LOOKAHEAD = 20000;
+    private static final long SCALE_DOWN_DELAY = 60000;
+
+    private Clock clock;
+    private PreWarmingScaler scaler;
+
+    @Before
+    public void setUp() {
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(0L);
+        scaler = new PreWarmingScaler(clock, LOOKAHEAD, SCALE_DOWN_DELAY);
+    }
+
+    @Test
+    public void containersAreStartedForWaitingRequestsOfEachShape() {
+        List<Map<String, Object>> waiting = Arrays.asList(request(null), request(null), request("1280x720"));
+
+        Map<ContainerShape, Integer> toStart = scaler.plan(waiting, Collections.emptyMap(), 0, 10);
+
+        assertEquals(Integer.valueOf(2), toStart.get(ContainerShape.fromRequest(request(null))));
+        assertEquals(Integer.valueOf(1), toStart.get(ContainerShape.fromRequest(request("1280x720"))));
+    }
+
+    @Test
+    public void availableContainersCoverTheDemand() {
+        List<Map<String, Object>> waiting = Arrays.asList(request(null), request(null));
+        Map<ContainerShape, Integer> available = new HashMap<>();
+        available.put(ContainerShape.fromRequest(request(null)), 1);
+
+        Map<ContainerShape, Integer> toStart = scaler.plan(waiting, available, 0, 10);
+
+        assertEquals(Integer.valueOf(1), toStart.get(ContainerShape.fromRequest(request(null))));
+    }
+
+    @Test
+    public void containersToStartAreLimitedByTheCapacity() {
+        List<Map<String, Object>> waiting = Arrays.asList(request(null), request(null), request("1280x720"));
+
+        Map<ContainerShape, Integer> toStart = scaler.plan(waiting, Collections.emptyMap(), 0, 2);
+
+        assertEquals(2, toStart.values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    public void containersAreStartedForExpectedRequests() {
+        // One request per second during ten seconds
+        for (int i = 0; i < 10; i++) {
+            scaler.requestArrived(request("1280x720"));
+        }
+        Mockito.when(clock.millis()).thenReturn(10000L);
+
+        Map<ContainerShape, Integer> toStart = scaler.plan(Collections.emptyList(), Collections.emptyMap(), 0, 20);
+
+        // Smoothed rate of 0.3 requests per second during the next 20 seconds
+        assertEquals(Integer.valueOf(6), toStart.get(ContainerShape.fromRequest(request("1280x720"))));
+    }
+
+    @Test
+    public void targetGoesUpImmediatelyAndDownAfterTheDelay() {
+        List<Map<String, Object>> waiting = Arrays.asList(request(null), request(null), request(null));
+        scaler.plan(waiting, Collections.emptyMap(), 2, 10);
+        assertEquals(5, scaler.getTargetContainers());
+
+        Mockito.when(clock.millis()).thenReturn(SCALE_DOWN_DELAY - 1);
+        scaler.plan(Collections.emptyList(), Collections.emptyMap(), 1, 10);
+        assertEquals(5, scaler.getTargetContainers());
+
+        Mockito.when(clock.millis()).thenReturn(SCALE_DOWN_DELAY);
+        scaler.plan(Collections.emptyList(), Collections.emptyMap(), 1, 10);
+        assertEquals(1, scaler.getTargetContainers());
+    }
+
+    @Test
+    public void nothingIsStartedWithoutDemand() {
+        Mockito.when(clock.millis()).thenReturn(5000L);
+
+        assertTrue(scaler.plan(Collections.emptyList(), Collections.emptyMap(), 3, 10).isEmpty());
+    }
+
+    private static Map<String, Object> request(String screenResolution) {
+        Map<String, Object> request = new HashMap<>();
+        request.put(CapabilityType.BROWSER_NAME, BrowserType.CHROME);
+        if (screenResolution != null) {
+            request.put("screenResolution", screenResolution);
+        }
+        return request;
+    }
+}
@@ -285,9 +285,6 @@ public class SauceLabsRemoteProxyTest {
         // Set a short idle time
         sauceLabsSpyProxy.setMaxTestIdleTime(1L);
 
-        // Start poller thread
-        sauceLabsSpyProxy.startPolling();
-
         // Get a test session
         TestSession newSession = sauceLabsSpyProxy.getNewSession(requestedCapability);
         Assert.assertNotNull(newSession);
@@ -300,8 +297,8 @@ public class SauceLabsRemoteProxyTest {
         when(response.getOutputStream()).thenReturn(stream);
         sauceLabsSpyProxy.beforeCommand(newSession, request, response);
 
-        // The terminateIdleSessions() method should be called after a moment
-        verify(sauceLabsSpyProxy, timeout(2000)).terminateIdleSessions();
+        // The terminateIdleSession() method should be called after a moment
+        verify(sauceLabsSpyProxy, timeout(2000)).terminateIdleSession(newSession);
         verify(sauceLabsSpyProxy, timeout(2000)).addTestToDashboard("RANDOM_EXTERNAL_KEY", false);
     }
 
@@ -278,6 +278,7 @@ public class TestingBotRemoteProxyTest {
 
             TestInformation testInformation = spyProxy.getTestInformation(mockSeleniumSessionId);
             DashboardCollection.updateDashboard(testInformation);
+            DashboardCollection.flush();
             File videosFolder = new File(temporaryFolder.getRoot().getAbsolutePath(), "videos");
             Assert.assertTrue(videosFolder.isDirectory());
             File amountOfRunTests = new File(videosFolder, "executedTestsInfo.json");
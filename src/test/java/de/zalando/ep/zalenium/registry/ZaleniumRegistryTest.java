@@ -1,8 +1,11 @@
 package de.zalando.ep.zalenium.registry;
 
+import de.zalando.ep.zalenium.container.ContainerFactory;
+import de.zalando.ep.zalenium.container.DockerContainerClient;
 import de.zalando.ep.zalenium.proxy.AutoStartProxySet;
 import de.zalando.ep.zalenium.proxy.DockerSeleniumRemoteProxy;
 import de.zalando.ep.zalenium.proxy.DockeredSeleniumStarter;
+import de.zalando.ep.zalenium.util.DockerContainerMock;
 import de.zalando.ep.zalenium.util.TestUtils;
 import org.awaitility.Duration;
 import org.junit.Test;
@@ -28,9 +31,15 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 @SuppressWarnings("Duplicates")
@@ -68,6 +77,26 @@ public class ZaleniumRegistryTest {
         }
     }
 
+    @Test
+    public void registeredNodesAreAuthorizedForVnc() throws Exception {
+        Supplier<DockerContainerClient> originalContainerClient = ContainerFactory.getDockerContainerClient();
+        ContainerFactory.setDockerContainerClient(DockerContainerMock::getRegisterOnlyDockerContainerClient);
+        ZaleniumRegistry registry = (ZaleniumRegistry) ZaleniumRegistry.newInstance(
+                new Hub(new GridHubConfiguration()), new ProxySet(false));
+        try {
+            DockerSeleniumRemoteProxy p1 = TestUtils.getNewBasicRemoteProxy("app1", "http://machine1:4444/", registry);
+            registry.add(p1);
+            assertTrue(registry.getVncAuthorizationIndex().isAuthorized("machine1", "40000"));
+            assertFalse(registry.getVncAuthorizationIndex().isAuthorized("machine1", "50000"));
+
+            registry.removeIfPresent(p1);
+            assertFalse(registry.getVncAuthorizationIndex().isAuthorized("machine1", "40000"));
+        } finally {
+            registry.stop();
+            ContainerFactory.setDockerContainerClient(originalContainerClient);
+        }
+    }
+
     @Test
     public void sessionIsProcessed() {
         Map<String, Object> requestedCapability = new HashMap<>();
@@ -99,6 +128,43 @@ public class ZaleniumRegistryTest {
         }
     }
 
+    @Test
+    public void newSessionRequestsAreNotBlockedByMatchingPass() throws Exception {
+        Map<String, Object> requestedCapability = new HashMap<>();
+        requestedCapability.put(CapabilityType.BROWSER_NAME, BrowserType.CHROME);
+        requestedCapability.put(CapabilityType.PLATFORM_NAME, Platform.LINUX);
+
+        CountDownLatch matchingStarted = new CountDownLatch(1);
+        CountDownLatch finishMatching = new CountDownLatch(1);
+        ProxySet slowProxySet = new ProxySet(false) {
+            @Override
+            public TestSession getNewSession(Map<String, Object> desiredCapabilities) {
+                matchingStarted.countDown();
+                try {
+                    finishMatching.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        };
+        ZaleniumRegistry registry = (ZaleniumRegistry) ZaleniumRegistry.newInstance(
+                new Hub(new GridHubConfiguration()), slowProxySet);
+
+        try {
+            registry.addNewSessionRequest(TestUtils.createNewSessionHandler(registry, requestedCapability));
+            assertTrue(matchingStarted.await(5, TimeUnit.SECONDS));
+
+            // The matcher is in the middle of a pass, adding another request should not wait for it.
+            CompletableFuture.runAsync(() -> registry.addNewSessionRequest(
+                    TestUtils.createNewSessionHandler(registry, requestedCapability))).get(2, TimeUnit.SECONDS);
+            assertEquals(2, registry.getNewSessionRequestCount());
+        } finally {
+            finishMatching.countDown();
+            registry.stop();
+        }
+    }
+
     @Test(expected = GridException.class)
     public void requestIsRejectedWhenCapabilitiesAreNotSupported() {
         Map<String, Object> requestedCapability = new HashMap<>();
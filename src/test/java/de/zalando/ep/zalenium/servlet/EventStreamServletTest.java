@@ -0,0 +1,117 @@
+package de.zalando.ep.zalenium.servlet;
+
+import org.awaitility.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EventStreamServletTest {
+
+    private ByteArrayOutputStream events;
+    private AsyncContext asyncContext;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+
+    @Before
+    public void setUp() throws IOException {
+        events = new ByteArrayOutputStream();
+        ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                // Like the container does once the stream is ready
+                try {
+                    writeListener.onWritePossible();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public synchronized void write(int b) {
+                events.write(b);
+            }
+        };
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        asyncContext = mock(AsyncContext.class);
+        when(request.startAsync()).thenReturn(asyncContext);
+        when(asyncContext.getResponse()).thenReturn(response);
+        when(response.getOutputStream()).thenReturn(outputStream);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        listener.getValue().onComplete(null);
+    }
+
+    @Test
+    public void publishedEventsAreSentToConnectedClients() throws IOException {
+        new EventStreamServlet().doGet(request, response);
+
+        verify(response).setContentType("text/event-stream");
+        assertThat(events.toString(UTF_8.name()), containsString("retry: 5000"));
+
+        EventStreamServlet.publish(EventStreamServlet.NODE_REGISTERED,
+                EventStreamServlet.eventData("id", "http://localhost:40000"));
+
+        await().pollInterval(Duration.ONE_HUNDRED_MILLISECONDS).atMost(Duration.TWO_SECONDS)
+                .until(() -> events.toString(UTF_8.name()).contains("event: node-registered"));
+        assertThat(events.toString(UTF_8.name()), containsString("data: {\"id\":\"http://localhost:40000\"}"));
+    }
+
+    @Test
+    public void clientsThatDoNotKeepUpAreDisconnected() throws IOException {
+        new EventStreamServlet().doGet(request, response);
+
+        ServletOutputStream blockedStream = mock(ServletOutputStream.class);
+        HttpServletRequest slowRequest = mock(HttpServletRequest.class);
+        HttpServletResponse slowResponse = mock(HttpServletResponse.class);
+        AsyncContext slowClient = mock(AsyncContext.class);
+        when(slowRequest.startAsync()).thenReturn(slowClient);
+        when(slowClient.getResponse()).thenReturn(slowResponse);
+        when(slowResponse.getOutputStream()).thenReturn(blockedStream);
+        when(blockedStream.isReady()).thenReturn(false);
+        new EventStreamServlet().doGet(slowRequest, slowResponse);
+        ArgumentCaptor<WriteListener> writeListener = ArgumentCaptor.forClass(WriteListener.class);
+        verify(blockedStream).setWriteListener(writeListener.capture());
+        writeListener.getValue().onWritePossible();
+
+        for (int i = 0; i <= EventStreamServlet.MAX_PENDING_EVENTS; i++) {
+            EventStreamServlet.publish(EventStreamServlet.SESSION_STARTED,
+                    EventStreamServlet.eventData("id", "http://localhost:" + i));
+        }
+
+        verify(slowClient).complete();
+        verify(blockedStream, never()).write(any(byte[].class));
+        String received = events.toString(UTF_8.name());
+        assertThat(received, containsString("data: {\"id\":\"http://localhost:" +
+                EventStreamServlet.MAX_PENDING_EVENTS + "\"}"));
+    }
+}
@@ -1,8 +1,10 @@
 package de.zalando.ep.zalenium.servlet;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -105,6 +107,28 @@ public class LiveNodeServletTest {
         assertThat(postResponseContent, containsString("<meta http-equiv='refresh' content='XYZ' />"));
     }
     
+    @Test
+    public void singleNodesAreRenderedWithoutThePage() throws IOException {
+        when(request.getParameter("proxy")).thenReturn("http://machine1:4444");
+
+        new LivePreviewServlet(registry).doGet(request, response);
+
+        String responseContent = response.getOutputStream().toString();
+        assertThat(responseContent, containsString("data-proxy-id='http://machine1:4444'"));
+        assertThat(responseContent, not(containsString("Zalenium Live Preview")));
+        assertThat(responseContent, not(containsString("http://machine2:4444")));
+    }
+
+    @Test
+    public void filteredOutNodesAreNotFound() throws IOException {
+        when(request.getParameter("proxy")).thenReturn("http://machine1:4444");
+        when(request.getParameter("only_active_sessions")).thenReturn("true");
+
+        new LivePreviewServlet(registry).doGet(request, response);
+
+        verify(response).setStatus(404);
+    }
+
     @After
     public void tearDown() throws MalformedObjectNameException {
         ObjectName objectName = new ObjectName("org.seleniumhq.grid:type=RemoteProxy,node=\"http://localhost:40000\"");
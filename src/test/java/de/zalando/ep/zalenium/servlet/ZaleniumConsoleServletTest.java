@@ -1,9 +1,11 @@
 package de.zalando.ep.zalenium.servlet;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -114,6 +116,28 @@ public class ZaleniumConsoleServletTest {
         assertThat(getResponseContent, containsString(postResponseContent));
     }
 
+    @Test
+    public void singleProxiesAreRenderedWithTheirId() throws IOException {
+        String proxyId = registry.getProxyById("http://machine1:4444").getId();
+        when(request.getParameter("proxy")).thenReturn(proxyId);
+
+        new ZaleniumConsoleServlet(registry).doGet(request, response);
+
+        String responseContent = response.getOutputStream().toString();
+        assertThat(responseContent, containsString("<div class='proxy' data-proxy-id='" + proxyId + "'>"));
+        assertThat(responseContent, not(containsString("Grid Console")));
+        assertThat(responseContent, not(containsString("http://machine2:4444")));
+    }
+
+    @Test
+    public void unknownProxiesAreNotFound() throws IOException {
+        when(request.getParameter("proxy")).thenReturn("http://removed:4444");
+
+        new ZaleniumConsoleServlet(registry).doGet(request, response);
+
+        verify(response).setStatus(404);
+    }
+
     @Test
     public void checkResourcesInConsoleServlet() throws IOException {
         HttpServletRequest httpServletRequest;
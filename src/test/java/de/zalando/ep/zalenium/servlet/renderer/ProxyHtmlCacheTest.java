@@ -0,0 +1,73 @@
+package de.zalando.ep.zalenium.servlet.renderer;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.grid.internal.RemoteProxy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ProxyHtmlCacheTest {
+
+    private static final String PROXY_ID = "http://localhost:40000";
+
+    @After
+    public void tearDown() {
+        ProxyHtmlCache.remove(PROXY_ID);
+    }
+
+    @Test
+    public void proxiesAreRenderedAgainOnlyAfterChanging() {
+        RemoteProxy proxy = proxy();
+        AtomicInteger renders = new AtomicInteger();
+
+        assertEquals("html-1", ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.CONSOLE,
+                () -> "html-" + renders.incrementAndGet()));
+        assertEquals("html-1", ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.CONSOLE,
+                () -> "html-" + renders.incrementAndGet()));
+
+        ProxyHtmlCache.invalidate(PROXY_ID);
+
+        assertEquals("html-2", ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.CONSOLE,
+                () -> "html-" + renders.incrementAndGet()));
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    public void viewsAreCachedSeparately() {
+        RemoteProxy proxy = proxy();
+
+        ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.CONSOLE, () -> "console");
+
+        assertEquals("live", ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.LIVE_PREVIEW, () -> "live"));
+        assertEquals("console", ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.CONSOLE, () -> "other"));
+    }
+
+    @Test
+    public void proxiesRegisteredAgainAreRenderedAgain() {
+        ProxyHtmlCache.getHtml(proxy(), ProxyHtmlCache.CONSOLE, () -> "previous");
+
+        assertEquals("current", ProxyHtmlCache.getHtml(proxy(), ProxyHtmlCache.CONSOLE, () -> "current"));
+    }
+
+    @Test
+    public void htmlRenderedWhileTheProxyChangesIsNotKept() {
+        RemoteProxy proxy = proxy();
+
+        ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.CONSOLE, () -> {
+            ProxyHtmlCache.invalidate(PROXY_ID);
+            return "stale";
+        });
+
+        assertEquals("fresh", ProxyHtmlCache.getHtml(proxy, ProxyHtmlCache.CONSOLE, () -> "fresh"));
+    }
+
+    private static RemoteProxy proxy() {
+        RemoteProxy proxy = mock(RemoteProxy.class);
+        when(proxy.getId()).thenReturn(PROXY_ID);
+        return proxy;
+    }
+}
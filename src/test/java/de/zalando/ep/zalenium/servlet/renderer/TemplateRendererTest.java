@@ -0,0 +1,73 @@
+package de.zalando.ep.zalenium.servlet.renderer;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class TemplateRendererTest {
+
+    private static final String PROXY_TAB = "html_templates/proxy_tab.html";
+
+    @Test
+    public void placeholdersAreReplacedEverywhere() {
+        TemplateRenderer templateRenderer = new TemplateRenderer("html_templates/live_node_tab.html");
+        Map<String, String> values = new HashMap<>();
+        values.put("{{noVncReadOnlyUrl}}", "http://localhost:50000/?view_only=true");
+
+        String rendered = templateRenderer.renderTemplate(values);
+
+        assertThat(rendered, not(containsString("{{noVncReadOnlyUrl}}")));
+        assertEquals(2, rendered.split("view_only=true", -1).length - 1);
+        // Placeholders without a value are left as they are
+        assertThat(rendered, containsString("{{proxyId}}"));
+    }
+
+    @Test
+    public void sectionsAreRenderedWithTheirNestedSections() {
+        TemplateRenderer templateRenderer = new TemplateRenderer(PROXY_TAB);
+        StringBuilder slots = new StringBuilder();
+        for (String slotClass : new String[] {"busy", ""}) {
+            Map<String, String> slotValues = new HashMap<>();
+            slotValues.put("{{slotIcon}}", "saucelabs.png");
+            slotValues.put("{{slotClass}}", slotClass);
+            slotValues.put("{{slotTitle}}", "chrome");
+            slots.append(templateRenderer.renderSection("{{singleSlots}}", slotValues));
+        }
+        Map<String, String> browserValues = new HashMap<>();
+        browserValues.put("{{browserVersion}}", "v:latest");
+        browserValues.put("{{singleSlots}}", slots.toString());
+        Map<String, String> values = new HashMap<>();
+        values.put("{{tabBrowsers}}", templateRenderer.renderSection("{{tabBrowsers}}", browserValues));
+        values.put("{{proxyId}}", "http://localhost:4444");
+
+        String rendered = templateRenderer.renderTemplate(values);
+
+        assertThat(rendered, not(containsString("{{#tabBrowsers}}")));
+        assertThat(rendered, not(containsString("singleSlots")));
+        assertThat(rendered, containsString("v:latest"));
+        assertThat(rendered, containsString("class='busy' title='chrome'"));
+        assertThat(rendered, containsString("class='' title='chrome'"));
+        assertThat(rendered, containsString("id : http://localhost:4444"));
+    }
+
+    @Test
+    public void renderingToAWriterMatchesRenderingToAString() {
+        TemplateRenderer templateRenderer = new TemplateRenderer(PROXY_TAB);
+        Map<String, String> values = new HashMap<>();
+        values.put("{{proxyName}}", "SauceLabsRemoteProxy");
+        values.put("{{tabConfig}}", "<p>url: https://ondemand.saucelabs.com</p>");
+        StringWriter writer = new StringWriter();
+
+        templateRenderer.renderTemplate(values, writer);
+
+        assertEquals(templateRenderer.renderTemplate(values), writer.toString());
+        assertThat(writer.toString(), containsString("{{#tabBrowsers}}"));
+    }
+}
@@ -0,0 +1,60 @@
+package de.zalando.ep.zalenium.streams;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class InputStreamDescriptorsTest {
+
+    private static final String CONTENT = "zalenium";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void itShouldCopyFilesAndKeepTheSource() throws IOException {
+        Path source = createFile("source.log");
+        Path target = temporaryFolder.getRoot().toPath().resolve("target.log");
+
+        long bytes = InputStreamDescriptors.copyTo(new FileInputStreamDescriptor(source, "source.log"), target, false);
+
+        Assert.assertEquals(CONTENT.length(), bytes);
+        Assert.assertEquals(CONTENT, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        Assert.assertTrue(Files.exists(source));
+    }
+
+    @Test
+    public void itShouldMoveDisposableFiles() throws IOException {
+        Path source = createFile("source.mp4");
+        Path target = createFile("target.mp4");
+
+        long bytes = InputStreamDescriptors.copyTo(new FileInputStreamDescriptor(source, "source.mp4"), target, true);
+
+        Assert.assertEquals(CONTENT.length(), bytes);
+        Assert.assertEquals(CONTENT, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        Assert.assertFalse(Files.exists(source));
+    }
+
+    @Test
+    public void itShouldStreamDescriptorsWithoutAFile() throws IOException {
+        InputStreamDescriptor descriptor = new DefaultInputStreamDescriptor(
+                new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8)), "video.mp4");
+        Path target = temporaryFolder.getRoot().toPath().resolve("video.mp4");
+
+        long bytes = InputStreamDescriptors.copyTo(descriptor, target, true);
+
+        Assert.assertEquals(CONTENT.length(), bytes);
+        Assert.assertEquals(CONTENT, new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+    }
+
+    private Path createFile(String name) throws IOException {
+        return Files.write(temporaryFolder.getRoot().toPath().resolve(name), CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+}
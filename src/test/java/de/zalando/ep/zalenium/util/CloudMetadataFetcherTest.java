@@ -0,0 +1,206 @@
+package de.zalando.ep.zalenium.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+public class CloudMetadataFetcherTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void burstIsSentRightAwayAndTheRestAtTheConfiguredRate() {
+        CloudMetadataFetcher.TokenBucket bucket = new CloudMetadataFetcher.TokenBucket(2, 3);
+
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(SECOND / 2, bucket.reserve(0));
+        assertEquals(SECOND, bucket.reserve(0));
+
+        // Refilled after being idle, but never above the burst
+        assertEquals(0, bucket.reserve(10 * SECOND));
+        assertEquals(0, bucket.reserve(10 * SECOND));
+        assertEquals(0, bucket.reserve(10 * SECOND));
+        assertEquals(SECOND / 2, bucket.reserve(10 * SECOND));
+    }
+
+    @Test
+    public void pausedBucketsResumeOneByOne() {
+        CloudMetadataFetcher.TokenBucket bucket = new CloudMetadataFetcher.TokenBucket(2, 10);
+        assertEquals(0, bucket.reserve(0));
+
+        bucket.pauseUntil(5 * SECOND);
+
+        assertEquals(4 * SECOND, bucket.reserve(SECOND));
+        assertEquals(4 * SECOND + SECOND / 2, bucket.reserve(SECOND));
+    }
+
+    @Test
+    public void retryAfterIsRespected() {
+        server.createContext("/jobs/1", exchange -> {
+            if (requests.incrementAndGet() == 1) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                send(exchange, 429, "{}");
+            } else {
+                send(exchange, 200, "{\"id\":\"1\"}");
+            }
+        });
+        CloudMetadataFetcher fetcher = new CloudMetadataFetcher(100, 10, 0, 10);
+
+        long start = System.nanoTime();
+        JsonElement job = fetcher.fetch(url("/jobs/1"), "user", "key");
+
+        assertNotNull(job);
+        assertEquals("1", job.getAsJsonObject().get("id").getAsString());
+        assertEquals(2, requests.get());
+        assertThat(System.nanoTime() - start, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(900)));
+    }
+
+    @Test
+    public void concurrentLookupsOfTheSameTestAreSentOnce() throws Exception {
+        server.createContext("/jobs/2", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            send(exchange, 200, "{\"id\":\"2\"}");
+        });
+        CloudMetadataFetcher fetcher = new CloudMetadataFetcher(100, 10, 60000, 10);
+        ExecutorService lookups = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<JsonElement>> jobs = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                jobs.add(lookups.submit(() -> fetcher.fetch(url("/jobs/2"), "user", "key")));
+            }
+            for (Future<JsonElement> job : jobs) {
+                assertEquals("2", job.get(5, TimeUnit.SECONDS).getAsJsonObject().get("id").getAsString());
+            }
+        } finally {
+            lookups.shutdownNow();
+        }
+        assertNotNull(fetcher.fetch(url("/jobs/2"), "user", "key"));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void responsesAreNotReusedWithoutTtl() {
+        server.createContext("/jobs/3", exchange -> {
+            requests.incrementAndGet();
+            send(exchange, 200, "{\"id\":\"3\"}");
+        });
+        CloudMetadataFetcher fetcher = new CloudMetadataFetcher(100, 10, 0, 10);
+
+        fetcher.fetch(url("/jobs/3"), "user", "key");
+        fetcher.fetch(url("/jobs/3"), "user", "key");
+
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void forgottenResponsesAreFetchedAgain() {
+        server.createContext("/jobs/5", exchange -> {
+            int request = requests.incrementAndGet();
+            send(exchange, 200, "{\"video\":\"" + (request == 1 ? "pending" : "http://video") + "\"}");
+        });
+        CloudMetadataFetcher fetcher = new CloudMetadataFetcher(100, 10, 60000, 10);
+
+        assertEquals("pending", fetcher.fetch(url("/jobs/5"), "user", "key").getAsJsonObject()
+                .get("video").getAsString());
+        fetcher.forget(url("/jobs/5"), "user");
+
+        assertEquals("http://video", fetcher.fetch(url("/jobs/5"), "user", "key").getAsJsonObject()
+                .get("video").getAsString());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void failedLookupsAreNotCached() {
+        server.createContext("/jobs/4", exchange -> {
+            requests.incrementAndGet();
+            send(exchange, 404, "{}");
+        });
+        CloudMetadataFetcher fetcher = new CloudMetadataFetcher(1000, 10, 60000, 1);
+
+        assertNull(fetcher.fetch(url("/jobs/4"), "user", "key"));
+        assertNull(fetcher.fetch(url("/jobs/4"), "user", "key"));
+
+        assertEquals(20, requests.get());
+    }
+
+    @Test
+    public void retryAfterIsReadAsSecondsOrAsADate() {
+        assertEquals(120000, CloudMetadataFetcher.getRetryAfterMillis(new BasicHeader("Retry-After", "120")));
+        assertEquals(-1, CloudMetadataFetcher.getRetryAfterMillis(new BasicHeader("Retry-After", "soon")));
+        assertEquals(-1, CloudMetadataFetcher.getRetryAfterMillis(null));
+
+        String inTenSeconds = DateUtils.formatDate(new Date(System.currentTimeMillis() + 10000));
+        long millis = CloudMetadataFetcher.getRetryAfterMillis(new BasicHeader("Retry-After", inTenSeconds));
+        assertThat(millis, greaterThanOrEqualTo(8000L));
+        assertThat(millis, lessThanOrEqualTo(10000L));
+    }
+
+    @Test
+    public void retriesBackOffUpToTheMaximum() {
+        CloudMetadataFetcher fetcher = new CloudMetadataFetcher(5, 10, 0, 2000);
+
+        assertEquals(2000, fetcher.retryMillis(1));
+        assertEquals(8000, fetcher.retryMillis(3));
+        assertEquals(15000, fetcher.retryMillis(10));
+    }
+
+    private void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,163 @@
+package de.zalando.ep.zalenium.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class FileDownloaderTest {
+
+    private static final byte[] VIDEO = new byte[300 * 1024];
+
+    static {
+        new Random(42).nextBytes(VIDEO);
+    }
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final FileDownloader fileDownloader = new FileDownloader(10, 40);
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void fileIsStreamedToItsFinalName() throws Exception {
+        server.createContext("/video.mp4", exchange -> send(exchange, 200, VIDEO, 0, VIDEO.length));
+        Path target = temporaryFolder.getRoot().toPath().resolve("videos/video.mp4");
+
+        assertTrue(fileDownloader.download(url("/video.mp4"), target, "user", "key", true, 3));
+
+        assertArrayEquals(VIDEO, Files.readAllBytes(target));
+        assertFalse(Files.exists(target.resolveSibling("video.mp4.part")));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void interruptedDownloadIsResumedWithRange() throws Exception {
+        int half = VIDEO.length / 2;
+        server.createContext("/video.mp4", exchange -> {
+            if (requests.get() == 0) {
+                // Announce the whole file and stop half way, like a dropped connection
+                requests.incrementAndGet();
+                exchange.sendResponseHeaders(200, VIDEO.length);
+                OutputStream body = exchange.getResponseBody();
+                body.write(VIDEO, 0, half);
+                body.flush();
+                exchange.close();
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(String.valueOf(range));
+            int from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            exchange.getResponseHeaders().add("Content-Range",
+                    "bytes " + from + "-" + (VIDEO.length - 1) + "/" + VIDEO.length);
+            send(exchange, 206, VIDEO, from, VIDEO.length - from);
+        });
+        Path target = temporaryFolder.getRoot().toPath().resolve("video.mp4");
+
+        assertTrue(fileDownloader.download(url("/video.mp4"), target, "user", "key", false, 3));
+
+        assertArrayEquals(VIDEO, Files.readAllBytes(target));
+        assertEquals(1, ranges.size());
+        assertEquals("bytes=" + half + "-", ranges.get(0));
+    }
+
+    @Test
+    public void serversIgnoringRangeGiveTheWholeFileAgain() throws Exception {
+        server.createContext("/video.mp4", exchange -> send(exchange, 200, VIDEO, 0, VIDEO.length));
+        Path target = temporaryFolder.getRoot().toPath().resolve("video.mp4");
+        Files.write(target.resolveSibling("video.mp4.part"), new byte[]{1, 2, 3});
+
+        assertTrue(fileDownloader.download(url("/video.mp4"), target, "user", "key", false, 3));
+
+        assertArrayEquals(VIDEO, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void filesThatAreNeverReadyAreGivenUpAfterTheLastAttempt() throws Exception {
+        server.createContext("/video.mp4", exchange -> send(exchange, 404, new byte[0], 0, 0));
+        Path target = temporaryFolder.getRoot().toPath().resolve("video.mp4");
+
+        assertFalse(fileDownloader.download(url("/video.mp4"), target, "user", "key", false, 3));
+
+        assertEquals(3, requests.get());
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(target.resolveSibling("video.mp4.part")));
+    }
+
+    @Test
+    public void credentialsAreOnlySentWhenAuthenticating() throws Exception {
+        List<String> authorizations = new CopyOnWriteArrayList<>();
+        server.createContext("/log.txt", exchange -> {
+            authorizations.add(String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")));
+            send(exchange, 200, VIDEO, 0, 10);
+        });
+        Path target = temporaryFolder.getRoot().toPath().resolve("log.txt");
+
+        assertTrue(fileDownloader.download(url("/log.txt"), target, "user", "key", true, 1));
+        assertTrue(fileDownloader.download(url("/log.txt"), target, "user", "key", false, 1));
+
+        assertEquals("Basic dXNlcjprZXk=", authorizations.get(0));
+        assertEquals("null", authorizations.get(1));
+    }
+
+    @Test
+    public void backoffGrowsUpToTheMaximum() {
+        FileDownloader downloader = new FileDownloader(1000, 8000);
+
+        assertThat(downloader.backoffMillis(1), lessThanOrEqualTo(1000L));
+        assertThat(downloader.backoffMillis(1), greaterThanOrEqualTo(500L));
+        assertThat(downloader.backoffMillis(3), greaterThanOrEqualTo(2000L));
+        assertThat(downloader.backoffMillis(30), lessThanOrEqualTo(8000L));
+        assertThat(downloader.backoffMillis(30), greaterThanOrEqualTo(4000L));
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body, int offset, int length) throws IOException {
+        requests.incrementAndGet();
+        exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+        if (length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, offset, length);
+            }
+        }
+        exchange.close();
+    }
+
+    private String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,65 @@
+package de.zalando.ep.zalenium.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonElement;
+import com.sun.net.httpserver.HttpServer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class HttpClientPoolTest {
+
+    // Only this test talks to this host name, so the counters are not shared with other tests
+    private static final String HOST = "127.0.0.1";
+
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(HOST, 0), 0);
+        server.createContext("/rest/v1/jobs", exchange -> {
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            byte[] body = "{\"id\":\"job\",\"passed\":true}".getBytes(UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void consecutiveCallsReuseTheConnection() {
+        CommonProxyUtilities commonProxyUtilities = new CommonProxyUtilities();
+        String url = "http://" + HOST + ":" + server.getAddress().getPort() + "/rest/v1/jobs";
+        double requestsBefore = HttpClientPool.getRequests(HOST);
+        double connectionsBefore = HttpClientPool.getConnectionsOpened(HOST);
+
+        for (int i = 0; i < 3; i++) {
+            // A different URL each time, the same one would be answered from the cache
+            JsonElement job = commonProxyUtilities.readJSONFromUrl(url + "?page=" + i, "user", "key");
+            assertNotNull(job);
+            assertEquals("job", job.getAsJsonObject().get("id").getAsString());
+        }
+
+        assertEquals(3, HttpClientPool.getRequests(HOST) - requestsBefore, 0);
+        assertEquals(1, HttpClientPool.getConnectionsOpened(HOST) - connectionsBefore, 0);
+        assertEquals("Basic dXNlcjprZXk=", authorizations.get(0));
+    }
+}
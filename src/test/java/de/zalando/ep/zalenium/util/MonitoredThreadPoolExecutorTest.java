@@ -0,0 +1,77 @@
+package de.zalando.ep.zalenium.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import io.prometheus.client.CollectorRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MonitoredThreadPoolExecutorTest {
+
+    @Test
+    public void saturatedExecutorRunsTaskInCallerWithCallerRunsPolicy() throws InterruptedException {
+        MonitoredThreadPoolExecutor executor = new MonitoredThreadPoolExecutor("test-caller-runs", 1, 1,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        CountDownLatch blocker = new CountDownLatch(1);
+        try {
+            executor.execute(() -> awaitQuietly(blocker));
+            executor.execute(() -> awaitQuietly(blocker));
+
+            AtomicReference<Thread> runningThread = new AtomicReference<>();
+            executor.execute(() -> runningThread.set(Thread.currentThread()));
+
+            assertEquals(Thread.currentThread(), runningThread.get());
+            assertEquals(1.0, rejectedTasks("test-caller-runs"), 0);
+        } finally {
+            blocker.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void saturatedExecutorRejectsTaskWithAbortPolicy() {
+        MonitoredThreadPoolExecutor executor = new MonitoredThreadPoolExecutor("test-abort", 1, 1,
+                new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch blocker = new CountDownLatch(1);
+        try {
+            executor.execute(() -> awaitQuietly(blocker));
+            executor.execute(() -> awaitQuietly(blocker));
+            executor.execute(() -> { });
+        } finally {
+            blocker.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void threadsAreNamedAfterTheExecutor() throws InterruptedException {
+        MonitoredThreadPoolExecutor executor = new MonitoredThreadPoolExecutor("test-names", 1, 1,
+                new ThreadPoolExecutor.AbortPolicy());
+        AtomicReference<String> threadName = new AtomicReference<>();
+        executor.execute(() -> threadName.set(Thread.currentThread().getName()));
+        executor.shutdown();
+
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals("test-names-1", threadName.get());
+    }
+
+    private static Double rejectedTasks(String executor) {
+        return CollectorRegistry.defaultRegistry.getSampleValue("zalenium_executor_rejected_tasks_total",
+                new String[]{"executor"}, new String[]{executor});
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}